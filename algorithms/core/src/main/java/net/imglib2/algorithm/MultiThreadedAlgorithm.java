@@ -33,6 +33,8 @@
 
 package net.imglib2.algorithm;
 
+import net.imglib2.multithreading.SharedThreadPool;
+
 /**
  * This is a convenience implementation of an algorithm that implements
  * {@link MultiThreaded} and {@link Algorithm} so that less code has to be
@@ -58,7 +60,7 @@ public abstract class MultiThreadedAlgorithm implements MultiThreaded, Algorithm
 	@Override
 	public void setNumThreads()
 	{
-		this.numThreads = Runtime.getRuntime().availableProcessors();
+		this.numThreads = SharedThreadPool.getParallelism();
 	}
 
 	@Override
@@ -66,6 +66,12 @@ import net.imglib2.type.logic.BitType;
  * {@link PixelListComponentTree} for an example.
  * 
  * <p>
+ * For {@link net.imglib2.type.numeric.IntegerType} inputs,
+ * {@link BuildIntegerComponentTree} builds the same components using a bucket
+ * queue on linear pixel indices, which is considerably faster.
+ * </p>
+ * 
+ * <p>
  * <strong>TODO</strong> Add support for non-zero-min RandomAccessibleIntervals.
  * (Currently, we assume that the input image is a <em>zero-min</em> interval.)
  * </p>
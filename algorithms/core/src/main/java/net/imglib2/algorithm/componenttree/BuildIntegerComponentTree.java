@@ -0,0 +1,477 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.componenttree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import net.imglib2.Cursor;
+import net.imglib2.Point;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.componenttree.mser.MserTree;
+import net.imglib2.algorithm.componenttree.pixellist.PixelListComponentTree;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.view.Views;
+
+/**
+ * Build the component tree of an image of {@link IntegerType} pixels. This
+ * produces the same components as {@link BuildComponentTree}, but works on
+ * linear pixel indices and primitive arrays: the input is copied into an
+ * {@code int[]} of grey-levels, the heap of boundary pixels is replaced by a
+ * bucket queue with one LIFO list per grey-level, and the levels of the
+ * component stack are kept as ints. No objects are created per pixel, and
+ * each boundary pixel is queued and dequeued in constant time, so the run time
+ * is linear in the number of pixels for 8-bit and 16-bit inputs.
+ * 
+ * <p>
+ * Intensity ranges of more than 2<sup>20</sup> levels are mapped to the ranks
+ * of the occurring values. Components are emitted to the
+ * {@link PartialComponent.Handler} in the same bottom-up manner as
+ * {@link BuildComponentTree}; the order in which sibling components at the
+ * same level are completed may differ.
+ * </p>
+ * 
+ * <p>
+ * The input must be a <em>zero-min</em> interval with less than
+ * 2<sup>31</sup> pixels. Independent hyperslices (e.g. time points or
+ * channels) can be processed concurrently, see
+ * {@link PixelListComponentTree#buildIntegerComponentTrees} and
+ * {@link MserTree#buildIntegerMserTrees}.
+ * </p>
+ * 
+ * @param <T>
+ *            value type of the input image.
+ * @param <C>
+ *            component type.
+ */
+public final class BuildIntegerComponentTree< T extends IntegerType< T >, C extends PartialComponent< T, C > >
+{
+	/**
+	 * Run the algorithm. Completed components are emitted to the
+	 * {@link PartialComponent.Handler} which is responsible for building up the
+	 * tree structure.
+	 * 
+	 * @param input
+	 *            input image.
+	 * @param componentGenerator
+	 *            provides new {@link PartialComponent} instances.
+	 * @param componentHandler
+	 *            receives completed {@link PartialComponent}s.
+	 * @param darkToBright
+	 *            determines ordering of threshold values. If it is true, then
+	 *            thresholds are applied from low to high values.
+	 */
+	public static < T extends IntegerType< T >, C extends PartialComponent< T, C > > void buildComponentTree(
+			final RandomAccessibleInterval< T > input,
+			final PartialComponent.Generator< T, C > componentGenerator,
+			final PartialComponent.Handler< C > componentHandler,
+			final boolean darkToBright )
+	{
+		new BuildIntegerComponentTree< T, C >( input, componentGenerator, componentHandler, darkToBright ).run();
+	}
+
+	/**
+	 * Intensity ranges up to this many levels are used directly as bucket
+	 * indices. Larger ranges are mapped to ranks.
+	 */
+	private static final int MAX_DIRECT_LEVELS = 1 << 20;
+
+	private final PartialComponent.Generator< T, C > componentGenerator;
+
+	private final PartialComponent.Handler< C > componentOutput;
+
+	private final boolean darkToBright;
+
+	/**
+	 * image dimensions.
+	 */
+	private final int[] dimensions;
+
+	/**
+	 * linear index step for each dimension.
+	 */
+	private final int[] steps;
+
+	/**
+	 * grey-level of every pixel, such that lower levels are processed first.
+	 */
+	private final int[] levels;
+
+	/**
+	 * pixel value of the lowest level (if levels are direct offsets).
+	 */
+	private long minValue;
+
+	/**
+	 * pixel value of the highest level (if levels are direct offsets).
+	 */
+	private long maxValue;
+
+	/**
+	 * sorted distinct pixel values, or null if levels are direct offsets.
+	 */
+	private long[] rankedValues;
+
+	private int numLevels;
+
+	private final boolean[] visited;
+
+	/**
+	 * Next pixel in the bucket list of the same level. A pixel is in the
+	 * bucket queue at most once at a time, so the lists are threaded through
+	 * per-pixel slots.
+	 */
+	private int[] queueNext;
+
+	/**
+	 * Index of the next neighbor to visit when a queued pixel is dequeued.
+	 */
+	private byte[] queueNeighbor;
+
+	/**
+	 * First pixel in the bucket list of each level, or -1.
+	 */
+	private int[] queueHead;
+
+	/**
+	 * One bit per level, set if the bucket list of that level is non-empty.
+	 */
+	private long[] queueOccupied;
+
+	/**
+	 * No queued pixel has a level lower than this.
+	 */
+	private int queueMinLevel;
+
+	private int queueSize;
+
+	private final ArrayList< C > componentStack;
+
+	private int[] componentLevels;
+
+	private final T value;
+
+	private final Point position;
+
+	private final long[] tmp;
+
+	private BuildIntegerComponentTree( final RandomAccessibleInterval< T > input, final PartialComponent.Generator< T, C > componentGenerator, final PartialComponent.Handler< C > componentOutput, final boolean darkToBright )
+	{
+		final int n = input.numDimensions();
+		final long size = Intervals.numElements( input );
+		if ( size > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "input has too many pixels: " + size );
+		if ( n * 2 > Byte.MAX_VALUE )
+			throw new IllegalArgumentException( "input has too many dimensions: " + n );
+
+		this.componentGenerator = componentGenerator;
+		this.componentOutput = componentOutput;
+		this.darkToBright = darkToBright;
+
+		dimensions = new int[ n ];
+		steps = new int[ n ];
+		int step = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			dimensions[ d ] = ( int ) input.dimension( d );
+			steps[ d ] = step;
+			step *= dimensions[ d ];
+		}
+
+		levels = new int[ ( int ) size ];
+		visited = new boolean[ ( int ) size ];
+		componentStack = new ArrayList< C >();
+		componentLevels = new int[ 16 ];
+		value = Views.iterable( input ).firstElement().createVariable();
+		position = new Point( n );
+		tmp = new long[ n ];
+
+		computeLevels( input );
+	}
+
+	/**
+	 * Copy the input into {@link #levels}, reversing the order for
+	 * bright-to-dark and mapping to ranks if the intensity range is too large
+	 * for direct bucket indexing.
+	 */
+	private void computeLevels( final RandomAccessibleInterval< T > input )
+	{
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		final Cursor< T > c1 = Views.flatIterable( input ).cursor();
+		while ( c1.hasNext() )
+		{
+			final long v = c1.next().getIntegerLong();
+			if ( v < min )
+				min = v;
+			if ( v > max )
+				max = v;
+		}
+		minValue = min;
+		maxValue = max;
+
+		// the range overflows if the values span more than Long.MAX_VALUE
+		final long range = max - min;
+		final Cursor< T > c2 = Views.flatIterable( input ).cursor();
+		if ( range >= 0 && range < MAX_DIRECT_LEVELS )
+		{
+			rankedValues = null;
+			numLevels = ( int ) range + 1;
+			int i = 0;
+			if ( darkToBright )
+				while ( c2.hasNext() )
+					levels[ i++ ] = ( int ) ( c2.next().getIntegerLong() - min );
+			else
+				while ( c2.hasNext() )
+					levels[ i++ ] = ( int ) ( max - c2.next().getIntegerLong() );
+		}
+		else
+		{
+			final long[] values = new long[ levels.length ];
+			for ( int i = 0; c2.hasNext(); ++i )
+				values[ i ] = c2.next().getIntegerLong();
+			final long[] sorted = values.clone();
+			Arrays.sort( sorted );
+			int numDistinct = 0;
+			for ( int i = 0; i < sorted.length; ++i )
+				if ( i == 0 || sorted[ i ] != sorted[ numDistinct - 1 ] )
+					sorted[ numDistinct++ ] = sorted[ i ];
+			rankedValues = Arrays.copyOf( sorted, numDistinct );
+			numLevels = numDistinct;
+			for ( int i = 0; i < values.length; ++i )
+			{
+				final int rank = Arrays.binarySearch( rankedValues, values[ i ] );
+				levels[ i ] = darkToBright ? rank : numDistinct - 1 - rank;
+			}
+		}
+	}
+
+	/**
+	 * Set {@link #value} to the pixel value corresponding to a level.
+	 */
+	private T valueOf( final int level )
+	{
+		final long v;
+		if ( rankedValues != null )
+			v = rankedValues[ darkToBright ? level : numLevels - 1 - level ];
+		else
+			v = darkToBright ? minValue + level : maxValue - level;
+		value.setInteger( v );
+		return value;
+	}
+
+	private void enqueue( final int pixel, final int level, final int nextNeighborIndex )
+	{
+		queueNeighbor[ pixel ] = ( byte ) nextNeighborIndex;
+		final int head = queueHead[ level ];
+		if ( head < 0 )
+			queueOccupied[ level >>> 6 ] |= 1l << level;
+		queueNext[ pixel ] = head;
+		queueHead[ level ] = pixel;
+		if ( level < queueMinLevel )
+			queueMinLevel = level;
+		++queueSize;
+	}
+
+	/**
+	 * Remove and return a pixel with the lowest level from the bucket queue.
+	 * The queue must not be empty.
+	 */
+	private int dequeue()
+	{
+		int w = queueMinLevel >>> 6;
+		long bits = queueOccupied[ w ] & ( -1l << queueMinLevel );
+		while ( bits == 0 )
+			bits = queueOccupied[ ++w ];
+		final int level = ( w << 6 ) + Long.numberOfTrailingZeros( bits );
+		queueMinLevel = level;
+
+		final int pixel = queueHead[ level ];
+		final int next = queueNext[ pixel ];
+		queueHead[ level ] = next;
+		if ( next < 0 )
+			queueOccupied[ w ] &= ~( 1l << level );
+		--queueSize;
+		return pixel;
+	}
+
+	private void pushComponent( final C component, final int level )
+	{
+		final int i = componentStack.size();
+		if ( i == componentLevels.length )
+			componentLevels = Arrays.copyOf( componentLevels, 2 * i );
+		componentLevels[ i ] = level;
+		componentStack.add( component );
+	}
+
+	private C popComponent()
+	{
+		return componentStack.remove( componentStack.size() - 1 );
+	}
+
+	/**
+	 * Main loop of the algorithm. This follows the steps of
+	 * {@link BuildComponentTree}, with pixel positions replaced by linear
+	 * indices.
+	 */
+	private void run()
+	{
+		if ( levels.length == 0 )
+			return;
+
+		final int n = dimensions.length;
+		final int nBound = 2 * n;
+		queueNext = new int[ levels.length ];
+		queueNeighbor = new byte[ levels.length ];
+		queueHead = new int[ numLevels ];
+		Arrays.fill( queueHead, -1 );
+		queueOccupied = new long[ ( numLevels + 63 ) >>> 6 ];
+		queueMinLevel = numLevels;
+		queueSize = 0;
+
+		// the terminator at the bottom of the component stack is never
+		// reached, because no pixel has level Integer.MAX_VALUE.
+		pushComponent( null, Integer.MAX_VALUE );
+
+		// step 2
+		int current = 0;
+		visited[ current ] = true;
+		int currentLevel = levels[ current ];
+
+		// step 3
+		pushComponent( componentGenerator.createComponent( valueOf( currentLevel ) ), currentLevel );
+
+		// step 4
+		int nextNeighbor = 0;
+		while ( true )
+		{
+			while ( nextNeighbor < nBound )
+			{
+				final int d = nextNeighbor >> 1;
+				final boolean bck = ( nextNeighbor & 1 ) == 0;
+				++nextNeighbor;
+				final int coordinate = ( current / steps[ d ] ) % dimensions[ d ];
+				final int neighbor;
+				if ( bck )
+				{
+					if ( coordinate == 0 )
+						continue;
+					neighbor = current - steps[ d ];
+				}
+				else
+				{
+					if ( coordinate == dimensions[ d ] - 1 )
+						continue;
+					neighbor = current + steps[ d ];
+				}
+				if ( !visited[ neighbor ] )
+				{
+					visited[ neighbor ] = true;
+					final int neighborLevel = levels[ neighbor ];
+					if ( neighborLevel >= currentLevel )
+					{
+						enqueue( neighbor, neighborLevel, 0 );
+					}
+					else
+					{
+						enqueue( current, currentLevel, nextNeighbor );
+						current = neighbor;
+						currentLevel = neighborLevel;
+
+						// go to 3, i.e.:
+						pushComponent( componentGenerator.createComponent( valueOf( currentLevel ) ), currentLevel );
+						nextNeighbor = 0;
+					}
+				}
+			}
+
+			// step 5
+			IntervalIndexer.indexToPosition( current, dimensions, tmp );
+			position.setPosition( tmp );
+			componentStack.get( componentStack.size() - 1 ).addPosition( position );
+
+			// step 6
+			if ( queueSize == 0 )
+			{
+				processStack( currentLevel );
+				return;
+			}
+
+			final int p = dequeue();
+			final int pLevel = levels[ p ];
+			if ( pLevel != currentLevel )
+			{
+				// step 7
+				processStack( pLevel );
+			}
+			current = p;
+			currentLevel = pLevel;
+			nextNeighbor = queueNeighbor[ p ];
+		}
+	}
+
+	/**
+	 * This is called whenever the current level is raised.
+	 * 
+	 * @param level
+	 */
+	private void processStack( final int level )
+	{
+		while ( true )
+		{
+			// process component on top of stack
+			final C component = popComponent();
+			componentOutput.emit( component );
+
+			// get level of second component on stack
+			final int top = componentStack.size() - 1;
+			final int secondLevel = componentLevels[ top ];
+			if ( level < secondLevel )
+			{
+				component.setValue( valueOf( level ) );
+				pushComponent( component, level );
+			}
+			else
+			{
+				componentStack.get( top ).merge( component );
+				if ( level > secondLevel )
+					continue;
+			}
+			return;
+		}
+	}
+}
@@ -34,13 +34,17 @@
 package net.imglib2.algorithm.componenttree.mser;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.algorithm.componenttree.BuildComponentTree;
+import net.imglib2.algorithm.componenttree.BuildIntegerComponentTree;
 import net.imglib2.algorithm.componenttree.ComponentForest;
 import net.imglib2.algorithm.componenttree.PartialComponent;
 import net.imglib2.algorithm.componenttree.pixellist.PixelList;
@@ -48,10 +52,13 @@ import net.imglib2.algorithm.componenttree.pixellist.PixelListComponent;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.type.Type;
+import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.util.Util;
+import net.imglib2.view.Views;
 
 //@formatter:off
 /**
@@ -280,6 +287,94 @@ public final class MserTree< T extends Type< T > > implements ComponentForest< M
 		return tree;
 	}
 
+	/**
+	 * Build a MSER tree from an input image of {@link IntegerType} pixels,
+	 * using {@link BuildIntegerComponentTree} instead of
+	 * {@link BuildComponentTree}. The resulting tree contains the same MSER as
+	 * {@link #buildMserTree(RandomAccessibleInterval, RealType, long, long, double, double, ImgFactory, boolean)}.
+	 * 
+	 * @param input
+	 *            the input image.
+	 * @param delta
+	 *            delta for computing instability score.
+	 * @param minSize
+	 *            minimum size (in pixels) of accepted MSER.
+	 * @param maxSize
+	 *            maximum size (in pixels) of accepted MSER.
+	 * @param maxVar
+	 *            maximum instability score of accepted MSER.
+	 * @param minDiversity
+	 *            minimal diversity of adjacent accepted MSER.
+	 * @param imgFactory
+	 *            used for creating the {@link PixelList} image
+	 * @param darkToBright
+	 *            whether to apply thresholds from dark to bright (true) or
+	 *            bright to dark (false)
+	 * @return MSER tree of the image.
+	 */
+	public static < T extends IntegerType< T > > MserTree< T > buildIntegerMserTree( final RandomAccessibleInterval< T > input, final T delta, final long minSize, final long maxSize, final double maxVar, final double minDiversity, final ImgFactory< LongType > imgFactory, final boolean darkToBright )
+	{
+		final T max = delta.createVariable();
+		max.setReal( darkToBright ? delta.getMaxValue() : delta.getMinValue() );
+		final MserPartialComponentGenerator< T > generator = new MserPartialComponentGenerator< T >( max, input, imgFactory );
+		final Comparator< T > comparator = darkToBright ? new BuildComponentTree.DarkToBright< T >() : new BuildComponentTree.BrightToDark< T >();
+		final ComputeDelta< T > computeDelta = darkToBright ? new ComputeDeltaDarkToBright< T >( delta ) : new ComputeDeltaBrightToDark< T >( delta );
+		final MserTree< T > tree = new MserTree< T >( comparator, computeDelta, minSize, maxSize, maxVar, minDiversity );
+		BuildIntegerComponentTree.buildComponentTree( input, generator, tree, darkToBright );
+		tree.pruneDuplicates();
+		return tree;
+	}
+
+	/**
+	 * Build one MSER tree for every hyperslice of an input image of
+	 * {@link IntegerType} pixels, e.g. one tree per time point or channel. The
+	 * hyperslices are processed concurrently using the given
+	 * {@link ExecutorService}.
+	 * 
+	 * @param input
+	 *            the input image.
+	 * @param delta
+	 *            delta for computing instability score.
+	 * @param minSize
+	 *            minimum size (in pixels) of accepted MSER.
+	 * @param maxSize
+	 *            maximum size (in pixels) of accepted MSER.
+	 * @param maxVar
+	 *            maximum instability score of accepted MSER.
+	 * @param minDiversity
+	 *            minimal diversity of adjacent accepted MSER.
+	 * @param sliceDimension
+	 *            the dimension along which the input is sliced.
+	 * @param darkToBright
+	 *            whether to apply thresholds from dark to bright (true) or
+	 *            bright to dark (false)
+	 * @param service
+	 *            used to build the trees in parallel.
+	 * @return MSER trees of the hyperslices, in order of the slice position.
+	 */
+	public static < T extends IntegerType< T > > List< MserTree< T > > buildIntegerMserTrees( final RandomAccessibleInterval< T > input, final T delta, final long minSize, final long maxSize, final double maxVar, final double minDiversity, final int sliceDimension, final boolean darkToBright, final ExecutorService service )
+	{
+		final int numSlices = ( int ) input.dimension( sliceDimension );
+		final ArrayList< MserTree< T > > trees = new ArrayList< MserTree< T > >( Collections.< MserTree< T > >nCopies( numSlices, null ) );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( int s = 0; s < numSlices; ++s )
+		{
+			final int slice = s;
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final RandomAccessibleInterval< T > sliceInput = Views.hyperSlice( input, sliceDimension, input.min( sliceDimension ) + slice );
+					final ImgFactory< LongType > factory = Util.getArrayOrCellImgFactory( sliceInput, new LongType() );
+					trees.set( slice, buildIntegerMserTree( sliceInput, delta, minSize, maxSize, maxVar, minDiversity, factory, darkToBright ) );
+				}
+			} );
+		}
+		SharedThreadPool.runAll( tasks, service );
+		return trees;
+	}
+
 	/**
 	 * Create a variable of type T with value delta by copying and setting a
 	 * value from the input {@link RandomAccessibleInterval}.
@@ -37,19 +37,25 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.algorithm.componenttree.BuildComponentTree;
+import net.imglib2.algorithm.componenttree.BuildIntegerComponentTree;
 import net.imglib2.algorithm.componenttree.ComponentTree;
 import net.imglib2.algorithm.componenttree.PartialComponent;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.type.Type;
+import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.util.Util;
+import net.imglib2.view.Views;
 
 /**
  * Component tree of an image stored as a tree of {@link PixelListComponent}s.
@@ -157,6 +163,78 @@ public final class PixelListComponentTree< T extends Type< T > > implements Comp
 		return tree;
 	}
 
+	/**
+	 * Build a component tree from an input image of {@link IntegerType}
+	 * pixels, using {@link BuildIntegerComponentTree} instead of
+	 * {@link BuildComponentTree}. The resulting tree contains the same
+	 * components as
+	 * {@link #buildComponentTree(RandomAccessibleInterval, RealType, ImgFactory, boolean)}.
+	 *
+	 * @param input
+	 *            the input image.
+	 * @param type
+	 *            a variable of the input image type.
+	 * @param imgFactory
+	 *            used for creating the {@link PixelList} image {@see
+	 *            PixelListComponentGenerator}.
+	 * @param darkToBright
+	 *            whether to apply thresholds from dark to bright (true) or
+	 *            bright to dark (false)
+	 * @return component tree of the image.
+	 */
+	public static < T extends IntegerType< T > > PixelListComponentTree< T > buildIntegerComponentTree( final RandomAccessibleInterval< T > input, final T type, final ImgFactory< LongType > imgFactory, final boolean darkToBright )
+	{
+		final T max = type.createVariable();
+		max.setReal( darkToBright ? type.getMaxValue() : type.getMinValue() );
+		final PixelListPartialComponentGenerator< T > generator = new PixelListPartialComponentGenerator< T >( max, input, imgFactory );
+		final PixelListComponentTree< T > tree = new PixelListComponentTree< T >();
+		BuildIntegerComponentTree.buildComponentTree( input, generator, tree, darkToBright );
+		return tree;
+	}
+
+	/**
+	 * Build one component tree for every hyperslice of an input image of
+	 * {@link IntegerType} pixels, e.g. one tree per time point or channel. The
+	 * hyperslices are processed concurrently using the given
+	 * {@link ExecutorService}.
+	 *
+	 * @param input
+	 *            the input image.
+	 * @param type
+	 *            a variable of the input image type.
+	 * @param sliceDimension
+	 *            the dimension along which the input is sliced.
+	 * @param darkToBright
+	 *            whether to apply thresholds from dark to bright (true) or
+	 *            bright to dark (false)
+	 * @param service
+	 *            used to build the trees in parallel.
+	 * @return component trees of the hyperslices, in order of the slice
+	 *         position.
+	 */
+	public static < T extends IntegerType< T > > List< PixelListComponentTree< T > > buildIntegerComponentTrees( final RandomAccessibleInterval< T > input, final T type, final int sliceDimension, final boolean darkToBright, final ExecutorService service )
+	{
+		final int numSlices = ( int ) input.dimension( sliceDimension );
+		final ArrayList< PixelListComponentTree< T > > trees = new ArrayList< PixelListComponentTree< T > >( Collections.< PixelListComponentTree< T > >nCopies( numSlices, null ) );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( int s = 0; s < numSlices; ++s )
+		{
+			final int slice = s;
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final RandomAccessibleInterval< T > sliceInput = Views.hyperSlice( input, sliceDimension, input.min( sliceDimension ) + slice );
+					final ImgFactory< LongType > factory = Util.getArrayOrCellImgFactory( sliceInput, new LongType() );
+					trees.set( slice, buildIntegerComponentTree( sliceInput, type, factory, darkToBright ) );
+				}
+			} );
+		}
+		SharedThreadPool.runAll( tasks, service );
+		return trees;
+	}
+
 	private PixelListComponent< T > root;
 
 	private final ArrayList< PixelListComponent< T > > nodes;
@@ -46,6 +46,7 @@ import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.algorithm.gauss3.Gauss3;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.Img;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.NumericType;
 import net.imglib2.util.Util;
@@ -126,9 +127,7 @@ public class DifferenceOfGaussian
 		final IterableInterval< T > dogIterable = Views.iterable( dog );
 		final IterableInterval< T > tmpIterable = Views.iterable( tmpInterval );
 		final long size = dogIterable.size();
-		// FIXME find better heuristic?
-		final int numThreads = Runtime.getRuntime().availableProcessors();
-		final int numTasks = numThreads <= 1 ? 1 : numThreads * 20;
+		final int numTasks = SharedThreadPool.numTasks( 20, service );
 		final long taskSize = size / numTasks;
 		final ArrayList< Future< Void > > futures = new ArrayList< Future< Void > >();
 		for ( int taskNum = 0; taskNum < numTasks; ++taskNum )
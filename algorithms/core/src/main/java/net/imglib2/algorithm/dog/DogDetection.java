@@ -34,7 +34,6 @@ package net.imglib2.algorithm.dog;
 
 import java.util.ArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import net.imglib2.Interval;
 import net.imglib2.Point;
@@ -45,6 +44,7 @@ import net.imglib2.algorithm.localextrema.LocalExtrema.LocalNeighborhoodCheck;
 import net.imglib2.algorithm.localextrema.RefinedPeak;
 import net.imglib2.algorithm.localextrema.SubpixelLocalization;
 import net.imglib2.meta.LinearSpace;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.util.Util;
@@ -62,8 +62,9 @@ public class DogDetection< T extends RealType< T > & NativeType< T > >
 	}
 
 	/**
-	 * {@link ExecutorService} used for Multi-Threading. If null, a new one will
-	 * be created on demand
+	 * {@link ExecutorService} used for Multi-Threading. If null, the
+	 * {@link SharedThreadPool} is used, or a new service is created on demand
+	 * if a number of threads different from the shared parallelism was set.
 	 **/
 	private ExecutorService executorService;
 
@@ -131,7 +132,7 @@ public class DogDetection< T extends RealType< T > & NativeType< T > >
 		this.minPeakValue = minPeakValue;
 		this.normalizeMinPeakValue = normalizeMinPeakValue;
 		this.keepDoGImg = true;
-		this.numThreads = Runtime.getRuntime().availableProcessors();
+		this.numThreads = SharedThreadPool.getParallelism();
 	}
 
 	/**
@@ -141,10 +142,12 @@ public class DogDetection< T extends RealType< T > & NativeType< T > >
 	public ArrayList< Point > getPeaks()
 	{
 		final ExecutorService service;
-		if ( executorService == null )
-			service = Executors.newFixedThreadPool( numThreads );
-		else
+		if ( executorService != null )
 			service = executorService;
+		else if ( numThreads != SharedThreadPool.getParallelism() )
+			service = SharedThreadPool.limitedExecutorService( numThreads );
+		else
+			service = SharedThreadPool.getExecutorService();
 
 		final T type = Util.getTypeFromInterval( Views.interval( input, interval ) );
 		dogImg = Util.getArrayOrCellImgFactory( interval, type ).create( interval, type );
@@ -174,9 +177,6 @@ public class DogDetection< T extends RealType< T > & NativeType< T > >
 		if ( !keepDoGImg )
 			dogImg = null;
 
-		if ( executorService == null )
-			service.shutdown();
-
 		return peaks;
 	}
 
@@ -34,7 +34,6 @@
 package net.imglib2.algorithm.fft2;
 
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import net.imglib2.FinalDimensions;
 import net.imglib2.Interval;
@@ -42,6 +41,7 @@ import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.outofbounds.OutOfBoundsFactory;
 import net.imglib2.type.numeric.ComplexType;
 import net.imglib2.type.numeric.RealType;
@@ -60,7 +60,7 @@ public class FFT
 {
 	final public static < R extends RealType< R > > Img< ComplexFloatType > realToComplex( final RandomAccessibleInterval< R > input, final ImgFactory< ComplexFloatType > factory )
 	{
-		return realToComplex( Views.extendValue( input, Util.getTypeFromInterval( input ).createVariable() ), input, factory, new ComplexFloatType(), Runtime.getRuntime().availableProcessors() );
+		return realToComplex( Views.extendValue( input, Util.getTypeFromInterval( input ).createVariable() ), input, factory, new ComplexFloatType(), SharedThreadPool.getExecutorService() );
 	}
 	
 	final public static < R extends RealType< R > > Img< ComplexFloatType > realToComplex( final RandomAccessibleInterval< R > input, final ImgFactory< ComplexFloatType > factory, final int numThreads )
@@ -75,7 +75,7 @@ public class FFT
 
 	final public static < R extends RealType< R > > Img< ComplexFloatType > realToComplex( final RandomAccessibleInterval< R > input, final OutOfBoundsFactory< R, RandomAccessibleInterval< R > > oobs, final ImgFactory< ComplexFloatType > factory )
 	{
-		return realToComplex( Views.extend( input, oobs ), input, factory, new ComplexFloatType(), Runtime.getRuntime().availableProcessors() );
+		return realToComplex( Views.extend( input, oobs ), input, factory, new ComplexFloatType(), SharedThreadPool.getExecutorService() );
 	}
 
 	final public static < R extends RealType< R > > Img< ComplexFloatType > realToComplex( final RandomAccessibleInterval< R > input, final OutOfBoundsFactory< R, RandomAccessibleInterval< R > > oobs, final ImgFactory< ComplexFloatType > factory, final int numThreads )
@@ -90,16 +90,12 @@ public class FFT
 
 	final public static < R extends RealType< R >, C extends ComplexType< C > > Img< C > realToComplex( final RandomAccessible< R > input, final Interval inputInterval, final ImgFactory< C > factory, final C type )
 	{
-		return realToComplex( input, inputInterval, factory, type, Runtime.getRuntime().availableProcessors() );
+		return realToComplex( input, inputInterval, factory, type, SharedThreadPool.getExecutorService() );
 	}
 
 	final public static < R extends RealType< R >, C extends ComplexType< C > > Img< C > realToComplex( final RandomAccessible< R > input, final Interval inputInterval, final ImgFactory< C > factory, final C type, final int numThreads )
 	{
-		final ExecutorService service = Executors.newFixedThreadPool( numThreads );
-		final Img< C >  ret = realToComplex( input, inputInterval, factory, type, service );
-		service.shutdown();
-		
-		return ret;
+		return realToComplex( input, inputInterval, factory, type, SharedThreadPool.limitedExecutorService( numThreads ) );
 	}
 
 	final public static < R extends RealType< R >, C extends ComplexType< C > > Img< C > realToComplex( final RandomAccessible< R > input, Interval inputInterval, final ImgFactory< C > factory, final C type, final ExecutorService service )
@@ -126,7 +122,7 @@ public class FFT
 
 	final public static < C extends ComplexType< C >, R extends RealType< R > > Img< R > complexToReal( final RandomAccessibleInterval< C > input, final ImgFactory< R > factory, final R type )
 	{
-		return complexToReal( input, input, null, factory, type, Runtime.getRuntime().availableProcessors() );
+		return complexToReal( input, input, null, factory, type, SharedThreadPool.getExecutorService() );
 	}
 
 	final public static < C extends ComplexType< C >, R extends RealType< R > > Img< R > complexToReal( final RandomAccessibleInterval< C > input, final ImgFactory< R > factory, final R type, final int numThreads )
@@ -141,7 +137,7 @@ public class FFT
 
 	final public static < C extends ComplexType< C >, R extends RealType< R > > Img< R > complexToReal( final RandomAccessibleInterval< C > input, final Interval outputDimensions, final ImgFactory< R > factory, final R type )
 	{
-		return complexToReal( input, input, outputDimensions, factory, type, Runtime.getRuntime().availableProcessors() );
+		return complexToReal( input, input, outputDimensions, factory, type, SharedThreadPool.getExecutorService() );
 	}
 	
 	final public static < C extends ComplexType< C >, R extends RealType< R > > Img< R > complexToReal( final RandomAccessibleInterval< C > input, final Interval outputDimensions, final ImgFactory< R > factory, final R type, final int numThreads )
@@ -156,7 +152,7 @@ public class FFT
 
 	final public static < C extends ComplexType< C >, R extends RealType< R > > Img< R > complexToReal( final RandomAccessible< C > input, final Interval inputInterval, final ImgFactory< R > factory, final R type )
 	{
-		return complexToReal( input, inputInterval, null, factory, type, Runtime.getRuntime().availableProcessors() );
+		return complexToReal( input, inputInterval, null, factory, type, SharedThreadPool.getExecutorService() );
 	}
 	
 	final public static < C extends ComplexType< C >, R extends RealType< R > > Img< R > complexToReal( final RandomAccessible< C > input, final Interval inputInterval, final ImgFactory< R > factory, final R type, final int numThreads )
@@ -171,16 +167,12 @@ public class FFT
 
 	final public static < C extends ComplexType< C >, R extends RealType< R > > Img< R > complexToReal( final RandomAccessible< C > input, final Interval inputInterval, final Interval outputDimensions, final ImgFactory< R > factory, final R type )
 	{
-		return complexToReal( input, inputInterval, outputDimensions, factory, type, Runtime.getRuntime().availableProcessors() );
+		return complexToReal( input, inputInterval, outputDimensions, factory, type, SharedThreadPool.getExecutorService() );
 	}
 
 	final public static < C extends ComplexType< C >, R extends RealType< R > > Img< R > complexToReal( final RandomAccessible< C > input, final Interval inputInterval, final Interval outputDimensions, final ImgFactory< R > factory, final R type, final int numThreads )
 	{
-		final ExecutorService service = Executors.newFixedThreadPool( numThreads );
-		final Img< R > ret = complexToReal( input, inputInterval, outputDimensions, factory, type, service );
-		service.shutdown();
-
-		return ret;
+		return complexToReal( input, inputInterval, outputDimensions, factory, type, SharedThreadPool.limitedExecutorService( numThreads ) );
 	}
 
 	final public static < C extends ComplexType< C >, R extends RealType< R > > Img< R > complexToReal( final RandomAccessible< C > input, Interval inputInterval, final Interval outputDimensions, final ImgFactory< R > factory, final R type, final ExecutorService service )
@@ -229,14 +221,12 @@ public class FFT
 
 	final public static < R extends RealType< R >, C extends ComplexType< C > > void realToComplex( final RandomAccessibleInterval< R > input, final RandomAccessibleInterval< C > output )
 	{
-		realToComplex( input, output, Runtime.getRuntime().availableProcessors() );
+		realToComplex( input, output, SharedThreadPool.getExecutorService() );
 	}
 	
 	final public static < R extends RealType< R >, C extends ComplexType< C > > void realToComplex( final RandomAccessibleInterval< R > input, final RandomAccessibleInterval< C > output, final int numThreads )
 	{
-		final ExecutorService service = Executors.newFixedThreadPool(numThreads);
-		realToComplex(input, output, service);
-		service.shutdown();
+		realToComplex( input, output, SharedThreadPool.limitedExecutorService( numThreads ) );
 	}
 
 	final public static < R extends RealType< R >, C extends ComplexType< C > > void realToComplex( final RandomAccessibleInterval< R > input, final RandomAccessibleInterval< C > output, final ExecutorService service )
@@ -249,14 +239,12 @@ public class FFT
 
 	final public static < C extends ComplexType< C > > void complexToComplexForward( final RandomAccessibleInterval< C > data )
 	{
-		complexToComplexForward( data, Runtime.getRuntime().availableProcessors() );
+		complexToComplexForward( data, SharedThreadPool.getExecutorService() );
 	}
 
 	final public static < C extends ComplexType< C > > void complexToComplexForward( final RandomAccessibleInterval< C > data, final int numThreads )
 	{
-		final ExecutorService service = Executors.newFixedThreadPool(numThreads);
-		complexToComplexForward(data, service);
-		service.shutdown();
+		complexToComplexForward( data, SharedThreadPool.limitedExecutorService( numThreads ) );
 	}
 	
 	final public static < C extends ComplexType< C > > void complexToComplexForward( final RandomAccessibleInterval< C > data, final ExecutorService service )
@@ -267,14 +255,12 @@ public class FFT
 
 	final public static < C extends ComplexType< C > > void complexToComplexInverse( final RandomAccessibleInterval< C > data )
 	{
-		complexToComplexInverse( data, Runtime.getRuntime().availableProcessors() );
+		complexToComplexInverse( data, SharedThreadPool.getExecutorService() );
 	}
 
 	final public static < C extends ComplexType< C > > void complexToComplexInverse( final RandomAccessibleInterval< C > data, final int numThreads )
 	{
-		final ExecutorService service = Executors.newFixedThreadPool(numThreads);
-		complexToComplexInverse(data, service);
-		service.shutdown();
+		complexToComplexInverse( data, SharedThreadPool.limitedExecutorService( numThreads ) );
 	}
 	
 	final public static < C extends ComplexType< C > > void complexToComplexInverse( final RandomAccessibleInterval< C > data, final ExecutorService service )
@@ -285,14 +271,12 @@ public class FFT
 
 	final public static < C extends ComplexType< C >, R extends RealType< R > > void complexToReal( final RandomAccessibleInterval< C > input, final RandomAccessibleInterval< R > output )
 	{
-		complexToReal( input, output, Runtime.getRuntime().availableProcessors() );
+		complexToReal( input, output, SharedThreadPool.getExecutorService() );
 	}
 
 	final public static < C extends ComplexType< C >, R extends RealType< R > > void complexToReal( final RandomAccessibleInterval< C > input, final RandomAccessibleInterval< R > output, final int numThreads )
 	{
-		final ExecutorService service = Executors.newFixedThreadPool( numThreads );
-		complexToReal( input, output, service );
-		service.shutdown();
+		complexToReal( input, output, SharedThreadPool.limitedExecutorService( numThreads ) );
 	}
 
 	final public static < C extends ComplexType< C >, R extends RealType< R > > void complexToReal( final RandomAccessibleInterval< C > input, final RandomAccessibleInterval< R > output, final ExecutorService service )
@@ -305,14 +289,12 @@ public class FFT
 
 	final public static < C extends ComplexType< C >, R extends RealType< R > > void complexToRealUnpad( final RandomAccessibleInterval< C > input, final RandomAccessibleInterval< R > output )
 	{
-		complexToRealUnpad( input, output, Runtime.getRuntime().availableProcessors() );
+		complexToRealUnpad( input, output, SharedThreadPool.getExecutorService() );
 	}
 
 	final public static < C extends ComplexType< C >, R extends RealType< R > > void complexToRealUnpad( final RandomAccessibleInterval< C > input, final RandomAccessibleInterval< R > output, final int numThreads )
 	{
-		final ExecutorService service = Executors.newFixedThreadPool(numThreads);
-		complexToRealUnpad(input, output, service);
-		service.shutdown();
+		complexToRealUnpad( input, output, SharedThreadPool.limitedExecutorService( numThreads ) );
 	}
 
 	final public static < C extends ComplexType< C >, R extends RealType< R > > void complexToRealUnpad( final RandomAccessibleInterval< C > input, final RandomAccessibleInterval< R > output, final ExecutorService service )
@@ -36,7 +36,6 @@ import java.util.ArrayList;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -46,6 +45,7 @@ import net.imglib2.Interval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.iterator.LocalizingZeroMinIntervalIterator;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.type.numeric.ComplexType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.view.Views;
@@ -142,8 +142,7 @@ public class FFTMethods
 			final RandomAccessibleInterval< R > output, final Interval interval,
 			final int dim, final boolean scale )
 	{
-		return complexToReal( input, output, interval, dim, scale, Runtime
-				.getRuntime().availableProcessors() );
+		return complexToReal( input, output, interval, dim, scale, SharedThreadPool.getExecutorService() );
 	}
 
 	/**
@@ -201,11 +200,7 @@ public class FFTMethods
 			final RandomAccessibleInterval< R > output, final Interval interval,
 			final int dim, final boolean scale, int nThreads )
 	{
-		ExecutorService service = Executors.newFixedThreadPool( nThreads );
-		boolean ret = complexToReal( input, output, interval, dim, scale, service );
-		service.shutdown();
-
-		return ret;
+		return complexToReal( input, output, interval, dim, scale, SharedThreadPool.limitedExecutorService( nThreads ) );
 	}
 
 	/**
@@ -269,9 +264,7 @@ public class FFTMethods
 
 		final int inputSize[] = new int[ numDimensions ];
 
-		// FIXME is there a better way to determine the number of threads?
-		final int numThreads = Runtime.getRuntime().availableProcessors();
-		final int numTasks = numThreads > 1 ? numThreads * 4 : 1;
+		final int numThreads = SharedThreadPool.getParallelism( service );
 
 		// the size of the input image
 		for ( int d = 0; d < numDimensions; ++d )
@@ -295,7 +288,7 @@ public class FFTMethods
 			final ArrayList< Future< Void >> futures = new ArrayList< Future< Void >>();
 			final AtomicInteger ai = new AtomicInteger( 0 );
 
-			for ( int ithread = 0; ithread < numTasks; ++ithread )
+			for ( int ithread = 0; ithread < numThreads; ++ithread )
 			{
 				final Callable< Void > callable = new Callable< Void >()
 				{
@@ -552,7 +545,7 @@ public class FFTMethods
 			final RandomAccessibleInterval< C > output, final Interval interval,
 			final int dim, final boolean scale )
 	{
-		return realToComplex( input, output, interval, dim, scale, Runtime.getRuntime().availableProcessors() );
+		return realToComplex( input, output, interval, dim, scale, SharedThreadPool.getExecutorService() );
 	}
 
 	/**
@@ -611,11 +604,7 @@ public class FFTMethods
 			final RandomAccessibleInterval< C > output, final Interval interval,
 			final int dim, final boolean scale, int nThreads )
 	{
-		ExecutorService service = Executors.newFixedThreadPool( nThreads );
-		boolean ret = realToComplex( input, output, interval, dim, scale, service );
-		service.shutdown();
-
-		return ret;
+		return realToComplex( input, output, interval, dim, scale, SharedThreadPool.limitedExecutorService( nThreads ) );
 	}
 
 	/**
@@ -677,8 +666,7 @@ public class FFTMethods
 
 		final int inputSize[] = new int[ numDimensions ];
 
-		// FIXME is there a better way to determine the number of threads?
-		final int numThreads = Runtime.getRuntime().availableProcessors();
+		final int numThreads = SharedThreadPool.getParallelism( service );
 
 		// the size of the input and output image
 		for ( int d = 0; d < numDimensions; ++d )
@@ -903,12 +891,7 @@ public class FFTMethods
 			final RandomAccessibleInterval< C > data, final int dim,
 			final boolean forward, final boolean scale )
 	{
-
-		final ExecutorService service = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
-		final boolean ret = complexToComplex( data, dim, forward, scale, service );
-		service.shutdown();
-
-		return ret;
+		return complexToComplex( data, dim, forward, scale, SharedThreadPool.getExecutorService() );
 	}
 
 	/**
@@ -939,8 +922,7 @@ public class FFTMethods
 
 		final int dataSize[] = new int[ numDimensions ];
 
-		// FIXME is there a better way to determine the number of threads?
-		final int numThreads = Runtime.getRuntime().availableProcessors();
+		final int numThreads = SharedThreadPool.getParallelism( service );
 
 		// the size of the input and output image
 		for ( int d = 0; d < numDimensions; ++d )
@@ -954,6 +936,11 @@ public class FFTMethods
 			return false;
 		}
 
+		// ArrayImg and PlanarImg of ComplexFloatType are transformed directly
+		// on their float[] storage
+		if ( NativeComplexFFT.complexToComplex( data, dim, forward, scale, service ) )
+			return true;
+
 		// perform the real-to-complex fft in a dimension multithreaded if more
 		// than one dimension exisits
 		final int size = dataSize[ dim ];
@@ -0,0 +1,349 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.fft2;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.util.IntervalIndexer;
+import edu.mines.jtk.dsp.FftComplex;
+
+/**
+ * Complex-to-complex FFT along one dimension of an {@link ArrayImg} or
+ * {@link PlanarImg} of {@link ComplexFloatType}, working directly on the
+ * interleaved float[] storage.
+ * 
+ * <p>
+ * Lines are processed in batches of {@link #BATCH} neighboring lines. For
+ * dimensions other than 0, a batch is gathered row by row, reading contiguous
+ * runs of 2*{@link #BATCH} floats instead of one strided value per line. Each
+ * task pulls batches from a shared counter and uses per-thread scratch
+ * buffers, which are kept between calls.
+ * 
+ * <p>
+ * Only {@link FFTMethods#complexToComplex} uses this path. The real-to-complex
+ * and complex-to-real passes of {@link FFTMethods#realToComplex} and
+ * {@link FFTMethods#complexToReal} still run line by line on a
+ * {@link net.imglib2.RandomAccess}.
+ */
+final class NativeComplexFFT
+{
+	/**
+	 * Number of lines transformed per batch.
+	 */
+	static final int BATCH = 16;
+
+	/**
+	 * Storage layout: the float[] array of a complex element at position p is
+	 * arrays[ sum p[d]*arrayStep[d] ], its (complex) offset in that array is
+	 * sum p[d]*offsetStep[d].
+	 */
+	private static final class Layout
+	{
+		final float[][] arrays;
+
+		final long[] dimensions;
+
+		final int[] arrayStep;
+
+		final int[] offsetStep;
+
+		Layout( final float[][] arrays, final long[] dimensions, final int[] arrayStep, final int[] offsetStep )
+		{
+			this.arrays = arrays;
+			this.dimensions = dimensions;
+			this.arrayStep = arrayStep;
+			this.offsetStep = offsetStep;
+		}
+	}
+
+	/**
+	 * Per-thread scratch lines.
+	 */
+	private static final class Scratch
+	{
+		final float[][] in;
+
+		final float[][] out;
+
+		Scratch( final int size )
+		{
+			in = new float[ BATCH ][ 2 * size ];
+			out = new float[ BATCH ][ 2 * size ];
+		}
+	}
+
+	private static final ThreadLocal< Scratch > scratch = new ThreadLocal< Scratch >();
+
+	private static Scratch getScratch( final int size )
+	{
+		Scratch s = scratch.get();
+		if ( s == null || s.in[ 0 ].length != 2 * size )
+		{
+			s = new Scratch( size );
+			scratch.set( s );
+		}
+		return s;
+	}
+
+	private static float[] storage( final Object access )
+	{
+		if ( access instanceof ArrayDataAccess )
+		{
+			final Object data = ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray();
+			if ( data instanceof float[] )
+				return ( float[] ) data;
+		}
+		return null;
+	}
+
+	private static Layout layout( final RandomAccessibleInterval< ? > data )
+	{
+		if ( !( data instanceof ArrayImg || data instanceof PlanarImg ) )
+			return null;
+		if ( ( ( Iterable< ? > ) data ).iterator().next().getClass() != ComplexFloatType.class )
+			return null;
+
+		final int n = data.numDimensions();
+		final long[] dimensions = new long[ n ];
+		data.dimensions( dimensions );
+		final int[] arrayStep = new int[ n ];
+		final int[] offsetStep = new int[ n ];
+
+		if ( data instanceof ArrayImg )
+		{
+			final float[] array = storage( ( ( ArrayImg< ?, ? > ) data ).update( null ) );
+			if ( array == null )
+				return null;
+			int step = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				offsetStep[ d ] = step;
+				step *= ( int ) dimensions[ d ];
+			}
+			return new Layout( new float[][] { array }, dimensions, arrayStep, offsetStep );
+		}
+		else
+		{
+			final PlanarImg< ?, ? > planar = ( PlanarImg< ?, ? > ) data;
+			final float[][] arrays = new float[ planar.numSlices() ][];
+			for ( int i = 0; i < arrays.length; ++i )
+			{
+				arrays[ i ] = storage( planar.getPlane( i ) );
+				if ( arrays[ i ] == null )
+					return null;
+			}
+			int step = 1;
+			for ( int d = 0; d < Math.min( n, 2 ); ++d )
+			{
+				offsetStep[ d ] = step;
+				step *= ( int ) dimensions[ d ];
+			}
+			step = 1;
+			for ( int d = 2; d < n; ++d )
+			{
+				arrayStep[ d ] = step;
+				step *= ( int ) dimensions[ d ];
+			}
+			return new Layout( arrays, dimensions, arrayStep, offsetStep );
+		}
+	}
+
+	/**
+	 * Computes a complex-to-complex forward or inverse FFT in dimension dim, if
+	 * data is an {@link ArrayImg} or {@link PlanarImg} of
+	 * {@link ComplexFloatType} backed by float[] arrays.
+	 * 
+	 * @return true if the transform was computed, false if data is not
+	 *         supported (nothing is computed in this case).
+	 */
+	static boolean complexToComplex( final RandomAccessibleInterval< ? > data, final int dim, final boolean forward, final boolean scale, final ExecutorService service )
+	{
+		final Layout layout = layout( data );
+		if ( layout == null )
+			return false;
+
+		final int n = layout.dimensions.length;
+		final int size = ( int ) layout.dimensions[ dim ];
+
+		// lines of a batch are neighbors in dimension batchDim
+		final int batchDim = ( dim == 0 ) ? ( n > 1 ? 1 : 0 ) : 0;
+
+		final long[] grid = new long[ n ];
+		long numBatches = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( d == dim )
+				grid[ d ] = 1;
+			else if ( d == batchDim )
+				grid[ d ] = ( layout.dimensions[ d ] + BATCH - 1 ) / BATCH;
+			else
+				grid[ d ] = layout.dimensions[ d ];
+			numBatches *= grid[ d ];
+		}
+		final long totalBatches = numBatches;
+
+		final AtomicLong nextBatch = new AtomicLong( 0 );
+		final Callable< Void > task = new Callable< Void >()
+		{
+			@Override
+			public Void call()
+			{
+				final FftComplex fft = new FftComplex( size );
+				final Scratch s = getScratch( size );
+				final long[] position = new long[ n ];
+				for ( long b = nextBatch.getAndIncrement(); b < totalBatches; b = nextBatch.getAndIncrement() )
+				{
+					IntervalIndexer.indexToPosition( b, grid, position );
+					position[ batchDim ] *= BATCH;
+					final int numLines = ( batchDim == dim ) ? 1 : ( int ) Math.min( BATCH, layout.dimensions[ batchDim ] - position[ batchDim ] );
+					transformBatch( layout, position, dim, batchDim, numLines, fft, forward, scale, s );
+				}
+				return null;
+			}
+		};
+
+		final int numTasks = ( int ) Math.min( SharedThreadPool.getParallelism( service ), totalBatches );
+		if ( numTasks <= 1 )
+		{
+			try
+			{
+				task.call();
+			}
+			catch ( final Exception e )
+			{
+				e.printStackTrace();
+			}
+			return true;
+		}
+
+		final ArrayList< Future< Void > > futures = new ArrayList< Future< Void > >();
+		for ( int i = 0; i < numTasks; ++i )
+			futures.add( service.submit( task ) );
+		for ( final Future< Void > future : futures )
+		{
+			try
+			{
+				future.get();
+			}
+			catch ( final InterruptedException e )
+			{
+				e.printStackTrace();
+			}
+			catch ( final ExecutionException e )
+			{
+				e.printStackTrace();
+			}
+		}
+		return true;
+	}
+
+	private static void transformBatch( final Layout layout, final long[] position, final int dim, final int batchDim, final int numLines, final FftComplex fft, final boolean forward, final boolean scale, final Scratch s )
+	{
+		final int n = position.length;
+		final int size = ( int ) layout.dimensions[ dim ];
+		int array = 0;
+		int offset = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			array += ( int ) position[ d ] * layout.arrayStep[ d ];
+			offset += ( int ) position[ d ] * layout.offsetStep[ d ];
+		}
+		final int lineArrayStep = layout.arrayStep[ dim ];
+		final int lineOffsetStep = layout.offsetStep[ dim ];
+		final int batchArrayStep = layout.arrayStep[ batchDim ];
+		final int batchOffsetStep = layout.offsetStep[ batchDim ];
+
+		// gather
+		if ( lineArrayStep == 0 && lineOffsetStep == 1 )
+		{
+			// lines are contiguous
+			for ( int j = 0; j < numLines; ++j )
+				System.arraycopy( layout.arrays[ array + j * batchArrayStep ], 2 * ( offset + j * batchOffsetStep ), s.in[ j ], 0, 2 * size );
+		}
+		else
+		{
+			// gather row by row, lines of the batch are neighbors
+			for ( int k = 0, a = array, o = offset; k < size; ++k, a += lineArrayStep, o += lineOffsetStep )
+				for ( int j = 0; j < numLines; ++j )
+				{
+					final float[] data = layout.arrays[ a + j * batchArrayStep ];
+					final int i = 2 * ( o + j * batchOffsetStep );
+					s.in[ j ][ 2 * k ] = data[ i ];
+					s.in[ j ][ 2 * k + 1 ] = data[ i + 1 ];
+				}
+		}
+
+		// transform
+		for ( int j = 0; j < numLines; ++j )
+		{
+			fft.complexToComplex( forward ? -1 : 1, s.in[ j ], s.out[ j ] );
+			if ( scale )
+			{
+				final float[] out = s.out[ j ];
+				for ( int i = 0; i < 2 * size; ++i )
+					out[ i ] /= size;
+			}
+		}
+
+		// scatter
+		if ( lineArrayStep == 0 && lineOffsetStep == 1 )
+		{
+			for ( int j = 0; j < numLines; ++j )
+				System.arraycopy( s.out[ j ], 0, layout.arrays[ array + j * batchArrayStep ], 2 * ( offset + j * batchOffsetStep ), 2 * size );
+		}
+		else
+		{
+			for ( int k = 0, a = array, o = offset; k < size; ++k, a += lineArrayStep, o += lineOffsetStep )
+				for ( int j = 0; j < numLines; ++j )
+				{
+					final float[] data = layout.arrays[ a + j * batchArrayStep ];
+					final int i = 2 * ( o + j * batchOffsetStep );
+					data[ i ] = s.out[ j ][ 2 * k ];
+					data[ i + 1 ] = s.out[ j ][ 2 * k + 1 ];
+				}
+		}
+	}
+}
@@ -48,6 +48,7 @@ import net.imglib2.converter.Converter;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.iterator.LocalizingZeroMinIntervalIterator;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.multithreading.SimpleMultiThreading;
 import net.imglib2.type.Type;
 import net.imglib2.type.numeric.NumericType;
@@ -88,7 +89,7 @@ public abstract class AbstractGauss< T extends NumericType< T > >
 			final RandomAccessible< T > output, final Localizable outputOffset,
 			final ImgFactory< T > factory, final T type )
 	{
-		this.numThreads = Runtime.getRuntime().availableProcessors();
+		this.numThreads = SharedThreadPool.getParallelism();
 		this.numDimensions = sigma.length;
 		this.input = input;
 		this.output = output;
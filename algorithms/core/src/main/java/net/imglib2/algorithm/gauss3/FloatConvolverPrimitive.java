@@ -0,0 +1,204 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.gauss3;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * A 1-dimensional line convolver that operates on all {@link RealType}, with
+ * a fast path for images backed by primitive arrays. If the source or target
+ * is an {@link ArrayImg}, {@link PlanarImg} or {@link CellImg} of
+ * {@link net.imglib2.type.numeric.real.FloatType},
+ * {@link net.imglib2.type.numeric.integer.UnsignedShortType},
+ * {@link net.imglib2.type.numeric.integer.ShortType},
+ * {@link net.imglib2.type.numeric.integer.UnsignedByteType} or
+ * {@link net.imglib2.type.numeric.integer.ByteType} (only
+ * {@link net.imglib2.type.numeric.real.FloatType} for the target), lines are
+ * copied directly between the storage arrays and float[] line buffers.
+ * Otherwise, and for source lines that reach into the out-of-bounds border,
+ * values are accessed through the {@link RandomAccess RandomAccesses}. If
+ * neither source nor target has primitive storage, a
+ * {@link FloatConvolverRealTypeBuffered} is used.
+ * 
+ * <p>
+ * Like {@link FloatConvolverRealTypeBuffered} this works for images, where a
+ * single line has no more than {@link Integer#MAX_VALUE} elements.
+ * 
+ * @see ConvolverFactory
+ * 
+ * @param <S>
+ *            input type
+ * @param <T>
+ *            output type
+ */
+public final class FloatConvolverPrimitive< S extends RealType< S >, T extends RealType< T > > implements Runnable
+{
+	/**
+	 * @return a {@link ConvolverFactory} producing
+	 *         {@link FloatConvolverPrimitive} where possible, and
+	 *         {@link FloatConvolverRealTypeBuffered} otherwise.
+	 */
+	public static < S extends RealType< S >, T extends RealType< T > > ConvolverFactory< S, T > factory()
+	{
+		return new PrimitiveConvolverFactory< S, T >()
+		{
+			@Override
+			public Runnable create( final double[] halfkernel, final RandomAccess< S > in, final RandomAccess< T > out, final int d, final long lineLength )
+			{
+				return FloatConvolverRealTypeBuffered.< S, T >factory().create( halfkernel, in, out, d, lineLength );
+			}
+
+			@Override
+			public Runnable create( final double[] halfkernel, final RandomAccessible< S > source, final RandomAccess< S > in, final RandomAccessible< T > target, final RandomAccess< T > out, final int d, final long lineLength )
+			{
+				final PrimitiveLineAccess inLines = PrimitiveLineAccess.create( source, false );
+				final PrimitiveLineAccess outLines = PrimitiveLineAccess.create( target, true );
+				if ( inLines == null && outLines == null )
+					return create( halfkernel, in, out, d, lineLength );
+				return new FloatConvolverPrimitive< S, T >( halfkernel, inLines, in, outLines, out, d, lineLength );
+			}
+		};
+	}
+
+	final private float[] kernel;
+
+	final private PrimitiveLineAccess inLines;
+
+	final private RandomAccess< S > in;
+
+	final private PrimitiveLineAccess outLines;
+
+	final private RandomAccess< T > out;
+
+	final private int d;
+
+	final private int k1;
+
+	final private int lineLength;
+
+	final private int inLength;
+
+	final private float[] inbuf;
+
+	final private float[] outbuf;
+
+	final private long[] inPosition;
+
+	final private long[] outPosition;
+
+	private FloatConvolverPrimitive( final double[] kernel, final PrimitiveLineAccess inLines, final RandomAccess< S > in, final PrimitiveLineAccess outLines, final RandomAccess< T > out, final int d, final long lineLength )
+	{
+		this.kernel = new float[ kernel.length ];
+		for ( int i = 0; i < kernel.length; ++i )
+			this.kernel[ i ] = ( float ) kernel[ i ];
+		this.inLines = inLines;
+		this.in = in;
+		this.outLines = outLines;
+		this.out = out;
+		this.d = d;
+
+		k1 = this.kernel.length - 1;
+		this.lineLength = ( int ) lineLength;
+		inLength = this.lineLength + 2 * k1;
+		inbuf = new float[ inLength ];
+		outbuf = new float[ this.lineLength ];
+		inPosition = new long[ in.numDimensions() ];
+		outPosition = new long[ out.numDimensions() ];
+	}
+
+	@Override
+	public void run()
+	{
+		readLine();
+		convolveLine();
+		writeLine();
+	}
+
+	private void readLine()
+	{
+		if ( inLines != null )
+		{
+			in.localize( inPosition );
+			if ( inLines.contains( inPosition, d, inLength ) )
+			{
+				inLines.read( inPosition, d, inbuf, 0, inLength );
+				in.move( inLength, d );
+				return;
+			}
+		}
+		for ( int i = 0; i < inLength; ++i )
+		{
+			inbuf[ i ] = in.get().getRealFloat();
+			in.fwd( d );
+		}
+	}
+
+	private void convolveLine()
+	{
+		final float k0 = kernel[ 0 ];
+		for ( int i = 0; i < lineLength; ++i )
+		{
+			final int c = i + k1;
+			float sum = k0 * inbuf[ c ];
+			for ( int j = 1; j <= k1; ++j )
+				sum += kernel[ j ] * ( inbuf[ c - j ] + inbuf[ c + j ] );
+			outbuf[ i ] = sum;
+		}
+	}
+
+	private void writeLine()
+	{
+		if ( outLines != null )
+		{
+			out.localize( outPosition );
+			if ( outLines.contains( outPosition, d, lineLength ) )
+			{
+				outLines.write( outPosition, d, outbuf, 0, lineLength );
+				out.move( lineLength, d );
+				return;
+			}
+		}
+		for ( int i = 0; i < lineLength; ++i )
+		{
+			out.get().setReal( outbuf[ i ] );
+			out.fwd( d );
+		}
+	}
+}
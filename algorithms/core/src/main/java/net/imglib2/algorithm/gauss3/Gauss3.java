@@ -34,11 +34,11 @@
 package net.imglib2.algorithm.gauss3;
 
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.type.numeric.NumericType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.DoubleType;
@@ -100,8 +100,7 @@ public final class Gauss3
 	 * both {@link RealType RealTypes} or both the same type.
 	 * 
 	 * <p>
-	 * Computation is multi-threaded with as many threads as processors
-	 * available.
+	 * Computation is multi-threaded using the {@link SharedThreadPool}.
 	 * 
 	 * @param sigma
 	 *            standard deviation in every dimension.
@@ -122,10 +121,7 @@ public final class Gauss3
 	 */
 	public static < S extends NumericType< S >, T extends NumericType< T > > void gauss( final double[] sigma, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target ) throws IncompatibleTypeException
 	{
-		final int numthreads = Runtime.getRuntime().availableProcessors();
-		final ExecutorService service = Executors.newFixedThreadPool( numthreads );
-		gauss( sigma, source, target, service );
-		service.shutdown();
+		gauss( sigma, source, target, SharedThreadPool.getExecutorService() );
 	}
 
 	/**
@@ -161,9 +157,7 @@ public final class Gauss3
 	public static < S extends NumericType< S >, T extends NumericType< T > > void gauss( final double[] sigma, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final int numThreads ) throws IncompatibleTypeException
 	{
 		final double[][] halfkernels = halfkernels( sigma );
-		final ExecutorService service = Executors.newFixedThreadPool( numThreads );
-		SeparableSymmetricConvolution.convolve( halfkernels, source, target, service );
-		service.shutdown();
+		SeparableSymmetricConvolution.convolve( halfkernels, source, target, SharedThreadPool.limitedExecutorService( numThreads ) );
 	}
 
 	/**
@@ -202,6 +196,72 @@ public final class Gauss3
 		SeparableSymmetricConvolution.convolve( halfkernels, source, target, service );
 	}
 
+	/**
+	 * Apply Gaussian convolution to source and write the result to output,
+	 * processing the target in cache-sized tiles. Temporary images are only
+	 * allocated per tile, which makes this suitable for large (e.g. 3D)
+	 * volumes. In-place operation (source==target) is <em>not</em> supported.
+	 * 
+	 * <p>
+	 * Precision is the same as for
+	 * {@link #gauss(double[], RandomAccessible, RandomAccessibleInterval)}.
+	 * 
+	 * @param sigma
+	 *            standard deviation in every dimension.
+	 * @param source
+	 *            source image, must be sufficiently padded (e.g.
+	 *            {@link Views#extendMirrorSingle(RandomAccessibleInterval)}) to
+	 *            provide values for the target interval plus a border of half
+	 *            the kernel size.
+	 * @param target
+	 *            target image
+	 * @param <S>
+	 *            source type
+	 * @param <T>
+	 *            target type
+	 * @throws IncompatibleTypeException
+	 *             if source and target type are not compatible (they must be
+	 *             either both {@link RealType RealTypes} or the same type).
+	 */
+	public static < S extends NumericType< S >, T extends NumericType< T > > void gaussTiled( final double[] sigma, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target ) throws IncompatibleTypeException
+	{
+		gaussTiled( sigma, source, target, null, SharedThreadPool.getExecutorService() );
+	}
+
+	/**
+	 * Apply Gaussian convolution to source and write the result to output,
+	 * processing the target in tiles of the given size. Every tile is an
+	 * independent task. In-place operation (source==target) is <em>not</em>
+	 * supported.
+	 * 
+	 * @param sigma
+	 *            standard deviation in every dimension.
+	 * @param source
+	 *            source image, must be sufficiently padded (e.g.
+	 *            {@link Views#extendMirrorSingle(RandomAccessibleInterval)}) to
+	 *            provide values for the target interval plus a border of half
+	 *            the kernel size.
+	 * @param target
+	 *            target image
+	 * @param tileSize
+	 *            dimensions of the tiles, or null to choose them
+	 *            automatically.
+	 * @param service
+	 *            service providing threads for multi-threading
+	 * @param <S>
+	 *            source type
+	 * @param <T>
+	 *            target type
+	 * @throws IncompatibleTypeException
+	 *             if source and target type are not compatible (they must be
+	 *             either both {@link RealType RealTypes} or the same type).
+	 */
+	public static < S extends NumericType< S >, T extends NumericType< T > > void gaussTiled( final double[] sigma, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final int[] tileSize, final ExecutorService service ) throws IncompatibleTypeException
+	{
+		final double[][] halfkernels = halfkernels( sigma );
+		SeparableSymmetricConvolution.convolveTiled( halfkernels, source, target, tileSize, service );
+	}
+
 	public static double[][] halfkernels( final double[] sigma )
 	{
 		final int n = sigma.length;
@@ -0,0 +1,76 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.gauss3;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+
+/**
+ * A {@link ConvolverFactory} that can create line convolvers which access the
+ * storage underlying the source and target {@link RandomAccessible
+ * RandomAccessibles} directly.
+ * 
+ * @param <S>
+ *            input type
+ * @param <T>
+ *            output type
+ */
+interface PrimitiveConvolverFactory< S, T > extends ConvolverFactory< S, T >
+{
+	/**
+	 * Create a 1-dimensional line convolver. Like
+	 * {@link ConvolverFactory#create(double[], RandomAccess, RandomAccess, int, long)}
+	 * , but in and out are known to be obtained from source and target.
+	 * 
+	 * @param halfkernel
+	 *            the upper half (starting at the center pixel) of the symmetric
+	 *            convolution kernel.
+	 * @param source
+	 *            the {@link RandomAccessible} in was obtained from.
+	 * @param in
+	 *            {@link RandomAccess} on the source values.
+	 * @param target
+	 *            the {@link RandomAccessible} out was obtained from.
+	 * @param out
+	 *            {@link RandomAccess} on the target (convolved) values.
+	 * @param d
+	 *            dimension in which to convolve.
+	 * @param lineLength
+	 *            how many convolved values to produce in one
+	 *            {@link Runnable#run()}.
+	 * @return a line convolver.
+	 */
+	public Runnable create( final double[] halfkernel, final RandomAccessible< S > source, final RandomAccess< S > in, final RandomAccessible< T > target, final RandomAccess< T > out, final int d, final long lineLength );
+}
@@ -0,0 +1,477 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.gauss3;
+
+import net.imglib2.ExtendedRandomAccessibleInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.AbstractCell;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.IntervalView;
+
+/**
+ * Reads and writes lines of an {@link ArrayImg}, {@link PlanarImg} or
+ * {@link AbstractCellImg} directly from and to the underlying primitive
+ * arrays, using stride arithmetic instead of a {@link RandomAccess}. Lines
+ * are transferred to and from float[] buffers.
+ * 
+ * <p>
+ * Use {@link #create(RandomAccessible, boolean)} to obtain a
+ * {@link PrimitiveLineAccess} for a {@link RandomAccessible}. The
+ * {@link RandomAccessible} may be the image itself, an {@link IntervalView}
+ * of it, or an {@link ExtendedRandomAccessibleInterval} of it. Only lines
+ * that are completely {@link #contains(long[], int, int) contained} in the
+ * image can be accessed.
+ */
+abstract class PrimitiveLineAccess
+{
+	/**
+	 * Transfers values between a primitive storage array and a float[]
+	 * buffer.
+	 */
+	static abstract class Values
+	{
+		/**
+		 * Read n values starting at index with the given stride.
+		 */
+		abstract void read( Object data, int index, int stride, float[] buf, int offset, int n );
+
+		/**
+		 * Write n values starting at index with the given stride.
+		 */
+		abstract void write( Object data, int index, int stride, float[] buf, int offset, int n );
+	}
+
+	static final Values FLOAT = new Values()
+	{
+		@Override
+		void read( final Object data, int index, final int stride, final float[] buf, final int offset, final int n )
+		{
+			final float[] a = ( float[] ) data;
+			for ( int i = offset; i < offset + n; ++i, index += stride )
+				buf[ i ] = a[ index ];
+		}
+
+		@Override
+		void write( final Object data, int index, final int stride, final float[] buf, final int offset, final int n )
+		{
+			final float[] a = ( float[] ) data;
+			for ( int i = offset; i < offset + n; ++i, index += stride )
+				a[ index ] = buf[ i ];
+		}
+	};
+
+	static final Values SHORT = new ReadOnlyValues()
+	{
+		@Override
+		void read( final Object data, int index, final int stride, final float[] buf, final int offset, final int n )
+		{
+			final short[] a = ( short[] ) data;
+			for ( int i = offset; i < offset + n; ++i, index += stride )
+				buf[ i ] = a[ index ];
+		}
+	};
+
+	static final Values UNSIGNED_SHORT = new ReadOnlyValues()
+	{
+		@Override
+		void read( final Object data, int index, final int stride, final float[] buf, final int offset, final int n )
+		{
+			final short[] a = ( short[] ) data;
+			for ( int i = offset; i < offset + n; ++i, index += stride )
+				buf[ i ] = a[ index ] & 0xffff;
+		}
+	};
+
+	static final Values BYTE = new ReadOnlyValues()
+	{
+		@Override
+		void read( final Object data, int index, final int stride, final float[] buf, final int offset, final int n )
+		{
+			final byte[] a = ( byte[] ) data;
+			for ( int i = offset; i < offset + n; ++i, index += stride )
+				buf[ i ] = a[ index ];
+		}
+	};
+
+	static final Values UNSIGNED_BYTE = new ReadOnlyValues()
+	{
+		@Override
+		void read( final Object data, int index, final int stride, final float[] buf, final int offset, final int n )
+		{
+			final byte[] a = ( byte[] ) data;
+			for ( int i = offset; i < offset + n; ++i, index += stride )
+				buf[ i ] = a[ index ] & 0xff;
+		}
+	};
+
+	/**
+	 * Values of integer types are only read. Writing would have to reproduce
+	 * the rounding and clamping of the respective type.
+	 */
+	static abstract class ReadOnlyValues extends Values
+	{
+		@Override
+		void write( final Object data, final int index, final int stride, final float[] buf, final int offset, final int n )
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	protected final int n;
+
+	protected final long[] dimensions;
+
+	protected final Values values;
+
+	PrimitiveLineAccess( final NativeImg< ?, ? > img, final Values values )
+	{
+		n = img.numDimensions();
+		dimensions = new long[ n ];
+		img.dimensions( dimensions );
+		this.values = values;
+	}
+
+	/**
+	 * Is the line of the given length, starting at position and running
+	 * along dimension d, completely contained in the image?
+	 */
+	boolean contains( final long[] position, final int d, final int length )
+	{
+		for ( int i = 0; i < n; ++i )
+		{
+			final long max = ( i == d ) ? position[ i ] + length - 1 : position[ i ];
+			if ( position[ i ] < 0 || max >= dimensions[ i ] )
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Read length values, starting at position and running along dimension d,
+	 * into buf (starting at offset).
+	 */
+	abstract void read( long[] position, int d, float[] buf, int offset, int length );
+
+	/**
+	 * Write length values from buf (starting at offset) to the line starting
+	 * at position and running along dimension d.
+	 */
+	abstract void write( long[] position, int d, float[] buf, int offset, int length );
+
+	/**
+	 * Create a {@link PrimitiveLineAccess} for the image underlying
+	 * accessible.
+	 * 
+	 * @param accessible
+	 *            an image, or an {@link IntervalView} or
+	 *            {@link ExtendedRandomAccessibleInterval} of an image.
+	 * @param writable
+	 *            whether lines will be written.
+	 * @return a {@link PrimitiveLineAccess}, or null if the image is not
+	 *         backed by primitive arrays of a supported type.
+	 */
+	static PrimitiveLineAccess create( final RandomAccessible< ? > accessible, final boolean writable )
+	{
+		RandomAccessible< ? > source = accessible;
+		while ( true )
+		{
+			if ( source instanceof IntervalView )
+				source = ( ( IntervalView< ? > ) source ).getSource();
+			else if ( source instanceof ExtendedRandomAccessibleInterval )
+				source = ( ( ExtendedRandomAccessibleInterval< ?, ? > ) source ).getSource();
+			else
+				break;
+		}
+		if ( !( source instanceof NativeImg ) )
+			return null;
+
+		final NativeImg< ?, ? > img = ( NativeImg< ?, ? > ) source;
+		final Values values = values( img.firstElement() );
+		if ( values == null || ( writable && values != FLOAT ) )
+			return null;
+
+		if ( source instanceof ArrayImg )
+		{
+			final Object data = storage( ( ( ArrayImg< ?, ? > ) source ).update( null ) );
+			return data == null ? null : new Array( img, values, data );
+		}
+		else if ( source instanceof PlanarImg )
+		{
+			final PlanarImg< ?, ? > planar = ( PlanarImg< ?, ? > ) source;
+			final Object[] planes = new Object[ planar.numSlices() ];
+			for ( int i = 0; i < planes.length; ++i )
+			{
+				planes[ i ] = storage( planar.getPlane( i ) );
+				if ( planes[ i ] == null )
+					return null;
+			}
+			return new Planar( img, values, planes );
+		}
+		else if ( source instanceof AbstractCellImg )
+		{
+			final AbstractCellImg< ?, ?, ?, ? > cellImg = ( AbstractCellImg< ?, ?, ?, ? > ) source;
+			return storage( cellImg.getCells().randomAccess().get().getData() ) == null ? null : new Cell( cellImg, values );
+		}
+		return null;
+	}
+
+	private static Values values( final Object type )
+	{
+		final Class< ? > c = type.getClass();
+		if ( c == FloatType.class )
+			return FLOAT;
+		else if ( c == UnsignedShortType.class )
+			return UNSIGNED_SHORT;
+		else if ( c == ShortType.class )
+			return SHORT;
+		else if ( c == UnsignedByteType.class )
+			return UNSIGNED_BYTE;
+		else if ( c == ByteType.class )
+			return BYTE;
+		return null;
+	}
+
+	/**
+	 * @return the primitive array of access, or null if access is not backed
+	 *         by a float[], short[], or byte[].
+	 */
+	private static Object storage( final Object access )
+	{
+		if ( !( access instanceof ArrayDataAccess ) )
+			return null;
+		final Object data = ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray();
+		if ( data instanceof float[] || data instanceof short[] || data instanceof byte[] )
+			return data;
+		return null;
+	}
+
+	static final class Array extends PrimitiveLineAccess
+	{
+		private final Object data;
+
+		private final int[] steps;
+
+		Array( final NativeImg< ?, ? > img, final Values values, final Object data )
+		{
+			super( img, values );
+			this.data = data;
+			steps = new int[ n ];
+			int step = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				steps[ d ] = step;
+				step *= ( int ) dimensions[ d ];
+			}
+		}
+
+		private int index( final long[] position )
+		{
+			int index = 0;
+			for ( int d = 0; d < n; ++d )
+				index += ( int ) position[ d ] * steps[ d ];
+			return index;
+		}
+
+		@Override
+		void read( final long[] position, final int d, final float[] buf, final int offset, final int length )
+		{
+			values.read( data, index( position ), steps[ d ], buf, offset, length );
+		}
+
+		@Override
+		void write( final long[] position, final int d, final float[] buf, final int offset, final int length )
+		{
+			values.write( data, index( position ), steps[ d ], buf, offset, length );
+		}
+	}
+
+	static final class Planar extends PrimitiveLineAccess
+	{
+		private final Object[] planes;
+
+		private final int[] steps;
+
+		private final int[] sliceSteps;
+
+		Planar( final NativeImg< ?, ? > img, final Values values, final Object[] planes )
+		{
+			super( img, values );
+			this.planes = planes;
+			steps = new int[ n ];
+			sliceSteps = new int[ n ];
+			int step = 1;
+			for ( int d = 0; d < Math.min( n, 2 ); ++d )
+			{
+				steps[ d ] = step;
+				step *= ( int ) dimensions[ d ];
+			}
+			step = 1;
+			for ( int d = 2; d < n; ++d )
+			{
+				sliceSteps[ d ] = step;
+				step *= ( int ) dimensions[ d ];
+			}
+		}
+
+		@Override
+		void read( final long[] position, final int d, final float[] buf, final int offset, final int length )
+		{
+			int index = 0;
+			int slice = 0;
+			for ( int i = 0; i < n; ++i )
+			{
+				index += ( int ) position[ i ] * steps[ i ];
+				slice += ( int ) position[ i ] * sliceSteps[ i ];
+			}
+			if ( d < 2 )
+				values.read( planes[ slice ], index, steps[ d ], buf, offset, length );
+			else
+				for ( int i = 0; i < length; ++i, slice += sliceSteps[ d ] )
+					values.read( planes[ slice ], index, 0, buf, offset + i, 1 );
+		}
+
+		@Override
+		void write( final long[] position, final int d, final float[] buf, final int offset, final int length )
+		{
+			int index = 0;
+			int slice = 0;
+			for ( int i = 0; i < n; ++i )
+			{
+				index += ( int ) position[ i ] * steps[ i ];
+				slice += ( int ) position[ i ] * sliceSteps[ i ];
+			}
+			if ( d < 2 )
+				values.write( planes[ slice ], index, steps[ d ], buf, offset, length );
+			else
+				for ( int i = 0; i < length; ++i, slice += sliceSteps[ d ] )
+					values.write( planes[ slice ], index, 0, buf, offset + i, 1 );
+		}
+	}
+
+	static final class Cell extends PrimitiveLineAccess
+	{
+		private final RandomAccess< ? extends AbstractCell< ? > > cells;
+
+		private final int[] cellDims;
+
+		private final long[] cellPosition;
+
+		private final long[] cellMin;
+
+		private final int[] cellSize;
+
+		private final int[] cellSteps;
+
+		private final long[] linePosition;
+
+		Cell( final AbstractCellImg< ?, ?, ?, ? > img, final Values values )
+		{
+			super( img, values );
+			cells = img.getCells().randomAccess();
+			cellDims = new int[ n ];
+			img.getCells().cellDimensions( cellDims );
+			cellPosition = new long[ n ];
+			cellMin = new long[ n ];
+			cellSize = new int[ n ];
+			cellSteps = new int[ n ];
+			linePosition = new long[ n ];
+		}
+
+		/**
+		 * Move to the cell containing linePosition and compute the index of
+		 * linePosition in that cell.
+		 * 
+		 * @return the index in the current cell.
+		 */
+		private int locate()
+		{
+			for ( int i = 0; i < n; ++i )
+				cellPosition[ i ] = linePosition[ i ] / cellDims[ i ];
+			cells.setPosition( cellPosition );
+			final AbstractCell< ? > cell = cells.get();
+			cell.min( cellMin );
+			cell.dimensions( cellSize );
+			int index = 0;
+			int step = 1;
+			for ( int i = 0; i < n; ++i )
+			{
+				cellSteps[ i ] = step;
+				index += ( int ) ( linePosition[ i ] - cellMin[ i ] ) * step;
+				step *= cellSize[ i ];
+			}
+			return index;
+		}
+
+		private void transfer( final long[] position, final int d, final float[] buf, int offset, final int length, final boolean write )
+		{
+			System.arraycopy( position, 0, linePosition, 0, n );
+			final long end = position[ d ] + length;
+			while ( linePosition[ d ] < end )
+			{
+				final int index = locate();
+				final int count = ( int ) ( Math.min( end, cellMin[ d ] + cellSize[ d ] ) - linePosition[ d ] );
+				final Object data = storage( cells.get().getData() );
+				if ( write )
+					values.write( data, index, cellSteps[ d ], buf, offset, count );
+				else
+					values.read( data, index, cellSteps[ d ], buf, offset, count );
+				offset += count;
+				linePosition[ d ] += count;
+			}
+		}
+
+		@Override
+		void read( final long[] position, final int d, final float[] buf, final int offset, final int length )
+		{
+			transfer( position, d, buf, offset, length, false );
+		}
+
+		@Override
+		void write( final long[] position, final int d, final float[] buf, final int offset, final int length )
+		{
+			transfer( position, d, buf, offset, length, true );
+		}
+	}
+}
@@ -40,6 +40,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
 import net.imglib2.Dimensions;
+import net.imglib2.FinalDimensions;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccess;
@@ -51,6 +52,7 @@ import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.img.cell.CellImgFactory;
 import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.NumericType;
 import net.imglib2.type.numeric.RealType;
@@ -99,8 +101,66 @@ public final class SeparableSymmetricConvolution
 	 *             if source and target type are not compatible (they must be
 	 *             either both {@link RealType RealTypes} or the same type).
 	 */
-	@SuppressWarnings( { "rawtypes", "unchecked" } )
 	public static < S extends NumericType< S >, T extends NumericType< T > > void convolve( final double[][] halfkernels, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final ExecutorService service ) throws IncompatibleTypeException
+	{
+		convolve( halfkernels, source, target, null, service );
+	}
+
+	/**
+	 * Convolve source with a separable symmetric kernel and write the result to
+	 * output, processing the target in independent tiles. Each tile is computed
+	 * as a separate task, with temporary images covering only the tile plus the
+	 * kernel border. Extra memory is therefore bounded by the tile size (times
+	 * the number of threads) rather than by the image size, and the temporary
+	 * data of a tile stays in the processor cache. Tiles overlap in the source
+	 * only, so some border computations are repeated.
+	 * 
+	 * <p>
+	 * In-place operation (source==target) is <em>not</em> supported, because
+	 * tiles read source values that neighboring tiles have already
+	 * overwritten.
+	 * 
+	 * <p>
+	 * Precision and type requirements are the same as for
+	 * {@link #convolve(double[][], RandomAccessible, RandomAccessibleInterval, ExecutorService)}
+	 * .
+	 * 
+	 * @param halfkernels
+	 *            an array containing half-kernels for every dimension. A
+	 *            half-kernel is the upper half (starting at the center pixel)
+	 *            of the symmetric convolution kernel for a given dimension.
+	 * @param source
+	 *            source image, must be sufficiently padded (e.g.
+	 *            {@link Views#extendMirrorSingle(RandomAccessibleInterval)}) to
+	 *            provide values for the target interval plus a border of half
+	 *            the kernel size.
+	 * @param target
+	 *            target image.
+	 * @param tileSize
+	 *            dimensions of the tiles the target is divided into. If null, a
+	 *            {@link #defaultTileSize(Dimensions, double[][]) default} is
+	 *            used.
+	 * @param service
+	 *            service providing threads for multi-threading
+	 * @param <S>
+	 *            source type
+	 * @param <T>
+	 *            target type
+	 * @throws IncompatibleTypeException
+	 *             if source and target type are not compatible (they must be
+	 *             either both {@link RealType RealTypes} or the same type).
+	 */
+	public static < S extends NumericType< S >, T extends NumericType< T > > void convolveTiled( final double[][] halfkernels, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final int[] tileSize, final ExecutorService service ) throws IncompatibleTypeException
+	{
+		convolve( halfkernels, source, target, tileSize == null ? defaultTileSize( target, halfkernels ) : tileSize, service );
+	}
+
+	/**
+	 * Dispatch to the convolution for the source and target types. If
+	 * tileSize is not null, the target is processed in tiles.
+	 */
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	private static < S extends NumericType< S >, T extends NumericType< T > > void convolve( final double[][] halfkernels, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final int[] tileSize, final ExecutorService service ) throws IncompatibleTypeException
 	{
 		final T targetType = Util.getTypeFromInterval( target );
 		final S sourceType = getType( source, target );
@@ -113,61 +173,61 @@ public final class SeparableSymmetricConvolution
 			// TODO: remove casting madness as soon as the bug is fixed
 			final Object oTargetType = targetType;
 			if ( oTargetType instanceof DoubleType )
-				convolveRealTypeDouble( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, service );
+				convolveRealTypeDouble( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, tileSize, service );
 			else
-				convolveRealTypeFloat( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, service );
+				convolveRealTypeFloat( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, tileSize, service );
 		}
 		else
 		{
 			if ( !targetType.getClass().isInstance( sourceType ) )
 				throw new IncompatibleTypeException( sourceType, targetType.getClass().getCanonicalName() + " source required for convolving into a " + targetType.getClass().getCanonicalName() + " target" );
 			if ( targetType instanceof NativeType )
-				convolveNativeType( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, service );
+				convolveNativeType( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, tileSize, service );
 			else
-				convolveNumericType( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, service );
+				convolveNumericType( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, tileSize, service );
 		}
 	}
 
 	private static < S extends RealType< S >, T extends RealType< T > > void convolveRealTypeFloat( final double[][] halfkernels,
-			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final ExecutorService service )
+			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final int[] tileSize, final ExecutorService service )
 	{
 		final FloatType type = new FloatType();
-		final ImgFactory< FloatType > imgfac = getImgFactory( target, halfkernels, type );
+		final ImgFactory< FloatType > imgfac = getImgFactory( tempImageSize( target, tileSize ), halfkernels, type );
 		if ( canUseBufferedConvolver( target, halfkernels ) )
 			convolve( halfkernels, source, target,
-					FloatConvolverRealTypeBuffered.< S, FloatType >factory(),
-					FloatConvolverRealTypeBuffered.< FloatType, FloatType >factory(),
-					FloatConvolverRealTypeBuffered.< FloatType, T >factory(),
-					FloatConvolverRealTypeBuffered.< S, T >factory(), imgfac, type, service );
+					FloatConvolverPrimitive.< S, FloatType >factory(),
+					FloatConvolverPrimitive.< FloatType, FloatType >factory(),
+					FloatConvolverPrimitive.< FloatType, T >factory(),
+					FloatConvolverPrimitive.< S, T >factory(), imgfac, type, tileSize, service );
 		else
 			convolve( halfkernels, source, target,
 					FloatConvolverRealType.< S, FloatType >factory(),
 					FloatConvolverRealType.< FloatType, FloatType >factory(),
 					FloatConvolverRealType.< FloatType, T >factory(),
-					FloatConvolverRealType.< S, T >factory(), imgfac, type, service );
+					FloatConvolverRealType.< S, T >factory(), imgfac, type, tileSize, service );
 	}
 
 	private static < S extends RealType< S >, T extends RealType< T > > void convolveRealTypeDouble( final double[][] halfkernels,
-			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final ExecutorService service )
+			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final int[] tileSize, final ExecutorService service )
 	{
 		final DoubleType type = new DoubleType();
-		final ImgFactory< DoubleType > imgfac = getImgFactory( target, halfkernels, type );
+		final ImgFactory< DoubleType > imgfac = getImgFactory( tempImageSize( target, tileSize ), halfkernels, type );
 		if ( canUseBufferedConvolver( target, halfkernels ) )
 			convolve( halfkernels, source, target,
 					DoubleConvolverRealTypeBuffered.< S, DoubleType >factory(),
 					DoubleConvolverRealTypeBuffered.< DoubleType, DoubleType >factory(),
 					DoubleConvolverRealTypeBuffered.< DoubleType, T >factory(),
-					DoubleConvolverRealTypeBuffered.< S, T >factory(), imgfac, type, service );
+					DoubleConvolverRealTypeBuffered.< S, T >factory(), imgfac, type, tileSize, service );
 		else
 			convolve( halfkernels, source, target,
 					DoubleConvolverRealType.< S, DoubleType >factory(),
 					DoubleConvolverRealType.< DoubleType, DoubleType >factory(),
 					DoubleConvolverRealType.< DoubleType, T >factory(),
-					DoubleConvolverRealType.< S, T >factory(), imgfac, type, service );
+					DoubleConvolverRealType.< S, T >factory(), imgfac, type, tileSize, service );
 	}
 
 	private static < T extends NumericType< T > & NativeType< T > > void convolveNativeType( final double[][] halfkernels,
-			final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final ExecutorService service )
+			final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final int[] tileSize, final ExecutorService service )
 	{
 		final T type = Util.getTypeFromInterval( target );
 		final ConvolverFactory< T, T > convfac;
@@ -175,16 +235,16 @@ public final class SeparableSymmetricConvolution
 			convfac = ConvolverNativeTypeBuffered.factory( type );
 		else
 			convfac = ConvolverNativeType.factory( type );
-		final ImgFactory< T > imgfac = getImgFactory( target, halfkernels, type );
-		convolve( halfkernels, source, target, convfac, convfac, convfac, convfac, imgfac, type, service );
+		final ImgFactory< T > imgfac = getImgFactory( tempImageSize( target, tileSize ), halfkernels, type );
+		convolve( halfkernels, source, target, convfac, convfac, convfac, convfac, imgfac, type, tileSize, service );
 	}
 
 	private static < T extends NumericType< T > > void convolveNumericType( final double[][] halfkernels,
-			final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final ExecutorService service )
+			final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final int[] tileSize, final ExecutorService service )
 	{
 		final T type = Util.getTypeFromInterval( target );
 		final ConvolverFactory< T, T > convfac = ConvolverNumericType.factory( type );
-		convolve( halfkernels, source, target, convfac, convfac, convfac, convfac, new ListImgFactory< T >(), type, service );
+		convolve( halfkernels, source, target, convfac, convfac, convfac, convfac, new ListImgFactory< T >(), type, tileSize, service );
 	}
 
 	/**
@@ -255,6 +315,112 @@ public final class SeparableSymmetricConvolution
 			final ConvolverFactory< S, T > convolverFactoryST,
 			final ImgFactory< I > imgFactory, final I type,
 			final ExecutorService service )
+	{
+		convolve( halfkernels, source, target, convolverFactorySI, convolverFactoryII, convolverFactoryIT, convolverFactoryST, imgFactory, type, service, SharedThreadPool.numTasks( 4, service ) );
+	}
+
+	/**
+	 * Convolve source with a separable symmetric kernel and write the result to
+	 * output, processing the target in independent tiles. In-place operation
+	 * (source==target) is not supported. Calculations are done in the
+	 * intermediate type determined by the {@link ConvolverFactory
+	 * ConvolverFactories}.
+	 * 
+	 * @param halfkernels
+	 *            an array containing half-kernels for every dimension.
+	 * @param source
+	 *            source image, must be sufficiently padded.
+	 * @param target
+	 *            target image.
+	 * @param convolverFactorySI
+	 *            produces line convolvers reading source type and writing
+	 *            temporary type.
+	 * @param convolverFactoryII
+	 *            produces line convolvers reading temporary type and writing
+	 *            temporary type.
+	 * @param convolverFactoryIT
+	 *            produces line convolvers reading temporary type and writing
+	 *            target type.
+	 * @param convolverFactoryST
+	 *            produces line convolvers reading source type and writing
+	 *            target type.
+	 * @param imgFactory
+	 *            factory to create temporary images for a tile.
+	 * @param type
+	 *            instance of the temporary image type.
+	 * @param tileSize
+	 *            dimensions of the tiles the target is divided into. If null,
+	 *            the target is processed as a whole.
+	 * @param service
+	 *            service providing threads for multi-threading
+	 */
+	public static < S, I, T > void convolve( final double[][] halfkernels,
+			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target,
+			final ConvolverFactory< S, I > convolverFactorySI,
+			final ConvolverFactory< I, I > convolverFactoryII,
+			final ConvolverFactory< I, T > convolverFactoryIT,
+			final ConvolverFactory< S, T > convolverFactoryST,
+			final ImgFactory< I > imgFactory, final I type,
+			final int[] tileSize,
+			final ExecutorService service )
+	{
+		if ( tileSize == null )
+		{
+			convolve( halfkernels, source, target, convolverFactorySI, convolverFactoryII, convolverFactoryIT, convolverFactoryST, imgFactory, type, service );
+			return;
+		}
+
+		final int n = target.numDimensions();
+		final long[] min = new long[ n ];
+		final long[] numTiles = new long[ n ];
+		target.min( min );
+		long numTilesTotal = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			numTiles[ d ] = ( target.dimension( d ) - 1 ) / tileSize[ d ] + 1;
+			numTilesTotal *= numTiles[ d ];
+		}
+
+		final ArrayList< Future< Void > > futures = new ArrayList< Future< Void > >();
+		final long[] tilePosition = new long[ n ];
+		for ( long i = 0; i < numTilesTotal; ++i )
+		{
+			IntervalIndexer.indexToPosition( i, numTiles, tilePosition );
+			final long[] tileMin = new long[ n ];
+			final long[] tileMax = new long[ n ];
+			for ( int d = 0; d < n; ++d )
+			{
+				tileMin[ d ] = min[ d ] + tilePosition[ d ] * tileSize[ d ];
+				tileMax[ d ] = Math.min( tileMin[ d ] + tileSize[ d ], min[ d ] + target.dimension( d ) ) - 1;
+			}
+			final RandomAccessibleInterval< T > tile = Views.interval( target, tileMin, tileMax );
+			final Callable< Void > r = new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					convolve( halfkernels, source, tile, convolverFactorySI, convolverFactoryII, convolverFactoryIT, convolverFactoryST, imgFactory, type, service, 1 );
+					return null;
+				}
+			};
+			futures.add( service.submit( r ) );
+		}
+		waitFor( futures );
+	}
+
+	/**
+	 * Convolve target using numTasks parallel tasks per dimension. If numTasks
+	 * is 1, everything is computed in the calling thread.
+	 */
+	private static < S, I, T > void convolve( final double[][] halfkernels,
+			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target,
+			final ConvolverFactory< S, I > convolverFactorySI,
+			final ConvolverFactory< I, I > convolverFactoryII,
+			final ConvolverFactory< I, T > convolverFactoryIT,
+			final ConvolverFactory< S, T > convolverFactoryST,
+			final ImgFactory< I > imgFactory, final I type,
+			final ExecutorService service,
+			final int numTasks )
 	{
 		final int n = source.numDimensions();
 		if ( n == 1 )
@@ -263,9 +429,6 @@ public final class SeparableSymmetricConvolution
 		}
 		else
 		{
-			// FIXME: is there a better way to determine the number of threads
-			final int numThreads = Runtime.getRuntime().availableProcessors();
-			final int numTasks = numThreads > 1 ? numThreads * 4 : 1;
 			final long[] sourceOffset = new long[ n ];
 			final long[] targetOffset = new long[ n ];
 			target.min( sourceOffset );
@@ -340,11 +503,14 @@ public final class SeparableSymmetricConvolution
 			final Callable< Void > r = new Callable< Void >()
 			{
 				@Override
+				@SuppressWarnings( "unchecked" )
 				public Void call()
 				{
 					final RandomAccess< S > in = source.randomAccess( new FinalInterval( srcmin, srcmax ) );
 					final RandomAccess< T > out = target.randomAccess( targetInterval );
-					final Runnable convolver = factory.create( halfkernel, in, out, d, targetInterval.dimension( d ) );
+					final Runnable convolver = ( factory instanceof PrimitiveConvolverFactory ) ?
+							( ( PrimitiveConvolverFactory< S, T > ) factory ).create( halfkernel, source, in, target, out, d, targetInterval.dimension( d ) ) :
+							factory.create( halfkernel, in, out, d, targetInterval.dimension( d ) );
 
 					out.setPosition( min );
 					in.setPosition( srcmin );
@@ -380,23 +546,119 @@ public final class SeparableSymmetricConvolution
 					return null;
 				}
 			};
+			if ( numTasks == 1 )
+			{
+				// run in the calling thread, which may itself be a worker of service
+				try
+				{
+					r.call();
+				}
+				catch ( final RuntimeException e )
+				{
+					throw e;
+				}
+				catch ( final Exception e )
+				{
+					throw new RuntimeException( e );
+				}
+				return;
+			}
 			futures.add( service.submit( r ) );
 		}
-		for ( final Future< Void > future : futures )
+		waitFor( futures );
+	}
+
+	/**
+	 * Wait for all tasks to complete. If one of them failed, the remaining
+	 * tasks are cancelled and the failure is re-thrown as a
+	 * {@link RuntimeException} wrapping its cause.
+	 */
+	private static void waitFor( final ArrayList< Future< Void > > futures )
+	{
+		boolean done = false;
+		try
 		{
-			try
-			{
+			for ( final Future< Void > future : futures )
 				future.get();
-			}
-			catch ( final InterruptedException e )
-			{
-				e.printStackTrace();
-			}
-			catch ( final ExecutionException e )
+			done = true;
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			throw new RuntimeException( e.getCause() );
+		}
+		finally
+		{
+			if ( !done )
+				for ( final Future< Void > future : futures )
+					future.cancel( true );
+		}
+	}
+
+	/**
+	 * Size of the target part for which temporary images are created: the
+	 * whole target, or a tile.
+	 */
+	private static Dimensions tempImageSize( final Dimensions target, final int[] tileSize )
+	{
+		if ( tileSize == null )
+			return target;
+		final int n = target.numDimensions();
+		final long[] size = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			size[ d ] = Math.min( tileSize[ d ], target.dimension( d ) );
+		return new FinalDimensions( size );
+	}
+
+	/**
+	 * Number of elements of the temporary images of a tile that should fit
+	 * into the processor cache.
+	 */
+	private static final long TILE_ELEMENTS = 1 << 18;
+
+	/**
+	 * Choose tile dimensions such that the temporary image of a tile
+	 * (including the kernel border) has about {@link #TILE_ELEMENTS} elements,
+	 * by repeatedly halving the longest tile dimension. Tile dimensions are
+	 * not reduced below twice the kernel border, where the border overhead
+	 * would dominate.
+	 * 
+	 * @param targetsize
+	 *            dimensions of the target image.
+	 * @param halfkernels
+	 *            the half-kernels for every dimension.
+	 * @return tile dimensions.
+	 */
+	public static int[] defaultTileSize( final Dimensions targetsize, final double[][] halfkernels )
+	{
+		final int n = targetsize.numDimensions();
+		final long[] tile = new long[ n ];
+		final long[] border = new long[ n ];
+		targetsize.dimensions( tile );
+		for ( int d = 0; d < n; ++d )
+			border[ d ] = 2 * halfkernels[ d ].length - 2;
+		while ( true )
+		{
+			long size = 1;
+			int longest = -1;
+			for ( int d = 0; d < n; ++d )
 			{
-				e.printStackTrace();
+				size *= tile[ d ] + border[ d ];
+				if ( tile[ d ] > Math.max( 2 * border[ d ], 16 ) && ( longest < 0 || tile[ d ] > tile[ longest ] ) )
+					longest = d;
 			}
+			if ( size <= TILE_ELEMENTS || longest < 0 )
+				break;
+			tile[ longest ] = ( tile[ longest ] + 1 ) / 2;
 		}
+		final int[] tileSize = new int[ n ];
+		for ( int d = 0; d < n; ++d )
+			tileSize[ d ] = ( int ) Math.min( tile[ d ], Integer.MAX_VALUE );
+		return tileSize;
 	}
 
 	static long[][] getTempImageDimensions( final Dimensions targetsize, final double[][] halfkernels )
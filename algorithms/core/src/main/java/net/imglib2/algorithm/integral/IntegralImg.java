@@ -33,15 +33,20 @@
 
 package net.imglib2.algorithm.integral;
 
+import java.util.ArrayList;
+
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.MultiThreaded;
 import net.imglib2.algorithm.OutputAlgorithm;
 import net.imglib2.converter.Converter;
 import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgFactory;
-import net.imglib2.iterator.LocalizingZeroMinIntervalIterator;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.NumericType;
+import net.imglib2.util.IntervalIndexer;
 
 /**
  * n-dimensional integral image that stores sums using type {@param <T>}. Care
@@ -57,6 +62,12 @@ import net.imglib2.type.numeric.NumericType;
  * Sums are done with the precision of {@param <T>} and then set to the integral
  * image type, which may crop the values according to the type's capabilities.
  * 
+ * The lines of each dimension are integrated in parallel on the
+ * {@link SharedThreadPool}. The first dimension, which applies the
+ * {@link Converter}, is only integrated in parallel if the converter was
+ * declared thread-safe in the constructor. By default, it is integrated by a
+ * single task.
+ * 
  * @param <R>
  *            The type of the input image.
  * @param <T>
@@ -65,7 +76,7 @@ import net.imglib2.type.numeric.NumericType;
  * @author Stephan Preibisch
  * @author Albert Cardona
  */
-public class IntegralImg< R extends NumericType< R >, T extends NumericType< T > & NativeType< T > > implements OutputAlgorithm< Img< T > >
+public class IntegralImg< R extends NumericType< R >, T extends NumericType< T > & NativeType< T > > implements OutputAlgorithm< Img< T > >, MultiThreaded
 {
 	protected final RandomAccessibleInterval< R > img;
 
@@ -75,11 +86,30 @@ public class IntegralImg< R extends NumericType< R >, T extends NumericType< T >
 
 	protected final Converter< R, T > converter;
 
+	/**
+	 * Whether {@link #converter} may be used by several threads at once.
+	 */
+	protected final boolean threadSafeConverter;
+
+	protected int numThreads;
+
 	public IntegralImg( final RandomAccessibleInterval< R > img, final T type, final Converter< R, T > converter )
+	{
+		this( img, type, converter, false );
+	}
+
+	/**
+	 * @param threadSafeConverter
+	 *            whether the converter may be called concurrently, such that
+	 *            the first dimension can be integrated in parallel, too.
+	 */
+	public IntegralImg( final RandomAccessibleInterval< R > img, final T type, final Converter< R, T > converter, final boolean threadSafeConverter )
 	{
 		this.img = img;
 		this.type = type;
 		this.converter = converter;
+		this.threadSafeConverter = threadSafeConverter;
+		setNumThreads();
 	}
 
 	@Override
@@ -99,164 +129,179 @@ public class IntegralImg< R extends NumericType< R >, T extends NumericType< T >
 			return false;
 		this.integral = integral;
 
-		if ( numDimensions > 1 )
+		// integrate along one dimension after the other. The lines of each
+		// pass are independent and are distributed over numThreads tasks.
+		// Lines that start at position 0 in any other dimension contain only
+		// zeros and are skipped.
+		for ( int d = 0; d < numDimensions; ++d )
 		{
-			/**
-			 * Here we "misuse" a ArrayLocalizableCursor to iterate through all
-			 * dimensions except the one we are computing the integral image in
-			 */
-			final long[] fakeSize = new long[ numDimensions - 1 ];
-
-			// location for the input location
-			final long[] tmpIn = new long[ numDimensions ];
-
-			// location for the integral location
-			final long[] tmpOut = new long[ numDimensions ];
-
-			// the size of dimension 0
-			final long size = integralSize[ 0 ];
-
-			for ( int d = 1; d < numDimensions; ++d )
-				fakeSize[ d - 1 ] = integralSize[ d ];
-
-			final LocalizingZeroMinIntervalIterator cursorDim = new LocalizingZeroMinIntervalIterator( fakeSize );
-
-			final RandomAccess< R > cursorIn = img.randomAccess();
-			final RandomAccess< T > cursorOut = integral.randomAccess();
-
-			final T tmpVar = type.createVariable();
-			final T sum = type.createVariable();
-
-			// iterate over all dimensions except the one we are computing the
-			// integral in, which is dim=0 here
-			main: while ( cursorDim.hasNext() )
+			long numLines = 1;
+			for ( int e = 0; e < numDimensions; ++e )
+				if ( e != d )
+					numLines *= integralSize[ e ] - 1;
+			if ( numLines == 0 )
+				continue;
+
+			final int dim = d;
+			final int maxTasks = d == 0 && !threadSafeConverter ? 1 : numThreads;
+			final int numTasks = ( int ) Math.max( 1, Math.min( maxTasks, numLines / 16 ) );
+			final long linesPerTask = ( numLines + numTasks - 1 ) / numTasks;
+			final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+			for ( long from = 0; from < numLines; from += linesPerTask )
 			{
-				cursorDim.fwd();
-
-				// get all dimensions except the one we are currently doing the
-				// integral on
-				cursorDim.localize( fakeSize );
-
-				tmpIn[ 0 ] = 0;
-				tmpOut[ 0 ] = 1;
-
-				for ( int d = 1; d < numDimensions; ++d )
+				final long first = from;
+				final long last = Math.min( from + linesPerTask, numLines );
+				tasks.add( new Runnable()
 				{
-					tmpIn[ d ] = fakeSize[ d - 1 ] - 1;
-					tmpOut[ d ] = fakeSize[ d - 1 ];
-
-					// all entries of position 0 are 0
-					if ( tmpOut[ d ] == 0 )
-						continue main;
-				}
-
-				// set the cursor to the beginning of the correct line
-				cursorIn.setPosition( tmpIn );
-
-				// set the cursor in the integral image to the right position
-				cursorOut.setPosition( tmpOut );
-
-				// integrate over the line
-				integrateLineDim0( converter, cursorIn, cursorOut, sum, tmpVar, size );
-				/*
-				 * // compute the first pixel converter.convert(
-				 * cursorIn.getType(), sum ); cursorOut.getType().set( sum );
-				 * 
-				 * for ( int i = 2; i < size; ++i ) { cursorIn.fwd( 0 );
-				 * cursorOut.fwd( 0 );
-				 * 
-				 * converter.convert( cursorIn.getType(), tmpVar ); sum.add(
-				 * tmpVar ); cursorOut.getType().set( sum ); }
-				 */
+					@Override
+					public void run()
+					{
+						integrateLines( dim, first, last );
+					}
+				} );
 			}
+			SharedThreadPool.runAll( tasks );
 		}
-		else
-		{
-			final T tmpVar = type.createVariable();
-			final T sum = type.createVariable();
-
-			// the size of dimension 0
-			final long size = integralSize[ 0 ];
-
-			final RandomAccess< R > cursorIn = img.randomAccess();
-			final RandomAccess< T > cursorOut = integral.randomAccess();
 
-			cursorIn.setPosition( 0, 0 );
-			cursorOut.setPosition( 1, 0 );
-
-			// compute the first pixel
-			converter.convert( cursorIn.get(), sum );
-			cursorOut.get().set( sum );
+		return true;
+	}
 
-			for ( int i = 2; i < size; ++i )
+	/**
+	 * Integrate a range of lines along dimension d. Lines are enumerated by
+	 * their position in the other dimensions, excluding position 0 and with
+	 * the lowest dimension varying fastest. For d = 0 the lines are
+	 * initialized from the input image, for d &gt; 0 the integral image is
+	 * summed up in place.
+	 * 
+	 * <p>
+	 * This is called concurrently for disjoint ranges of lines.
+	 * </p>
+	 * 
+	 * @param d
+	 *            the dimension to integrate along.
+	 * @param from
+	 *            index of the first line.
+	 * @param to
+	 *            index after the last line.
+	 */
+	protected void integrateLines( final int d, final long from, final long to )
+	{
+		if ( d > 0 && integral instanceof ArrayImg )
+		{
+			final ArrayLineRuns runs = arrayLineRuns();
+			if ( runs != null )
 			{
-				cursorIn.fwd( 0 );
-				cursorOut.fwd( 0 );
-
-				converter.convert( cursorIn.get(), tmpVar );
-				sum.add( tmpVar );
-				cursorOut.get().set( sum );
+				integrateArrayLines( d, from, to, runs );
+				return;
 			}
-
-			return true;
 		}
 
-		for ( int d = 1; d < numDimensions; ++d )
+		final int numDimensions = img.numDimensions();
+		final long[] lineDims = new long[ numDimensions - 1 ];
+		final long[] linePos = new long[ numDimensions - 1 ];
+		final long[] tmpOut = new long[ numDimensions ];
+		final long[] tmpIn = new long[ numDimensions ];
+		for ( int e = 0, k = 0; e < numDimensions; ++e )
+			if ( e != d )
+				lineDims[ k++ ] = img.dimension( e );
+		final long size = img.dimension( d ) + 1;
+
+		final RandomAccess< T > cursorOut = integral.randomAccess();
+		final RandomAccess< R > cursorIn = d == 0 ? img.randomAccess() : null;
+		final T tmpVar = type.createVariable();
+		final T sum = type.createVariable();
+
+		for ( long line = from; line < to; ++line )
 		{
-			/**
-			 * Here we "misuse" a ArrayLocalizableCursor to iterate through all
-			 * dimensions except the one we are computing the fft in
-			 */
-			final long[] fakeSize = new long[ numDimensions - 1 ];
-			final long[] tmp = new long[ numDimensions ];
-
-			// the size of dimension d
-			final long size = integralSize[ d ];
-
-			// get all dimensions except the one we are currently doing the
-			// integral on
-			int countDim = 0;
-			for ( int e = 0; e < numDimensions; ++e )
-				if ( e != d )
-					fakeSize[ countDim++ ] = integralSize[ e ];
-
-			final LocalizingZeroMinIntervalIterator cursorDim = new LocalizingZeroMinIntervalIterator( fakeSize );
+			IntervalIndexer.indexToPosition( line, lineDims, linePos );
+			for ( int e = 0, k = 0; e < numDimensions; ++e )
+				tmpOut[ e ] = e == d ? 1 : linePos[ k++ ] + 1;
+			cursorOut.setPosition( tmpOut );
 
-			final RandomAccess< T > cursor = integral.randomAccess();
-			final T sum = type.createVariable();
-
-			while ( cursorDim.hasNext() )
+			if ( d == 0 )
 			{
-				cursorDim.fwd();
-
-				// get all dimensions except the one we are currently doing the
-				// integral on
-				cursorDim.localize( fakeSize );
-
-				tmp[ d ] = 1;
-				countDim = 0;
 				for ( int e = 0; e < numDimensions; ++e )
-					if ( e != d )
-						tmp[ e ] = fakeSize[ countDim++ ];
-
-				// update the cursor in the input image to the current dimension
-				// position
-				cursor.setPosition( tmp );
-
-				// sum up line
-				integrateLine( d, cursor, sum, size );
-				/*
-				 * // init sum on first pixel that is not zero sum.set(
-				 * cursor.getType() );
-				 * 
-				 * for ( int i = 2; i < size; ++i ) { cursor.fwd( d );
-				 * 
-				 * sum.add( cursor.getType() ); cursor.getType().set( sum ); }
-				 */
+					tmpIn[ e ] = tmpOut[ e ] - 1 + img.min( e );
+				cursorIn.setPosition( tmpIn );
+				integrateLineDim0( converter, cursorIn, cursorOut, sum, tmpVar, size );
+			}
+			else
+			{
+				integrateLine( d, cursorOut, sum, size );
 			}
 		}
+	}
 
-		return true;
+	/**
+	 * Sums up runs of lines directly in the storage array of an
+	 * {@link ArrayImg} integral image.
+	 */
+	protected interface ArrayLineRuns
+	{
+		/**
+		 * Integrate lines that are neighbors in dimension 0 together, such
+		 * that the inner loop runs over contiguous memory.
+		 * 
+		 * @param offset
+		 *            index of position 1 in the integrated dimension of the
+		 *            first line.
+		 * @param run
+		 *            number of lines, at consecutive indices.
+		 * @param step
+		 *            stride of the integrated dimension.
+		 * @param size
+		 *            size of the integral image in the integrated dimension.
+		 */
+		void integrate( int offset, int run, int step, int size );
+	}
+
+	/**
+	 * Get the summation over the storage array of the {@link ArrayImg}
+	 * integral image, which is used by {@link #integrateLines(int, long, long)}
+	 * for d &gt; 0.
+	 * 
+	 * @return the summation or null if the integral image should be summed up
+	 *         using {@link #integrateLine(int, RandomAccess, NumericType, long)}.
+	 */
+	protected ArrayLineRuns arrayLineRuns()
+	{
+		return null;
+	}
+
+	/**
+	 * Split lines [from, to) in dimension d &gt; 0 of the {@link ArrayImg}
+	 * integral image into runs of neighbors in dimension 0 and integrate them.
+	 */
+	private void integrateArrayLines( final int d, final long from, final long to, final ArrayLineRuns runs )
+	{
+		final int numDimensions = integral.numDimensions();
+		final long[] lineDims = new long[ numDimensions - 1 ];
+		final long[] linePos = new long[ numDimensions - 1 ];
+		final int[] strides = new int[ numDimensions ];
+		int stride = 1;
+		for ( int e = 0, k = 0; e < numDimensions; ++e )
+		{
+			strides[ e ] = stride;
+			stride *= ( int ) integral.dimension( e );
+			if ( e != d )
+				lineDims[ k++ ] = integral.dimension( e ) - 1;
+		}
+		final int step = strides[ d ];
+		final int size = ( int ) integral.dimension( d );
+
+		for ( long line = from; line < to; )
+		{
+			IntervalIndexer.indexToPosition( line, lineDims, linePos );
+			// offset of position 1 in dimension d
+			int offset = step;
+			for ( int e = 0, k = 0; e < numDimensions; ++e )
+				if ( e != d )
+					offset += ( linePos[ k++ ] + 1 ) * strides[ e ];
+			// lines with consecutive positions in dimension 0
+			final int run = ( int ) Math.min( to - line, lineDims[ 0 ] - linePos[ 0 ] );
+			runs.integrate( offset, run, step, size );
+			line += run;
+		}
 	}
 
 	protected void integrateLineDim0( final Converter< R, T > converter, final RandomAccess< R > cursorIn, final RandomAccess< T > cursorOut, final T sum, final T tmpVar, final long size )
@@ -307,4 +352,22 @@ public class IntegralImg< R extends NumericType< R >, T extends NumericType< T >
 	{
 		return integral;
 	}
+
+	@Override
+	public void setNumThreads()
+	{
+		this.numThreads = SharedThreadPool.getParallelism();
+	}
+
+	@Override
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
 }
@@ -36,6 +36,8 @@ package net.imglib2.algorithm.integral;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
 import net.imglib2.type.numeric.NumericType;
 import net.imglib2.type.numeric.real.DoubleType;
 
@@ -54,6 +56,11 @@ public class IntegralImgDouble< R extends NumericType< R > > extends IntegralImg
 		super( img, type, converter );
 	}
 
+	public IntegralImgDouble( final RandomAccessibleInterval< R > img, final DoubleType type, final Converter< R, DoubleType > converter, final boolean threadSafeConverter )
+	{
+		super( img, type, converter, threadSafeConverter );
+	}
+
 	@Override
 	protected void integrateLineDim0( final Converter< R, DoubleType > converter, final RandomAccess< R > cursorIn, final RandomAccess< DoubleType > cursorOut, final DoubleType sum, final DoubleType tmpVar, final long size )
 	{
@@ -89,4 +96,26 @@ public class IntegralImgDouble< R extends NumericType< R > > extends IntegralImg
 		}
 	}
 
+	/**
+	 * For d &gt; 0, sums up the {@link ArrayImg} storage directly.
+	 */
+	@Override
+	protected ArrayLineRuns arrayLineRuns()
+	{
+		@SuppressWarnings( "unchecked" )
+		final double[] data = ( ( ArrayImg< DoubleType, DoubleArray > ) integral ).update( null ).getCurrentStorageArray();
+		return new ArrayLineRuns()
+		{
+			@Override
+			public void integrate( final int offset, final int run, final int step, final int size )
+			{
+				for ( int i = 2; i < size; ++i )
+				{
+					final int o = offset + ( i - 1 ) * step;
+					for ( int x = o; x < o + run; ++x )
+						data[ x ] += data[ x - step ];
+				}
+			}
+		};
+	}
 }
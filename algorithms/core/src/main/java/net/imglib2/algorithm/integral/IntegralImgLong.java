@@ -36,6 +36,8 @@ package net.imglib2.algorithm.integral;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.LongArray;
 import net.imglib2.type.numeric.NumericType;
 import net.imglib2.type.numeric.integer.LongType;
 
@@ -54,6 +56,11 @@ public class IntegralImgLong< R extends NumericType< R > > extends IntegralImg<
 		super( img, type, converter );
 	}
 
+	public IntegralImgLong( final RandomAccessibleInterval< R > img, final LongType type, final Converter< R, LongType > converter, final boolean threadSafeConverter )
+	{
+		super( img, type, converter, threadSafeConverter );
+	}
+
 	@Override
 	protected void integrateLineDim0( final Converter< R, LongType > converter, final RandomAccess< R > cursorIn, final RandomAccess< LongType > cursorOut, final LongType sum, final LongType tmpVar, final long size )
 	{
@@ -88,4 +95,27 @@ public class IntegralImgLong< R extends NumericType< R > > extends IntegralImg<
 			cursor.get().set( sum2 );
 		}
 	}
+
+	/**
+	 * For d &gt; 0, sums up the {@link ArrayImg} storage directly.
+	 */
+	@Override
+	protected ArrayLineRuns arrayLineRuns()
+	{
+		@SuppressWarnings( "unchecked" )
+		final long[] data = ( ( ArrayImg< LongType, LongArray > ) integral ).update( null ).getCurrentStorageArray();
+		return new ArrayLineRuns()
+		{
+			@Override
+			public void integrate( final int offset, final int run, final int step, final int size )
+			{
+				for ( int i = 2; i < size; ++i )
+				{
+					final int o = offset + ( i - 1 ) * step;
+					for ( int x = o; x < o + run; ++x )
+						data[ x ] += data[ x - step ];
+				}
+			}
+		};
+	}
 }
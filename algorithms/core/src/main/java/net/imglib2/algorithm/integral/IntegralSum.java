@@ -0,0 +1,114 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.integral;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Box sums from an integral image, as computed by {@link IntegralImg} or
+ * {@link LazyIntegralImg}. The sum over any box is obtained from the 2^n
+ * corners of the box by inclusion-exclusion, independent of the box size.
+ */
+public class IntegralSum
+{
+	/**
+	 * Compute the sum of the input values in the box [min, max] (inclusive, in
+	 * input coordinates relative to the input min).
+	 * 
+	 * @param integral
+	 *            access to the integral image. Its position is changed.
+	 * @param min
+	 *            first pixel of the box.
+	 * @param max
+	 *            last pixel of the box.
+	 */
+	public static double sum( final RandomAccess< ? extends RealType< ? > > integral, final long[] min, final long[] max )
+	{
+		final int n = min.length;
+		double sum = 0;
+		for ( int corner = 0; corner < 1 << n; ++corner )
+		{
+			// bit d set: take max + 1 in dimension d, else min
+			int numMin = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( ( corner & ( 1 << d ) ) != 0 )
+					integral.setPosition( max[ d ] + 1, d );
+				else
+				{
+					integral.setPosition( min[ d ], d );
+					++numMin;
+				}
+			}
+			final double v = integral.get().getRealDouble();
+			if ( ( numMin & 1 ) == 0 )
+				sum += v;
+			else
+				sum -= v;
+		}
+		return sum;
+	}
+
+	/**
+	 * Compute the mean of the input values in the box [min, max].
+	 */
+	public static double mean( final RandomAccess< ? extends RealType< ? > > integral, final long[] min, final long[] max )
+	{
+		return sum( integral, min, max ) / size( min, max );
+	}
+
+	/**
+	 * Compute the (population) variance of the input values in the box [min,
+	 * max] from the integral image and the {@link SquaredIntegralImgDouble
+	 * squared integral image} of the input.
+	 */
+	public static double variance( final RandomAccess< ? extends RealType< ? > > integral, final RandomAccess< ? extends RealType< ? > > squaredIntegral, final long[] min, final long[] max )
+	{
+		final double size = size( min, max );
+		final double mean = sum( integral, min, max ) / size;
+		final double variance = sum( squaredIntegral, min, max ) / size - mean * mean;
+		// cancellation may produce small negative values
+		return Math.max( 0, variance );
+	}
+
+	private static double size( final long[] min, final long[] max )
+	{
+		double size = 1;
+		for ( int d = 0; d < min.length; ++d )
+			size *= max[ d ] - min[ d ] + 1;
+		return size;
+	}
+}
@@ -0,0 +1,393 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.integral;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.CachedCellImg;
+import net.imglib2.img.cell.CachedCellImgFactory;
+import net.imglib2.img.cell.CellLoader;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.view.Views;
+
+/**
+ * Lazily computed integral image. The result is a {@link CachedCellImg} with
+ * the same layout as the result of {@link IntegralImg}, i.e. one pixel larger
+ * in each dimension with zeros at position 0, whose cells are computed only
+ * when they are accessed.
+ * 
+ * <p>
+ * A cell with min <em>m</em> is computed from the input pixels in the cell
+ * (shifted by -1) plus the integral values on the faces
+ * <em>m<sub>d</sub> - 1</em> of the preceding cells, which are obtained from
+ * the integral image itself. Accessing a cell therefore computes all cells
+ * before it, but never more than that. This is useful for box filters, local
+ * thresholding or {@link ScaleAreaAveraging2d} on large {@link AbstractCellImg
+ * cell images} that are only partially visited.
+ * </p>
+ * 
+ * <p>
+ * To avoid recomputing preceding cells that have been evicted from the cache,
+ * each computed cell keeps its last face in every dimension (its values at
+ * max<sub>d</sub>) in memory, independent of the cache budget. The faces take
+ * about n / c of the memory of the cells, for cells of side length c in n
+ * dimensions. An evicted cell is recomputed when it is accessed again, but
+ * only from the input and the stored faces of its predecessors, which are
+ * never recomputed for that.
+ * </p>
+ * 
+ * @param <R>
+ *            the type of the input image.
+ */
+public class LazyIntegralImg< R extends RealType< R > > implements CellLoader< DoubleArray >
+{
+	/**
+	 * Create a lazy integral image with the cell dimensions of the input, if it
+	 * is an {@link AbstractCellImg}, or cells of size 64 otherwise.
+	 * 
+	 * @param img
+	 *            the input image.
+	 * @param squared
+	 *            whether to sum up the squared input values (see
+	 *            {@link SquaredIntegralImgDouble}).
+	 * @param maxNumCells
+	 *            how many cells to keep in memory.
+	 */
+	public static < R extends RealType< R > > CachedCellImg< DoubleType, DoubleArray > create( final RandomAccessibleInterval< R > img, final boolean squared, final int maxNumCells )
+	{
+		final int[] cellDimensions = new int[ img.numDimensions() ];
+		if ( img instanceof AbstractCellImg )
+			( ( AbstractCellImg< ?, ?, ?, ? > ) img ).getCells().cellDimensions( cellDimensions );
+		else
+			Arrays.fill( cellDimensions, 64 );
+		return create( img, squared, maxNumCells, cellDimensions );
+	}
+
+	/**
+	 * Create a lazy integral image.
+	 * 
+	 * @param img
+	 *            the input image.
+	 * @param squared
+	 *            whether to sum up the squared input values (see
+	 *            {@link SquaredIntegralImgDouble}).
+	 * @param maxNumCells
+	 *            how many cells to keep in memory.
+	 * @param cellDimensions
+	 *            dimensions of the cells of the integral image.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public static < R extends RealType< R > > CachedCellImg< DoubleType, DoubleArray > create( final RandomAccessibleInterval< R > img, final boolean squared, final int maxNumCells, final int[] cellDimensions )
+	{
+		final int n = img.numDimensions();
+		final long[] integralSize = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			integralSize[ d ] = img.dimension( d ) + 1;
+
+		final LazyIntegralImg< R > loader = new LazyIntegralImg< R >( img, squared );
+		final CachedCellImg< DoubleType, DoubleArray > integral = ( CachedCellImg< DoubleType, DoubleArray > ) new CachedCellImgFactory< DoubleType >( loader, maxNumCells, cellDimensions ).create( integralSize, new DoubleType() );
+		loader.integral = integral;
+		loader.integralSize = integralSize;
+		loader.cellDimensions = cellDimensions.clone();
+		return integral;
+	}
+
+	private final RandomAccessibleInterval< R > img;
+
+	private final boolean squared;
+
+	/**
+	 * The integral image that is filled by this loader, to look up the faces
+	 * of preceding cells.
+	 */
+	private volatile CachedCellImg< DoubleType, DoubleArray > integral;
+
+	private volatile long[] integralSize;
+
+	private volatile int[] cellDimensions;
+
+	/**
+	 * The last face in each dimension of every computed cell, by the flattened
+	 * min of the cell. Faces have extent 1 in their dimension and are
+	 * {@code null} for the last cell in that dimension.
+	 */
+	private final ConcurrentHashMap< Long, double[][] > lastFaces;
+
+	protected LazyIntegralImg( final RandomAccessibleInterval< R > img, final boolean squared )
+	{
+		this.img = img;
+		this.squared = squared;
+		lastFaces = new ConcurrentHashMap< Long, double[][] >();
+	}
+
+	@Override
+	public void load( final DoubleArray data, final long[] min, final int[] dimensions )
+	{
+		final int n = min.length;
+		final double[] values = data.getCurrentStorageArray();
+
+		// Local integral over [a, min + dimensions), where a = min - 1 for
+		// cells that have a predecessor in that dimension.
+		final long[] a = new long[ n ];
+		final int[] localDims = new int[ n ];
+		int splitDims = 0;
+		int localSize = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( min[ d ] > 0 )
+			{
+				a[ d ] = min[ d ] - 1;
+				splitDims |= 1 << d;
+			}
+			localDims[ d ] = ( int ) ( min[ d ] + dimensions[ d ] - a[ d ] );
+			localSize *= localDims[ d ];
+		}
+		final double[] local = integrateLocal( a, localDims, localSize );
+
+		// Faces I(p with p_d = a_d for d in S) for every non-empty subset S of
+		// the split dimensions. Face arrays have extent 1 in the dimensions of
+		// S, which is expressed by a stride of 0. They are taken from the
+		// stored last faces of the preceding cell min - cellDimensions in S.
+		final int numSubsets = 1 << n;
+		final double[][] faces = new double[ numSubsets ][];
+		final int[][] faceStrides = new int[ numSubsets ][];
+		for ( int s = 1; s < numSubsets; ++s )
+		{
+			if ( ( s & ~splitDims ) != 0 )
+				continue;
+			final int d0 = Integer.numberOfTrailingZeros( s );
+			final long[] predecessorMin = new long[ n ];
+			final long[] predecessorFaceDims = new long[ n ];
+			for ( int d = 0; d < n; ++d )
+			{
+				final boolean inS = ( s & ( 1 << d ) ) != 0;
+				predecessorMin[ d ] = inS ? min[ d ] - cellDimensions[ d ] : min[ d ];
+				predecessorFaceDims[ d ] = d == d0 ? 1 : inS ? cellDimensions[ d ] : dimensions[ d ];
+			}
+			final double[] predecessorFace = lastFaces( predecessorMin )[ d0 ];
+
+			faceStrides[ s ] = new int[ n ];
+			int stride = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( ( s & ( 1 << d ) ) == 0 )
+				{
+					faceStrides[ s ][ d ] = stride;
+					stride *= dimensions[ d ];
+				}
+			}
+			faces[ s ] = new double[ stride ];
+			final long[] faceDims = new long[ n ];
+			final long[] facePos = new long[ n ];
+			final long[] predecessorPos = new long[ n ];
+			for ( int d = 0; d < n; ++d )
+				faceDims[ d ] = ( s & ( 1 << d ) ) != 0 ? 1 : dimensions[ d ];
+			for ( int i = 0; i < stride; ++i )
+			{
+				IntervalIndexer.indexToPosition( i, faceDims, facePos );
+				for ( int d = 0; d < n; ++d )
+					predecessorPos[ d ] = ( s & ( 1 << d ) ) != 0 ? predecessorFaceDims[ d ] - 1 : facePos[ d ];
+				faces[ s ][ i ] = predecessorFace[ ( int ) IntervalIndexer.positionToIndex( predecessorPos, predecessorFaceDims ) ];
+			}
+		}
+
+		// I(p) = local(p) + sum over S of (-1)^(|S|+1) I(p_S)
+		final int[] pos = new int[ n ];
+		final int[] localStrides = new int[ n ];
+		localStrides[ 0 ] = 1;
+		for ( int d = 1; d < n; ++d )
+			localStrides[ d ] = localStrides[ d - 1 ] * localDims[ d - 1 ];
+		for ( int i = 0; i < values.length; ++i )
+		{
+			IntervalIndexer.indexToPosition( i, dimensions, pos );
+			int localIndex = 0;
+			for ( int d = 0; d < n; ++d )
+				localIndex += ( int ) ( pos[ d ] + min[ d ] - a[ d ] ) * localStrides[ d ];
+			double v = local[ localIndex ];
+			for ( int s = 1; s < numSubsets; ++s )
+			{
+				if ( faces[ s ] == null )
+					continue;
+				int faceIndex = 0;
+				for ( int d = 0; d < n; ++d )
+					faceIndex += pos[ d ] * faceStrides[ s ][ d ];
+				if ( ( Integer.bitCount( s ) & 1 ) != 0 )
+					v += faces[ s ][ faceIndex ];
+				else
+					v -= faces[ s ][ faceIndex ];
+			}
+			values[ i ] = v;
+		}
+
+		storeLastFaces( values, min, dimensions );
+	}
+
+	/**
+	 * Get the last faces of the cell with the given min, computing the cell if
+	 * this has not been done yet.
+	 */
+	private double[][] lastFaces( final long[] cellMin )
+	{
+		final Long key = Long.valueOf( IntervalIndexer.positionToIndex( cellMin, integralSize ) );
+		double[][] faces = lastFaces.get( key );
+		if ( faces == null )
+		{
+			computeMissingFaces( cellMin );
+			faces = lastFaces.get( key );
+		}
+		return faces;
+	}
+
+	/**
+	 * Compute all cells up to the cell with the given min whose faces are not
+	 * stored yet. The cells are visited in raster order, so the predecessors
+	 * of each cell have their faces stored when it is loaded and loading does
+	 * not recurse into further cells.
+	 */
+	private void computeMissingFaces( final long[] cellMin )
+	{
+		final int n = cellMin.length;
+		final long[] gridSize = new long[ n ];
+		long numCells = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			gridSize[ d ] = cellMin[ d ] / cellDimensions[ d ] + 1;
+			numCells *= gridSize[ d ];
+		}
+
+		// loading a cell stores its faces
+		final RandomAccess< DoubleType > access = integral.randomAccess();
+		final long[] gridPos = new long[ n ];
+		final long[] min = new long[ n ];
+		for ( long i = 0; i < numCells; ++i )
+		{
+			IntervalIndexer.indexToPosition( i, gridSize, gridPos );
+			for ( int d = 0; d < n; ++d )
+				min[ d ] = gridPos[ d ] * cellDimensions[ d ];
+			if ( !lastFaces.containsKey( Long.valueOf( IntervalIndexer.positionToIndex( min, integralSize ) ) ) )
+			{
+				access.setPosition( min );
+				access.get();
+			}
+		}
+	}
+
+	private void storeLastFaces( final double[] values, final long[] min, final int[] dimensions )
+	{
+		final int n = min.length;
+		final double[][] faces = new double[ n ][];
+		final long[] cellDims = new long[ n ];
+		final long[] faceDims = new long[ n ];
+		final long[] pos = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			cellDims[ d ] = dimensions[ d ];
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( min[ d ] + dimensions[ d ] >= integralSize[ d ] )
+				continue;
+			System.arraycopy( cellDims, 0, faceDims, 0, n );
+			faceDims[ d ] = 1;
+			faces[ d ] = new double[ values.length / dimensions[ d ] ];
+			for ( int i = 0; i < faces[ d ].length; ++i )
+			{
+				IntervalIndexer.indexToPosition( i, faceDims, pos );
+				pos[ d ] = dimensions[ d ] - 1;
+				faces[ d ][ i ] = values[ ( int ) IntervalIndexer.positionToIndex( pos, cellDims ) ];
+			}
+		}
+		lastFaces.put( Long.valueOf( IntervalIndexer.positionToIndex( min, integralSize ) ), faces );
+	}
+
+	/**
+	 * Compute the integral of the input over the box starting at a, where
+	 * position a is zero and position p sums up the input pixels q with a
+	 * &lt;= q &lt; p.
+	 */
+	private double[] integrateLocal( final long[] a, final int[] localDims, final int localSize )
+	{
+		final int n = a.length;
+		final double[] local = new double[ localSize ];
+
+		// input pixel p - 1 goes to position p, for p > a in all dimensions
+		final long[] inMin = new long[ n ];
+		final long[] inMax = new long[ n ];
+		boolean empty = false;
+		for ( int d = 0; d < n; ++d )
+		{
+			inMin[ d ] = a[ d ] + img.min( d );
+			inMax[ d ] = a[ d ] + localDims[ d ] - 2 + img.min( d );
+			empty |= localDims[ d ] < 2;
+		}
+		if ( empty )
+			return local;
+
+		final Cursor< R > c = Views.flatIterable( Views.interval( img, inMin, inMax ) ).localizingCursor();
+		final int[] strides = new int[ n ];
+		strides[ 0 ] = 1;
+		for ( int d = 1; d < n; ++d )
+			strides[ d ] = strides[ d - 1 ] * localDims[ d - 1 ];
+		int offset = 0;
+		for ( int d = 0; d < n; ++d )
+			offset += strides[ d ];
+		final long[] pos = new long[ n ];
+		while ( c.hasNext() )
+		{
+			final double v = c.next().getRealDouble();
+			c.localize( pos );
+			int index = offset;
+			for ( int d = 0; d < n; ++d )
+				index += ( int ) ( pos[ d ] - inMin[ d ] ) * strides[ d ];
+			local[ index ] = squared ? v * v : v;
+		}
+
+		// cumulative sums along each dimension
+		for ( int d = 0; d < n; ++d )
+		{
+			final int step = strides[ d ];
+			for ( int i = 0; i < localSize; ++i )
+				if ( ( i / step ) % localDims[ d ] != 0 )
+					local[ i ] += local[ i - step ];
+		}
+		return local;
+	}
+}
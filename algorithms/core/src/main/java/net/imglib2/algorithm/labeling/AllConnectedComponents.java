@@ -52,6 +52,11 @@ import net.imglib2.view.Views;
 /**
  * Label all 8-connected components of a binary image
  * 
+ * <p>
+ * For large images, {@link ParallelConnectedComponents} labels tiles in
+ * parallel and writes integer labels directly into an image.
+ * </p>
+ * 
  * @author Lee Kamentsky
  */
 public class AllConnectedComponents
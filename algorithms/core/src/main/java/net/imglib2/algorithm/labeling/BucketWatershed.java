@@ -0,0 +1,657 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.labeling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.OutputAlgorithm;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.labeling.Labeling;
+import net.imglib2.labeling.LabelingType;
+import net.imglib2.labeling.NativeImgLabeling;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Seeded watershed for integer-valued intensity images, using a hierarchical
+ * bucket queue instead of a {@link java.util.PriorityQueue}.
+ * 
+ * <p>
+ * The queue has one FIFO per grey level. Queued pixels are linked through a
+ * primitive {@code int[]} by their flat index, so no object is allocated per
+ * pixel. Popping the lowest non-empty level in FIFO order visits pixels in
+ * exactly the (intensity, age) order of {@link Watershed}, so the result is
+ * the same as that of {@link Watershed} with the same seeds and structuring
+ * element, provided the output labeling is initially empty.
+ * </p>
+ * 
+ * <p>
+ * If the intensities span more than 2<sup>20</sup> grey levels, the distinct
+ * intensities are ranked first and the ranks are used as levels.
+ * </p>
+ * 
+ * <p>
+ * {@link #setApproximateTiling(int[], int)} enables an approximate mode that
+ * is <em>not</em> equivalent to {@link Watershed}: tiles (extended by an
+ * overlap) are flooded independently and in parallel, each from the seeds
+ * within its extended region. Pixels not reached from within their tile are
+ * then labeled by continuing the flooding from all labeled pixels across the
+ * tile boundaries. This is faster on large images, but the result may differ
+ * from the sequential one where basins of seeds meet near a tile boundary.
+ * The default is the exact sequential flooding.
+ * </p>
+ */
+public class BucketWatershed< T extends IntegerType< T >, L extends Comparable< L > > implements OutputAlgorithm< Labeling< L > >
+{
+	/**
+	 * Intensity ranges up to this number of levels are used directly as
+	 * bucket indices.
+	 */
+	private static final int MAX_DIRECT_LEVELS = 1 << 20;
+
+	protected RandomAccessibleInterval< T > image;
+
+	protected Labeling< L > seeds;
+
+	long[][] structuringElement;
+
+	protected Labeling< L > output;
+
+	protected int[] tileSize;
+
+	protected int overlap;
+
+	protected ExecutorService service;
+
+	String errorMessage;
+
+	/**
+	 * Provide the intensity image to be watershedded.
+	 * 
+	 * @param image
+	 *            the intensity image that defines the watershed landscape.
+	 *            Lower values will be labeled first.
+	 */
+	public void setIntensityImage( final RandomAccessibleInterval< T > image )
+	{
+		this.image = image;
+	}
+
+	/**
+	 * Provide the seeds that mark the watersheds.
+	 * 
+	 * @param seeds
+	 *            a labeling of the space, defining the first pixels in the
+	 *            space to be labeled. The seeded pixels will be similarly
+	 *            labeled in the output as will be their watershed neighbors.
+	 */
+	public void setSeeds( final Labeling< L > seeds )
+	{
+		this.seeds = seeds;
+	}
+
+	/**
+	 * Set the structuring element that defines the connectivity
+	 * 
+	 * @param structuringElement
+	 *            an array of offsets where each element of the array gives the
+	 *            offset of a connected pixel from a pixel of interest. See
+	 *            {@link Watershed#setStructuringElement(long[][])}.
+	 */
+	public void setStructuringElement( final long[][] structuringElement )
+	{
+		this.structuringElement = structuringElement;
+	}
+
+	/**
+	 * Set the output labeling where the results will be stored. The class will
+	 * provide one if none is supplied.
+	 * 
+	 * @param outputLabeling
+	 */
+	public void setOutputLabeling( final Labeling< L > outputLabeling )
+	{
+		output = outputLabeling;
+	}
+
+	/**
+	 * Flood tiles of the given size in parallel. The result approximates the
+	 * watershed, it is not guaranteed to be the same as that of
+	 * {@link Watershed} or of the sequential flooding.
+	 * 
+	 * @param tileSize
+	 *            size of the tiles, or {@code null} to flood the whole image
+	 *            sequentially and exactly (the default).
+	 * @param overlap
+	 *            number of pixels by which each tile is extended on every
+	 *            side, so that seeds and ridges near the tile boundary are
+	 *            taken into account.
+	 */
+	public void setApproximateTiling( final int[] tileSize, final int overlap )
+	{
+		this.tileSize = tileSize;
+		this.overlap = overlap;
+	}
+
+	/**
+	 * Set the service used to flood tiles. By default, the
+	 * {@link SharedThreadPool} is used.
+	 */
+	public void setExecutorService( final ExecutorService service )
+	{
+		this.service = service;
+	}
+
+	@Override
+	public boolean process()
+	{
+		if ( !checkInput() )
+			return false;
+
+		final int n = image.numDimensions();
+		final int[] dimensions = new int[ n ];
+		for ( int d = 0; d < n; ++d )
+			dimensions[ d ] = ( int ) image.dimension( d );
+		final int size = ( int ) Intervals.numElements( image );
+
+		if ( output == null )
+		{
+			final long[] outputDimensions = new long[ n ];
+			seeds.dimensions( outputDimensions );
+			output = new NativeImgLabeling< L, IntType >( new ArrayImgFactory< IntType >().create( outputDimensions, new IntType() ) );
+		}
+
+		final int[] level = new int[ size ];
+		final int numLevels = loadLevels( level );
+
+		/*
+		 * Collect the seeds in the order of the seed labeling's cursor. Label
+		 * index 0 means unlabeled.
+		 */
+		final ArrayList< List< L > > labelings = new ArrayList< List< L > >();
+		labelings.add( null );
+		final HashMap< List< L >, Integer > labelingIndices = new HashMap< List< L >, Integer >();
+		int[] seedIndices = new int[ 16 ];
+		int[] seedLabels = new int[ 16 ];
+		int numSeeds = 0;
+		final long[] min = new long[ n ];
+		image.min( min );
+		final long[] position = new long[ n ];
+		final Cursor< LabelingType< L > > c = seeds.localizingCursor();
+		A: while ( c.hasNext() )
+		{
+			final List< L > l = c.next().getLabeling();
+			if ( l.isEmpty() )
+				continue;
+			c.localize( position );
+			int index = 0;
+			for ( int d = n - 1; d >= 0; --d )
+			{
+				final long x = position[ d ] - min[ d ];
+				if ( x < 0 || x >= dimensions[ d ] || position[ d ] < output.min( d ) || position[ d ] > output.max( d ) )
+					continue A;
+				index = index * dimensions[ d ] + ( int ) x;
+			}
+			Integer labelIndex = labelingIndices.get( l );
+			if ( labelIndex == null )
+			{
+				labelIndex = labelings.size();
+				labelings.add( l );
+				labelingIndices.put( l, labelIndex );
+			}
+			if ( numSeeds == seedIndices.length )
+			{
+				seedIndices = Arrays.copyOf( seedIndices, 2 * numSeeds );
+				seedLabels = Arrays.copyOf( seedLabels, 2 * numSeeds );
+			}
+			seedIndices[ numSeeds ] = index;
+			seedLabels[ numSeeds ] = labelIndex;
+			++numSeeds;
+		}
+
+		final int[] label = new int[ size ];
+		if ( tileSize == null )
+		{
+			final Flooding flooding = new Flooding( dimensions, level, label, numLevels, structuringElement );
+			for ( int s = 0; s < numSeeds; ++s )
+			{
+				label[ seedIndices[ s ] ] = seedLabels[ s ];
+				flooding.push( seedIndices[ s ] );
+			}
+			flooding.flood();
+		}
+		else
+		{
+			floodTiles( dimensions, level, label, numLevels, Arrays.copyOf( seedIndices, numSeeds ), Arrays.copyOf( seedLabels, numSeeds ) );
+		}
+
+		/*
+		 * Write the result.
+		 */
+		final RandomAccessibleInterval< LabelingType< L > > outputView = Views.interval( output, image );
+		final ArrayList< List< L > > interned = new ArrayList< List< L > >( labelings.size() );
+		interned.add( null );
+		final LabelingType< L > first = Views.iterable( outputView ).firstElement();
+		for ( int i = 1; i < labelings.size(); ++i )
+			interned.add( first.intern( labelings.get( i ) ) );
+		final Cursor< LabelingType< L > > oc = Views.flatIterable( outputView ).cursor();
+		for ( int i = 0; i < size; ++i )
+		{
+			final LabelingType< L > t = oc.next();
+			if ( label[ i ] != 0 )
+				t.setLabeling( interned.get( label[ i ] ) );
+		}
+		return true;
+	}
+
+	/**
+	 * Fill {@code level} with the bucket index of each pixel, in flat
+	 * iteration order.
+	 * 
+	 * @return the number of levels.
+	 */
+	protected int loadLevels( final int[] level )
+	{
+		long minValue = Long.MAX_VALUE;
+		long maxValue = Long.MIN_VALUE;
+		for ( final T t : Views.iterable( image ) )
+		{
+			final long v = t.getIntegerLong();
+			if ( v < minValue )
+				minValue = v;
+			if ( v > maxValue )
+				maxValue = v;
+		}
+
+		// the range overflows if the values span more than Long.MAX_VALUE
+		final long range = maxValue - minValue;
+		final Cursor< T > c = Views.flatIterable( image ).cursor();
+		if ( range >= 0 && range < MAX_DIRECT_LEVELS )
+		{
+			for ( int i = 0; i < level.length; ++i )
+				level[ i ] = ( int ) ( c.next().getIntegerLong() - minValue );
+			return ( int ) range + 1;
+		}
+
+		// rank the distinct intensities
+		final long[] values = new long[ level.length ];
+		for ( int i = 0; i < level.length; ++i )
+			values[ i ] = c.next().getIntegerLong();
+		final long[] sorted = values.clone();
+		Arrays.sort( sorted );
+		int numLevels = 0;
+		for ( int i = 0; i < sorted.length; ++i )
+			if ( i == 0 || sorted[ i ] != sorted[ numLevels - 1 ] )
+				sorted[ numLevels++ ] = sorted[ i ];
+		for ( int i = 0; i < level.length; ++i )
+			level[ i ] = Arrays.binarySearch( sorted, 0, numLevels, values[ i ] );
+		return numLevels;
+	}
+
+	/**
+	 * Flood extended tiles in parallel, copy the labels of the tile cores,
+	 * then continue flooding from the labeled pixels to fill the gaps.
+	 */
+	private void floodTiles( final int[] dimensions, final int[] level, final int[] label, final int numLevels, final int[] seedIndices, final int[] seedLabels )
+	{
+		final int n = dimensions.length;
+		final int[] gridDimensions = new int[ n ];
+		int numTiles = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			gridDimensions[ d ] = ( dimensions[ d ] + tileSize[ d ] - 1 ) / tileSize[ d ];
+			numTiles *= gridDimensions[ d ];
+		}
+
+		final int finalNumTiles = numTiles;
+		final AtomicInteger nextTile = new AtomicInteger();
+		final ExecutorService executor = service == null ? SharedThreadPool.getExecutorService() : service;
+		final int numTasks = Math.min( numTiles, SharedThreadPool.numTasks( 1, executor ) );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( numTasks );
+		for ( int task = 0; task < numTasks; ++task )
+		{
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for ( int t = nextTile.getAndIncrement(); t < finalNumTiles; t = nextTile.getAndIncrement() )
+						floodTile( t, gridDimensions, dimensions, level, label, numLevels, seedIndices, seedLabels );
+				}
+			} );
+		}
+		SharedThreadPool.runAll( tasks, executor );
+
+		/*
+		 * Continue flooding from labeled pixels that have unlabeled
+		 * neighbors.
+		 */
+		final Flooding flooding = new Flooding( dimensions, level, label, numLevels, structuringElement );
+		for ( int i = 0; i < label.length; ++i )
+			if ( label[ i ] != 0 && flooding.hasUnlabeledNeighbor( i ) )
+				flooding.push( i );
+		flooding.flood();
+	}
+
+	private void floodTile( final int t, final int[] gridDimensions, final int[] dimensions, final int[] level, final int[] label, final int numLevels, final int[] seedIndices, final int[] seedLabels )
+	{
+		final int n = dimensions.length;
+		final int[] coreMin = new int[ n ];
+		final int[] coreMax = new int[ n ];
+		final int[] regionMin = new int[ n ];
+		final int[] regionDimensions = new int[ n ];
+		int regionSize = 1;
+		int g = t;
+		for ( int d = 0; d < n; ++d )
+		{
+			coreMin[ d ] = ( g % gridDimensions[ d ] ) * tileSize[ d ];
+			g /= gridDimensions[ d ];
+			coreMax[ d ] = Math.min( coreMin[ d ] + tileSize[ d ], dimensions[ d ] ) - 1;
+			regionMin[ d ] = Math.max( 0, coreMin[ d ] - overlap );
+			regionDimensions[ d ] = Math.min( dimensions[ d ] - 1, coreMax[ d ] + overlap ) - regionMin[ d ] + 1;
+			regionSize *= regionDimensions[ d ];
+		}
+
+		// copy the levels of the region
+		final int[] regionLevel = new int[ regionSize ];
+		final int[] regionLabel = new int[ regionSize ];
+		final int[] position = new int[ n ];
+		for ( int r = 0; r < regionSize; ++r )
+		{
+			regionLevel[ r ] = level[ globalIndex( position, regionMin, dimensions ) ];
+			increment( position, regionDimensions );
+		}
+
+		final Flooding flooding = new Flooding( regionDimensions, regionLevel, regionLabel, numLevels, structuringElement );
+		A: for ( int s = 0; s < seedIndices.length; ++s )
+		{
+			int index = seedIndices[ s ];
+			int r = 0;
+			int step = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				final int x = index % dimensions[ d ] - regionMin[ d ];
+				index /= dimensions[ d ];
+				if ( x < 0 || x >= regionDimensions[ d ] )
+					continue A;
+				r += x * step;
+				step *= regionDimensions[ d ];
+			}
+			regionLabel[ r ] = seedLabels[ s ];
+			flooding.push( r );
+		}
+		flooding.flood();
+
+		// copy the labels of the core
+		Arrays.fill( position, 0 );
+		for ( int r = 0; r < regionSize; ++r )
+		{
+			boolean inCore = true;
+			for ( int d = 0; d < n; ++d )
+			{
+				final int x = position[ d ] + regionMin[ d ];
+				inCore &= x >= coreMin[ d ] && x <= coreMax[ d ];
+			}
+			if ( inCore )
+				label[ globalIndex( position, regionMin, dimensions ) ] = regionLabel[ r ];
+			increment( position, regionDimensions );
+		}
+	}
+
+	private static int globalIndex( final int[] position, final int[] offset, final int[] dimensions )
+	{
+		int index = 0;
+		for ( int d = dimensions.length - 1; d >= 0; --d )
+			index = index * dimensions[ d ] + position[ d ] + offset[ d ];
+		return index;
+	}
+
+	private static void increment( final int[] position, final int[] dimensions )
+	{
+		for ( int d = 0; d < dimensions.length; ++d )
+		{
+			if ( ++position[ d ] < dimensions[ d ] )
+				break;
+			position[ d ] = 0;
+		}
+	}
+
+	/**
+	 * Hierarchical bucket queue flooding of a flat array of pixels.
+	 */
+	private static final class Flooding
+	{
+		private final int n;
+
+		private final int[] dimensions;
+
+		private final int[] level;
+
+		private final int[] label;
+
+		private final long[][] offsets;
+
+		private final int[] linearOffsets;
+
+		/**
+		 * next pixel in the same bucket, for queued pixels.
+		 */
+		private final int[] next;
+
+		private final int[] head;
+
+		private final int[] tail;
+
+		private final int[] position;
+
+		private int current;
+
+		private long numQueued;
+
+		Flooding( final int[] dimensions, final int[] level, final int[] label, final int numLevels, final long[][] offsets )
+		{
+			this.n = dimensions.length;
+			this.dimensions = dimensions;
+			this.level = level;
+			this.label = label;
+			this.offsets = offsets;
+			this.linearOffsets = new int[ offsets.length ];
+			for ( int o = 0; o < offsets.length; ++o )
+			{
+				int step = 1;
+				for ( int d = 0; d < n; ++d )
+				{
+					linearOffsets[ o ] += ( int ) offsets[ o ][ d ] * step;
+					step *= dimensions[ d ];
+				}
+			}
+			this.next = new int[ level.length ];
+			this.head = new int[ numLevels ];
+			this.tail = new int[ numLevels ];
+			Arrays.fill( head, -1 );
+			Arrays.fill( tail, -1 );
+			this.position = new int[ n ];
+			this.current = numLevels;
+			this.numQueued = 0;
+		}
+
+		void push( final int i )
+		{
+			final int l = level[ i ];
+			next[ i ] = -1;
+			if ( tail[ l ] < 0 )
+				head[ l ] = i;
+			else
+				next[ tail[ l ] ] = i;
+			tail[ l ] = i;
+			if ( l < current )
+				current = l;
+			++numQueued;
+		}
+
+		private int pop()
+		{
+			while ( head[ current ] < 0 )
+				++current;
+			final int i = head[ current ];
+			head[ current ] = next[ i ];
+			if ( head[ current ] < 0 )
+				tail[ current ] = -1;
+			--numQueued;
+			return i;
+		}
+
+		private void localize( int i )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				position[ d ] = i % dimensions[ d ];
+				i /= dimensions[ d ];
+			}
+		}
+
+		private boolean inBounds( final long[] offset )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				final long x = position[ d ] + offset[ d ];
+				if ( x < 0 || x >= dimensions[ d ] )
+					return false;
+			}
+			return true;
+		}
+
+		boolean hasUnlabeledNeighbor( final int i )
+		{
+			localize( i );
+			for ( int o = 0; o < offsets.length; ++o )
+				if ( inBounds( offsets[ o ] ) && label[ i + linearOffsets[ o ] ] == 0 )
+					return true;
+			return false;
+		}
+
+		/**
+		 * Pop the lowest queued pixel, label and push all unlabeled connected
+		 * pixels, until the queue is empty.
+		 */
+		void flood()
+		{
+			while ( numQueued > 0 )
+			{
+				final int i = pop();
+				final int l = label[ i ];
+				localize( i );
+				for ( int o = 0; o < offsets.length; ++o )
+				{
+					if ( !inBounds( offsets[ o ] ) )
+						continue;
+					final int j = i + linearOffsets[ o ];
+					if ( label[ j ] != 0 )
+						continue;
+					label[ j ] = l;
+					push( j );
+				}
+			}
+		}
+	}
+
+	@Override
+	public boolean checkInput()
+	{
+		if ( seeds == null )
+		{
+			errorMessage = "The seed labeling was not provided. Call \"setSeeds\" to do this";
+			return false;
+		}
+		if ( image == null )
+		{
+			errorMessage = "The intensity image was not provided. Call \"setIntensityImage\" to do this";
+			return false;
+		}
+		if ( seeds.numDimensions() != image.numDimensions() )
+		{
+			errorMessage = String.format( "The dimensionality of the seed labeling (%dD) does not match that of the intensity image (%dD)", seeds.numDimensions(), image.numDimensions() );
+			return false;
+		}
+		if ( ( output != null ) && ( seeds.numDimensions() != output.numDimensions() ) )
+		{
+			errorMessage = String.format( "The dimensionality of the seed labeling (%dD) does not match that of the output labeling (%dD)", seeds.numDimensions(), output.numDimensions() );
+			return false;
+		}
+		if ( Intervals.numElements( image ) > Integer.MAX_VALUE )
+		{
+			errorMessage = "The intensity image has too many pixels (at most 2^31 - 1 are supported)";
+			return false;
+		}
+		if ( ( tileSize != null ) && ( tileSize.length != image.numDimensions() ) )
+		{
+			errorMessage = "The tile size does not have the same number of dimensions as the image";
+			return false;
+		}
+		if ( structuringElement == null )
+			structuringElement = AllConnectedComponents.getStructuringElement( image.numDimensions() );
+		for ( int i = 0; i < structuringElement.length; i++ )
+		{
+			if ( structuringElement[ i ].length != seeds.numDimensions() )
+			{
+				errorMessage = "Some or all of the structuring element offsets do not have the same number of dimensions as the image";
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String getErrorMessage()
+	{
+		return errorMessage;
+	}
+
+	@Override
+	public Labeling< L > getResult()
+	{
+		return output;
+	}
+}
@@ -0,0 +1,658 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.labeling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import net.imglib2.Cursor;
+import net.imglib2.Dimensions;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.labeling.LabelingMapping;
+import net.imglib2.labeling.LabelingType;
+import net.imglib2.labeling.NativeImgLabeling;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.type.BooleanType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Label all connected components of a binary image, writing integer labels
+ * directly into an {@link IntegerType} image.
+ * 
+ * <p>
+ * The image is divided into tiles that are labeled independently and in
+ * parallel with a local union-find over the tile's pixels. Each tile writes
+ * its provisional labels {@code 1, 2, ...} into the label image. Components
+ * that touch across tile boundaries are then merged by scanning the border
+ * of each tile with a lock-free union-find over all provisional labels.
+ * Finally, the label image is rewritten with consecutive labels
+ * {@code 1..numComponents}. Background pixels are set to 0.
+ * </p>
+ * 
+ * <p>
+ * Labels are numbered by tile (in flat iteration order of the tile grid) and
+ * by the first pixel of a component within the tile. The result does not
+ * depend on the number of threads.
+ * </p>
+ * 
+ * <p>
+ * Compared to {@link AllConnectedComponents}, no {@link LabelingType} is
+ * touched per pixel. Use
+ * {@link #labelAllConnectedComponents(NativeImgLabeling, RandomAccessibleInterval, long[][], int[], ExecutorService)}
+ * to obtain a {@link NativeImgLabeling}.
+ * </p>
+ */
+public class ParallelConnectedComponents
+{
+	/**
+	 * Label all connected components of {@code img} with the 8-connected
+	 * structuring element (or its N-dimensional analog) and default tiles,
+	 * using the {@link SharedThreadPool}.
+	 * 
+	 * @param img
+	 *            a binary image where true indicates parts of components
+	 * @param labels
+	 *            receives the labels. Must have the same dimensions as img.
+	 * @return the number of components.
+	 */
+	public static < B extends BooleanType< B >, L extends IntegerType< L > > long label( final RandomAccessibleInterval< B > img, final RandomAccessibleInterval< L > labels )
+	{
+		return label( img, labels, AllConnectedComponents.getStructuringElement( img.numDimensions() ), null, SharedThreadPool.getExecutorService() );
+	}
+
+	/**
+	 * Label all connected components of {@code img}.
+	 * 
+	 * @param img
+	 *            a binary image where true indicates parts of components
+	 * @param labels
+	 *            receives the labels. Must have the same dimensions as img.
+	 * @param structuringElement
+	 *            an array of offsets to a pixel of the pixels which are
+	 *            considered connected, see
+	 *            {@link AllConnectedComponents#labelAllConnectedComponents(net.imglib2.labeling.Labeling, RandomAccessibleInterval, java.util.Iterator, long[][])}
+	 *            . Connectivity is treated as symmetric.
+	 * @param tileSize
+	 *            size of the tiles that are labeled independently, or
+	 *            {@code null} for {@link #defaultTileSize(Dimensions)}.
+	 * @param service
+	 *            service to run the tiles on.
+	 * @return the number of components.
+	 * @throws IllegalArgumentException
+	 *             if the dimensions of img and labels differ, or if there are
+	 *             more than {@link Integer#MAX_VALUE} tiles or provisional
+	 *             labels.
+	 */
+	public static < B extends BooleanType< B >, L extends IntegerType< L > > long label( final RandomAccessibleInterval< B > img, final RandomAccessibleInterval< L > labels, final long[][] structuringElement, final int[] tileSize, final ExecutorService service )
+	{
+		if ( !Intervals.equalDimensions( img, labels ) )
+			throw new IllegalArgumentException( "img and labels must have the same dimensions" );
+		return new Engine< B, L >( Views.zeroMin( img ), Views.zeroMin( labels ), structuringElement, tileSize == null ? defaultTileSize( img ) : tileSize, service ).run();
+	}
+
+	/**
+	 * Label all connected components of {@code img} into a
+	 * {@link NativeImgLabeling}. The components are labeled with the integers
+	 * {@code 1..numComponents}. Existing labels are overwritten.
+	 * 
+	 * @param labeling
+	 *            Assign labels to this labeling space
+	 * @param img
+	 *            a binary image where true indicates parts of components
+	 * @param structuringElement
+	 *            offsets of the pixels which are considered connected.
+	 * @param tileSize
+	 *            size of the tiles that are labeled independently, or
+	 *            {@code null} for {@link #defaultTileSize(Dimensions)}.
+	 * @param service
+	 *            service to run the tiles on.
+	 * @return the number of components.
+	 */
+	public static < B extends BooleanType< B >, I extends IntegerType< I > > long labelAllConnectedComponents( final NativeImgLabeling< Integer, I > labeling, final RandomAccessibleInterval< B > img, final long[][] structuringElement, final int[] tileSize, final ExecutorService service )
+	{
+		final RandomAccessibleInterval< I > storage = labeling.getStorageImg();
+		final long numComponents = label( img, storage, structuringElement, tileSize, service );
+
+		// The storage holds indices into the labeling's mapping. Intern the
+		// labels in order and remap the storage if the indices do not match
+		// the component labels (which happens only if the mapping was used
+		// before).
+		final LabelingMapping< Integer > mapping = labeling.getMapping();
+		final int[] index = new int[ ( int ) numComponents + 1 ];
+		boolean identity = true;
+		for ( int k = 1; k <= numComponents; ++k )
+		{
+			index[ k ] = mapping.indexOf( Arrays.asList( k ) );
+			identity &= index[ k ] == k;
+		}
+		if ( !identity )
+		{
+			for ( final I t : Views.iterable( storage ) )
+				t.setInteger( index[ t.getInteger() ] );
+		}
+
+		// Notify the labeling that its pixels have changed.
+		final LabelingType< Integer > first = labeling.randomAccess().get();
+		first.setLabeling( first.getLabeling() );
+
+		return numComponents;
+	}
+
+	/**
+	 * Get a tile size with about 2<sup>18</sup> pixels, but not larger than
+	 * the image.
+	 */
+	public static int[] defaultTileSize( final Dimensions dimensions )
+	{
+		final int n = dimensions.numDimensions();
+		final int side = Math.max( 16, ( int ) Math.pow( 1 << 18, 1.0 / n ) );
+		final int[] tileSize = new int[ n ];
+		for ( int d = 0; d < n; ++d )
+			tileSize[ d ] = ( int ) Math.min( side, dimensions.dimension( d ) );
+		return tileSize;
+	}
+
+	private static class Engine< B extends BooleanType< B >, L extends IntegerType< L > >
+	{
+		private final RandomAccessibleInterval< B > img;
+
+		private final RandomAccessibleInterval< L > labels;
+
+		private final ExecutorService service;
+
+		private final int n;
+
+		private final long[] dimensions;
+
+		private final int[] tileSize;
+
+		/**
+		 * number of tiles in each dimension.
+		 */
+		private final long[] gridDimensions;
+
+		private final int numTiles;
+
+		/**
+		 * offsets of the structuring element, normalized to point backwards
+		 * in flat iteration order.
+		 */
+		private final long[][] backwardOffsets;
+
+		/**
+		 * all offsets of the symmetric structuring element.
+		 */
+		private final long[][] offsets;
+
+		/**
+		 * width of the band at the border of a tile that has neighbors in
+		 * other tiles.
+		 */
+		private final long[] border;
+
+		/**
+		 * number of provisional labels in each tile.
+		 */
+		private final int[] tileCounts;
+
+		/**
+		 * index of the first provisional label of each tile.
+		 */
+		private long[] tileOffsets;
+
+		/**
+		 * union-find over the provisional labels.
+		 */
+		private AtomicIntegerArray parents;
+
+		Engine( final RandomAccessibleInterval< B > img, final RandomAccessibleInterval< L > labels, final long[][] structuringElement, final int[] tileSize, final ExecutorService service )
+		{
+			this.img = img;
+			this.labels = labels;
+			this.service = service;
+			this.n = img.numDimensions();
+			this.dimensions = new long[ n ];
+			img.dimensions( dimensions );
+			this.tileSize = tileSize;
+
+			gridDimensions = new long[ n ];
+			long nt = 1;
+			long tileElements = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				gridDimensions[ d ] = ( dimensions[ d ] + tileSize[ d ] - 1 ) / tileSize[ d ];
+				nt *= gridDimensions[ d ];
+				tileElements *= tileSize[ d ];
+			}
+			if ( nt > Integer.MAX_VALUE || tileElements > Integer.MAX_VALUE )
+				throw new IllegalArgumentException( "too many tiles or too large tiles" );
+			numTiles = ( int ) nt;
+			tileCounts = new int[ numTiles ];
+
+			final ArrayList< long[] > backward = new ArrayList< long[] >();
+			final ArrayList< long[] > all = new ArrayList< long[] >();
+			border = new long[ n ];
+			for ( final long[] offset : structuringElement )
+			{
+				final long[] b = offset.clone();
+				final long[] f = offset.clone();
+				int last = n - 1;
+				while ( last >= 0 && b[ last ] == 0 )
+					--last;
+				if ( last < 0 )
+					continue;
+				if ( b[ last ] > 0 )
+					for ( int d = 0; d < n; ++d )
+						b[ d ] = -b[ d ];
+				for ( int d = 0; d < n; ++d )
+					f[ d ] = -b[ d ];
+				if ( !contains( backward, b ) )
+				{
+					backward.add( b );
+					all.add( b );
+					all.add( f );
+				}
+				for ( int d = 0; d < n; ++d )
+					border[ d ] = Math.max( border[ d ], Math.abs( offset[ d ] ) );
+			}
+			backwardOffsets = backward.toArray( new long[ 0 ][] );
+			offsets = all.toArray( new long[ 0 ][] );
+		}
+
+		private static boolean contains( final List< long[] > list, final long[] offset )
+		{
+			for ( final long[] o : list )
+				if ( Arrays.equals( o, offset ) )
+					return true;
+			return false;
+		}
+
+		long run()
+		{
+			forEachTile( new LabelTile() );
+
+			tileOffsets = new long[ numTiles + 1 ];
+			for ( int t = 0; t < numTiles; ++t )
+				tileOffsets[ t + 1 ] = tileOffsets[ t ] + tileCounts[ t ];
+			final long numProvisional = tileOffsets[ numTiles ];
+			if ( numProvisional > Integer.MAX_VALUE )
+				throw new IllegalArgumentException( "too many provisional labels: " + numProvisional );
+
+			final int size = ( int ) numProvisional;
+			parents = new AtomicIntegerArray( size );
+			for ( int i = 0; i < size; ++i )
+				parents.set( i, i );
+
+			if ( numTiles > 1 )
+				forEachTile( new MergeTile() );
+
+			// Number the roots consecutively. Roots are the smallest element
+			// of their set, so the root of i has been numbered before i.
+			final int[] finalLabels = new int[ size ];
+			int numComponents = 0;
+			for ( int i = 0; i < size; ++i )
+			{
+				final int root = find( i );
+				finalLabels[ i ] = root == i ? ++numComponents : finalLabels[ root ];
+			}
+
+			forEachTile( new RelabelTile( finalLabels ) );
+			return numComponents;
+		}
+
+		/**
+		 * Get the interval covered by a tile.
+		 */
+		private Interval tile( final int t )
+		{
+			final long[] min = new long[ n ];
+			final long[] max = new long[ n ];
+			IntervalIndexer.indexToPosition( t, gridDimensions, min );
+			for ( int d = 0; d < n; ++d )
+			{
+				min[ d ] *= tileSize[ d ];
+				max[ d ] = Math.min( min[ d ] + tileSize[ d ], dimensions[ d ] ) - 1;
+			}
+			return new FinalInterval( min, max );
+		}
+
+		/**
+		 * Get the index of the tile containing a position.
+		 */
+		private int tileIndex( final long[] position )
+		{
+			long index = 0;
+			for ( int d = n - 1; d >= 0; --d )
+				index = index * gridDimensions[ d ] + position[ d ] / tileSize[ d ];
+			return ( int ) index;
+		}
+
+		private int find( int i )
+		{
+			while ( true )
+			{
+				final int parent = parents.get( i );
+				if ( parent == i )
+					return i;
+				final int grandParent = parents.get( parent );
+				if ( grandParent != parent )
+					parents.compareAndSet( i, parent, grandParent );
+				i = parent;
+			}
+		}
+
+		/**
+		 * Merge the sets of provisional labels a and b. The larger root is
+		 * linked to the smaller one, so roots are always the smallest element
+		 * of their set.
+		 */
+		private void union( int a, int b )
+		{
+			while ( true )
+			{
+				a = find( a );
+				b = find( b );
+				if ( a == b )
+					return;
+				if ( a < b )
+				{
+					final int tmp = a;
+					a = b;
+					b = tmp;
+				}
+				if ( parents.compareAndSet( a, a, b ) )
+					return;
+			}
+		}
+
+		private static abstract class TileTask
+		{
+			abstract void process( int t, Interval tile );
+
+			/**
+			 * Get an instance for another thread.
+			 */
+			abstract TileTask copy();
+		}
+
+		/**
+		 * Run a {@link TileTask} for each tile, with tiles handed out
+		 * dynamically to the threads.
+		 */
+		private void forEachTile( final TileTask task )
+		{
+			final AtomicInteger nextTile = new AtomicInteger();
+			final int numTasks = Math.min( numTiles, SharedThreadPool.numTasks( 1, service ) );
+			final ArrayList< Runnable > tasks = new ArrayList< Runnable >( numTasks );
+			for ( int i = 0; i < numTasks; ++i )
+			{
+				final TileTask threadTask = task.copy();
+				tasks.add( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						for ( int t = nextTile.getAndIncrement(); t < numTiles; t = nextTile.getAndIncrement() )
+							threadTask.process( t, tile( t ) );
+					}
+				} );
+			}
+			SharedThreadPool.runAll( tasks, service );
+		}
+
+		/**
+		 * Label the components of one tile with a local union-find and write
+		 * provisional labels {@code 1, 2, ...} to the tile.
+		 */
+		private class LabelTile extends TileTask
+		{
+			private int[] parent = new int[ 0 ];
+
+			private int[] label = new int[ 0 ];
+
+			@Override
+			TileTask copy()
+			{
+				return new LabelTile();
+			}
+
+			private int find( int i )
+			{
+				while ( parent[ i ] != i )
+				{
+					parent[ i ] = parent[ parent[ i ] ];
+					i = parent[ i ];
+				}
+				return i;
+			}
+
+			@Override
+			void process( final int t, final Interval tile )
+			{
+				final int[] tileDimensions = new int[ n ];
+				final int[] steps = new int[ n ];
+				int size = 1;
+				for ( int d = 0; d < n; ++d )
+				{
+					tileDimensions[ d ] = ( int ) tile.dimension( d );
+					steps[ d ] = size;
+					size *= tileDimensions[ d ];
+				}
+				if ( parent.length < size )
+				{
+					parent = new int[ size ];
+					label = new int[ size ];
+				}
+
+				final int numOffsets = backwardOffsets.length;
+				final int[] linearOffsets = new int[ numOffsets ];
+				for ( int o = 0; o < numOffsets; ++o )
+					for ( int d = 0; d < n; ++d )
+						linearOffsets[ o ] += ( int ) backwardOffsets[ o ][ d ] * steps[ d ];
+
+				final Cursor< B > c = Views.flatIterable( Views.interval( img, tile ) ).cursor();
+				for ( int i = 0; i < size; ++i )
+					parent[ i ] = c.next().get() ? i : -1;
+
+				final long[] position = new long[ n ];
+				for ( int i = 0; i < size; ++i )
+				{
+					if ( parent[ i ] >= 0 )
+					{
+						A: for ( int o = 0; o < numOffsets; ++o )
+						{
+							final long[] offset = backwardOffsets[ o ];
+							for ( int d = 0; d < n; ++d )
+							{
+								final long x = position[ d ] + offset[ d ];
+								if ( x < 0 || x >= tileDimensions[ d ] )
+									continue A;
+							}
+							final int j = i + linearOffsets[ o ];
+							if ( parent[ j ] >= 0 )
+							{
+								final int ri = find( i );
+								final int rj = find( j );
+								if ( ri < rj )
+									parent[ rj ] = ri;
+								else
+									parent[ ri ] = rj;
+							}
+						}
+					}
+					for ( int d = 0; d < n; ++d )
+					{
+						if ( ++position[ d ] < tileDimensions[ d ] )
+							break;
+						position[ d ] = 0;
+					}
+				}
+
+				int count = 0;
+				for ( int i = 0; i < size; ++i )
+				{
+					if ( parent[ i ] < 0 )
+						label[ i ] = 0;
+					else
+					{
+						final int root = find( i );
+						label[ i ] = root == i ? ++count : label[ root ];
+					}
+				}
+				tileCounts[ t ] = count;
+
+				final Cursor< L > lc = Views.flatIterable( Views.interval( labels, tile ) ).cursor();
+				for ( int i = 0; i < size; ++i )
+					lc.next().setInteger( label[ i ] );
+			}
+		}
+
+		/**
+		 * Merge provisional labels of components that touch across the border
+		 * of one tile.
+		 */
+		private class MergeTile extends TileTask
+		{
+			private final RandomAccess< L > neighbor = labels.randomAccess();
+
+			private final long[] position = new long[ n ];
+
+			private final long[] neighborPosition = new long[ n ];
+
+			@Override
+			TileTask copy()
+			{
+				return new MergeTile();
+			}
+
+			@Override
+			void process( final int t, final Interval tile )
+			{
+				final long[] min = new long[ n ];
+				final long[] max = new long[ n ];
+				for ( int d = 0; d < n; ++d )
+				{
+					// lower and upper bands of the tile in dimension d
+					if ( tile.min( d ) > 0 )
+					{
+						tile.min( min );
+						tile.max( max );
+						max[ d ] = Math.min( max[ d ], min[ d ] + border[ d ] - 1 );
+						processBand( t, tile, new FinalInterval( min, max ) );
+					}
+					if ( tile.max( d ) < dimensions[ d ] - 1 )
+					{
+						tile.min( min );
+						tile.max( max );
+						min[ d ] = Math.max( min[ d ], max[ d ] - border[ d ] + 1 );
+						processBand( t, tile, new FinalInterval( min, max ) );
+					}
+				}
+			}
+
+			private void processBand( final int t, final Interval tile, final Interval band )
+			{
+				final Cursor< L > c = Views.iterable( Views.interval( labels, band ) ).localizingCursor();
+				while ( c.hasNext() )
+				{
+					final long label = c.next().getIntegerLong();
+					if ( label == 0 )
+						continue;
+					c.localize( position );
+					final int a = ( int ) ( tileOffsets[ t ] + label - 1 );
+					A: for ( final long[] offset : offsets )
+					{
+						boolean inTile = true;
+						for ( int d = 0; d < n; ++d )
+						{
+							final long x = position[ d ] + offset[ d ];
+							if ( x < 0 || x >= dimensions[ d ] )
+								continue A;
+							inTile &= x >= tile.min( d ) && x <= tile.max( d );
+							neighborPosition[ d ] = x;
+						}
+						if ( inTile )
+							continue;
+						neighbor.setPosition( neighborPosition );
+						final long neighborLabel = neighbor.get().getIntegerLong();
+						if ( neighborLabel != 0 )
+							union( a, ( int ) ( tileOffsets[ tileIndex( neighborPosition ) ] + neighborLabel - 1 ) );
+					}
+				}
+			}
+		}
+
+		/**
+		 * Replace the provisional labels of one tile by the final labels.
+		 */
+		private class RelabelTile extends TileTask
+		{
+			private final int[] finalLabels;
+
+			RelabelTile( final int[] finalLabels )
+			{
+				this.finalLabels = finalLabels;
+			}
+
+			@Override
+			TileTask copy()
+			{
+				return this;
+			}
+
+			@Override
+			void process( final int t, final Interval tile )
+			{
+				final long offset = tileOffsets[ t ] - 1;
+				for ( final L l : Views.iterable( Views.interval( labels, tile ) ) )
+				{
+					final long label = l.getIntegerLong();
+					if ( label != 0 )
+						l.setInteger( finalLabels[ ( int ) ( offset + label ) ] );
+				}
+			}
+		}
+	}
+}
@@ -67,6 +67,9 @@ import net.imglib2.view.Views;
  * image has a depressed object interior and a ridge which constrains the
  * watershed boundary.
  * 
+ * For integer-valued intensity images, {@link BucketWatershed} gives the same
+ * result with a bucket queue on primitive arrays.
+ * 
  * @author Lee Kamentsky
  */
 public class Watershed< T extends RealType< T >, L extends Comparable< L >> implements OutputAlgorithm< Labeling< L >>
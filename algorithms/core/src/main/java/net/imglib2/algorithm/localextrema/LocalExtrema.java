@@ -49,12 +49,13 @@ import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.Sampler;
 import net.imglib2.algorithm.region.localneighborhood.Neighborhood;
 import net.imglib2.algorithm.region.localneighborhood.RectangleShape;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
 
 /**
  * Provides
- * {@link #findLocalExtrema(RandomAccessibleInterval, LocalNeighborhoodCheck, int)}
+ * {@link #findLocalExtrema(RandomAccessibleInterval, LocalNeighborhoodCheck)}
  * to find pixels that are extrema in their local neighborhood.
  * 
  * @author Tobias Pietzsch <tobias.pietzsch@gmail.com>
@@ -89,6 +90,21 @@ public class LocalExtrema
 		public < C extends Localizable & Sampler< T > > P check( C center, Neighborhood< T > neighborhood );
 	}
 
+	/**
+	 * Find pixels that are extrema in their local neighborhood. The specific
+	 * test for being an extremum can is specified as an implementation of the
+	 * {@link LocalNeighborhoodCheck} interface. Computation is multi-threaded
+	 * using the {@link SharedThreadPool}.
+	 * 
+	 * @param img
+	 * @param localNeighborhoodCheck
+	 * @return
+	 */
+	public static < P, T extends Comparable< T > > ArrayList< P > findLocalExtrema( final RandomAccessibleInterval< T > img, final LocalNeighborhoodCheck< P, T > localNeighborhoodCheck )
+	{
+		return findLocalExtrema( img, localNeighborhoodCheck, SharedThreadPool.getExecutorService() );
+	}
+
 	/**
 	 * Find pixels that are extrema in their local neighborhood. The specific
 	 * test for being an extremum can is specified as an implementation of the
@@ -109,9 +125,7 @@ public class LocalExtrema
 		final Interval full = Intervals.expand( img, -1 );
 		final int n = img.numDimensions();
 		final int splitd = n - 1;
-		// FIXME is there a better way to determine number of threads
-		final int numThreads = Runtime.getRuntime().availableProcessors();
-		final int numTasks = numThreads <= 1 ? 1 : ( int ) Math.min( full.dimension( splitd ), numThreads * 20 );
+		final int numTasks = ( int ) Math.min( full.dimension( splitd ), SharedThreadPool.numTasks( 20, service ) );
 		final long dsize = full.dimension( splitd ) / numTasks;
 		final long[] min = new long[ n ];
 		final long[] max = new long[ n ];
@@ -37,9 +37,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import net.imglib2.Interval;
 import net.imglib2.Localizable;
@@ -48,6 +45,7 @@ import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RealPoint;
 import net.imglib2.RealPositionable;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.util.Intervals;
 import Jama.LUDecomposition;
@@ -93,7 +91,7 @@ public class SubpixelLocalization< P extends Localizable, T extends RealType< T
 		allowedToMoveInDim = new boolean[ numDimensions ];
 		Arrays.fill( allowedToMoveInDim, true );
 
-		numThreads = Runtime.getRuntime().availableProcessors();
+		numThreads = SharedThreadPool.getParallelism();
 	}
 
 	public void setAllowMaximaTolerance( final boolean allowMaximaTolerance )
@@ -222,7 +220,9 @@ public class SubpixelLocalization< P extends Localizable, T extends RealType< T
 	 *            specifies, per dimension, whether the base location is allowed
 	 *            to be moved in the iterative procedure.
 	 * @param numThreads
-	 *            How many threads to use for the computation.
+	 *            How many threads to use for the computation. The work is
+	 *            split into tasks accordingly and run on the
+	 *            {@link SharedThreadPool}.
 	 * @return refined list of peaks.
 	 */
 	public static < T extends RealType< T >, P extends Localizable > ArrayList< RefinedPeak< P > > refinePeaks(
@@ -236,13 +236,13 @@ public class SubpixelLocalization< P extends Localizable, T extends RealType< T
 		final int numTasks = numThreads <= 1 ? 1 : ( int ) Math.min( numPeaks, numThreads * 20 );
 		final int taskSize = numPeaks / numTasks;
 
-		final ExecutorService ex = Executors.newFixedThreadPool( numThreads );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( numTasks );
 		final List< RefinedPeak< P > > synchronizedAllRefinedPeaks = Collections.synchronizedList( allRefinedPeaks );
 		for ( int taskNum = 0; taskNum < numTasks; ++taskNum )
 		{
 			final int fromIndex = taskNum * taskSize;
 			final int toIndex = ( taskNum == numTasks - 1 ) ? numPeaks : fromIndex + taskSize;
-			final Runnable r = new Runnable()
+			tasks.add( new Runnable()
 			{
 				@Override
 				public void run()
@@ -252,18 +252,9 @@ public class SubpixelLocalization< P extends Localizable, T extends RealType< T
 							img, validInterval, returnInvalidPeaks, maxNumMoves, allowMaximaTolerance, maximaTolerance, allowedToMoveInDim );
 					synchronizedAllRefinedPeaks.addAll( refinedPeaks );
 				}
-			};
-			ex.execute( r );
-		}
-		ex.shutdown();
-		try
-		{
-			ex.awaitTermination( 1000, TimeUnit.DAYS );
-		}
-		catch ( final InterruptedException e )
-		{
-			e.printStackTrace();
+			} );
 		}
+		SharedThreadPool.runAll( tasks );
 
 		return allRefinedPeaks;
 	}
@@ -43,6 +43,7 @@ import net.imglib2.algorithm.Algorithm;
 import net.imglib2.algorithm.Benchmark;
 import net.imglib2.algorithm.MultiThreaded;
 import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.multithreading.SimpleMultiThreading;
 import net.imglib2.type.Type;
 import net.imglib2.util.Util;
@@ -215,7 +216,7 @@ public class ComputeMinMax< T extends Type< T > & Comparable< T >> implements Al
 	@Override
 	public void setNumThreads()
 	{
-		this.numThreads = Runtime.getRuntime().availableProcessors();
+		this.numThreads = SharedThreadPool.getParallelism();
 	}
 
 	@Override
@@ -0,0 +1,217 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.componenttree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.Localizable;
+import net.imglib2.algorithm.componenttree.mser.Mser;
+import net.imglib2.algorithm.componenttree.mser.MserTree;
+import net.imglib2.algorithm.componenttree.pixellist.PixelListComponent;
+import net.imglib2.algorithm.componenttree.pixellist.PixelListComponentTree;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Compare {@link BuildIntegerComponentTree} with {@link BuildComponentTree}.
+ */
+public class BuildIntegerComponentTreeTest
+{
+	private static < T extends IntegerType< T > & NativeType< T > > Img< T > randomImage( final T type, final long[] dimensions, final long range, final long seed )
+	{
+		final Img< T > img = new ArrayImgFactory< T >().create( dimensions, type );
+		final Random random = new Random( seed );
+		for ( final T t : img )
+			t.setInteger( ( long ) ( random.nextDouble() * range ) );
+		return img;
+	}
+
+	private static String signature( final PixelListComponent< ? > component, final long[] dimensions )
+	{
+		final long[] position = new long[ dimensions.length ];
+		final ArrayList< Long > indices = new ArrayList< Long >();
+		for ( final Localizable l : component )
+		{
+			l.localize( position );
+			indices.add( IntervalIndexer.positionToIndex( position, dimensions ) );
+		}
+		Collections.sort( indices );
+		return component.value() + ":" + indices;
+	}
+
+	private static < T extends IntegerType< T > > HashSet< String > components( final PixelListComponentTree< T > tree, final long[] dimensions )
+	{
+		final HashSet< String > components = new HashSet< String >();
+		for ( final PixelListComponent< T > c : tree )
+			components.add( signature( c, dimensions ) );
+		return components;
+	}
+
+	private static < T extends IntegerType< T > > void assertSameComponentTree( final Img< T > img, final boolean darkToBright )
+	{
+		final long[] dimensions = new long[ img.numDimensions() ];
+		img.dimensions( dimensions );
+		final T type = img.firstElement().createVariable();
+		final ArrayImgFactory< LongType > factory = new ArrayImgFactory< LongType >();
+		final PixelListComponentTree< T > expected = PixelListComponentTree.buildComponentTree( img, type, factory, darkToBright );
+		final PixelListComponentTree< T > actual = PixelListComponentTree.buildIntegerComponentTree( img, type, factory, darkToBright );
+		assertEquals( signature( expected.root(), dimensions ), signature( actual.root(), dimensions ) );
+		assertEquals( components( expected, dimensions ), components( actual, dimensions ) );
+	}
+
+	private static < T extends IntegerType< T > > HashSet< String > msers( final MserTree< T > tree )
+	{
+		final HashSet< String > msers = new HashSet< String >();
+		for ( final Mser< T > mser : tree )
+		{
+			final double[] mean = mser.mean();
+			msers.add( mser.value() + " " + mser.size() + " " + mser.score() + " " + mean[ 0 ] + " " + mean[ 1 ] + " " + ( mser.getParent() == null ? "" : mser.getParent().size() ) );
+		}
+		return msers;
+	}
+
+	@Test
+	public void testFewLevels2D()
+	{
+		final Img< UnsignedShortType > img = randomImage( new UnsignedShortType(), new long[] { 37, 23 }, 8, 1 );
+		assertSameComponentTree( img, true );
+		assertSameComponentTree( img, false );
+	}
+
+	@Test
+	public void testManyLevels3D()
+	{
+		final Img< UnsignedShortType > img = randomImage( new UnsignedShortType(), new long[] { 13, 11, 7 }, 65536, 2 );
+		assertSameComponentTree( img, true );
+		assertSameComponentTree( img, false );
+	}
+
+	@Test
+	public void testRankedLevels()
+	{
+		final Img< IntType > img = randomImage( new IntType(), new long[] { 21, 17 }, 1l << 30, 3 );
+		assertSameComponentTree( img, true );
+		assertSameComponentTree( img, false );
+	}
+
+	@Test
+	public void testFullLongRange()
+	{
+		final Img< LongType > img = new ArrayImgFactory< LongType >().create( new long[] { 19, 13 }, new LongType() );
+		final Random random = new Random( 5 );
+		for ( final LongType t : img )
+			t.set( random.nextLong() );
+		img.firstElement().set( Long.MIN_VALUE );
+		final Cursor< LongType > c = img.cursor();
+		c.jumpFwd( 10 );
+		c.get().set( Long.MAX_VALUE );
+		assertSameComponentTree( img, true );
+		assertSameComponentTree( img, false );
+	}
+
+	/**
+	 * Dark blobs of different sizes on a bright background. (MSER selection
+	 * breaks ties between equally sized sibling components by merge order, so
+	 * random noise is not suitable for comparing against
+	 * {@link BuildComponentTree}.)
+	 */
+	private static Img< UnsignedShortType > blobImage( final long[] dimensions, final long seed )
+	{
+		final Img< UnsignedShortType > img = new ArrayImgFactory< UnsignedShortType >().create( dimensions, new UnsignedShortType() );
+		final Random random = new Random( seed );
+		final int numBlobs = 6;
+		final double[][] centers = new double[ numBlobs ][ 2 ];
+		final double[] sigmas = new double[ numBlobs ];
+		for ( int i = 0; i < numBlobs; ++i )
+		{
+			centers[ i ][ 0 ] = random.nextDouble() * dimensions[ 0 ];
+			centers[ i ][ 1 ] = random.nextDouble() * dimensions[ 1 ];
+			sigmas[ i ] = 2 + 1.3 * i;
+		}
+		final Cursor< UnsignedShortType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			final double x = c.getDoublePosition( 0 );
+			final double y = c.getDoublePosition( 1 );
+			double v = 60000;
+			for ( int i = 0; i < numBlobs; ++i )
+			{
+				final double dx = x - centers[ i ][ 0 ];
+				final double dy = y - centers[ i ][ 1 ];
+				v -= 10000 * Math.exp( -( dx * dx + dy * dy ) / ( 2 * sigmas[ i ] * sigmas[ i ] ) );
+			}
+			c.get().setReal( Math.round( v + 300 * c.getDoublePosition( 2 ) + random.nextDouble() * 50 ) );
+		}
+		return img;
+	}
+
+	@Test
+	public void testMserTrees()
+	{
+		final long[] dimensions = new long[] { 64, 48, 3 };
+		final Img< UnsignedShortType > img = blobImage( dimensions, 4 );
+		final UnsignedShortType delta = new UnsignedShortType( 500 );
+		for ( final boolean darkToBright : new boolean[] { true, false } )
+		{
+			final List< MserTree< UnsignedShortType > > trees = MserTree.buildIntegerMserTrees( img, delta, 10, 2000, 0.8, 0.1, 2, darkToBright, SharedThreadPool.getExecutorService() );
+			assertEquals( dimensions[ 2 ], trees.size() );
+			for ( int t = 0; t < dimensions[ 2 ]; ++t )
+			{
+				final MserTree< UnsignedShortType > expected = MserTree.buildMserTree( Views.hyperSlice( img, 2, t ), delta, 10, 2000, 0.8, 0.1, darkToBright );
+				assertTrue( expected.size() > 0 );
+				assertEquals( msers( expected ), msers( trees.get( t ) ) );
+			}
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.fft2;
+
+import java.util.Random;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.util.BenchmarkHelper;
+import net.imglib2.view.Views;
+
+/**
+ * Compares the complex-to-complex FFT on the float[] storage of
+ * {@link net.imglib2.img.array.ArrayImg} and
+ * {@link net.imglib2.img.planar.PlanarImg} ({@link NativeComplexFFT}) with
+ * the generic line-by-line {@link net.imglib2.RandomAccess} path (which is
+ * used for views). The real-to-complex and complex-to-real passes are not
+ * covered, they always take the line-by-line path.
+ */
+public class FFTMethodsBenchmark
+{
+	static Img< ComplexFloatType > create( final ImgFactory< ComplexFloatType > factory, final long... dims )
+	{
+		final Img< ComplexFloatType > img = factory.create( dims, new ComplexFloatType() );
+		final Random random = new Random( 0 );
+		for ( final ComplexFloatType t : img )
+			t.set( random.nextFloat(), random.nextFloat() );
+		return img;
+	}
+
+	static void benchmark( final String name, final ImgFactory< ComplexFloatType > factory, final long... dims )
+	{
+		final Img< ComplexFloatType > img = create( factory, dims );
+
+		System.out.println( name + ", native path" );
+		BenchmarkHelper.benchmarkAndPrint( 10, false, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for ( int d = 0; d < dims.length; ++d )
+					FFTMethods.complexToComplex( img, d, true, false, SharedThreadPool.getExecutorService() );
+			}
+		} );
+
+		System.out.println( name + ", line-by-line RandomAccess path" );
+		BenchmarkHelper.benchmarkAndPrint( 10, false, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for ( int d = 0; d < dims.length; ++d )
+					FFTMethods.complexToComplex( Views.interval( img, img ), d, true, false, SharedThreadPool.getExecutorService() );
+			}
+		} );
+	}
+
+	public static void main( final String[] args )
+	{
+		benchmark( "2D ArrayImg 1024x1024", new ArrayImgFactory< ComplexFloatType >(), 1024, 1024 );
+		benchmark( "2D PlanarImg 1024x1024", new PlanarImgFactory< ComplexFloatType >(), 1024, 1024 );
+		benchmark( "3D ArrayImg 256x256x128", new ArrayImgFactory< ComplexFloatType >(), 256, 256, 128 );
+		benchmark( "3D PlanarImg 256x256x128", new PlanarImgFactory< ComplexFloatType >(), 256, 256, 128 );
+		System.exit( 0 );
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.fft2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+public class NativeComplexFFTTest
+{
+	private static Img< ComplexFloatType > random( final ImgFactory< ComplexFloatType > factory, final long... dims )
+	{
+		final Img< ComplexFloatType > img = factory.create( dims, new ComplexFloatType() );
+		final Random random = new Random( 5 );
+		for ( final ComplexFloatType t : img )
+			t.set( random.nextFloat(), random.nextFloat() );
+		return img;
+	}
+
+	private static void assertImagesEqual( final Img< ComplexFloatType > expected, final Img< ComplexFloatType > actual )
+	{
+		final Cursor< ComplexFloatType > e = expected.cursor();
+		final Cursor< ComplexFloatType > a = actual.cursor();
+		while ( e.hasNext() )
+		{
+			e.fwd();
+			a.fwd();
+			assertEquals( e.get().getRealFloat(), a.get().getRealFloat(), 1e-3 );
+			assertEquals( e.get().getImaginaryFloat(), a.get().getImaginaryFloat(), 1e-3 );
+		}
+	}
+
+	/**
+	 * Compare with the generic line-by-line path, which is used for views.
+	 */
+	private static void compare( final ImgFactory< ComplexFloatType > factory )
+	{
+		final long[] dims = new long[] { 20, 18, 7 };
+		for ( int d = 0; d < dims.length; ++d )
+		{
+			for ( final boolean forward : new boolean[] { true, false } )
+			{
+				final Img< ComplexFloatType > expected = random( factory, dims );
+				final Img< ComplexFloatType > actual = random( factory, dims );
+				FFTMethods.complexToComplex( Views.interval( expected, expected ), d, forward, !forward, SharedThreadPool.getExecutorService() );
+				FFTMethods.complexToComplex( actual, d, forward, !forward, SharedThreadPool.getExecutorService() );
+				assertImagesEqual( expected, actual );
+			}
+		}
+	}
+
+	@Test
+	public void testArrayImg()
+	{
+		compare( new ArrayImgFactory< ComplexFloatType >() );
+	}
+
+	@Test
+	public void testPlanarImg()
+	{
+		compare( new PlanarImgFactory< ComplexFloatType >() );
+	}
+
+	@Test
+	public void testUnsupported()
+	{
+		final Img< ComplexFloatType > img = random( new CellImgFactory< ComplexFloatType >( 4 ), 8, 8 );
+		assertFalse( NativeComplexFFT.complexToComplex( img, 0, true, false, SharedThreadPool.getExecutorService() ) );
+		assertFalse( NativeComplexFFT.complexToComplex( Views.interval( img, img ), 0, true, false, SharedThreadPool.getExecutorService() ) );
+		assertTrue( NativeComplexFFT.complexToComplex( random( new ArrayImgFactory< ComplexFloatType >(), 8 ), 0, true, false, SharedThreadPool.getExecutorService() ) );
+	}
+}
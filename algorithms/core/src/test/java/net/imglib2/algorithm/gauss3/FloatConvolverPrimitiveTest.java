@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.gauss3;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+public class FloatConvolverPrimitiveTest
+{
+	private static final long[] dims = new long[] { 31, 22, 13 };
+
+	private static final double[] sigma = new double[] { 1.5, 2, 2.5 };
+
+	private static Img< UnsignedShortType > source( final ImgFactory< UnsignedShortType > factory )
+	{
+		final Img< UnsignedShortType > img = factory.create( dims, new UnsignedShortType() );
+		final Random random = new Random( 1 );
+		for ( final UnsignedShortType t : img )
+			t.set( random.nextInt( 65536 ) );
+		return img;
+	}
+
+	/**
+	 * Convolve with the generic {@link FloatConvolverRealTypeBuffered} and
+	 * with the primitive fast path and compare the results.
+	 */
+	private static void compare( final ImgFactory< UnsignedShortType > sourceFactory, final ImgFactory< FloatType > targetFactory )
+	{
+		final double[][] halfkernels = Gauss3.halfkernels( sigma );
+		final Img< UnsignedShortType > source = source( sourceFactory );
+
+		final Img< FloatType > expected = new ListImgFactory< FloatType >().create( dims, new FloatType() );
+		SeparableSymmetricConvolution.convolve( halfkernels, Views.extendMirrorSingle( source ), expected,
+				FloatConvolverRealTypeBuffered.< UnsignedShortType, FloatType >factory(),
+				FloatConvolverRealTypeBuffered.< FloatType, FloatType >factory(),
+				FloatConvolverRealTypeBuffered.< FloatType, FloatType >factory(),
+				FloatConvolverRealTypeBuffered.< UnsignedShortType, FloatType >factory(),
+				new ListImgFactory< FloatType >(), new FloatType(), SharedThreadPool.getExecutorService() );
+
+		final Img< FloatType > actual = targetFactory.create( dims, new FloatType() );
+		SeparableSymmetricConvolution.convolve( halfkernels, Views.extendMirrorSingle( source ), actual,
+				FloatConvolverPrimitive.< UnsignedShortType, FloatType >factory(),
+				FloatConvolverPrimitive.< FloatType, FloatType >factory(),
+				FloatConvolverPrimitive.< FloatType, FloatType >factory(),
+				FloatConvolverPrimitive.< UnsignedShortType, FloatType >factory(),
+				new CellImgFactory< FloatType >( 7 ), new FloatType(), SharedThreadPool.getExecutorService() );
+
+		final Cursor< FloatType > c = expected.localizingCursor();
+		final RandomAccess< FloatType > a = actual.randomAccess();
+		while ( c.hasNext() )
+		{
+			final float e = c.next().get();
+			a.setPosition( c );
+			assertEquals( e, a.get().get(), Math.abs( e ) * 1e-5 );
+		}
+	}
+
+	@Test
+	public void testArrayImg()
+	{
+		compare( new ArrayImgFactory< UnsignedShortType >(), new ArrayImgFactory< FloatType >() );
+	}
+
+	@Test
+	public void testPlanarImg()
+	{
+		compare( new PlanarImgFactory< UnsignedShortType >(), new PlanarImgFactory< FloatType >() );
+	}
+
+	@Test
+	public void testCellImg()
+	{
+		compare( new CellImgFactory< UnsignedShortType >( 5 ), new CellImgFactory< FloatType >( 6 ) );
+	}
+
+	@Test
+	public void testGenericTarget()
+	{
+		compare( new ArrayImgFactory< UnsignedShortType >(), new ListImgFactory< FloatType >() );
+	}
+}
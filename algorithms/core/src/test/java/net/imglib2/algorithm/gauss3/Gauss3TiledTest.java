@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.gauss3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalDimensions;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+public class Gauss3TiledTest
+{
+	private static Img< FloatType > randomImg( final long... dims )
+	{
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( dims, new FloatType() );
+		final Random random = new Random( 42 );
+		for ( final FloatType t : img )
+			t.set( random.nextFloat() );
+		return img;
+	}
+
+	private static void assertImagesEqual( final Img< FloatType > expected, final Img< FloatType > actual )
+	{
+		final Cursor< FloatType > e = expected.cursor();
+		final Cursor< FloatType > a = actual.cursor();
+		while ( e.hasNext() )
+			assertEquals( e.next().get(), a.next().get(), 1e-5 );
+	}
+
+	@Test
+	public void testTiledEqualsUntiled() throws IncompatibleTypeException
+	{
+		final double[] sigma = new double[] { 2, 1.5, 3 };
+		final Img< FloatType > source = randomImg( 37, 29, 23 );
+		final Img< FloatType > expected = source.factory().create( source, new FloatType() );
+		final Img< FloatType > tiled = source.factory().create( source, new FloatType() );
+
+		Gauss3.gauss( sigma, Views.extendMirrorSingle( source ), expected );
+		Gauss3.gaussTiled( sigma, Views.extendMirrorSingle( source ), tiled, new int[] { 10, 7, 16 }, SharedThreadPool.getExecutorService() );
+		assertImagesEqual( expected, tiled );
+	}
+
+	@Test
+	public void testTiled2D() throws IncompatibleTypeException
+	{
+		final double[] sigma = new double[] { 1, 4 };
+		final Img< FloatType > source = randomImg( 50, 41 );
+		final Img< FloatType > expected = source.factory().create( source, new FloatType() );
+		final Img< FloatType > tiled = source.factory().create( source, new FloatType() );
+
+		Gauss3.gauss( sigma, Views.extendMirrorSingle( source ), expected );
+		Gauss3.gaussTiled( sigma, Views.extendMirrorSingle( source ), tiled, new int[] { 8, 13 }, SharedThreadPool.getExecutorService() );
+		assertImagesEqual( expected, tiled );
+	}
+
+	@Test
+	public void testDefaultTileSize()
+	{
+		final double[][] halfkernels = Gauss3.halfkernels( new double[] { 2, 2, 2 } );
+		final int[] tile = SeparableSymmetricConvolution.defaultTileSize( new FinalDimensions( 1024, 1024, 512 ), halfkernels );
+		long size = 1;
+		for ( int d = 0; d < 3; ++d )
+		{
+			assertTrue( tile[ d ] > 0 );
+			size *= tile[ d ] + 2 * halfkernels[ d ].length - 2;
+		}
+		assertTrue( size <= 1 << 18 );
+
+		final int[] small = SeparableSymmetricConvolution.defaultTileSize( new FinalDimensions( 10, 20 ), Gauss3.halfkernels( new double[] { 1, 1 } ) );
+		assertEquals( 10, small[ 0 ] );
+		assertEquals( 20, small[ 1 ] );
+	}
+
+	@Test
+	public void testTaskFailureIsPropagated() throws IncompatibleTypeException
+	{
+		// the first access is used to determine the source type, all accesses
+		// made by the convolution tasks fail
+		final RandomAccessible< FloatType > source = Views.extendMirrorSingle( randomImg( 50, 41 ) );
+		final AtomicInteger accesses = new AtomicInteger();
+		final RandomAccessible< FloatType > failing = new RandomAccessible< FloatType >()
+		{
+			@Override
+			public int numDimensions()
+			{
+				return 2;
+			}
+
+			@Override
+			public RandomAccess< FloatType > randomAccess()
+			{
+				if ( accesses.getAndIncrement() == 0 )
+					return source.randomAccess();
+				throw new IllegalStateException( "expected" );
+			}
+
+			@Override
+			public RandomAccess< FloatType > randomAccess( final Interval interval )
+			{
+				return randomAccess();
+			}
+		};
+		final Img< FloatType > target = randomImg( 50, 41 );
+		try
+		{
+			Gauss3.gaussTiled( new double[] { 1, 1 }, failing, target, new int[] { 8, 13 }, SharedThreadPool.getExecutorService() );
+			fail( "exception was not propagated" );
+		}
+		catch ( final RuntimeException e )
+		{
+			assertTrue( e.getCause() instanceof IllegalStateException );
+			assertEquals( "expected", e.getCause().getMessage() );
+		}
+	}
+}
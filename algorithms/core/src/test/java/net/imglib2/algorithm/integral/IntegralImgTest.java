@@ -0,0 +1,239 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.integral;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converter;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+public class IntegralImgTest
+{
+	final long[] dimensions = new long[] { 37, 21, 13 };
+
+	final Img< UnsignedByteType > img;
+
+	public IntegralImgTest()
+	{
+		img = new CellImgFactory< UnsignedByteType >( new int[] { 8, 5, 4 } ).create( dimensions, new UnsignedByteType() );
+		final Random random = new Random( 42 );
+		for ( final UnsignedByteType t : img )
+			t.set( random.nextInt( 256 ) );
+	}
+
+	/**
+	 * Compute the expected integral image naively in a flat array.
+	 */
+	private double[] naiveIntegral( final boolean squared )
+	{
+		final int n = dimensions.length;
+		final long[] size = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			size[ d ] = dimensions[ d ] + 1;
+		final double[] integral = new double[ ( int ) ( size[ 0 ] * size[ 1 ] * size[ 2 ] ) ];
+		final Cursor< UnsignedByteType > c = img.localizingCursor();
+		final long[] pos = new long[ n ];
+		while ( c.hasNext() )
+		{
+			final double v = c.next().getRealDouble();
+			c.localize( pos );
+			for ( long z = pos[ 2 ] + 1; z < size[ 2 ]; ++z )
+				for ( long y = pos[ 1 ] + 1; y < size[ 1 ]; ++y )
+					for ( long x = pos[ 0 ] + 1; x < size[ 0 ]; ++x )
+						integral[ ( int ) IntervalIndexer.positionToIndex( new long[] { x, y, z }, size ) ] += squared ? v * v : v;
+		}
+		return integral;
+	}
+
+	private void assertIntegral( final double[] expected, final RandomAccessibleInterval< ? extends RealType< ? > > integral )
+	{
+		int i = 0;
+		for ( final RealType< ? > t : Views.flatIterable( integral ) )
+			assertEquals( expected[ i++ ], t.getRealDouble(), 1e-6 );
+		assertEquals( expected.length, i );
+	}
+
+	@Test
+	public void testIntegralImgLong()
+	{
+		final double[] expected = naiveIntegral( false );
+		for ( final int numThreads : new int[] { 1, 4 } )
+		{
+			final IntegralImgLong< UnsignedByteType > ii = new IntegralImgLong< UnsignedByteType >( img, new LongType(), new Converter< UnsignedByteType, LongType >()
+			{
+				@Override
+				public void convert( final UnsignedByteType input, final LongType output )
+				{
+					output.set( input.get() );
+				}
+			} );
+			ii.setNumThreads( numThreads );
+			ii.process();
+			assertIntegral( expected, ii.getResult() );
+		}
+	}
+
+	@Test
+	public void testIntegralImgDouble()
+	{
+		final double[] expected = naiveIntegral( false );
+		final IntegralImgDouble< UnsignedByteType > ii = new IntegralImgDouble< UnsignedByteType >( img, new DoubleType(), new Converter< UnsignedByteType, DoubleType >()
+		{
+			@Override
+			public void convert( final UnsignedByteType input, final DoubleType output )
+			{
+				output.set( input.getRealDouble() );
+			}
+		} );
+		ii.process();
+		assertIntegral( expected, ii.getResult() );
+
+		final SquaredIntegralImgDouble< UnsignedByteType > sq = new SquaredIntegralImgDouble< UnsignedByteType >( img );
+		sq.process();
+		assertIntegral( naiveIntegral( true ), sq.getResult() );
+	}
+
+	@Test
+	public void testGenericIntegralImg()
+	{
+		final IntegralImg< UnsignedByteType, DoubleType > ii = new IntegralImg< UnsignedByteType, DoubleType >( img, new DoubleType(), new Converter< UnsignedByteType, DoubleType >()
+		{
+			@Override
+			public void convert( final UnsignedByteType input, final DoubleType output )
+			{
+				output.set( input.getRealDouble() );
+			}
+		} );
+		ii.setNumThreads( 3 );
+		ii.process();
+		assertIntegral( naiveIntegral( false ), ii.getResult() );
+	}
+
+	@Test
+	public void testLazyIntegralImg()
+	{
+		assertIntegral( naiveIntegral( false ), LazyIntegralImg.create( img, false, 1000 ) );
+		assertIntegral( naiveIntegral( true ), LazyIntegralImg.create( img, true, 1000, new int[] { 16, 16, 16 } ) );
+
+		// access a cell in the middle first, with a shifted input
+		final RandomAccess< DoubleType > ra = LazyIntegralImg.create( Views.translate( img, 5, -3, 2 ), false, 1000 ).randomAccess();
+		final double[] expected = naiveIntegral( false );
+		final long[] pos = new long[] { 20, 12, 9 };
+		ra.setPosition( pos );
+		assertEquals( expected[ ( int ) IntervalIndexer.positionToIndex( pos, new long[] { 38, 22, 14 } ) ], ra.get().get(), 0 );
+	}
+
+	@Test
+	public void testLazyIntegralImgSingleCell()
+	{
+		// only one cell is kept, predecessors are taken from the stored faces
+		final RandomAccessibleInterval< DoubleType > integral = LazyIntegralImg.create( img, false, 1, new int[] { 6, 5, 4 } );
+		final double[] expected = naiveIntegral( false );
+		final long[] size = new long[ 3 ];
+		integral.dimensions( size );
+		final RandomAccess< DoubleType > ra = integral.randomAccess();
+		final long[] pos = new long[ 3 ];
+		for ( int i = expected.length - 1; i >= 0; --i )
+		{
+			IntervalIndexer.indexToPosition( i, size, pos );
+			ra.setPosition( pos );
+			assertEquals( expected[ i ], ra.get().get(), 1e-6 );
+		}
+		assertIntegral( expected, integral );
+	}
+
+	@Test
+	public void testLazyIntegralImgManyCells()
+	{
+		// 2000 cells along x, accessing the last one computes all of them
+		final Img< UnsignedByteType > ones = new ArrayImgFactory< UnsignedByteType >().create( new long[] { 3999, 3 }, new UnsignedByteType() );
+		for ( final UnsignedByteType t : ones )
+			t.set( 1 );
+		final RandomAccess< DoubleType > ra = LazyIntegralImg.create( ones, false, 16, new int[] { 2, 4 } ).randomAccess();
+		ra.setPosition( new long[] { 3999, 3 } );
+		assertEquals( 3999 * 3, ra.get().get(), 0 );
+		ra.setPosition( new long[] { 2001, 2 } );
+		assertEquals( 2001 * 2, ra.get().get(), 0 );
+	}
+
+	@Test
+	public void testBoxSums()
+	{
+		final IntegralImgDouble< UnsignedByteType > ii = new IntegralImgDouble< UnsignedByteType >( img, new DoubleType(), new Converter< UnsignedByteType, DoubleType >()
+		{
+			@Override
+			public void convert( final UnsignedByteType input, final DoubleType output )
+			{
+				output.set( input.getRealDouble() );
+			}
+		} );
+		ii.process();
+		final SquaredIntegralImgDouble< UnsignedByteType > sq = new SquaredIntegralImgDouble< UnsignedByteType >( img );
+		sq.process();
+
+		final long[] min = new long[] { 3, 4, 5 };
+		final long[] max = new long[] { 20, 7, 5 };
+		double sum = 0;
+		double sumSq = 0;
+		int count = 0;
+		for ( final UnsignedByteType t : Views.iterable( Views.interval( img, min, max ) ) )
+		{
+			sum += t.getRealDouble();
+			sumSq += t.getRealDouble() * t.getRealDouble();
+			++count;
+		}
+		final double mean = sum / count;
+		final RandomAccess< DoubleType > ra = ii.getResult().randomAccess();
+		final RandomAccess< DoubleType > raSq = sq.getResult().randomAccess();
+		assertEquals( sum, IntegralSum.sum( ra, min, max ), 1e-6 );
+		assertEquals( mean, IntegralSum.mean( ra, min, max ), 1e-6 );
+		assertEquals( sumSq / count - mean * mean, IntegralSum.variance( ra, raSq, min, max ), 1e-6 );
+	}
+}
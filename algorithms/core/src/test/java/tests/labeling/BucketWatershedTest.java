@@ -0,0 +1,207 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package tests.labeling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.algorithm.labeling.AllConnectedComponents;
+import net.imglib2.algorithm.labeling.BucketWatershed;
+import net.imglib2.algorithm.labeling.Watershed;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.labeling.Labeling;
+import net.imglib2.labeling.LabelingType;
+import net.imglib2.labeling.NativeImgLabeling;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+
+import org.junit.Test;
+
+/**
+ * Compare {@link BucketWatershed} with {@link Watershed}.
+ */
+public class BucketWatershedTest
+{
+	private static Img< IntType > randomImage( final long[] dimensions, final int maxValue, final long seed )
+	{
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		final Random random = new Random( seed );
+		for ( final IntType t : img )
+			t.set( random.nextInt( maxValue ) );
+		return img;
+	}
+
+	private static NativeImgLabeling< Integer, IntType > createLabeling( final long[] dimensions )
+	{
+		return new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+	}
+
+	private static NativeImgLabeling< Integer, IntType > randomSeeds( final long[] dimensions, final int numSeeds, final long seed )
+	{
+		final NativeImgLabeling< Integer, IntType > seeds = createLabeling( dimensions );
+		final Random random = new Random( seed );
+		final Cursor< LabelingType< Integer > > c = seeds.cursor();
+		while ( c.hasNext() )
+		{
+			final LabelingType< Integer > t = c.next();
+			if ( random.nextInt( 1000 ) < numSeeds )
+				t.setLabel( 1 + random.nextInt( numSeeds ) );
+		}
+		return seeds;
+	}
+
+	private static Labeling< Integer > watershed( final Img< IntType > img, final Labeling< Integer > seeds, final long[][] structuringElement )
+	{
+		final Watershed< IntType, Integer > watershed = new Watershed< IntType, Integer >();
+		watershed.setSeeds( seeds );
+		watershed.setIntensityImage( img );
+		watershed.setStructuringElement( structuringElement );
+		assertTrue( watershed.process() );
+		return watershed.getResult();
+	}
+
+	private static Labeling< Integer > bucketWatershed( final Img< IntType > img, final Labeling< Integer > seeds, final long[][] structuringElement, final int[] tileSize, final int overlap )
+	{
+		final BucketWatershed< IntType, Integer > watershed = new BucketWatershed< IntType, Integer >();
+		watershed.setSeeds( seeds );
+		watershed.setIntensityImage( img );
+		watershed.setStructuringElement( structuringElement );
+		watershed.setApproximateTiling( tileSize, overlap );
+		assertTrue( watershed.process() );
+		return watershed.getResult();
+	}
+
+	/**
+	 * @return number of pixels where the labelings differ.
+	 */
+	private static int countDifferences( final Labeling< Integer > expected, final Labeling< Integer > actual )
+	{
+		int differences = 0;
+		final Cursor< LabelingType< Integer > > ec = expected.cursor();
+		final Cursor< LabelingType< Integer > > ac = actual.cursor();
+		while ( ec.hasNext() )
+		{
+			final List< Integer > e = ec.next().getLabeling();
+			final List< Integer > a = ac.next().getLabeling();
+			if ( !e.equals( a ) )
+				++differences;
+		}
+		return differences;
+	}
+
+	@Test
+	public void testSameAsWatershed2D()
+	{
+		final long[] dimensions = new long[] { 80, 70 };
+		final Img< IntType > img = randomImage( dimensions, 20, 1 );
+		final Labeling< Integer > seeds = randomSeeds( dimensions, 5, 2 );
+		final long[][] se = AllConnectedComponents.getStructuringElement( 2 );
+		assertEquals( 0, countDifferences( watershed( img, seeds, se ), bucketWatershed( img, seeds, se, null, 0 ) ) );
+	}
+
+	@Test
+	public void testSameAsWatershed3DFourConnected()
+	{
+		final long[] dimensions = new long[] { 20, 25, 15 };
+		final Img< IntType > img = randomImage( dimensions, 1000, 3 );
+		final Labeling< Integer > seeds = randomSeeds( dimensions, 3, 4 );
+		final long[][] se = new long[][] { { -1, 0, 0 }, { 1, 0, 0 }, { 0, -1, 0 }, { 0, 1, 0 }, { 0, 0, -1 }, { 0, 0, 1 } };
+		assertEquals( 0, countDifferences( watershed( img, seeds, se ), bucketWatershed( img, seeds, se, null, 0 ) ) );
+	}
+
+	@Test
+	public void testSameAsWatershedWideRange()
+	{
+		final long[] dimensions = new long[] { 50, 40 };
+		final Img< IntType > img = randomImage( dimensions, Integer.MAX_VALUE, 5 );
+		final Labeling< Integer > seeds = randomSeeds( dimensions, 8, 6 );
+		final long[][] se = AllConnectedComponents.getStructuringElement( 2 );
+		assertEquals( 0, countDifferences( watershed( img, seeds, se ), bucketWatershed( img, seeds, se, null, 0 ) ) );
+	}
+
+	@Test
+	public void testFullLongRange()
+	{
+		final long[] dimensions = new long[] { 30, 20 };
+		final Img< LongType > img = new ArrayImgFactory< LongType >().create( dimensions, new LongType() );
+		final Random random = new Random( 9 );
+		for ( final LongType t : img )
+			t.set( random.nextLong() );
+		img.firstElement().set( Long.MIN_VALUE );
+		final Cursor< LongType > c = img.cursor();
+		c.jumpFwd( 10 );
+		c.get().set( Long.MAX_VALUE );
+		final Labeling< Integer > seeds = randomSeeds( dimensions, 6, 10 );
+		final long[][] se = AllConnectedComponents.getStructuringElement( 2 );
+
+		final Watershed< LongType, Integer > watershed = new Watershed< LongType, Integer >();
+		watershed.setSeeds( seeds );
+		watershed.setIntensityImage( img );
+		watershed.setStructuringElement( se );
+		assertTrue( watershed.process() );
+
+		final BucketWatershed< LongType, Integer > bucketWatershed = new BucketWatershed< LongType, Integer >();
+		bucketWatershed.setSeeds( seeds );
+		bucketWatershed.setIntensityImage( img );
+		bucketWatershed.setStructuringElement( se );
+		assertTrue( bucketWatershed.process() );
+
+		assertEquals( 0, countDifferences( watershed.getResult(), bucketWatershed.getResult() ) );
+	}
+
+	@Test
+	public void testTiled()
+	{
+		final long[] dimensions = new long[] { 90, 75 };
+		final Img< IntType > img = randomImage( dimensions, 50, 7 );
+		final Labeling< Integer > seeds = randomSeeds( dimensions, 4, 8 );
+		final long[][] se = AllConnectedComponents.getStructuringElement( 2 );
+		final Labeling< Integer > expected = bucketWatershed( img, seeds, se, null, 0 );
+
+		// tiles extended to the whole image give the sequential result
+		assertEquals( 0, countDifferences( expected, bucketWatershed( img, seeds, se, new int[] { 20, 30 }, 100 ) ) );
+
+		// with small overlap, every pixel is still labeled
+		final Labeling< Integer > tiled = bucketWatershed( img, seeds, se, new int[] { 16, 16 }, 4 );
+		for ( final LabelingType< Integer > t : tiled )
+			assertFalse( t.getLabeling().isEmpty() );
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package tests.labeling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.Cursor;
+import net.imglib2.algorithm.labeling.AllConnectedComponents;
+import net.imglib2.algorithm.labeling.ParallelConnectedComponents;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.labeling.LabelingType;
+import net.imglib2.labeling.NativeImgLabeling;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Compare {@link ParallelConnectedComponents} with
+ * {@link AllConnectedComponents}.
+ */
+public class ParallelConnectedComponentsTest
+{
+	private static Img< BitType > randomMask( final long[] dimensions, final double density, final long seed )
+	{
+		final Img< BitType > mask = new ArrayImgFactory< BitType >().create( dimensions, new BitType() );
+		final Random random = new Random( seed );
+		for ( final BitType t : mask )
+			t.set( random.nextDouble() < density );
+		return mask;
+	}
+
+	private static NativeImgLabeling< Integer, IntType > reference( final Img< BitType > mask, final long[][] structuringElement )
+	{
+		final NativeImgLabeling< Integer, IntType > labeling = new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( mask, new IntType() ) );
+		AllConnectedComponents.labelAllConnectedComponents( labeling, mask, AllConnectedComponents.getIntegerNames( 1 ), structuringElement );
+		return labeling;
+	}
+
+	/**
+	 * Check that labels and the reference labeling describe the same
+	 * partition, and that labels are 1..numComponents.
+	 */
+	private static void assertSamePartition( final NativeImgLabeling< Integer, IntType > expected, final Img< ? extends IntegerType< ? > > labels, final long numComponents )
+	{
+		final HashMap< Integer, Long > expectedToActual = new HashMap< Integer, Long >();
+		final HashMap< Long, Integer > actualToExpected = new HashMap< Long, Integer >();
+		final Cursor< LabelingType< Integer > > ec = expected.cursor();
+		final Cursor< ? extends IntegerType< ? > > ac = Views.flatIterable( labels ).cursor();
+		while ( ec.hasNext() )
+		{
+			final List< Integer > e = ec.next().getLabeling();
+			final long a = ac.next().getIntegerLong();
+			if ( e.isEmpty() )
+				assertEquals( 0, a );
+			else
+			{
+				assertTrue( a >= 1 && a <= numComponents );
+				final Integer el = e.get( 0 );
+				if ( expectedToActual.containsKey( el ) )
+					assertEquals( expectedToActual.get( el ).longValue(), a );
+				else
+					expectedToActual.put( el, a );
+				if ( actualToExpected.containsKey( a ) )
+					assertEquals( actualToExpected.get( a ), el );
+				else
+					actualToExpected.put( a, el );
+			}
+		}
+		assertEquals( numComponents, actualToExpected.size() );
+	}
+
+	@Test
+	public void test2DSmallTiles()
+	{
+		final long[] dimensions = new long[] { 97, 83 };
+		final Img< BitType > mask = randomMask( dimensions, 0.45, 1 );
+		final long[][] se = AllConnectedComponents.getStructuringElement( 2 );
+		final Img< IntType > labels = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			final long numComponents = ParallelConnectedComponents.label( mask, labels, se, new int[] { 7, 11 }, service );
+			assertSamePartition( reference( mask, se ), labels, numComponents );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void test2DFourConnected()
+	{
+		final long[] dimensions = new long[] { 64, 64 };
+		final Img< BitType > mask = randomMask( dimensions, 0.55, 2 );
+		final long[][] se = new long[][] { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 } };
+		final Img< IntType > labels = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		final long numComponents = ParallelConnectedComponents.label( mask, labels, se, new int[] { 16, 5 }, SharedThreadPool.getExecutorService() );
+		assertSamePartition( reference( mask, se ), labels, numComponents );
+	}
+
+	@Test
+	public void test3DCellImg()
+	{
+		final long[] dimensions = new long[] { 40, 33, 21 };
+		final Img< BitType > mask = randomMask( dimensions, 0.2, 3 );
+		final long[][] se = AllConnectedComponents.getStructuringElement( 3 );
+		final Img< LongType > labels = new CellImgFactory< LongType >( 10 ).create( dimensions, new LongType() );
+		final long numComponents = ParallelConnectedComponents.label( mask, labels, se, new int[] { 10, 10, 10 }, SharedThreadPool.getExecutorService() );
+		assertSamePartition( reference( mask, se ), labels, numComponents );
+
+		// default tiles must find the same number of components
+		final Img< LongType > singleTile = new ArrayImgFactory< LongType >().create( dimensions, new LongType() );
+		assertEquals( numComponents, ParallelConnectedComponents.label( mask, singleTile ) );
+	}
+
+	@Test
+	public void testNativeImgLabeling()
+	{
+		final long[] dimensions = new long[] { 50, 60 };
+		final Img< BitType > mask = randomMask( dimensions, 0.4, 4 );
+		final long[][] se = AllConnectedComponents.getStructuringElement( 2 );
+		final NativeImgLabeling< Integer, IntType > labeling = new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+
+		// use the mapping before, so that indices and labels differ
+		labeling.getMapping().intern( new Integer[] { 1000 } );
+
+		final long numComponents = ParallelConnectedComponents.labelAllConnectedComponents( labeling, mask, se, new int[] { 8, 8 }, SharedThreadPool.getExecutorService() );
+		final NativeImgLabeling< Integer, IntType > expected = reference( mask, se );
+		assertEquals( expected.getLabels().size(), numComponents );
+
+		final Cursor< LabelingType< Integer > > ec = expected.cursor();
+		final Cursor< LabelingType< Integer > > ac = labeling.cursor();
+		final HashMap< Integer, Integer > map = new HashMap< Integer, Integer >();
+		while ( ec.hasNext() )
+		{
+			final List< Integer > e = ec.next().getLabeling();
+			final List< Integer > a = ac.next().getLabeling();
+			assertEquals( e.size(), a.size() );
+			if ( !e.isEmpty() )
+			{
+				assertTrue( a.get( 0 ) >= 1 && a.get( 0 ) <= numComponents );
+				if ( map.containsKey( e.get( 0 ) ) )
+					assertEquals( map.get( e.get( 0 ) ), a.get( 0 ) );
+				else
+					map.put( e.get( 0 ), a.get( 0 ) );
+			}
+		}
+	}
+}
@@ -36,6 +36,7 @@ import net.imglib2.algorithm.OutputAlgorithm;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.outofbounds.OutOfBoundsConstantValueFactory;
 import net.imglib2.outofbounds.OutOfBoundsFactory;
 import net.imglib2.outofbounds.OutOfBoundsMirrorExpWindowingFactory;
@@ -385,7 +386,7 @@ public class FourierTransform<T extends RealType<T>, S extends ComplexType<S>> i
 	public long getProcessingTime() { return processingTime; }
 	
 	@Override
-	public void setNumThreads() { this.numThreads = Runtime.getRuntime().availableProcessors(); }
+	public void setNumThreads() { this.numThreads = SharedThreadPool.getParallelism(); }
 
 	@Override
 	public void setNumThreads( final int numThreads ) { this.numThreads = numThreads; }
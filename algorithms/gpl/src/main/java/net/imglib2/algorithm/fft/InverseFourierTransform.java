@@ -34,6 +34,7 @@ import net.imglib2.algorithm.fft.FourierTransform.Rearrangement;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.type.numeric.ComplexType;
 import net.imglib2.type.numeric.RealType;
 
@@ -199,7 +200,7 @@ public class InverseFourierTransform<T extends RealType<T>, S extends ComplexTyp
 	public long getProcessingTime() { return processingTime; }
 	
 	@Override
-	public void setNumThreads() { this.numThreads = Runtime.getRuntime().availableProcessors(); }
+	public void setNumThreads() { this.numThreads = SharedThreadPool.getParallelism(); }
 
 	@Override
 	public void setNumThreads( final int numThreads ) { this.numThreads = numThreads; }
@@ -0,0 +1,274 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.fft2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.Dimensions;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.view.Views;
+
+/**
+ * Computes the convolution of an image with a kernel block by block, using
+ * the overlap-save method. The output is divided into blocks; for every block
+ * the input is read with a border of the kernel size, transformed, multiplied
+ * with the (cached) kernel spectrum, transformed back, and only the valid
+ * center is written to the output. In contrast to {@link FFTConvolution}, the
+ * complex images only have the size of a padded block, so images larger than
+ * memory (e.g. {@link net.imglib2.img.cell.CachedCellImg CachedCellImgs}) can
+ * be convolved, and small kernels are not padded to the size of the whole
+ * image.
+ * 
+ * Blocks are processed in parallel, each block is computed in a single
+ * thread. Kernel spectra are shared between blocks of equal size by a
+ * {@link FFTConvolutionCache}. If the input is a cell image, blocks are by
+ * default aligned to its cells, so that every block touches as few cells as
+ * possible.
+ * 
+ * @param <R>
+ *            image and kernel type
+ */
+public class BlockedFFTConvolution< R extends RealType< R > >
+{
+	private final RandomAccessible< R > img;
+
+	private final Interval imgInterval;
+
+	private final RandomAccessibleInterval< R > kernel;
+
+	private final RandomAccessibleInterval< R > output;
+
+	private final int[] blockSize;
+
+	private final FFTConvolutionCache< R > cache;
+
+	private final ExecutorService service;
+
+	/**
+	 * Compute a blocked Fourier space based convolution. The image will be
+	 * extended by mirroring with single boundary, the kernel will be
+	 * zero-padded. The block size is chosen by
+	 * {@link #defaultBlockSize(RandomAccessibleInterval, Dimensions)}.
+	 * 
+	 * Computation is multi-threaded using the {@link SharedThreadPool}.
+	 * 
+	 * @param img
+	 *            - the image
+	 * @param kernel
+	 *            - the convolution kernel
+	 * @param output
+	 *            - the result of the convolution
+	 */
+	public BlockedFFTConvolution( final RandomAccessibleInterval< R > img, final RandomAccessibleInterval< R > kernel, final RandomAccessibleInterval< R > output )
+	{
+		this( Views.extendMirrorSingle( img ), img, kernel, output, defaultBlockSize( img, kernel ), new ArrayImgFactory< ComplexFloatType >(), null );
+	}
+
+	/**
+	 * Compute a blocked Fourier space based convolution. The input needs to be
+	 * extended or infinite already, the kernel will be zero-padded. In-place
+	 * operation (img==output) is not supported.
+	 * 
+	 * @param img
+	 *            - the input
+	 * @param imgInterval
+	 *            - the input interval (i.e. the area to be convolved)
+	 * @param kernel
+	 *            - the kernel
+	 * @param output
+	 *            - the output data+interval
+	 * @param blockSize
+	 *            - the size of the output blocks
+	 * @param factory
+	 *            - the {@link ImgFactory} to create the fourier transforms of
+	 *            blocks
+	 * @param service
+	 *            - service providing threads for multi-threading, or null to
+	 *            use the {@link SharedThreadPool}.
+	 */
+	public BlockedFFTConvolution( final RandomAccessible< R > img, final Interval imgInterval, final RandomAccessibleInterval< R > kernel, final RandomAccessibleInterval< R > output, final int[] blockSize, final ImgFactory< ComplexFloatType > factory, final ExecutorService service )
+	{
+		this.img = img;
+		this.imgInterval = imgInterval;
+		this.kernel = kernel;
+		this.output = output;
+		this.blockSize = blockSize.clone();
+		this.service = service;
+
+		// blocks in the interior have blockSize, blocks at the upper border may
+		// be smaller in each dimension
+		final int numBlockSizes = 1 << imgInterval.numDimensions();
+		cache = new FFTConvolutionCache< R >( numBlockSizes, factory, new CallingThreadExecutorService() );
+	}
+
+	/**
+	 * Choose a block size that is at least four times the kernel size (and at
+	 * least 64) in every dimension. If img is a cell image, the block size is
+	 * rounded up to a multiple of the cell size.
+	 * 
+	 * @param img
+	 *            - the image
+	 * @param kernel
+	 *            - the kernel dimensions
+	 * @return the block size.
+	 */
+	public static int[] defaultBlockSize( final RandomAccessibleInterval< ? > img, final Dimensions kernel )
+	{
+		final int n = img.numDimensions();
+		final int[] cellDims = new int[ n ];
+		if ( img instanceof AbstractCellImg )
+			( ( AbstractCellImg< ?, ?, ?, ? > ) img ).getCells().cellDimensions( cellDims );
+		else
+			for ( int d = 0; d < n; ++d )
+				cellDims[ d ] = 1;
+
+		final int[] blockSize = new int[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			final long target = Math.max( 4 * kernel.dimension( d ), 64 );
+			final long size = ( ( target + cellDims[ d ] - 1 ) / cellDims[ d ] ) * cellDims[ d ];
+			blockSize[ d ] = ( int ) Math.min( size, img.dimension( d ) );
+		}
+		return blockSize;
+	}
+
+	public void setComputeComplexConjugate( final boolean complexConjugate )
+	{
+		cache.setComputeComplexConjugate( complexConjugate );
+	}
+
+	public boolean getComplexConjugate()
+	{
+		return cache.getComplexConjugate();
+	}
+
+	public int[] getBlockSize()
+	{
+		return blockSize.clone();
+	}
+
+	public void convolve()
+	{
+		final int n = imgInterval.numDimensions();
+		final long[] numBlocks = new long[ n ];
+		long numBlocksTotal = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			numBlocks[ d ] = ( imgInterval.dimension( d ) - 1 ) / blockSize[ d ] + 1;
+			numBlocksTotal *= numBlocks[ d ];
+		}
+
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		final long[] blockPosition = new long[ n ];
+		for ( long i = 0; i < numBlocksTotal; ++i )
+		{
+			IntervalIndexer.indexToPosition( i, numBlocks, blockPosition );
+			final long[] imgMin = new long[ n ];
+			final long[] imgMax = new long[ n ];
+			final long[] outMin = new long[ n ];
+			final long[] outMax = new long[ n ];
+			for ( int d = 0; d < n; ++d )
+			{
+				final long offset = blockPosition[ d ] * blockSize[ d ];
+				final long size = Math.min( blockSize[ d ], imgInterval.dimension( d ) - offset );
+				imgMin[ d ] = imgInterval.min( d ) + offset;
+				imgMax[ d ] = imgMin[ d ] + size - 1;
+				outMin[ d ] = output.min( d ) + offset;
+				outMax[ d ] = outMin[ d ] + size - 1;
+			}
+			final Interval blockInterval = new FinalInterval( imgMin, imgMax );
+			final RandomAccessibleInterval< R > blockOutput = Views.interval( output, outMin, outMax );
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					cache.convolve( img, blockInterval, kernel, blockOutput );
+				}
+			} );
+		}
+
+		SharedThreadPool.runAll( tasks, service == null ? SharedThreadPool.getExecutorService() : service );
+	}
+
+	/**
+	 * Runs all tasks in the calling thread. Used for the FFTs within a block,
+	 * which is already running as a task of the block-level service.
+	 */
+	private static final class CallingThreadExecutorService extends AbstractExecutorService
+	{
+		@Override
+		public void execute( final Runnable command )
+		{
+			command.run();
+		}
+
+		@Override
+		public void shutdown()
+		{}
+
+		@Override
+		public List< Runnable > shutdownNow()
+		{
+			return Collections.emptyList();
+		}
+
+		@Override
+		public boolean isShutdown()
+		{
+			return false;
+		}
+
+		@Override
+		public boolean isTerminated()
+		{
+			return false;
+		}
+
+		@Override
+		public boolean awaitTermination( final long timeout, final TimeUnit unit )
+		{
+			return true;
+		}
+	}
+}
@@ -27,7 +27,6 @@
 package net.imglib2.algorithm.fft2;
 
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import net.imglib2.Cursor;
 import net.imglib2.FinalDimensions;
@@ -40,6 +39,7 @@ import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.complex.ComplexFloatType;
 import net.imglib2.util.Util;
@@ -75,6 +75,10 @@ import net.imglib2.view.Views;
  * influenced by whether the computation is performed in-place or not, just the
  * FFT of the kernel is kept.
  * 
+ * To convolve many images of the same size with a few kernels, use
+ * {@link FFTConvolutionCache}, which caches the kernel FFTs and reuses the
+ * complex buffers.
+ * 
  * @author Stephan Preibisch
  * @author Jonathan Hale
  */
@@ -106,8 +110,7 @@ public class FFTConvolution< R extends RealType< R > >
 	 * possible, otherwise an {@link ArrayImgFactory} or {@link CellImgFactory}
 	 * depending on the size.
 	 * 
-	 * ExecutorService will be created on {@link #convolve()} with threads equal
-	 * to number of processors equal to the runtime.
+	 * Computation is multi-threaded using the {@link SharedThreadPool}.
 	 * 
 	 * @param img
 	 *            - the image
@@ -146,8 +149,7 @@ public class FFTConvolution< R extends RealType< R > >
 	 * by the 'img' if possible, otherwise an {@link ArrayImgFactory} or
 	 * {@link CellImgFactory} depending on the size.
 	 * 
-	 * ExecutorService will be created on {@link #convolve()} with threads equal
-	 * to number of processors equal to the runtime.
+	 * Computation is multi-threaded using the {@link SharedThreadPool}.
 	 * 
 	 * @param img
 	 *            - the image
@@ -187,8 +189,7 @@ public class FFTConvolution< R extends RealType< R > >
 	 * by the convolved result). The image will be extended by mirroring with
 	 * single boundary, the kernel will be zero-padded.
 	 * 
-	 * ExecutorService will be created on {@link #convolve()} with threads equal
-	 * to number of processors equal to the runtime.
+	 * Computation is multi-threaded using the {@link SharedThreadPool}.
 	 * 
 	 * @param img
 	 *            - the image
@@ -225,8 +226,7 @@ public class FFTConvolution< R extends RealType< R > >
 	 * Compute a Fourier space based convolution The image will be extended by
 	 * mirroring with single boundary, the kernel will be zero-padded.
 	 * 
-	 * ExecutorService will be created on {@link #convolve()} with threads equal
-	 * to number of processors equal to the runtime.
+	 * Computation is multi-threaded using the {@link SharedThreadPool}.
 	 * 
 	 * @param img
 	 *            - the image
@@ -273,8 +273,7 @@ public class FFTConvolution< R extends RealType< R > >
 	 * Interval size of img and kernel: size(img) + 2*(size(kernel)-1) + pad to
 	 * fft compatible size
 	 * 
-	 * ExecutorService will be created on {@link #convolve()} with threads equal
-	 * to number of processors equal to the runtime.
+	 * Computation is multi-threaded using the {@link SharedThreadPool}.
 	 *  
 	 * @param img
 	 *            - the input
@@ -329,8 +328,7 @@ public class FFTConvolution< R extends RealType< R > >
 	 * Interval size of img and kernel: size(img) + 2*(size(kernel)-1) + pad to
 	 * fft compatible size
 	 * 
-	 * ExecutorService will be created on {@link #convolve()} with threads equal
-	 * to number of processors equal to the runtime.
+	 * Computation is multi-threaded using the {@link SharedThreadPool}.
 	 *  
 	 * @param img
 	 *            - the input
@@ -468,12 +466,7 @@ public class FFTConvolution< R extends RealType< R > >
 
 	public void convolve()
 	{
-		ExecutorService s = service;
-		if (service == null) {
-			// create an ExecutorService
-			// FIXME: Better way to define number of threads?
-			s = Executors.newFixedThreadPool( Runtime.getRuntime( ).availableProcessors());
-		}
+		final ExecutorService s = service == null ? SharedThreadPool.getExecutorService() : service;
 		final int numDimensions = imgInterval.numDimensions();
 
 		// the image has to be extended at least by kernelDimensions/2-1 in each
@@ -542,11 +535,6 @@ public class FFTConvolution< R extends RealType< R > >
 
 		// inverse FFT in place
 		FFT.complexToRealUnpad( fftconvolved, output, s );
-		
-		if ( service == null ) { 
-			// shutdown own self created service
-			s.shutdown();
-		}
 	}
 
 	final public static < R extends RealType< R > > void convolve( final RandomAccessible< R > img, final Interval imgInterval, final RandomAccessible< R > kernel, final Interval kernelInterval, final RandomAccessibleInterval< R > output, final ImgFactory< ComplexFloatType > factory, final int numThreads )
@@ -630,7 +618,8 @@ public class FFTConvolution< R extends RealType< R > >
 	 * Set the executor service to use.
 	 * 
 	 * @param service
-	 *            - Executor service to use.
+	 *            - Executor service to use, or null to use the
+	 *            {@link SharedThreadPool}.
 	 */
 	public void setExecutorService( final ExecutorService service )
 	{
@@ -640,13 +629,15 @@ public class FFTConvolution< R extends RealType< R > >
 	/**
 	 * Utility function to create an ExecutorService
 	 * 
-	 * Number of threads utilized matches available processors in runtime.
+	 * Number of threads utilized matches the parallelism of the
+	 * {@link SharedThreadPool}.
 	 * 
-	 * @return - the new ExecutorService
+	 * @return - a view of the shared service, see
+	 *         {@link SharedThreadPool#limitedExecutorService(int)}
 	 */
 	public static final ExecutorService createExecutorService()
 	{
-		return createExecutorService( Runtime.getRuntime().availableProcessors() );
+		return createExecutorService( SharedThreadPool.getParallelism() );
 	}
 
 	/**
@@ -654,10 +645,12 @@ public class FFTConvolution< R extends RealType< R > >
 	 * 
 	 * @param nThreads
 	 *            - number of threads to utilize
-	 * @return - the new ExecutorService
+	 * @return - a view of the shared service that runs at most nThreads tasks
+	 *         at a time, see
+	 *         {@link SharedThreadPool#limitedExecutorService(int)}
 	 */
 	public static final ExecutorService createExecutorService( int nThreads )
 	{
-		return Executors.newFixedThreadPool( nThreads );
+		return SharedThreadPool.limitedExecutorService( nThreads );
 	}
 }
@@ -0,0 +1,392 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.fft2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.FinalDimensions;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * A reusable Fourier space based convolution engine for convolving many
+ * (equally sized) images with a few kernels.
+ * 
+ * Padded Fourier transforms of kernels are cached, keyed by the kernel
+ * (identity) and the dimensions of the image interval. Complex work buffers
+ * are kept per transform size and reused. Repeated convolutions of images of
+ * the same size with the same kernel thus skip both the kernel FFT and all
+ * allocation of complex images. At most a given number of kernel transforms
+ * and buffer sizes are kept; the least recently used ones are evicted.
+ * 
+ * Kernels are identified by object identity, so the contents of a kernel must
+ * not be changed while it is cached (or {@link #clear()} must be called after
+ * the change).
+ * 
+ * {@link #convolve(RandomAccessible, Interval, RandomAccessibleInterval, RandomAccessibleInterval)}
+ * may be called concurrently from several threads. Each concurrent call uses
+ * its own work buffer.
+ * 
+ * @param <R>
+ *            image and kernel type
+ */
+public class FFTConvolutionCache< R extends RealType< R > >
+{
+	/**
+	 * Key of a cached kernel transform: kernel identity, image dimensions, and
+	 * whether the complex conjugate is used.
+	 */
+	private static final class KernelKey
+	{
+		private final Object kernel;
+
+		private final long[] imgDimensions;
+
+		private final boolean complexConjugate;
+
+		private final int hashcode;
+
+		KernelKey( final Object kernel, final long[] imgDimensions, final boolean complexConjugate )
+		{
+			this.kernel = kernel;
+			this.imgDimensions = imgDimensions;
+			this.complexConjugate = complexConjugate;
+			hashcode = 31 * ( 31 * System.identityHashCode( kernel ) + Arrays.hashCode( imgDimensions ) ) + ( complexConjugate ? 1 : 0 );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashcode;
+		}
+
+		@Override
+		public boolean equals( final Object obj )
+		{
+			if ( !( obj instanceof KernelKey ) )
+				return false;
+			final KernelKey other = ( KernelKey ) obj;
+			return kernel == other.kernel && complexConjugate == other.complexConjugate && Arrays.equals( imgDimensions, other.imgDimensions );
+		}
+	}
+
+	/**
+	 * Key of a pool of work buffers: the dimensions of the complex transform.
+	 */
+	private static final class BufferKey
+	{
+		private final long[] fftDimensions;
+
+		BufferKey( final long[] fftDimensions )
+		{
+			this.fftDimensions = fftDimensions;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Arrays.hashCode( fftDimensions );
+		}
+
+		@Override
+		public boolean equals( final Object obj )
+		{
+			return obj instanceof BufferKey && Arrays.equals( fftDimensions, ( ( BufferKey ) obj ).fftDimensions );
+		}
+	}
+
+	/**
+	 * A cached kernel transform and the padding computed for it.
+	 */
+	private static final class KernelFFT
+	{
+		private final long[] paddedDimensions;
+
+		private final long[] fftDimensions;
+
+		private final Img< ComplexFloatType > fft;
+
+		KernelFFT( final long[] paddedDimensions, final long[] fftDimensions, final Img< ComplexFloatType > fft )
+		{
+			this.paddedDimensions = paddedDimensions;
+			this.fftDimensions = fftDimensions;
+			this.fft = fft;
+		}
+	}
+
+	private final int maxEntries;
+
+	private final ImgFactory< ComplexFloatType > fftFactory;
+
+	private final ExecutorService service;
+
+	private boolean complexConjugate = true;
+
+	private final LinkedHashMap< KernelKey, KernelFFT > kernelFFTs;
+
+	private final LinkedHashMap< BufferKey, ArrayList< Img< ComplexFloatType > > > buffers;
+
+	/**
+	 * Create a convolution engine that keeps at most maxEntries kernel
+	 * transforms. Transforms are stored in {@link ArrayImgFactory ArrayImgs},
+	 * computation is multi-threaded using the {@link SharedThreadPool}.
+	 * 
+	 * @param maxEntries
+	 *            - maximum number of cached kernel transforms (and of cached
+	 *            work buffer sizes)
+	 */
+	public FFTConvolutionCache( final int maxEntries )
+	{
+		this( maxEntries, new ArrayImgFactory< ComplexFloatType >(), null );
+	}
+
+	/**
+	 * Create a convolution engine that keeps at most maxEntries kernel
+	 * transforms.
+	 * 
+	 * @param maxEntries
+	 *            - maximum number of cached kernel transforms (and of cached
+	 *            work buffer sizes)
+	 * @param factory
+	 *            - the {@link ImgFactory} to create the fourier transforms
+	 * @param service
+	 *            - service providing threads for multi-threading, or null to
+	 *            use the {@link SharedThreadPool}.
+	 */
+	public FFTConvolutionCache( final int maxEntries, final ImgFactory< ComplexFloatType > factory, final ExecutorService service )
+	{
+		this.maxEntries = maxEntries;
+		this.fftFactory = factory;
+		this.service = service;
+		kernelFFTs = new LinkedHashMap< KernelKey, KernelFFT >( 16, 0.75f, true )
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry( final Map.Entry< KernelKey, KernelFFT > eldest )
+			{
+				return size() > FFTConvolutionCache.this.maxEntries;
+			}
+		};
+		buffers = new LinkedHashMap< BufferKey, ArrayList< Img< ComplexFloatType > > >( 16, 0.75f, true )
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry( final Map.Entry< BufferKey, ArrayList< Img< ComplexFloatType > > > eldest )
+			{
+				return size() > FFTConvolutionCache.this.maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * @param complexConjugate
+	 *            - If the complex conjugate of the FFT of the kernel should be
+	 *            used.
+	 */
+	public synchronized void setComputeComplexConjugate( final boolean complexConjugate )
+	{
+		this.complexConjugate = complexConjugate;
+	}
+
+	public synchronized boolean getComplexConjugate()
+	{
+		return complexConjugate;
+	}
+
+	/**
+	 * Convolve img with kernel and write the result to output. The image will
+	 * be extended by mirroring with single boundary, the kernel will be
+	 * zero-padded.
+	 * 
+	 * @param img
+	 *            - the image
+	 * @param kernel
+	 *            - the convolution kernel (used as cache key by identity)
+	 * @param output
+	 *            - the result of the convolution
+	 */
+	public void convolve( final RandomAccessibleInterval< R > img, final RandomAccessibleInterval< R > kernel, final RandomAccessibleInterval< R > output )
+	{
+		convolve( Views.extendMirrorSingle( img ), img, kernel, output );
+	}
+
+	/**
+	 * Convolve img with kernel and write the result to output. The input needs
+	 * to be extended or infinite already. The kernel will be zero-padded.
+	 * 
+	 * @param img
+	 *            - the input
+	 * @param imgInterval
+	 *            - the input interval (i.e. the area to be convolved)
+	 * @param kernel
+	 *            - the convolution kernel (used as cache key by identity)
+	 * @param output
+	 *            - the output data+interval
+	 */
+	public void convolve( final RandomAccessible< R > img, final Interval imgInterval, final RandomAccessibleInterval< R > kernel, final RandomAccessibleInterval< R > output )
+	{
+		final ExecutorService s = service == null ? SharedThreadPool.getExecutorService() : service;
+
+		final KernelFFT kernelFFT = kernelFFT( kernel, imgInterval, s );
+
+		// compute the new interval for the input image
+		final Interval imgConvolutionInterval = FFTMethods.paddingIntervalCentered( imgInterval, FinalDimensions.wrap( kernelFFT.paddedDimensions ) );
+
+		final Img< ComplexFloatType > fftconvolved = takeBuffer( kernelFFT.fftDimensions );
+		try
+		{
+			FFT.realToComplex( Views.interval( img, imgConvolutionInterval ), fftconvolved, s );
+
+			// multiply in place
+			FFTConvolution.multiplyComplex( fftconvolved, kernelFFT.fft );
+
+			// inverse FFT in place
+			FFT.complexToRealUnpad( fftconvolved, output, s );
+		}
+		finally
+		{
+			returnBuffer( kernelFFT.fftDimensions, fftconvolved );
+		}
+	}
+
+	/**
+	 * Get the cached transform of kernel for images of the size of
+	 * imgInterval, computing it if necessary.
+	 */
+	private KernelFFT kernelFFT( final RandomAccessibleInterval< R > kernel, final Interval imgInterval, final ExecutorService s )
+	{
+		final int numDimensions = imgInterval.numDimensions();
+		final long[] imgDimensions = new long[ numDimensions ];
+		imgInterval.dimensions( imgDimensions );
+
+		final boolean conjugate;
+		final KernelKey key;
+		synchronized ( this )
+		{
+			conjugate = complexConjugate;
+			key = new KernelKey( kernel, imgDimensions, conjugate );
+			final KernelFFT cached = kernelFFTs.get( key );
+			if ( cached != null )
+				return cached;
+		}
+
+		// the image has to be extended at least by kernelDimensions/2-1 in each
+		// dimension so that the pixels outside of the interval are used for the
+		// convolution.
+		final long[] newDimensions = new long[ numDimensions ];
+		for ( int d = 0; d < numDimensions; ++d )
+			newDimensions[ d ] = imgDimensions[ d ] + kernel.dimension( d ) - 1;
+
+		// compute the size of the complex-valued output and the required
+		// padding based on the prior extended input image
+		final long[] paddedDimensions = new long[ numDimensions ];
+		final long[] fftDimensions = new long[ numDimensions ];
+		FFTMethods.dimensionsRealToComplexFast( FinalDimensions.wrap( newDimensions ), paddedDimensions, fftDimensions );
+
+		// compute the new interval for the kernel image
+		final Interval kernelConvolutionInterval = FFTMethods.paddingIntervalCentered( kernel, FinalDimensions.wrap( paddedDimensions ) );
+
+		// compute where to place the final Interval for the kernel so that the
+		// coordinate in the center of the kernel is at position (0,0)
+		final long[] min = new long[ numDimensions ];
+		final long[] max = new long[ numDimensions ];
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			min[ d ] = kernel.min( d ) + kernel.dimension( d ) / 2;
+			max[ d ] = min[ d ] + kernelConvolutionInterval.dimension( d ) - 1;
+		}
+
+		final RandomAccessible< R > extendedKernel = Views.extendValue( kernel, Util.getTypeFromInterval( kernel ).createVariable() );
+		final RandomAccessibleInterval< R > kernelInput = Views.interval( Views.extendPeriodic( Views.interval( extendedKernel, kernelConvolutionInterval ) ), new FinalInterval( min, max ) );
+
+		final Img< ComplexFloatType > fft = fftFactory.create( fftDimensions, new ComplexFloatType() );
+		FFT.realToComplex( kernelInput, fft, s );
+		if ( conjugate )
+			FFTMethods.complexConjugate( fft );
+
+		final KernelFFT kernelFFT = new KernelFFT( paddedDimensions, fftDimensions, fft );
+		synchronized ( this )
+		{
+			kernelFFTs.put( key, kernelFFT );
+		}
+		return kernelFFT;
+	}
+
+	private synchronized Img< ComplexFloatType > takeBuffer( final long[] fftDimensions )
+	{
+		final ArrayList< Img< ComplexFloatType > > pool = buffers.get( new BufferKey( fftDimensions ) );
+		if ( pool != null && !pool.isEmpty() )
+			return pool.remove( pool.size() - 1 );
+		return fftFactory.create( fftDimensions, new ComplexFloatType() );
+	}
+
+	private synchronized void returnBuffer( final long[] fftDimensions, final Img< ComplexFloatType > buffer )
+	{
+		final BufferKey key = new BufferKey( fftDimensions );
+		ArrayList< Img< ComplexFloatType > > pool = buffers.get( key );
+		if ( pool == null )
+		{
+			pool = new ArrayList< Img< ComplexFloatType > >();
+			buffers.put( key, pool );
+		}
+		pool.add( buffer );
+	}
+
+	/**
+	 * @return the number of cached kernel transforms.
+	 */
+	public synchronized int numCachedKernels()
+	{
+		return kernelFFTs.size();
+	}
+
+	/**
+	 * Remove all cached kernel transforms and work buffers.
+	 */
+	public synchronized void clear()
+	{
+		kernelFFTs.clear();
+		buffers.clear();
+	}
+}
@@ -26,12 +26,11 @@
 
 package net.imglib2.algorithm.localization;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import net.imglib2.Localizable;
 import net.imglib2.RandomAccessibleInterval;
@@ -39,6 +38,7 @@ import net.imglib2.algorithm.Benchmark;
 import net.imglib2.algorithm.MultiThreaded;
 import net.imglib2.algorithm.OutputAlgorithm;
 import net.imglib2.img.Img;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.type.numeric.RealType;
 
 /**
@@ -117,7 +117,8 @@ public class PeakFitter <T extends RealType<T>> implements MultiThreaded, Output
 		results = new ConcurrentHashMap<Localizable, double[]>(peaks.size());
 		final long[] padSize = estimator.getDomainSpan();
 
-		ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+		final ExecutorService workers = numThreads != SharedThreadPool.getParallelism() ? SharedThreadPool.limitedExecutorService(numThreads) : SharedThreadPool.getExecutorService();
+		final ArrayList<Runnable> tasks = new ArrayList<Runnable>(peaks.size());
 		for (final Localizable peak : peaks) {
 			Runnable task = new Runnable() {
 
@@ -138,20 +139,17 @@ public class PeakFitter <T extends RealType<T>> implements MultiThreaded, Output
 				}
 
 			};
-			workers.execute(task);
+			tasks.add(task);
 		}
 
-		workers.shutdown();
 		boolean ok = true;
 		try {
-			ok = workers.awaitTermination(1, TimeUnit.HOURS);
-			if (!ok) {
-				System.err.println("Timeout reached while processing.");
-			}
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}		
-		
+			SharedThreadPool.runAll(tasks, workers);
+		} catch (RuntimeException e) {
+			errorHolder.append(BASE_ERROR_MESSAGE + "Problem during processing: " + e.getMessage() + ".\n");
+			ok = false;
+		}
+
 		long end = System.currentTimeMillis();
 		processingTime = end - start;
 		
@@ -165,7 +163,7 @@ public class PeakFitter <T extends RealType<T>> implements MultiThreaded, Output
 
 	@Override
 	public void setNumThreads() {
-		this.numThreads = Runtime.getRuntime().availableProcessors();
+		this.numThreads = SharedThreadPool.getParallelism();
 	}
 
 	@Override
@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.fft2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+public class BlockedFFTConvolutionTest
+{
+	private static void fill( final Img< FloatType > img, final Random random )
+	{
+		for ( final FloatType t : img )
+			t.set( random.nextFloat() );
+	}
+
+	private static void assertImagesEqual( final Img< FloatType > expected, final Img< FloatType > actual )
+	{
+		final Cursor< FloatType > e = expected.localizingCursor();
+		final RandomAccess< FloatType > a = actual.randomAccess();
+		while ( e.hasNext() )
+		{
+			e.fwd();
+			a.setPosition( e );
+			assertEquals( e.get().get(), a.get().get(), 1e-4 );
+		}
+	}
+
+	@Test
+	public void testSameAsFFTConvolution()
+	{
+		final Random random = new Random( 3 );
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( new long[] { 53, 41 }, new FloatType() );
+		final Img< FloatType > kernel = new ArrayImgFactory< FloatType >().create( new long[] { 5, 3 }, new FloatType() );
+		fill( img, random );
+		fill( kernel, random );
+
+		final Img< FloatType > expected = img.factory().create( img, new FloatType() );
+		new FFTConvolution< FloatType >( img, kernel, expected ).convolve();
+
+		final Img< FloatType > blocked = img.factory().create( img, new FloatType() );
+		new BlockedFFTConvolution< FloatType >( Views.extendMirrorSingle( img ), img, kernel, blocked, new int[] { 16, 12 }, new ArrayImgFactory< ComplexFloatType >(), null ).convolve();
+
+		assertImagesEqual( expected, blocked );
+	}
+
+	@Test
+	public void testCellImg()
+	{
+		final Random random = new Random( 4 );
+		final Img< FloatType > img = new CellImgFactory< FloatType >( 10 ).create( new long[] { 30, 25, 12 }, new FloatType() );
+		final Img< FloatType > kernel = new ArrayImgFactory< FloatType >().create( new long[] { 3, 3, 3 }, new FloatType() );
+		fill( img, random );
+		fill( kernel, random );
+
+		final BlockedFFTConvolution< FloatType > convolution = new BlockedFFTConvolution< FloatType >( img, kernel, img.factory().create( img, new FloatType() ) );
+		assertArrayEquals( new int[] { 30, 25, 12 }, convolution.getBlockSize() );
+
+		final Img< FloatType > expected = img.factory().create( img, new FloatType() );
+		new FFTConvolution< FloatType >( img, kernel, expected ).convolve();
+
+		final Img< FloatType > blocked = img.factory().create( img, new FloatType() );
+		new BlockedFFTConvolution< FloatType >( Views.extendMirrorSingle( img ), img, kernel, blocked, new int[] { 10, 10, 5 }, new ArrayImgFactory< ComplexFloatType >(), null ).convolve();
+
+		assertImagesEqual( expected, blocked );
+	}
+
+	@Test
+	public void testDefaultBlockSize()
+	{
+		final Img< FloatType > img = new CellImgFactory< FloatType >( 30 ).create( new long[] { 1000, 1000 }, new FloatType() );
+		final Img< FloatType > kernel = new ArrayImgFactory< FloatType >().create( new long[] { 3, 31 }, new FloatType() );
+		assertArrayEquals( new int[] { 90, 150 }, BlockedFFTConvolution.defaultBlockSize( img, kernel ) );
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.fft2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+public class FFTConvolutionCacheTest
+{
+	private static Img< FloatType > random( final Random random, final long... dims )
+	{
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( dims, new FloatType() );
+		for ( final FloatType t : img )
+			t.set( random.nextFloat() );
+		return img;
+	}
+
+	private static void assertImagesEqual( final Img< FloatType > expected, final Img< FloatType > actual )
+	{
+		final Cursor< FloatType > e = expected.cursor();
+		final Cursor< FloatType > a = actual.cursor();
+		while ( e.hasNext() )
+			assertEquals( e.next().get(), a.next().get(), 1e-4 );
+	}
+
+	@Test
+	public void testSameAsFFTConvolution()
+	{
+		final Random random = new Random( 7 );
+		final Img< FloatType > kernel1 = random( random, 5, 7 );
+		final Img< FloatType > kernel2 = random( random, 3, 3 );
+		final FFTConvolutionCache< FloatType > cache = new FFTConvolutionCache< FloatType >( 4 );
+
+		for ( int i = 0; i < 3; ++i )
+		{
+			final Img< FloatType > img = random( random, 40, 30 );
+			for ( final Img< FloatType > kernel : new Img[] { kernel1, kernel2 } )
+			{
+				final Img< FloatType > expected = img.factory().create( img, new FloatType() );
+				new FFTConvolution< FloatType >( img, kernel, expected ).convolve();
+
+				final Img< FloatType > actual = img.factory().create( img, new FloatType() );
+				cache.convolve( img, kernel, actual );
+				assertImagesEqual( expected, actual );
+			}
+		}
+		assertEquals( 2, cache.numCachedKernels() );
+	}
+
+	@Test
+	public void testEviction()
+	{
+		final Random random = new Random( 8 );
+		final FFTConvolutionCache< FloatType > cache = new FFTConvolutionCache< FloatType >( 2 );
+		final Img< FloatType > img = random( random, 16, 16 );
+		final Img< FloatType > output = img.factory().create( img, new FloatType() );
+		for ( int i = 0; i < 5; ++i )
+			cache.convolve( img, random( random, 3, 3 ), output );
+		assertEquals( 2, cache.numCachedKernels() );
+
+		cache.clear();
+		assertEquals( 0, cache.numCachedKernels() );
+	}
+
+	@Test
+	public void testComplexConjugateIsPartOfKey()
+	{
+		final Random random = new Random( 9 );
+		final FFTConvolutionCache< FloatType > cache = new FFTConvolutionCache< FloatType >( 4 );
+		final Img< FloatType > img = random( random, 20, 20 );
+		final Img< FloatType > kernel = random( random, 4, 5 );
+		final Img< FloatType > output = img.factory().create( img, new FloatType() );
+		cache.convolve( img, kernel, output );
+		cache.setComputeComplexConjugate( false );
+		cache.convolve( img, kernel, output );
+		assertEquals( 2, cache.numCachedKernels() );
+		assertFalse( cache.getComplexConjugate() );
+	}
+}
@@ -27,9 +27,6 @@
 package net.imglib2.algorithm.legacy.scalespace;
 
 import java.util.ArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
@@ -47,6 +44,7 @@ import net.imglib2.algorithm.region.localneighborhood.old.LocalNeighborhoodCurso
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.outofbounds.OutOfBoundsFactory;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.FloatType;
@@ -296,7 +294,7 @@ public class DifferenceOfGaussian < A extends RealType<A> > implements Algorithm
 
 	    final RectangleShape shape = new RectangleShape( 1, true );
 
-		final ExecutorService ex = Executors.newFixedThreadPool( numThreads );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( numTasks );
 		for ( int taskNum = 0; taskNum < numTasks; ++taskNum )
 		{
 			min[ splitd ] = full.min( splitd ) + taskNum * dsize;
@@ -322,17 +320,9 @@ public class DifferenceOfGaussian < A extends RealType<A> > implements Algorithm
 					}
 				}
 			};
-			ex.execute( r );
-		}
-		ex.shutdown();
-		try
-		{
-			ex.awaitTermination( 1000, TimeUnit.DAYS );
-		}
-		catch ( final InterruptedException e )
-		{
-			e.printStackTrace();
+			tasks.add( r );
 		}
+		SharedThreadPool.runAll( tasks, SharedThreadPool.limitedExecutorService( numThreads ) );
 
 		// put together the list from the various threads
 		final ArrayList<DifferenceOfGaussianPeak<FloatType>> dogPeaks = new ArrayList<DifferenceOfGaussianPeak<FloatType>>();
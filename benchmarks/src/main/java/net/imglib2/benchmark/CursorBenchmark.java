@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+package net.imglib2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Iteration over the pixels of the different {@link Img} containers with
+ * {@link Cursor Cursors} and {@link RandomAccess RandomAccesses}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+public class CursorBenchmark
+{
+	@Param( { "array", "planar", "cell", "ntree", "list" } )
+	public String container;
+
+	private final long[] dimensions = new long[] { 128, 128, 64 };
+
+	private Img< FloatType > img;
+
+	@Setup
+	public void setup()
+	{
+		img = Images.random( Images.< FloatType >factory( container ), new FloatType(), dimensions );
+	}
+
+	@Benchmark
+	public double cursor()
+	{
+		double sum = 0;
+		for ( final FloatType t : img )
+			sum += t.get();
+		return sum;
+	}
+
+	@Benchmark
+	public double localizingCursor()
+	{
+		double sum = 0;
+		final Cursor< FloatType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			sum += c.get().get() + c.getLongPosition( 0 );
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double randomAccessRaster()
+	{
+		double sum = 0;
+		final RandomAccess< FloatType > a = img.randomAccess();
+		for ( long z = 0; z < dimensions[ 2 ]; ++z )
+		{
+			for ( long y = 0; y < dimensions[ 1 ]; ++y )
+			{
+				a.setPosition( new long[] { 0, y, z } );
+				for ( long x = 0; x < dimensions[ 0 ]; ++x )
+				{
+					sum += a.get().get();
+					a.fwd( 0 );
+				}
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+package net.imglib2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.ops.function.Function;
+import net.imglib2.ops.parse.CompiledEquation;
+import net.imglib2.ops.parse.RealEquationFunctionParser;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluation of a parsed equation over a 3D image: walking the tree of
+ * functions built by {@link RealEquationFunctionParser#parse}, compared to the
+ * {@link CompiledEquation} evaluated point by point and line by line.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+public class EquationBenchmark
+{
+	@Param( { "[x,y,z], img * 0.5 + sqrt( x * x + y * y ) - log( img + 1 )", "[x,y,z], max( img, 0.5 ) * sin( x / 16 ) * cos( y / 16 ) + z" } )
+	public String equation;
+
+	private Img< FloatType > img;
+
+	private Img< FloatType > output;
+
+	private Function< long[], DoubleType > tree;
+
+	private CompiledEquation compiled;
+
+	private double[] line;
+
+	@Setup
+	public void setup()
+	{
+		img = Images.random( new ArrayImgFactory< FloatType >(), new FloatType(), 256, 256, 32 );
+		output = new ArrayImgFactory< FloatType >().create( img, new FloatType() );
+		final RealEquationFunctionParser parser = new RealEquationFunctionParser();
+		tree = parser.parse( equation, img ).get1();
+		compiled = parser.compile( equation, img ).get1();
+		line = new double[ ( int ) img.dimension( 0 ) ];
+	}
+
+	@Benchmark
+	public Img< FloatType > tree()
+	{
+		final DoubleType value = new DoubleType();
+		final long[] pos = new long[ img.numDimensions() ];
+		final Cursor< FloatType > c = output.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( pos );
+			tree.compute( pos, value );
+			c.get().setReal( value.get() );
+		}
+		return output;
+	}
+
+	@Benchmark
+	public Img< FloatType > compiledPoints()
+	{
+		final long[] pos = new long[ img.numDimensions() ];
+		final Cursor< FloatType > c = output.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( pos );
+			c.get().setReal( compiled.evaluate( pos ) );
+		}
+		return output;
+	}
+
+	@Benchmark
+	public Img< FloatType > compiledLines()
+	{
+		final int width = line.length;
+		final long[] start = new long[ img.numDimensions() ];
+		final Cursor< FloatType > c = output.cursor();
+		for ( start[ 2 ] = 0; start[ 2 ] < img.dimension( 2 ); ++start[ 2 ] )
+		{
+			for ( start[ 1 ] = 0; start[ 1 ] < img.dimension( 1 ); ++start[ 1 ] )
+			{
+				compiled.evaluateLine( start, 0, width, line );
+				for ( int i = 0; i < width; ++i )
+					c.next().setReal( line[ i ] );
+			}
+		}
+		return output;
+	}
+}
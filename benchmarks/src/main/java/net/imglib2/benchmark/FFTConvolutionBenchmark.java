@@ -0,0 +1,110 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+package net.imglib2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.algorithm.fft2.BlockedFFTConvolution;
+import net.imglib2.algorithm.fft2.FFTConvolution;
+import net.imglib2.algorithm.fft2.FFTConvolutionCache;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fourier convolution of a 2D image with a small kernel: the plain
+ * {@link FFTConvolution}, the {@link FFTConvolutionCache} that reuses the
+ * kernel spectrum, and the overlap-save {@link BlockedFFTConvolution}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Fork( 1 )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+public class FFTConvolutionBenchmark
+{
+	@Param( { "512", "1024" } )
+	public int size;
+
+	@Param( { "15" } )
+	public int kernelSize;
+
+	private Img< FloatType > img;
+
+	private Img< FloatType > kernel;
+
+	private Img< FloatType > output;
+
+	private FFTConvolutionCache< FloatType > cache;
+
+	@Setup
+	public void setup()
+	{
+		final ImgFactory< FloatType > factory = new ArrayImgFactory< FloatType >();
+		img = Images.random( factory, new FloatType(), size, size );
+		kernel = Images.random( factory, new FloatType(), kernelSize, kernelSize );
+		output = factory.create( img, new FloatType() );
+		cache = new FFTConvolutionCache< FloatType >( 4 );
+	}
+
+	@Benchmark
+	public Img< FloatType > fftConvolution()
+	{
+		new FFTConvolution< FloatType >( img, kernel, output, new ArrayImgFactory< ComplexFloatType >() ).convolve();
+		return output;
+	}
+
+	@Benchmark
+	public Img< FloatType > fftConvolutionCached()
+	{
+		cache.convolve( img, kernel, output );
+		return output;
+	}
+
+	@Benchmark
+	public Img< FloatType > blockedFFTConvolution()
+	{
+		new BlockedFFTConvolution< FloatType >( img, kernel, output ).convolve();
+		return output;
+	}
+}
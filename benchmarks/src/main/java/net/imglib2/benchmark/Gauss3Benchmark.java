@@ -0,0 +1,100 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+package net.imglib2.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.algorithm.gauss3.Gauss3;
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Gauss3} of a 3D UnsignedShortType volume into FloatType, whole-image
+ * and tiled.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Fork( 1 )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+public class Gauss3Benchmark
+{
+	@Param( { "array", "planar", "cell" } )
+	public String container;
+
+	@Param( { "2" } )
+	public double sigma;
+
+	private Img< UnsignedShortType > source;
+
+	private Img< FloatType > target;
+
+	@Setup
+	public void setup()
+	{
+		final long[] dimensions = new long[] { 256, 256, 64 };
+		source = Images.< UnsignedShortType >factory( container ).create( dimensions, new UnsignedShortType() );
+		final Random random = new Random( 42 );
+		for ( final UnsignedShortType t : source )
+			t.set( random.nextInt( 4096 ) );
+		final ImgFactory< FloatType > factory = Images.factory( container );
+		target = factory.create( dimensions, new FloatType() );
+	}
+
+	@Benchmark
+	public Img< FloatType > gauss() throws IncompatibleTypeException
+	{
+		Gauss3.gauss( new double[] { sigma, sigma, sigma }, Views.extendMirrorSingle( source ), target );
+		return target;
+	}
+
+	@Benchmark
+	public Img< FloatType > gaussTiled() throws IncompatibleTypeException
+	{
+		Gauss3.gaussTiled( new double[] { sigma, sigma, sigma }, Views.extendMirrorSingle( source ), target );
+		return target;
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+package net.imglib2.benchmark;
+
+import java.util.Random;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.img.sparse.NtreeImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Creates the input images shared by the benchmarks.
+ */
+public class Images
+{
+	/**
+	 * @param container
+	 *            one of "array", "planar", "cell", "ntree", "list".
+	 */
+	public static < T extends NativeType< T > > ImgFactory< T > factory( final String container )
+	{
+		if ( container.equals( "array" ) )
+			return new ArrayImgFactory< T >();
+		else if ( container.equals( "planar" ) )
+			return new PlanarImgFactory< T >();
+		else if ( container.equals( "cell" ) )
+			return new CellImgFactory< T >( 64 );
+		else if ( container.equals( "ntree" ) )
+			return new NtreeImgFactory< T >();
+		else if ( container.equals( "list" ) )
+			return new ListImgFactory< T >();
+		throw new IllegalArgumentException( "unknown container " + container );
+	}
+
+	/**
+	 * Create an image filled with uniformly distributed random values in
+	 * [0,1). A fixed seed is used, so the data is the same in every run.
+	 */
+	public static < T extends NativeType< T > & RealType< T > > Img< T > random( final ImgFactory< T > factory, final T type, final long... dimensions )
+	{
+		final Img< T > img = factory.create( dimensions, type );
+		final Random random = new Random( 42 );
+		for ( final T t : img )
+			t.setReal( random.nextDouble() );
+		return img;
+	}
+}
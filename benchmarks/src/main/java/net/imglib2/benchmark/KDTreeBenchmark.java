@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+package net.imglib2.benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.RealPoint;
+import net.imglib2.collection.FlatKDTree;
+import net.imglib2.collection.KDTree;
+import net.imglib2.neighborsearch.BatchNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnKDTree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Construction of and nearest neighbor, k-nearest neighbor, and radius
+ * searches on a {@link KDTree} and a {@link FlatKDTree} of uniformly
+ * distributed 3D points.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+public class KDTreeBenchmark
+{
+	@Param( { "10000", "1000000" } )
+	public int numPoints;
+
+	private static final int numQueries = 10000;
+
+	private ArrayList< RealPoint > points;
+
+	private ArrayList< RealPoint > queries;
+
+	private KDTree< RealPoint > tree;
+
+	private FlatKDTree< RealPoint > flatTree;
+
+	private double[] flatQueries;
+
+	private static ArrayList< RealPoint > randomPoints( final int n, final Random random )
+	{
+		final ArrayList< RealPoint > list = new ArrayList< RealPoint >( n );
+		for ( int i = 0; i < n; ++i )
+			list.add( new RealPoint( random.nextDouble(), random.nextDouble(), random.nextDouble() ) );
+		return list;
+	}
+
+	@Setup
+	public void setup()
+	{
+		final Random random = new Random( 42 );
+		points = randomPoints( numPoints, random );
+		queries = randomPoints( numQueries, random );
+		tree = new KDTree< RealPoint >( points, points );
+		flatTree = new FlatKDTree< RealPoint >( points, points );
+		flatQueries = new double[ 3 * numQueries ];
+		for ( int q = 0; q < numQueries; ++q )
+			for ( int d = 0; d < 3; ++d )
+				flatQueries[ 3 * q + d ] = queries.get( q ).getDoublePosition( d );
+	}
+
+	@Benchmark
+	public KDTree< RealPoint > build()
+	{
+		return new KDTree< RealPoint >( points, points );
+	}
+
+	@Benchmark
+	public void nearestNeighbor( final Blackhole blackhole )
+	{
+		final NearestNeighborSearchOnKDTree< RealPoint > search = new NearestNeighborSearchOnKDTree< RealPoint >( tree );
+		for ( final RealPoint q : queries )
+		{
+			search.search( q );
+			blackhole.consume( search.getSquareDistance() );
+		}
+	}
+
+	@Benchmark
+	public void kNearestNeighbors( final Blackhole blackhole )
+	{
+		final KNearestNeighborSearchOnKDTree< RealPoint > search = new KNearestNeighborSearchOnKDTree< RealPoint >( tree, 10 );
+		for ( final RealPoint q : queries )
+		{
+			search.search( q );
+			blackhole.consume( search.getSquareDistance( 9 ) );
+		}
+	}
+
+	@Benchmark
+	public void radiusNeighbors( final Blackhole blackhole )
+	{
+		final RadiusNeighborSearchOnKDTree< RealPoint > search = new RadiusNeighborSearchOnKDTree< RealPoint >( tree );
+		final double radius = Math.cbrt( 20.0 / numPoints );
+		for ( final RealPoint q : queries )
+		{
+			search.search( q, radius, false );
+			blackhole.consume( search.numNeighbors() );
+		}
+	}
+
+	@Benchmark
+	public FlatKDTree< RealPoint > buildFlat()
+	{
+		return new FlatKDTree< RealPoint >( points, points );
+	}
+
+	@Benchmark
+	public void kNearestNeighborsFlat( final Blackhole blackhole )
+	{
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > search = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( flatTree, 10 );
+		for ( final RealPoint q : queries )
+		{
+			search.search( q );
+			blackhole.consume( search.getSquareDistance( 9 ) );
+		}
+	}
+
+	@Benchmark
+	public int[] kNearestNeighborsFlatBatch()
+	{
+		final int[] indices = new int[ 10 * numQueries ];
+		BatchNeighborSearchOnFlatKDTree.kNearestNeighbors( flatTree, flatQueries, 10, indices, null );
+		return indices;
+	}
+
+	@Benchmark
+	public int[][] radiusNeighborsFlatBatch()
+	{
+		return BatchNeighborSearchOnFlatKDTree.radiusNeighbors( flatTree, flatQueries, Math.cbrt( 20.0 / numPoints ), false );
+	}
+}
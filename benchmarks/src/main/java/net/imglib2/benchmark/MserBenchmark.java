@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+package net.imglib2.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.algorithm.componenttree.mser.MserTree;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.view.Views;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link MserTree} construction on a 16-bit 2D+t random sequence, using the
+ * generic builder slice by slice and the bucket-queue builder in parallel.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Fork( 1 )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+public class MserBenchmark
+{
+	@Param( { "1", "4" } )
+	public int numThreads;
+
+	private Img< UnsignedShortType > img;
+
+	private final UnsignedShortType delta = new UnsignedShortType( 64 );
+
+	private ExecutorService service;
+
+	@Setup
+	public void setup()
+	{
+		img = Images.< UnsignedShortType >factory( "array" ).create( new long[] { 512, 512, 8 }, new UnsignedShortType() );
+		final Random random = new Random( 42 );
+		for ( final UnsignedShortType t : img )
+			t.set( random.nextInt( 4096 ) );
+		service = Executors.newFixedThreadPool( numThreads );
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		service.shutdown();
+	}
+
+	@Benchmark
+	public long priorityQueue()
+	{
+		long n = 0;
+		for ( int t = 0; t < img.dimension( 2 ); ++t )
+			n += MserTree.buildMserTree( Views.hyperSlice( img, 2, t ), delta, 10, 10000, 0.5, 0.2, true ).size();
+		return n;
+	}
+
+	@Benchmark
+	public long bucketQueue()
+	{
+		long n = 0;
+		final List< MserTree< UnsignedShortType > > trees = MserTree.buildIntegerMserTrees( img, delta, 10, 10000, 0.5, 0.2, 2, true, service );
+		for ( final MserTree< UnsignedShortType > tree : trees )
+			n += tree.size();
+		return n;
+	}
+}
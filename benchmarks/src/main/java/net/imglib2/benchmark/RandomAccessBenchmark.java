@@ -0,0 +1,156 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+package net.imglib2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link RandomAccess} through {@link Views} transforms and out-of-bounds
+ * strategies. Every benchmark sums a 3x3 neighborhood for each pixel, which
+ * is the access pattern of most filters.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+public class RandomAccessBenchmark
+{
+	@Param( { "none", "translate", "rotate", "invertAxis", "zeroMin" } )
+	public String view;
+
+	@Param( { "mirrorSingle", "periodic", "border", "zero" } )
+	public String outOfBounds;
+
+	private Img< FloatType > img;
+
+	private RandomAccessibleInterval< FloatType > transformed;
+
+	private RandomAccessible< FloatType > extended;
+
+	@Setup
+	public void setup()
+	{
+		img = Images.random( new ArrayImgFactory< FloatType >(), new FloatType(), 512, 512 );
+
+		if ( view.equals( "none" ) )
+			transformed = img;
+		else if ( view.equals( "translate" ) )
+			transformed = Views.translate( img, 10, -20 );
+		else if ( view.equals( "rotate" ) )
+			transformed = Views.rotate( img, 0, 1 );
+		else if ( view.equals( "invertAxis" ) )
+			transformed = Views.invertAxis( img, 0 );
+		else
+			transformed = Views.zeroMin( Views.interval( img, new long[] { 10, 10 }, new long[] { 500, 500 } ) );
+
+		if ( outOfBounds.equals( "mirrorSingle" ) )
+			extended = Views.extendMirrorSingle( transformed );
+		else if ( outOfBounds.equals( "periodic" ) )
+			extended = Views.extendPeriodic( transformed );
+		else if ( outOfBounds.equals( "border" ) )
+			extended = Views.extendBorder( transformed );
+		else
+			extended = Views.extendZero( transformed );
+	}
+
+	private static double neighborhoodSum( final RandomAccessible< FloatType > source, final Interval interval )
+	{
+		double sum = 0;
+		final Cursor< FloatType > c = Views.iterable( Views.interval( source, interval ) ).localizingCursor();
+		final RandomAccess< FloatType > a = source.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			a.move( -1, 0 );
+			a.move( -1, 1 );
+			for ( int y = 0; y < 3; ++y )
+			{
+				for ( int x = 0; x < 3; ++x )
+				{
+					sum += a.get().get();
+					a.fwd( 0 );
+				}
+				a.move( -3, 0 );
+				a.fwd( 1 );
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Neighborhoods inside the image (no out-of-bounds access).
+	 */
+	@Benchmark
+	public double interior()
+	{
+		return neighborhoodSum( extended, Intervals.expand( transformed, -1 ) );
+	}
+
+	/**
+	 * Neighborhoods of a band of 16 pixels around the image, mostly
+	 * out-of-bounds.
+	 */
+	@Benchmark
+	public double border()
+	{
+		final long[] min = new long[ 2 ];
+		final long[] max = new long[ 2 ];
+		transformed.min( min );
+		transformed.max( max );
+		min[ 0 ] -= 16;
+		max[ 0 ] = min[ 0 ] + 31;
+		return neighborhoodSum( extended, new FinalInterval( min, max ) );
+	}
+}
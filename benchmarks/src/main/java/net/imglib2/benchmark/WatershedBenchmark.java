@@ -0,0 +1,163 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+
+package net.imglib2.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.Cursor;
+import net.imglib2.algorithm.labeling.AllConnectedComponents;
+import net.imglib2.algorithm.labeling.BucketWatershed;
+import net.imglib2.algorithm.labeling.Watershed;
+import net.imglib2.algorithm.gauss3.Gauss3;
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.labeling.Labeling;
+import net.imglib2.labeling.LabelingType;
+import net.imglib2.labeling.NativeImgLabeling;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Seeded {@link Watershed} and {@link BucketWatershed} of a smoothed 2D random
+ * image.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Fork( 1 )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+public class WatershedBenchmark
+{
+	@Param( { "256", "512" } )
+	public int size;
+
+	@Param( { "100" } )
+	public int numSeeds;
+
+	private Img< FloatType > intensity;
+
+	private Img< IntType > intIntensity;
+
+	private Labeling< Integer > seeds;
+
+	private Labeling< Integer > output;
+
+	private long[] dimensions;
+
+	@Setup
+	public void setup() throws IncompatibleTypeException
+	{
+		dimensions = new long[] { size, size };
+		final Img< FloatType > noise = Images.random( new ArrayImgFactory< FloatType >(), new FloatType(), dimensions );
+		intensity = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		Gauss3.gauss( 4, Views.extendMirrorSingle( noise ), intensity );
+		intIntensity = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		final Cursor< FloatType > fc = intensity.cursor();
+		for ( final IntType t : intIntensity )
+			t.set( ( int ) ( fc.next().get() * 4096 ) );
+
+		seeds = createLabeling( dimensions );
+		final Random random = new Random( 42 );
+		final Cursor< LabelingType< Integer > > c = seeds.localizingCursor();
+		final long n = size * ( long ) size;
+		long i = 0;
+		int label = 1;
+		while ( c.hasNext() )
+		{
+			final LabelingType< Integer > t = c.next();
+			if ( label <= numSeeds && random.nextDouble() < ( double ) numSeeds / ( n - i ) )
+				t.setLabel( label++ );
+			++i;
+		}
+	}
+
+	@Setup( Level.Invocation )
+	public void createOutput()
+	{
+		output = createLabeling( dimensions );
+	}
+
+	private static Labeling< Integer > createLabeling( final long[] dimensions )
+	{
+		return new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+	}
+
+	@Benchmark
+	public Labeling< Integer > watershed()
+	{
+		final Watershed< FloatType, Integer > watershed = new Watershed< FloatType, Integer >();
+		watershed.setSeeds( seeds );
+		watershed.setIntensityImage( intensity );
+		watershed.setStructuringElement( AllConnectedComponents.getStructuringElement( 2 ) );
+		watershed.setOutputLabeling( output );
+		watershed.process();
+		return output;
+	}
+
+	@Benchmark
+	public Labeling< Integer > bucketWatershed()
+	{
+		final BucketWatershed< IntType, Integer > watershed = new BucketWatershed< IntType, Integer >();
+		watershed.setSeeds( seeds );
+		watershed.setIntensityImage( intIntensity );
+		watershed.setStructuringElement( AllConnectedComponents.getStructuringElement( 2 ) );
+		watershed.setOutputLabeling( output );
+		watershed.process();
+		return output;
+	}
+
+	@Benchmark
+	public Labeling< Integer > bucketWatershedTiled()
+	{
+		final BucketWatershed< IntType, Integer > watershed = new BucketWatershed< IntType, Integer >();
+		watershed.setSeeds( seeds );
+		watershed.setIntensityImage( intIntensity );
+		watershed.setStructuringElement( AllConnectedComponents.getStructuringElement( 2 ) );
+		watershed.setOutputLabeling( output );
+		watershed.setApproximateTiling( new int[] { 128, 128 }, 16 );
+		watershed.process();
+		return output;
+	}
+}
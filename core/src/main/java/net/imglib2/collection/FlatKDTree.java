@@ -0,0 +1,509 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.collection;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.EuclideanSpace;
+import net.imglib2.RealInterval;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+import net.imglib2.Sampler;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.util.KthElement;
+
+/**
+ * KDTree to access values at RealLocalizable positions, stored in flat arrays
+ * instead of linked {@link KDTreeNode} objects.
+ * 
+ * <p>
+ * The tree has the same shape as {@link KDTree}: the sublist {@code [i,j]} is
+ * split at its median {@code k = i + (j - i) / 2} with respect to the
+ * coordinates in dimension {@code depth % n}, and the sublists
+ * {@code [i,k-1]} and {@code [k+1,j]} form the left and right subtrees. The
+ * nodes are stored in this (in-order) sequence, so the children of a node are
+ * found by index arithmetic. The coordinates of all nodes are kept in one
+ * {@code double[]} with the coordinates of node {@code k} at
+ * {@code [k * n, (k + 1) * n)}, and the values are kept in a list in node
+ * order.
+ * </p>
+ * 
+ * <p>
+ * The tree is constructed by median partitioning with
+ * {@link KthElement#kthElement(int, int, int, double[], int[])}. The top
+ * levels of the tree are partitioned in parallel on an
+ * {@link ExecutorService}, until there are enough independent subtrees to be
+ * built by separate tasks.
+ * </p>
+ * 
+ * @param <T>
+ *            type of values stored in the tree.
+ */
+public class FlatKDTree< T > implements EuclideanSpace, RealInterval
+{
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	/**
+	 * the number of nodes in the tree.
+	 */
+	final protected int size;
+
+	/**
+	 * coordinates of the nodes. The coordinates of node k are at
+	 * {@code [k * n, (k + 1) * n)}.
+	 */
+	final protected double[] positions;
+
+	/**
+	 * values of the nodes.
+	 */
+	final protected ArrayList< T > values;
+
+	/**
+	 * index of the value of node k in the list that the tree was constructed
+	 * from.
+	 */
+	final protected int[] indices;
+
+	/**
+	 * minimum of each dimension.
+	 */
+	final protected double[] min;
+
+	/**
+	 * maximum of each dimension.
+	 */
+	final protected double[] max;
+
+	/**
+	 * Construct a FlatKDTree from the elements in the given list, using the
+	 * {@link SharedThreadPool}.
+	 * 
+	 * <p>
+	 * Note that the constructor can be called with the same list for both
+	 * {@code values == positions} if {@code T extends RealLocalizable}.
+	 * </p>
+	 * 
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions )
+	{
+		this( values, positions, SharedThreadPool.getExecutorService() );
+	}
+
+	/**
+	 * Construct a FlatKDTree from the elements in the given list.
+	 * 
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 * @param service
+	 *            service used to construct the tree.
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions, final ExecutorService service )
+	{
+		this( values, flatten( positions ), positions.get( 0 ).numDimensions(), service );
+	}
+
+	/**
+	 * Construct a FlatKDTree from values and their coordinates, given as one
+	 * flat array.
+	 * 
+	 * @param values
+	 *            a list of values
+	 * @param coordinates
+	 *            coordinates of the values. The coordinates of the i-th value
+	 *            are at {@code [i * numDimensions, (i + 1) * numDimensions)}.
+	 *            The array is not modified.
+	 * @param numDimensions
+	 *            number of dimensions of the coordinates.
+	 * @param service
+	 *            service used to construct the tree.
+	 */
+	public FlatKDTree( final List< T > values, final double[] coordinates, final int numDimensions, final ExecutorService service )
+	{
+		assert coordinates.length == values.size() * numDimensions;
+
+		this.n = numDimensions;
+		this.size = values.size();
+
+		this.min = new double[ n ];
+		this.max = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Double.MAX_VALUE;
+			max[ d ] = -Double.MAX_VALUE;
+		}
+		for ( int i = 0, o = 0; i < size; ++i )
+		{
+			for ( int d = 0; d < n; ++d, ++o )
+			{
+				final double x = coordinates[ o ];
+				if ( x < min[ d ] )
+					min[ d ] = x;
+				if ( x > max[ d ] )
+					max[ d ] = x;
+			}
+		}
+
+		indices = new int[ size ];
+		for ( int k = 0; k < size; ++k )
+			indices[ k ] = k;
+		build( coordinates, service );
+
+		positions = new double[ size * n ];
+		for ( int k = 0; k < size; ++k )
+			System.arraycopy( coordinates, indices[ k ] * n, positions, k * n, n );
+
+		final List< T > valuesList = ( values instanceof java.util.RandomAccess ) ? values : new ArrayList< T >( values );
+		this.values = new ArrayList< T >( size );
+		for ( int k = 0; k < size; ++k )
+			this.values.add( valuesList.get( indices[ k ] ) );
+	}
+
+	/**
+	 * Copy the coordinates of a list of positions into one flat array.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the positions do not fit into one array.
+	 */
+	protected static < L extends RealLocalizable > double[] flatten( final List< L > positions )
+	{
+		final int n = positions.get( 0 ).numDimensions();
+		final long length = ( long ) positions.size() * n;
+		if ( length > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "too many positions for a FlatKDTree: " + positions.size() );
+		final double[] coordinates = new double[ ( int ) length ];
+		final Iterator< L > it = positions.iterator();
+		for ( int o = 0; it.hasNext(); o += n )
+		{
+			final L position = it.next();
+			assert position.numDimensions() == n;
+			for ( int d = 0; d < n; ++d )
+				coordinates[ o + d ] = position.getDoublePosition( d );
+		}
+		return coordinates;
+	}
+
+	/**
+	 * Permute {@link #indices} such that they are in node order.
+	 */
+	private void build( final double[] coordinates, final ExecutorService service )
+	{
+		if ( size == 0 )
+			return;
+
+		final double[] keys = new double[ size ];
+		final int numTasks = SharedThreadPool.numTasks( 4, service );
+
+		// Partition the top levels one level at a time, with the sublists of
+		// each level partitioned in parallel, until there are enough
+		// independent subtrees for the tasks.
+		ArrayList< int[] > sublists = new ArrayList< int[] >();
+		sublists.add( new int[] { 0, size - 1 } );
+		int d = 0;
+		while ( sublists.size() < numTasks )
+		{
+			final int dLevel = d;
+			final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+			final ArrayList< int[] > children = new ArrayList< int[] >();
+			for ( final int[] sublist : sublists )
+			{
+				final int i = sublist[ 0 ];
+				final int j = sublist[ 1 ];
+				if ( j <= i )
+					continue;
+				tasks.add( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						split( coordinates, keys, i, j, dLevel );
+					}
+				} );
+				final int k = i + ( j - i ) / 2;
+				if ( k > i )
+					children.add( new int[] { i, k - 1 } );
+				children.add( new int[] { k + 1, j } );
+			}
+			if ( tasks.isEmpty() )
+				return;
+			SharedThreadPool.runAll( tasks, service );
+			sublists = children;
+			d = ( d + 1 == n ) ? 0 : d + 1;
+		}
+
+		final int dSubtrees = d;
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( final int[] sublist : sublists )
+		{
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					buildSubtree( coordinates, keys, sublist[ 0 ], sublist[ 1 ], dSubtrees );
+				}
+			} );
+		}
+		SharedThreadPool.runAll( tasks, service );
+	}
+
+	/**
+	 * Recursively partition the sublist {@code [i,j]} of {@link #indices}
+	 * into a subtree.
+	 */
+	private void buildSubtree( final double[] coordinates, final double[] keys, final int i, final int j, final int d )
+	{
+		if ( j > i )
+		{
+			split( coordinates, keys, i, j, d );
+			final int k = i + ( j - i ) / 2;
+			final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+			buildSubtree( coordinates, keys, i, k - 1, dChild );
+			buildSubtree( coordinates, keys, k + 1, j, dChild );
+		}
+	}
+
+	/**
+	 * Partition the sublist {@code [i,j]} of {@link #indices} such that the
+	 * median with respect to coordinates in dimension d is at
+	 * {@code i + (j - i) / 2}.
+	 */
+	private void split( final double[] coordinates, final double[] keys, final int i, final int j, final int d )
+	{
+		for ( int x = i; x <= j; ++x )
+			keys[ x ] = coordinates[ indices[ x ] * n + d ];
+		KthElement.kthElement( i, j, i + ( j - i ) / 2, keys, indices );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * Get the number of nodes in the tree.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Get the coordinate of a node.
+	 * 
+	 * @param node
+	 *            index of the node.
+	 * @param d
+	 *            dimension.
+	 */
+	public double getPosition( final int node, final int d )
+	{
+		return positions[ node * n + d ];
+	}
+
+	/**
+	 * Compute the squared Euclidean distance of a node to the given position.
+	 * 
+	 * @param node
+	 *            index of the node.
+	 * @param p
+	 *            position.
+	 */
+	public double squDistanceTo( final int node, final double[] p )
+	{
+		double sum = 0;
+		for ( int d = 0, o = node * n; d < n; ++d, ++o )
+		{
+			final double diff = positions[ o ] - p[ d ];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Get the value of a node.
+	 * 
+	 * @param node
+	 *            index of the node.
+	 */
+	public T getValue( final int node )
+	{
+		return values.get( node );
+	}
+
+	/**
+	 * Get the index of the value of a node in the list that the tree was
+	 * constructed from.
+	 * 
+	 * @param node
+	 *            index of the node.
+	 */
+	public int getIndex( final int node )
+	{
+		return indices[ node ];
+	}
+
+	/**
+	 * Get a {@link Node} that provides the position and value of a node.
+	 * 
+	 * @param node
+	 *            index of the node.
+	 */
+	public Node getNode( final int node )
+	{
+		return new Node( node );
+	}
+
+	/**
+	 * Provides the position and value of a node of the tree.
+	 */
+	public class Node implements RealLocalizable, Sampler< T >
+	{
+		protected final int node;
+
+		protected Node( final int node )
+		{
+			this.node = node;
+		}
+
+		/**
+		 * Get the index of the node.
+		 */
+		public int getNodeIndex()
+		{
+			return node;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) getPosition( node, d );
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( positions, node * n, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) getPosition( node, d );
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return getPosition( node, d );
+		}
+
+		@Override
+		public T get()
+		{
+			return getValue( node );
+		}
+
+		@Override
+		public Node copy()
+		{
+			return new Node( node );
+		}
+
+		@Override
+		public String toString()
+		{
+			return "node " + node + " | " + get();
+		}
+	}
+
+	@Override
+	public double realMin( final int d )
+	{
+		return min[ d ];
+	}
+
+	@Override
+	public void realMin( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = min[ d ];
+	}
+
+	@Override
+	public void realMin( final RealPositionable m )
+	{
+		m.setPosition( min );
+	}
+
+	@Override
+	public double realMax( final int d )
+	{
+		return max[ d ];
+	}
+
+	@Override
+	public void realMax( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = max[ d ];
+	}
+
+	@Override
+	public void realMax( final RealPositionable m )
+	{
+		m.setPosition( max );
+	}
+}
@@ -38,6 +38,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import net.imglib2.Cursor;
+import net.imglib2.FlatIterationOrder;
 import net.imglib2.Interval;
 import net.imglib2.IterableRealInterval;
 import net.imglib2.Positionable;
@@ -47,6 +48,7 @@ import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.util.IntervalIndexer;
 
 /**
  * This class represents an n-dimensional set of counters. Histogram
@@ -168,6 +170,79 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 		totalValues--;
 	}
 
+	/**
+	 * Adds the frequency counts of another distribution with the same
+	 * dimensions to this one. Can be used to merge partial counts.
+	 */
+	public void add( final DiscreteFrequencyDistribution other )
+	{
+		modifyCounts( other, 1 );
+	}
+
+	/**
+	 * Subtracts the frequency counts of another distribution with the same
+	 * dimensions from this one.
+	 */
+	public void subtract( final DiscreteFrequencyDistribution other )
+	{
+		modifyCounts( other, -1 );
+	}
+
+	private void modifyCounts( final DiscreteFrequencyDistribution other, final long factor )
+	{
+		for ( int d = 0; d < numDimensions(); ++d )
+			if ( other.dimension( d ) != dimension( d ) )
+				throw new IllegalArgumentException( "distributions have different dimensions" );
+		final Cursor< LongType > cursor = counts.localizingCursor();
+		final RandomAccess< LongType > access = other.counts.randomAccess();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			access.setPosition( cursor );
+			final long count = access.get().get();
+			cursor.get().set( cursor.get().get() + factor * count );
+		}
+		totalValues += factor * other.totalValues;
+	}
+
+	/**
+	 * Adds factor times the frequency counts given as a flat array, with
+	 * dimension 0 varying fastest. Elements of flatCounts beyond the number of
+	 * bins are ignored.
+	 */
+	void add( final long[] flatCounts, final long factor )
+	{
+		long sum = 0;
+		if ( counts.iterationOrder() instanceof FlatIterationOrder )
+		{
+			final Cursor< LongType > cursor = counts.cursor();
+			int i = 0;
+			while ( cursor.hasNext() )
+			{
+				final LongType t = cursor.next();
+				final long count = flatCounts[ i++ ];
+				t.set( t.get() + factor * count );
+				sum += count;
+			}
+		}
+		else
+		{
+			final long[] dims = new long[ numDimensions() ];
+			final long[] position = new long[ numDimensions() ];
+			dimensions( dims );
+			final Cursor< LongType > cursor = counts.localizingCursor();
+			while ( cursor.hasNext() )
+			{
+				final LongType t = cursor.next();
+				cursor.localize( position );
+				final long count = flatCounts[ ( int ) IntervalIndexer.positionToIndex( position, dims ) ];
+				t.set( t.get() + factor * count );
+				sum += count;
+			}
+		}
+		totalValues += factor * sum;
+	}
+
 	/**
 	 * Returns the total number of values counted by this distribution.
 	 */
@@ -33,16 +33,20 @@
 
 package net.imglib2.histogram;
 
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.IterableRealInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.type.numeric.integer.LongType;
 
 /**
@@ -439,6 +443,81 @@ public class Histogram1d< T > implements Img< LongType >
 		subtract( data );
 	}
 
+	/**
+	 * Counts the data contained in the given interval in parallel. The
+	 * iteration is split into chunks that are counted into thread-local bins
+	 * and merged at the end. Integer and real bin mappers are evaluated on
+	 * primitive values.
+	 * 
+	 * @param data
+	 *            The total data to count
+	 * @param service
+	 *            The service to run the counting tasks on, or null for the
+	 *            {@link SharedThreadPool}.
+	 */
+	public void countData( final IterableInterval< T > data, final ExecutorService service )
+	{
+		reset();
+		addData( data, service );
+	}
+
+	/**
+	 * Counts additional data contained in a given interval in parallel. One
+	 * can use this together with
+	 * {@link #subtractData(IterableInterval, ExecutorService)} to update a
+	 * histogram of a sliding window with the entering and leaving parts only.
+	 * 
+	 * @param data
+	 *            The new data to count
+	 * @param service
+	 *            The service to run the counting tasks on, or null for the
+	 *            {@link SharedThreadPool}.
+	 */
+	public void addData( final IterableInterval< T > data, final ExecutorService service )
+	{
+		modifyCounts( data, service, 1 );
+	}
+
+	/**
+	 * Uncounts some original data contained in a given interval in parallel.
+	 * 
+	 * @param data
+	 *            The old data to uncount
+	 * @param service
+	 *            The service to run the counting tasks on, or null for the
+	 *            {@link SharedThreadPool}.
+	 */
+	public void subtractData( final IterableInterval< T > data, final ExecutorService service )
+	{
+		modifyCounts( data, service, -1 );
+	}
+
+	/**
+	 * Adds the counts of another histogram with the same bins to this one. One
+	 * can use this to merge histograms of parts of the data.
+	 * 
+	 * @param other
+	 *            The histogram whose counts to add
+	 */
+	public void add( final Histogram1d< T > other )
+	{
+		distrib.add( other.distrib );
+		ignoredCount += other.ignoredCount;
+	}
+
+	/**
+	 * Subtracts the counts of another histogram with the same bins from this
+	 * one.
+	 * 
+	 * @param other
+	 *            The histogram whose counts to subtract
+	 */
+	public void subtract( final Histogram1d< T > other )
+	{
+		distrib.subtract( other.distrib );
+		ignoredCount -= other.ignoredCount;
+	}
+
 	/**
 	 * Directly increment a bin by position.
 	 * 
@@ -748,4 +827,14 @@ public class Histogram1d< T > implements Img< LongType >
 		}
 	}
 
+	private void modifyCounts( final IterableInterval< T > data, final ExecutorService service, final long factor )
+	{
+		final long[] counts = HistogramCounter.count(
+				Collections.singletonList( data ),
+				Collections.singletonList( mapper ),
+				service == null ? SharedThreadPool.getExecutorService() : service );
+		distrib.add( counts, factor );
+		ignoredCount += factor * counts[ counts.length - 1 ];
+	}
+
 }
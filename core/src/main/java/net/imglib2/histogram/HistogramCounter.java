@@ -0,0 +1,273 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Counts values of {@link IterableInterval}s into flat {@code long[]} bin
+ * arrays, in parallel. The iteration is split into contiguous chunks, each
+ * counted into its own array by one task, and the partial counts are summed at
+ * the end. Values are mapped through the primitive
+ * {@link Integer1dBinMapper#map(long)} and {@link Real1dBinMapper#map(double)}
+ * where possible.
+ * 
+ * <p>
+ * The returned arrays have one element more than there are bins, the last
+ * element being the number of ignored values.
+ * </p>
+ */
+final class HistogramCounter
+{
+	private HistogramCounter()
+	{}
+
+	/**
+	 * Maps the current value of a cursor to a bin position.
+	 */
+	private static abstract class Mapping< T >
+	{
+		abstract long map( Cursor< T > cursor );
+	}
+
+	private static final class IntegerMapping< T > extends Mapping< T >
+	{
+		private final Integer1dBinMapper< ? > mapper;
+
+		IntegerMapping( final Integer1dBinMapper< ? > mapper )
+		{
+			this.mapper = mapper;
+		}
+
+		@Override
+		long map( final Cursor< T > cursor )
+		{
+			return mapper.map( ( ( IntegerType< ? > ) cursor.get() ).getIntegerLong() );
+		}
+	}
+
+	private static final class RealMapping< T > extends Mapping< T >
+	{
+		private final Real1dBinMapper< ? > mapper;
+
+		RealMapping( final Real1dBinMapper< ? > mapper )
+		{
+			this.mapper = mapper;
+		}
+
+		@Override
+		long map( final Cursor< T > cursor )
+		{
+			return mapper.map( ( ( RealType< ? > ) cursor.get() ).getRealDouble() );
+		}
+	}
+
+	private static final class GenericMapping< T > extends Mapping< T >
+	{
+		private final BinMapper1d< T > mapper;
+
+		GenericMapping( final BinMapper1d< T > mapper )
+		{
+			this.mapper = mapper;
+		}
+
+		@Override
+		long map( final Cursor< T > cursor )
+		{
+			return mapper.map( cursor.get() );
+		}
+	}
+
+	/**
+	 * Create a mapping using a private copy of mapper, as mappers are not
+	 * required to be thread-safe.
+	 */
+	private static < T > Mapping< T > mapping( final BinMapper1d< T > mapper )
+	{
+		final BinMapper1d< T > copy = mapper.copy();
+		if ( copy instanceof Integer1dBinMapper )
+			return new IntegerMapping< T >( ( Integer1dBinMapper< ? > ) copy );
+		if ( copy instanceof Real1dBinMapper )
+			return new RealMapping< T >( ( Real1dBinMapper< ? > ) copy );
+		return new GenericMapping< T >( copy );
+	}
+
+	private static int numBins( final List< ? extends BinMapper1d< ? > > mappers )
+	{
+		long numBins = 1;
+		for ( final BinMapper1d< ? > mapper : mappers )
+			numBins *= mapper.getBinCount();
+		if ( numBins >= Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "too many bins for parallel counting: " + numBins );
+		return ( int ) numBins;
+	}
+
+	/**
+	 * Count the values of data (which must all have the same iteration order)
+	 * into the bins of an n-d histogram defined by mappers. The bin index is
+	 * flattened with the first mapper varying fastest.
+	 */
+	static < T > long[] count( final List< ? extends IterableInterval< T > > data, final List< BinMapper1d< T > > mappers, final ExecutorService service )
+	{
+		if ( data.size() != mappers.size() )
+			throw new IllegalArgumentException( "number of inputs does not match number of bin mappers" );
+		final int n = mappers.size();
+		final int numBins = numBins( mappers );
+		final long[] strides = new long[ n ];
+		long stride = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			strides[ d ] = stride;
+			stride *= mappers.get( d ).getBinCount();
+		}
+
+		final long size = data.get( 0 ).size();
+		final int numTasks = ( int ) Math.max( 1, Math.min( SharedThreadPool.numTasks( 1, service ), size / 4096 ) );
+		final long chunkSize = ( size + numTasks - 1 ) / numTasks;
+		final long[][] partialCounts = new long[ numTasks ][];
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( int t = 0; t < numTasks; ++t )
+		{
+			final int task = t;
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final long start = task * chunkSize;
+					final long length = Math.min( chunkSize, size - start );
+					final long[] counts = new long[ numBins + 1 ];
+					partialCounts[ task ] = counts;
+					if ( length <= 0 )
+						return;
+
+					if ( n == 1 )
+					{
+						count( data.get( 0 ), mappers.get( 0 ), start, length, counts );
+						return;
+					}
+
+					final ArrayList< Cursor< T > > cursors = new ArrayList< Cursor< T > >( n );
+					final ArrayList< Mapping< T > > mappings = new ArrayList< Mapping< T > >( n );
+					for ( int d = 0; d < n; ++d )
+					{
+						final Cursor< T > cursor = data.get( d ).cursor();
+						cursor.jumpFwd( start );
+						cursors.add( cursor );
+						mappings.add( mapping( mappers.get( d ) ) );
+					}
+					for ( long i = 0; i < length; ++i )
+					{
+						long index = 0;
+						boolean ignored = false;
+						for ( int d = 0; d < n; ++d )
+						{
+							final Cursor< T > cursor = cursors.get( d );
+							cursor.fwd();
+							final long bin = mappings.get( d ).map( cursor );
+							if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+								ignored = true;
+							else
+								index += bin * strides[ d ];
+						}
+						if ( ignored )
+							++counts[ numBins ];
+						else
+							++counts[ ( int ) index ];
+					}
+				}
+			} );
+		}
+		SharedThreadPool.runAll( tasks, service );
+
+		final long[] counts = partialCounts[ 0 ];
+		for ( int t = 1; t < numTasks; ++t )
+		{
+			final long[] partial = partialCounts[ t ];
+			for ( int i = 0; i <= numBins; ++i )
+				counts[ i ] += partial[ i ];
+		}
+		return counts;
+	}
+
+	/**
+	 * Count a chunk of a 1-d histogram, with a specialized loop for each kind
+	 * of mapper.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	private static < T > void count( final IterableInterval< T > data, final BinMapper1d< T > mapper, final long start, final long length, final long[] counts )
+	{
+		final int ignored = counts.length - 1;
+		final BinMapper1d< T > copy = mapper.copy();
+		final Cursor< T > cursor = data.cursor();
+		cursor.jumpFwd( start );
+		if ( copy instanceof Integer1dBinMapper )
+		{
+			final Integer1dBinMapper< ? > m = ( Integer1dBinMapper< ? > ) copy;
+			final Cursor< ? extends IntegerType< ? > > c = ( Cursor ) cursor;
+			for ( long i = 0; i < length; ++i )
+			{
+				final long bin = m.map( c.next().getIntegerLong() );
+				++counts[ bin == Long.MIN_VALUE || bin == Long.MAX_VALUE ? ignored : ( int ) bin ];
+			}
+		}
+		else if ( copy instanceof Real1dBinMapper )
+		{
+			final Real1dBinMapper< ? > m = ( Real1dBinMapper< ? > ) copy;
+			final Cursor< ? extends RealType< ? > > c = ( Cursor ) cursor;
+			for ( long i = 0; i < length; ++i )
+			{
+				final long bin = m.map( c.next().getRealDouble() );
+				++counts[ bin == Long.MIN_VALUE || bin == Long.MAX_VALUE ? ignored : ( int ) bin ];
+			}
+		}
+		else
+		{
+			for ( long i = 0; i < length; ++i )
+			{
+				final long bin = copy.map( cursor.next() );
+				++counts[ bin == Long.MIN_VALUE || bin == Long.MAX_VALUE ? ignored : ( int ) bin ];
+			}
+		}
+	}
+}
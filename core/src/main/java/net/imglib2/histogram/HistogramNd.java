@@ -36,15 +36,18 @@ package net.imglib2.histogram;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.IterableRealInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.type.numeric.integer.LongType;
 
 // TODO - calculate lazily but should be able to count upper/lower/middle in
@@ -804,6 +807,79 @@ public class HistogramNd< T > implements Img< LongType >
 		subtract( data );
 	}
 
+	/**
+	 * Counts the data contained in the given intervals in parallel. The
+	 * intervals provide the values of the respective dimensions and must have
+	 * the same iteration order. The iteration is split into chunks that are
+	 * counted into thread-local bins and merged at the end.
+	 * 
+	 * @param data
+	 *            The total data to count
+	 * @param service
+	 *            The service to run the counting tasks on, or null for the
+	 *            {@link SharedThreadPool}.
+	 */
+	public void countData( final List< ? extends IterableInterval< T >> data, final ExecutorService service )
+	{
+		reset();
+		addData( data, service );
+	}
+
+	/**
+	 * Counts additional data contained in the given intervals in parallel.
+	 * 
+	 * @param data
+	 *            The new data to count
+	 * @param service
+	 *            The service to run the counting tasks on, or null for the
+	 *            {@link SharedThreadPool}.
+	 */
+	public void addData( final List< ? extends IterableInterval< T >> data, final ExecutorService service )
+	{
+		modifyCounts( data, service, 1 );
+	}
+
+	/**
+	 * Uncounts some original data contained in the given intervals in
+	 * parallel.
+	 * 
+	 * @param data
+	 *            The old data to uncount
+	 * @param service
+	 *            The service to run the counting tasks on, or null for the
+	 *            {@link SharedThreadPool}.
+	 */
+	public void subtractData( final List< ? extends IterableInterval< T >> data, final ExecutorService service )
+	{
+		modifyCounts( data, service, -1 );
+	}
+
+	/**
+	 * Adds the counts of another histogram with the same bins to this one. One
+	 * can use this to merge histograms of parts of the data.
+	 * 
+	 * @param other
+	 *            The histogram whose counts to add
+	 */
+	public void add( final HistogramNd< T > other )
+	{
+		distrib.add( other.distrib );
+		ignoredCount += other.ignoredCount;
+	}
+
+	/**
+	 * Subtracts the counts of another histogram with the same bins from this
+	 * one.
+	 * 
+	 * @param other
+	 *            The histogram whose counts to subtract
+	 */
+	public void subtract( final HistogramNd< T > other )
+	{
+		distrib.subtract( other.distrib );
+		ignoredCount -= other.ignoredCount;
+	}
+
 	/**
 	 * Directly increment a bin by position.
 	 * 
@@ -1105,6 +1181,13 @@ public class HistogramNd< T > implements Img< LongType >
 		while ( hasNext );
 	}
 
+	private void modifyCounts( final List< ? extends IterableInterval< T >> data, final ExecutorService service, final long factor )
+	{
+		final long[] counts = HistogramCounter.count( data, mappers, service == null ? SharedThreadPool.getExecutorService() : service );
+		distrib.add( counts, factor );
+		ignoredCount += factor * counts[ counts.length - 1 ];
+	}
+
 	private void count( final List< T > values, final Counter counter )
 	{
 		map( values, pos );
@@ -99,7 +99,15 @@ public class Integer1dBinMapper< T extends IntegerType< T >> implements
 	@Override
 	public long map( final T value )
 	{
-		final long val = value.getIntegerLong();
+		return map( value.getIntegerLong() );
+	}
+
+	/**
+	 * Map an integer value directly to a bin position. This is what
+	 * {@link #map(IntegerType)} does after extracting the value.
+	 */
+	public long map( final long val )
+	{
 		long pos;
 		if ( val >= minVal && val <= maxVal )
 		{
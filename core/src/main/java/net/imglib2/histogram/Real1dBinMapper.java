@@ -114,7 +114,15 @@ public class Real1dBinMapper< T extends RealType< T >> implements BinMapper1d< T
 	@Override
 	public long map( final T value )
 	{
-		final double val = value.getRealDouble();
+		return map( value.getRealDouble() );
+	}
+
+	/**
+	 * Map a real value directly to a bin position. This is what
+	 * {@link #map(RealType)} does after extracting the value.
+	 */
+	public long map( final double val )
+	{
 		long pos;
 		if ( val >= minVal && val <= maxVal )
 		{
@@ -0,0 +1,185 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.array;
+
+import java.nio.ByteBuffer;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.array.BitArray;
+import net.imglib2.img.basictypeaccess.nio.DirectByteArray;
+import net.imglib2.img.basictypeaccess.nio.DirectCharArray;
+import net.imglib2.img.basictypeaccess.nio.DirectDoubleArray;
+import net.imglib2.img.basictypeaccess.nio.DirectFloatArray;
+import net.imglib2.img.basictypeaccess.nio.DirectIntArray;
+import net.imglib2.img.basictypeaccess.nio.DirectLongArray;
+import net.imglib2.img.basictypeaccess.nio.DirectShortArray;
+import net.imglib2.img.basictypeaccess.nio.MappedBuffers;
+import net.imglib2.type.NativeType;
+
+/**
+ * Factory for {@link ArrayImg ArrayImgs} that store their data in a
+ * {@link ByteBuffer} instead of a Java array. By default, a direct buffer is
+ * allocated outside the Java heap for each image. Alternatively, an existing
+ * buffer, e.g., a file region mapped with {@link MappedBuffers}, can be
+ * wrapped:
+ * 
+ * <pre>
+ * buffer = MappedBuffers.map( file, 0, 2 * 512 * 512, false, ByteOrder.BIG_ENDIAN );
+ * img = new DirectArrayImgFactory&lt; UnsignedShortType &gt;( buffer ).create( new long[] { 512, 512 }, new UnsignedShortType() );
+ * </pre>
+ * 
+ * Bit types are stored in a heap {@link BitArray}. {@link ArrayImg#copy()
+ * Copies} of the created images are regular {@link ArrayImg ArrayImgs}.
+ * 
+ * <p>
+ * The whole image is stored in one buffer of at most {@link Integer#MAX_VALUE}
+ * bytes, i.e., an image of a 4 byte type holds at most about 2^29 pixels.
+ * Larger images should use {@link net.imglib2.img.planar.DirectPlanarImgFactory}
+ * or {@link net.imglib2.img.cell.DirectCellImgFactory}.
+ */
+public class DirectArrayImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	private final ByteBuffer buffer;
+
+	public DirectArrayImgFactory()
+	{
+		this( null );
+	}
+
+	/**
+	 * Create a factory that wraps an existing buffer. All images created by
+	 * this factory share the buffer.
+	 */
+	public DirectArrayImgFactory( final ByteBuffer buffer )
+	{
+		this.buffer = buffer;
+	}
+
+	@Override
+	public ArrayImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( ArrayImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public ArrayImg< T, BitArray > createBitInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, BitArray >( new BitArray( numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, DirectByteArray > createByteInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+		final DirectByteArray access = buffer == null ? new DirectByteArray( numEntities ) : new DirectByteArray( checkCapacity( numEntities, 1 ) );
+
+		return new ArrayImg< T, DirectByteArray >( access, dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, DirectCharArray > createCharInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+		final DirectCharArray access = buffer == null ? new DirectCharArray( numEntities ) : new DirectCharArray( checkCapacity( numEntities, 2 ) );
+
+		return new ArrayImg< T, DirectCharArray >( access, dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, DirectDoubleArray > createDoubleInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+		final DirectDoubleArray access = buffer == null ? new DirectDoubleArray( numEntities ) : new DirectDoubleArray( checkCapacity( numEntities, 8 ) );
+
+		return new ArrayImg< T, DirectDoubleArray >( access, dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, DirectFloatArray > createFloatInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+		final DirectFloatArray access = buffer == null ? new DirectFloatArray( numEntities ) : new DirectFloatArray( checkCapacity( numEntities, 4 ) );
+
+		return new ArrayImg< T, DirectFloatArray >( access, dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, DirectIntArray > createIntInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+		final DirectIntArray access = buffer == null ? new DirectIntArray( numEntities ) : new DirectIntArray( checkCapacity( numEntities, 4 ) );
+
+		return new ArrayImg< T, DirectIntArray >( access, dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, DirectLongArray > createLongInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+		final DirectLongArray access = buffer == null ? new DirectLongArray( numEntities ) : new DirectLongArray( checkCapacity( numEntities, 8 ) );
+
+		return new ArrayImg< T, DirectLongArray >( access, dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, DirectShortArray > createShortInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+		final DirectShortArray access = buffer == null ? new DirectShortArray( numEntities ) : new DirectShortArray( checkCapacity( numEntities, 2 ) );
+
+		return new ArrayImg< T, DirectShortArray >( access, dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new DirectArrayImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	private ByteBuffer checkCapacity( final int numEntities, final int bytesPerEntity )
+	{
+		final long numBytes = ( long ) numEntities * bytesPerEntity;
+		if ( buffer.capacity() < numBytes )
+			throw new RuntimeException( "Buffer too small for image: " + buffer.capacity() + " < " + numBytes + " bytes" );
+		return buffer;
+	}
+}
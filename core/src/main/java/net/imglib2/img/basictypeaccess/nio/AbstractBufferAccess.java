@@ -0,0 +1,118 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * Base class for basic type accesses backed by a {@link ByteBuffer} instead of
+ * a Java primitive array. The buffer may be a direct buffer allocated outside
+ * the Java heap or a {@link java.nio.MappedByteBuffer} region of a file, which
+ * allows to access raw data without copying it to the heap.
+ * 
+ * <p>
+ * {@link #getCurrentStorageArray()} returns the {@link ByteBuffer}. Entities
+ * are stored in the byte order of the buffer, newly allocated buffers use the
+ * native byte order.
+ * 
+ * <p>
+ * A {@link ByteBuffer} holds at most {@link Integer#MAX_VALUE} bytes, so one
+ * access holds less than 2^31 bytes, e.g., about 2^29 float or 2^28 double
+ * entities. Larger images need to be split into planes or cells.
+ */
+public abstract class AbstractBufferAccess< A > implements ArrayDataAccess< A >
+{
+	private static final long serialVersionUID = 1L;
+
+	protected transient ByteBuffer buffer;
+
+	protected AbstractBufferAccess( final ByteBuffer buffer )
+	{
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Allocate a direct buffer in native byte order.
+	 * 
+	 * @param numEntities
+	 *            number of entities.
+	 * @param bytesPerEntity
+	 *            size of an entity in bytes.
+	 * @throws RuntimeException
+	 *             if the buffer would exceed {@link Integer#MAX_VALUE} bytes.
+	 */
+	protected static ByteBuffer allocate( final int numEntities, final int bytesPerEntity )
+	{
+		final long numBytes = ( long ) numEntities * bytesPerEntity;
+		if ( numBytes > Integer.MAX_VALUE )
+			throw new RuntimeException( "Number of bytes in buffer too big: " + numBytes + " > " + Integer.MAX_VALUE );
+		return ByteBuffer.allocateDirect( ( int ) numBytes ).order( ByteOrder.nativeOrder() );
+	}
+
+	@Override
+	public ByteBuffer getCurrentStorageArray()
+	{
+		return buffer;
+	}
+
+	private void writeObject( final ObjectOutputStream out ) throws IOException
+	{
+		out.defaultWriteObject();
+		final ByteBuffer b = buffer.duplicate();
+		b.clear();
+		final byte[] bytes = new byte[ b.capacity() ];
+		b.get( bytes );
+		out.writeBoolean( buffer.order() == ByteOrder.BIG_ENDIAN );
+		out.writeInt( bytes.length );
+		out.write( bytes );
+	}
+
+	private void readObject( final ObjectInputStream in ) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		final ByteOrder order = in.readBoolean() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+		final byte[] bytes = new byte[ in.readInt() ];
+		in.readFully( bytes );
+		buffer = ByteBuffer.allocateDirect( bytes.length ).order( order );
+		buffer.put( bytes );
+		buffer.clear();
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Utility methods to map regions of raw files into memory, for wrapping them
+ * in {@link AbstractBufferAccess buffer-backed accesses}.
+ * 
+ * <p>
+ * Mappings remain valid after the file has been closed. A mapped region is
+ * limited to {@link Integer#MAX_VALUE} bytes, larger files can be mapped plane
+ * by plane using {@link #mapPlanes}.
+ */
+final public class MappedBuffers
+{
+	private MappedBuffers()
+	{}
+
+	/**
+	 * Map a region of a file.
+	 * 
+	 * @param file
+	 *            the file to map.
+	 * @param offset
+	 *            offset of the region in bytes, e.g., the size of a header.
+	 * @param size
+	 *            size of the region in bytes.
+	 * @param writable
+	 *            whether modifications are written to the file. If so, the
+	 *            file is extended to contain the region if necessary.
+	 * @param byteOrder
+	 *            byte order of the data in the file.
+	 */
+	public static MappedByteBuffer map( final File file, final long offset, final long size, final boolean writable, final ByteOrder byteOrder ) throws IOException
+	{
+		return mapPlanes( file, offset, size, 1, writable, byteOrder )[ 0 ];
+	}
+
+	/**
+	 * Map consecutive equally-sized regions of a file, e.g., the planes of a
+	 * raw image stack.
+	 * 
+	 * @param file
+	 *            the file to map.
+	 * @param offset
+	 *            offset of the first region in bytes.
+	 * @param planeSize
+	 *            size of each region in bytes.
+	 * @param numPlanes
+	 *            number of regions.
+	 * @param writable
+	 *            whether modifications are written to the file. If so, the
+	 *            file is extended to contain the regions if necessary.
+	 * @param byteOrder
+	 *            byte order of the data in the file.
+	 */
+	public static MappedByteBuffer[] mapPlanes( final File file, final long offset, final long planeSize, final int numPlanes, final boolean writable, final ByteOrder byteOrder ) throws IOException
+	{
+		if ( planeSize > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Mapped region too big: " + planeSize + " > " + Integer.MAX_VALUE );
+		final RandomAccessFile raf = new RandomAccessFile( file, writable ? "rw" : "r" );
+		try
+		{
+			final FileChannel channel = raf.getChannel();
+			final MapMode mode = writable ? MapMode.READ_WRITE : MapMode.READ_ONLY;
+			final MappedByteBuffer[] planes = new MappedByteBuffer[ numPlanes ];
+			for ( int i = 0; i < numPlanes; ++i )
+			{
+				planes[ i ] = channel.map( mode, offset + i * planeSize, planeSize );
+				planes[ i ].order( byteOrder );
+			}
+			return planes;
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	/**
+	 * Split a buffer into consecutive equally-sized slices that share its
+	 * content and byte order.
+	 */
+	public static ByteBuffer[] split( final ByteBuffer buffer, final int sliceSize, final int numSlices )
+	{
+		final ByteBuffer[] slices = new ByteBuffer[ numSlices ];
+		for ( int i = 0; i < numSlices; ++i )
+		{
+			final ByteBuffer b = buffer.duplicate();
+			b.clear();
+			b.position( i * sliceSize );
+			b.limit( ( i + 1 ) * sliceSize );
+			slices[ i ] = b.slice().order( buffer.order() );
+		}
+		return slices;
+	}
+}
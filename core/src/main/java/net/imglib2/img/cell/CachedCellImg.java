@@ -0,0 +1,108 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * A {@link CellImg}-like {@link Img} whose cells are loaded on demand by a
+ * {@link CellLoader} and kept in a {@link CellCache} with a fixed budget of
+ * cells. This allows to work with images that do not fit into memory.
+ * 
+ * <p>
+ * The loader is bound to this image only. {@link #factory()} returns an
+ * in-memory {@link CellImgFactory} with the same cell dimensions, so that
+ * temporary images created by algorithms never share the backing store.
+ * 
+ * <p>
+ * If the loader is a {@link CellStore}, modifications are written back when
+ * cells are released by the cache. Call {@link #flush()} to write back cells
+ * that are still in use, e.g., before closing the store.
+ * 
+ * @see CachedCellImgFactory
+ */
+public final class CachedCellImg< T extends NativeType< T >, A extends ArrayDataAccess< A > > extends AbstractCellImg< T, A, CachedCell< A >, CellImgFactory< T > >
+{
+	private final CachedCells< A > cachedCells;
+
+	public CachedCellImg( final CachedCells< A > cells )
+	{
+		super( new CellImgFactory< T >( cellDimensions( cells ) ), cells );
+		this.cachedCells = cells;
+	}
+
+	private static int[] cellDimensions( final CachedCells< ? > cells )
+	{
+		final int[] cellDims = new int[ cells.numDimensions() ];
+		cells.cellDimensions( cellDims );
+		return cellDims;
+	}
+
+	/**
+	 * @return the {@link CellCache} providing the cells of this image.
+	 */
+	public CellCache< A > getCache()
+	{
+		return cachedCells.getCache();
+	}
+
+	@Override
+	public CachedCells< A > getCells()
+	{
+		return cachedCells;
+	}
+
+	/**
+	 * Write back all modified cells to the {@link CellStore}.
+	 */
+	public void flush()
+	{
+		cachedCells.getCache().flush();
+	}
+
+	/**
+	 * Create an in-memory {@link CellImg} copy of this image, with the same
+	 * cell dimensions.
+	 */
+	@Override
+	public CellImg< T, ?, ? > copy()
+	{
+		final CellImg< T, ?, ? > copy = factory.create( dimension, firstElement().createVariable() );
+		copyDataTo( copy );
+		return copy;
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.BitArray;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.CharArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.type.NativeType;
+
+/**
+ * Factory for creating a {@link CachedCellImg}. The cells of the created image
+ * are provided by the {@link CellLoader} given in the constructor, and at most
+ * {@code maxNumCells} cells are kept strongly referenced. The loader must
+ * accept the basic type access of the created image, e.g., a
+ * {@code CellLoader<ShortArray>} for
+ * {@link net.imglib2.type.numeric.integer.UnsignedShortType}.
+ * 
+ * <p>
+ * The loader is bound to the one image it is created for: a factory creates a
+ * single image and throws an {@link IllegalStateException} when asked for
+ * another. Use one factory per backing file or data source. The created
+ * image's {@link CachedCellImg#factory()} allocates in memory.
+ */
+public final class CachedCellImgFactory< T extends NativeType< T > > extends AbstractCellImgFactory< T >
+{
+	private final CellLoader< ? > loader;
+
+	private final int maxNumCells;
+
+	private boolean bound = false;
+
+	public CachedCellImgFactory( final CellLoader< ? > loader, final int maxNumCells )
+	{
+		this.loader = loader;
+		this.maxNumCells = maxNumCells;
+	}
+
+	public CachedCellImgFactory( final CellLoader< ? > loader, final int maxNumCells, final int cellSize )
+	{
+		super( cellSize );
+		this.loader = loader;
+		this.maxNumCells = maxNumCells;
+	}
+
+	public CachedCellImgFactory( final CellLoader< ? > loader, final int maxNumCells, final int[] cellDimensions )
+	{
+		super( cellDimensions );
+		this.loader = loader;
+		this.maxNumCells = maxNumCells;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Override
+	public CachedCellImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( CachedCellImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public CachedCellImg< T, BitArray > createBitInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new BitArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CachedCellImg< T, ByteArray > createByteInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new ByteArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CachedCellImg< T, CharArray > createCharInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new CharArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CachedCellImg< T, ShortArray > createShortInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new ShortArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CachedCellImg< T, IntArray > createIntInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new IntArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CachedCellImg< T, LongArray > createLongInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new LongArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CachedCellImg< T, FloatArray > createFloatInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new FloatArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CachedCellImg< T, DoubleArray > createDoubleInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new DoubleArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	/**
+	 * Images of other types can not share the loader, so an in-memory
+	 * {@link CellImgFactory} with the same cell dimensions is returned.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new CellImgFactory( defaultCellDimensions );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private < A extends ArrayDataAccess< A > > CachedCellImg< T, A > createInstance( final A array, long[] dimensions, final int entitiesPerPixel )
+	{
+		dimensions = checkDimensions( dimensions );
+		final int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+		synchronized ( this )
+		{
+			if ( bound )
+				throw new IllegalStateException( "The loader of this factory is already bound to an image. Use one factory per image." );
+			bound = true;
+		}
+		final CellCache< A > cache = new CellCache< A >( ( CellLoader< A > ) loader, array, entitiesPerPixel, maxNumCells );
+		return new CachedCellImg< T, A >( new CachedCells< A >( cache, entitiesPerPixel, dimensions, cellSize ) );
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import net.imglib2.AbstractInterval;
+import net.imglib2.Interval;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.view.IterableRandomAccessibleInterval;
+
+/**
+ * Implementation of {@link Cells} that obtains {@link CachedCell}s on demand
+ * from a {@link CellCache}. Only the cells that are currently in use and a
+ * bounded number of recently used cells are kept in memory.
+ * 
+ * <p>
+ * Accessors on the cell grid remember the last cell they fetched, so the cache
+ * is only consulted when an accessor moves to another cell.
+ */
+public class CachedCells< A extends ArrayDataAccess< A > > extends AbstractCells< A, CachedCell< A >, IterableRandomAccessibleInterval< CachedCell< A > > >
+{
+	private final CellCache< A > cache;
+
+	private final IterableRandomAccessibleInterval< CachedCell< A > > cells;
+
+	public CachedCells( final CellCache< A > cache, final int entitiesPerPixel, final long[] dimensions, final int[] cellDimensions )
+	{
+		super( entitiesPerPixel, dimensions, cellDimensions );
+		this.cache = cache;
+		cells = new IterableRandomAccessibleInterval< CachedCell< A > >( new CellGrid() );
+	}
+
+	/**
+	 * @return the {@link CellCache} providing the cells.
+	 */
+	public CellCache< A > getCache()
+	{
+		return cache;
+	}
+
+	@Override
+	protected IterableRandomAccessibleInterval< CachedCell< A > > cells()
+	{
+		return cells;
+	}
+
+	private final class CellGrid extends AbstractInterval implements RandomAccessibleInterval< CachedCell< A > >
+	{
+		public CellGrid()
+		{
+			super( numCells );
+		}
+
+		@Override
+		public RandomAccess< CachedCell< A > > randomAccess()
+		{
+			return new CellGridRandomAccess();
+		}
+
+		@Override
+		public RandomAccess< CachedCell< A > > randomAccess( final Interval interval )
+		{
+			return randomAccess();
+		}
+	}
+
+	private final class CellGridRandomAccess extends Point implements RandomAccess< CachedCell< A > >
+	{
+		private final long[] cellMin;
+
+		private final int[] cellDims;
+
+		private long currentIndex;
+
+		private CachedCell< A > currentCell;
+
+		public CellGridRandomAccess()
+		{
+			super( CachedCells.this.n );
+			cellMin = new long[ n ];
+			cellDims = new int[ n ];
+			currentIndex = -1;
+			currentCell = null;
+		}
+
+		private CellGridRandomAccess( final CellGridRandomAccess ra )
+		{
+			super( ra );
+			cellMin = new long[ n ];
+			cellDims = new int[ n ];
+			currentIndex = ra.currentIndex;
+			currentCell = ra.currentCell;
+		}
+
+		@Override
+		public CachedCell< A > get()
+		{
+			final long index = IntervalIndexer.positionToIndex( position, numCells );
+			if ( index != currentIndex )
+			{
+				getCellDimensions( position, cellMin, cellDims );
+				currentCell = cache.get( index, cellMin, cellDims );
+				currentIndex = index;
+			}
+			return currentCell;
+		}
+
+		@Override
+		public CellGridRandomAccess copy()
+		{
+			return new CellGridRandomAccess( this );
+		}
+
+		@Override
+		public CellGridRandomAccess copyRandomAccess()
+		{
+			return copy();
+		}
+	}
+}
@@ -0,0 +1,611 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * Cache of {@link CachedCell}s with a fixed budget of strongly referenced
+ * cells.
+ * 
+ * <p>
+ * The most recently used {@link #getMaxNumCells() maxNumCells} cells are kept
+ * in a least-recently-used map. Cells that fall out of this map are only
+ * weakly (or, for read-only caches, softly) referenced. As long as a cell is
+ * still referenced by someone, for example a cursor, it is returned from the
+ * cache. Otherwise, its data is released and loaded again when the cell is
+ * needed next.
+ * 
+ * <p>
+ * If the cache is backed by a {@link CellStore}, modified cells are written
+ * back before their data is released. Because the basic type accesses have no
+ * write notification, modifications are detected by comparing a checksum of
+ * the data to the checksum computed when the cell was loaded. Cells that are
+ * still in use are only written back on {@link #flush()}. Evicted cells wait
+ * in a pending set until they are written back by the next {@link #get},
+ * {@link #flush()}, or by a {@link CellFetcher} thread after loading. Until
+ * then, a request for such a cell returns its pending data, so a cell is never
+ * reloaded before it has been written.
+ * 
+ * <p>
+ * {@link #get} is thread-safe. Loading and writing back of cells is done
+ * outside the cache lock, so different cells are loaded in parallel, while
+ * concurrent requests for the same cell wait for a single load. The cache lock
+ * only guards map operations. {@link #getNonBlocking} never waits for I/O,
+ * missing cells are loaded in the background by a {@link CellFetcher} instead.
+ */
+public class CellCache< A extends ArrayDataAccess< A > >
+{
+	/**
+	 * The data of a cell and the state required to load and write it back.
+	 * Outlives the {@link CachedCell} that wraps it if the cache is writable.
+	 */
+	static final class Entry< A >
+	{
+		final long key;
+
+		final long[] min;
+
+		final int[] dimensions;
+
+		final A data;
+
+		volatile boolean loaded;
+
+		long checksum;
+
+		/**
+		 * Whether a thread is currently writing back the pending entry. Guarded
+		 * by the cache lock.
+		 */
+		boolean writing;
+
+		/**
+		 * Incremented whenever the entry is added to the pending set, such
+		 * that a write that started before the entry was modified and evicted
+		 * again does not remove it. Guarded by the cache lock.
+		 */
+		int pendingVersion;
+
+		/**
+		 * Priority with which the cell is currently enqueued for loading, or
+		 * {@link Integer#MAX_VALUE} if it is not enqueued.
+		 */
+		final AtomicInteger enqueuedPriority;
+
+		Entry( final long key, final long[] min, final int[] dimensions, final A data )
+		{
+			this.key = key;
+			this.min = min;
+			this.dimensions = dimensions;
+			this.data = data;
+			loaded = false;
+			enqueuedPriority = new AtomicInteger( Integer.MAX_VALUE );
+		}
+	}
+
+	/**
+	 * A strongly referenced cell in the LRU map.
+	 */
+	private static final class Strong< A extends ArrayDataAccess< A > >
+	{
+		final CachedCell< A > cell;
+
+		Strong( final CachedCell< A > cell )
+		{
+			this.cell = cell;
+		}
+	}
+
+	/**
+	 * Weak or soft reference to an evicted cell. If the cache is writable, the
+	 * {@link Entry} (and thus the data) is held until the reference has been
+	 * dequeued and the data written back.
+	 */
+	private static interface CellReference< A extends ArrayDataAccess< A > >
+	{
+		public CachedCell< A > get();
+
+		public long key();
+
+		public Entry< A > entry();
+	}
+
+	private static final class WeakCellReference< A extends ArrayDataAccess< A > > extends WeakReference< CachedCell< A > > implements CellReference< A >
+	{
+		private final long key;
+
+		private final Entry< A > entry;
+
+		WeakCellReference( final CachedCell< A > cell, final ReferenceQueue< CachedCell< A > > queue, final long key, final Entry< A > entry )
+		{
+			super( cell, queue );
+			this.key = key;
+			this.entry = entry;
+		}
+
+		@Override
+		public long key()
+		{
+			return key;
+		}
+
+		@Override
+		public Entry< A > entry()
+		{
+			return entry;
+		}
+	}
+
+	private static final class SoftCellReference< A extends ArrayDataAccess< A > > extends SoftReference< CachedCell< A > > implements CellReference< A >
+	{
+		private final long key;
+
+		SoftCellReference( final CachedCell< A > cell, final ReferenceQueue< CachedCell< A > > queue, final long key )
+		{
+			super( cell, queue );
+			this.key = key;
+		}
+
+		@Override
+		public long key()
+		{
+			return key;
+		}
+
+		@Override
+		public Entry< A > entry()
+		{
+			return null;
+		}
+	}
+
+	private final CellLoader< A > loader;
+
+	private final CellStore< A > store;
+
+	private final A creator;
+
+	private final int entitiesPerPixel;
+
+	private final int maxNumCells;
+
+	private final LinkedHashMap< Long, Strong< A > > strong;
+
+	private final HashMap< Long, CellReference< A > > evicted;
+
+	private final ReferenceQueue< CachedCell< A > > queue;
+
+	/**
+	 * Entries of evicted cells that have been garbage-collected and are
+	 * waiting to be written back.
+	 */
+	private final HashMap< Long, Entry< A > > pending;
+
+	/**
+	 * Whether {@link #pending} contains entries that no thread is writing.
+	 */
+	private volatile boolean hasPending;
+
+	/**
+	 * @param loader
+	 *            provides the data of cells. If it is a {@link CellStore},
+	 *            modified cells are written back to it.
+	 * @param creator
+	 *            used to allocate the data of cells.
+	 * @param entitiesPerPixel
+	 *            number of basic type entities per pixel.
+	 * @param maxNumCells
+	 *            how many cells are kept strongly referenced.
+	 */
+	public CellCache( final CellLoader< A > loader, final A creator, final int entitiesPerPixel, final int maxNumCells )
+	{
+		if ( maxNumCells < 1 )
+			throw new IllegalArgumentException( "maxNumCells must be at least 1" );
+		this.loader = loader;
+		this.store = ( loader instanceof CellStore ) ? ( CellStore< A > ) loader : null;
+		this.creator = creator;
+		this.entitiesPerPixel = entitiesPerPixel;
+		this.maxNumCells = maxNumCells;
+		strong = new LinkedHashMap< Long, Strong< A > >( 16, 0.75f, true );
+		evicted = new HashMap< Long, CellReference< A > >();
+		queue = new ReferenceQueue< CachedCell< A > >();
+		pending = new HashMap< Long, Entry< A > >();
+		hasPending = false;
+	}
+
+	public int getMaxNumCells()
+	{
+		return maxNumCells;
+	}
+
+	/**
+	 * Get the cell with the given key, loading it if necessary.
+	 * 
+	 * @param key
+	 *            unique index of the cell, e.g., its flattened grid position.
+	 * @param min
+	 *            offset of the cell in image coordinates. Only used if the
+	 *            cell has to be created.
+	 * @param dimensions
+	 *            dimensions of the cell. Only used if the cell has to be
+	 *            created.
+	 */
+	public CachedCell< A > get( final long key, final long[] min, final int[] dimensions )
+	{
+		final CachedCell< A > cell = lookup( key, min, dimensions );
+		if ( !cell.entry.loaded )
+			load( cell.entry );
+		writePending();
+		return cell;
+	}
+
+	/**
+	 * Get the cell with the given key without waiting for it to be loaded. If
+	 * the cell is not loaded yet, it is enqueued for loading by the
+	 * {@link CellFetcher} and returned {@link CachedCell#isValid() invalid},
+	 * with its data all 0. If the cell is already enqueued with a lower
+	 * priority, it is enqueued again with the given priority.
+	 * 
+	 * @param key
+	 *            unique index of the cell, e.g., its flattened grid position.
+	 * @param min
+	 *            offset of the cell in image coordinates. Only used if the
+	 *            cell has to be created.
+	 * @param dimensions
+	 *            dimensions of the cell. Only used if the cell has to be
+	 *            created.
+	 * @param fetcher
+	 *            loads the cell in the background.
+	 * @param priority
+	 *            priority of the loading request, smaller values are loaded
+	 *            first.
+	 */
+	public CachedCell< A > getNonBlocking( final long key, final long[] min, final int[] dimensions, final CellFetcher fetcher, final int priority )
+	{
+		final CachedCell< A > cell = lookup( key, min, dimensions );
+		enqueue( cell, fetcher, priority );
+		return cell;
+	}
+
+	/**
+	 * Enqueue a cell for loading by the {@link CellFetcher}, unless it is
+	 * loaded already or enqueued with the same or a lower priority value.
+	 */
+	void enqueue( final CachedCell< A > cell, final CellFetcher fetcher, final int priority )
+	{
+		final Entry< A > entry = cell.entry;
+		if ( entry.loaded )
+			return;
+		for ( int p = entry.enqueuedPriority.get(); p > priority; p = entry.enqueuedPriority.get() )
+		{
+			if ( entry.enqueuedPriority.compareAndSet( p, priority ) )
+			{
+				fetcher.enqueue( this, cell, priority );
+				return;
+			}
+		}
+	}
+
+	private synchronized CachedCell< A > lookup( final long key, final long[] min, final int[] dimensions )
+	{
+		processQueue();
+		final Long k = Long.valueOf( key );
+		final Strong< A > s = strong.get( k );
+		if ( s != null )
+			return s.cell;
+
+		final CellReference< A > ref = evicted.remove( k );
+		CachedCell< A > cell = ( ref == null ) ? null : ref.get();
+		if ( cell == null )
+		{
+			Entry< A > entry = ( ref == null ) ? pending.remove( k ) : ref.entry();
+			if ( entry == null )
+				entry = new Entry< A >( key, min.clone(), dimensions.clone(), creator.createArray( numPixels( dimensions ) * entitiesPerPixel ) );
+			cell = new CachedCell< A >( entry );
+		}
+		strong.put( k, new Strong< A >( cell ) );
+		evictEldest();
+		return cell;
+	}
+
+	/**
+	 * Write back all modified cells, including those that are still in use.
+	 * Does nothing if the cache is not backed by a {@link CellStore}.
+	 */
+	public void flush()
+	{
+		if ( store == null )
+			return;
+		final ArrayList< Entry< A > > entries = new ArrayList< Entry< A > >();
+		synchronized ( this )
+		{
+			processQueue();
+			for ( final Strong< A > s : strong.values() )
+				entries.add( s.cell.entry );
+			for ( final CellReference< A > ref : evicted.values() )
+				entries.add( ref.entry() );
+			entries.addAll( pending.values() );
+		}
+		for ( final Entry< A > entry : entries )
+			writeBack( entry );
+		writePending();
+	}
+
+	/**
+	 * Drop all cells. Modified cells are written back first.
+	 */
+	public void clear()
+	{
+		synchronized ( this )
+		{
+			processQueue();
+			if ( store != null )
+			{
+				for ( final Strong< A > s : strong.values() )
+					addPending( s.cell.entry );
+				for ( final CellReference< A > ref : evicted.values() )
+					addPending( ref.entry() );
+			}
+			strong.clear();
+			evicted.clear();
+		}
+		writePending();
+	}
+
+	/**
+	 * Load the data of the cell, if this has not been done yet. Called by
+	 * {@link CellFetcher} threads.
+	 */
+	void load( final Entry< A > entry )
+	{
+		synchronized ( entry )
+		{
+			if ( !entry.loaded )
+			{
+				try
+				{
+					loader.load( entry.data, entry.min, entry.dimensions );
+				}
+				catch ( final IOException e )
+				{
+					throw new RuntimeException( e );
+				}
+				if ( store != null )
+					entry.checksum = checksum( entry.data );
+				entry.loaded = true;
+				entry.enqueuedPriority.set( Integer.MAX_VALUE );
+			}
+		}
+	}
+
+	/**
+	 * Write back the pending entries of evicted cells. The cache lock is only
+	 * held to claim the entries and to remove them afterwards, the I/O is done
+	 * outside of it. Entries that are being written by another thread are
+	 * skipped. Called by {@link #get}, {@link #flush()}, {@link #clear()} and
+	 * by {@link CellFetcher} threads.
+	 */
+	void writePending()
+	{
+		if ( store == null )
+			return;
+		final ArrayList< Entry< A > > claimed = new ArrayList< Entry< A > >();
+		final ArrayList< Integer > versions = new ArrayList< Integer >();
+		synchronized ( this )
+		{
+			processQueue();
+			if ( !hasPending )
+				return;
+			for ( final Entry< A > entry : pending.values() )
+			{
+				if ( !entry.writing )
+				{
+					entry.writing = true;
+					claimed.add( entry );
+					versions.add( Integer.valueOf( entry.pendingVersion ) );
+				}
+			}
+			hasPending = false;
+		}
+		RuntimeException failure = null;
+		for ( int i = 0; i < claimed.size(); ++i )
+		{
+			final Entry< A > entry = claimed.get( i );
+			boolean written = false;
+			try
+			{
+				writeBack( entry );
+				written = true;
+			}
+			catch ( final RuntimeException e )
+			{
+				if ( failure == null )
+					failure = e;
+			}
+			finally
+			{
+				synchronized ( this )
+				{
+					entry.writing = false;
+					final Long k = Long.valueOf( entry.key );
+					if ( pending.get( k ) == entry )
+					{
+						if ( written && entry.pendingVersion == versions.get( i ).intValue() )
+							pending.remove( k );
+						else
+							hasPending = true;
+					}
+				}
+			}
+		}
+		if ( failure != null )
+			throw failure;
+	}
+
+	/**
+	 * Write back the data of a loaded cell if it was modified. Concurrent
+	 * write-backs and loads of the same cell are serialized on the entry.
+	 */
+	private void writeBack( final Entry< A > entry )
+	{
+		if ( entry == null )
+			return;
+		synchronized ( entry )
+		{
+			if ( !entry.loaded )
+				return;
+			final long c = checksum( entry.data );
+			if ( c == entry.checksum )
+				return;
+			try
+			{
+				store.save( entry.data, entry.min, entry.dimensions );
+			}
+			catch ( final IOException e )
+			{
+				throw new RuntimeException( e );
+			}
+			entry.checksum = c;
+		}
+	}
+
+	/**
+	 * Add an entry to the set of entries waiting to be written back. Must be
+	 * called with the cache lock held.
+	 */
+	private void addPending( final Entry< A > entry )
+	{
+		if ( entry == null )
+			return;
+		++entry.pendingVersion;
+		pending.put( Long.valueOf( entry.key ), entry );
+		hasPending = true;
+	}
+
+	/**
+	 * Move the entries of cells that have been garbage-collected to the
+	 * pending set. Must be called with the cache lock held. No I/O is done
+	 * here, see {@link #writePending()}.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private void processQueue()
+	{
+		Reference< ? extends CachedCell< A > > r;
+		while ( ( r = queue.poll() ) != null )
+		{
+			final CellReference< A > ref = ( CellReference< A > ) r;
+			final Long k = Long.valueOf( ref.key() );
+			if ( evicted.get( k ) == ref )
+			{
+				evicted.remove( k );
+				addPending( ref.entry() );
+			}
+		}
+	}
+
+	private void evictEldest()
+	{
+		if ( strong.size() <= maxNumCells )
+			return;
+		final Iterator< Map.Entry< Long, Strong< A > > > it = strong.entrySet().iterator();
+		final Map.Entry< Long, Strong< A > > eldest = it.next();
+		it.remove();
+		final Strong< A > s = eldest.getValue();
+		final CellReference< A > ref;
+		if ( store == null )
+			ref = new SoftCellReference< A >( s.cell, queue, s.cell.entry.key );
+		else
+			ref = new WeakCellReference< A >( s.cell, queue, s.cell.entry.key, s.cell.entry );
+		evicted.put( eldest.getKey(), ref );
+	}
+
+	private static int numPixels( final int[] dimensions )
+	{
+		int numPixels = 1;
+		for ( final int d : dimensions )
+			numPixels *= d;
+		return numPixels;
+	}
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+	/**
+	 * 64-bit FNV-1a style hash over the elements of the storage array.
+	 */
+	static long checksum( final ArrayDataAccess< ? > data )
+	{
+		final Object array = data.getCurrentStorageArray();
+		long h = FNV_OFFSET;
+		if ( array instanceof byte[] )
+			for ( final byte v : ( byte[] ) array )
+				h = ( h ^ v ) * FNV_PRIME;
+		else if ( array instanceof short[] )
+			for ( final short v : ( short[] ) array )
+				h = ( h ^ v ) * FNV_PRIME;
+		else if ( array instanceof char[] )
+			for ( final char v : ( char[] ) array )
+				h = ( h ^ v ) * FNV_PRIME;
+		else if ( array instanceof int[] )
+			for ( final int v : ( int[] ) array )
+				h = ( h ^ v ) * FNV_PRIME;
+		else if ( array instanceof long[] )
+			for ( final long v : ( long[] ) array )
+				h = ( h ^ v ) * FNV_PRIME;
+		else if ( array instanceof float[] )
+			for ( final float v : ( float[] ) array )
+				h = ( h ^ Float.floatToRawIntBits( v ) ) * FNV_PRIME;
+		else if ( array instanceof double[] )
+			for ( final double v : ( double[] ) array )
+				h = ( h ^ Double.doubleToRawLongBits( v ) ) * FNV_PRIME;
+		else
+			throw new UnsupportedOperationException( "cannot compute checksum of " + array.getClass().getName() );
+		return h;
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * Background threads that load cells requested through
+ * {@link CellCache#getNonBlocking}. Requests are served by priority, smaller
+ * values first. Among requests with equal priority, the most recent request is
+ * served first, such that the data needed for the current view is loaded
+ * before data requested for views that are not shown anymore.
+ * 
+ * <p>
+ * The fetcher threads are daemon threads. A {@link CellFetcher} can be shared
+ * by several caches. After loading a cell, a fetcher thread notifies the
+ * {@link LoadListener}s, for example to repaint a view of the data, and then
+ * writes back modified cells that have been evicted from the cache.
+ */
+public class CellFetcher
+{
+	/**
+	 * Notified by the fetcher threads whenever a cell has been loaded.
+	 */
+	public static interface LoadListener
+	{
+		/**
+		 * Called from a fetcher thread after a cell has been loaded.
+		 * Implementations should return quickly, e.g., by just requesting a
+		 * repaint.
+		 */
+		public void cellLoaded();
+	}
+
+	private static final AtomicInteger fetcherNumber = new AtomicInteger( 1 );
+
+	private static final class Request< A extends ArrayDataAccess< A > > implements Comparable< Request< ? > >
+	{
+		final CellCache< A > cache;
+
+		final CachedCell< A > cell;
+
+		final int priority;
+
+		final long sequence;
+
+		Request( final CellCache< A > cache, final CachedCell< A > cell, final int priority, final long sequence )
+		{
+			this.cache = cache;
+			this.cell = cell;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo( final Request< ? > o )
+		{
+			if ( priority != o.priority )
+				return priority < o.priority ? -1 : 1;
+			return sequence > o.sequence ? -1 : ( sequence == o.sequence ? 0 : 1 );
+		}
+
+		void load()
+		{
+			try
+			{
+				cache.load( cell.entry );
+			}
+			finally
+			{
+				// allow the cell to be requested again if loading failed
+				cell.entry.enqueuedPriority.set( Integer.MAX_VALUE );
+			}
+		}
+
+		void writePending()
+		{
+			cache.writePending();
+		}
+
+		void cancel()
+		{
+			cell.entry.enqueuedPriority.set( Integer.MAX_VALUE );
+		}
+	}
+
+	private final PriorityBlockingQueue< Request< ? > > queue;
+
+	private final AtomicLong sequence;
+
+	private final ArrayList< Thread > threads;
+
+	private final CopyOnWriteArrayList< LoadListener > listeners;
+
+	private volatile boolean shutdown;
+
+	/**
+	 * Create and start fetcher threads.
+	 * 
+	 * @param numThreads
+	 *            how many cells are loaded in parallel.
+	 */
+	public CellFetcher( final int numThreads )
+	{
+		queue = new PriorityBlockingQueue< Request< ? > >();
+		sequence = new AtomicLong();
+		threads = new ArrayList< Thread >( numThreads );
+		listeners = new CopyOnWriteArrayList< LoadListener >();
+		shutdown = false;
+
+		final int fetcher = fetcherNumber.getAndIncrement();
+		for ( int i = 0; i < numThreads; ++i )
+		{
+			final Thread thread = new Thread( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					fetch();
+				}
+			}, "imglib2-fetcher-" + fetcher + "-thread-" + ( i + 1 ) );
+			thread.setDaemon( true );
+			thread.start();
+			threads.add( thread );
+		}
+	}
+
+	/**
+	 * Enqueue a cell for loading. Called by {@link CellCache#getNonBlocking}.
+	 */
+	< A extends ArrayDataAccess< A > > void enqueue( final CellCache< A > cache, final CachedCell< A > cell, final int priority )
+	{
+		queue.add( new Request< A >( cache, cell, priority, sequence.getAndIncrement() ) );
+	}
+
+	/**
+	 * Add a listener that is notified whenever a cell has been loaded.
+	 */
+	public void addLoadListener( final LoadListener listener )
+	{
+		listeners.add( listener );
+	}
+
+	public void removeLoadListener( final LoadListener listener )
+	{
+		listeners.remove( listener );
+	}
+
+	/**
+	 * Remove all pending requests, e.g., when the data they were requested for
+	 * is not needed anymore. The cells will be enqueued again when they are
+	 * accessed next.
+	 */
+	public void clearQueue()
+	{
+		final ArrayList< Request< ? > > pending = new ArrayList< Request< ? > >();
+		queue.drainTo( pending );
+		for ( final Request< ? > request : pending )
+			request.cancel();
+	}
+
+	/**
+	 * @return the number of pending requests.
+	 */
+	public int getQueueSize()
+	{
+		return queue.size();
+	}
+
+	/**
+	 * Stop the fetcher threads. Pending requests are dropped.
+	 */
+	public void shutdown()
+	{
+		shutdown = true;
+		for ( final Thread thread : threads )
+			thread.interrupt();
+		clearQueue();
+	}
+
+	private void fetch()
+	{
+		while ( !shutdown )
+		{
+			final Request< ? > request;
+			try
+			{
+				request = queue.take();
+			}
+			catch ( final InterruptedException e )
+			{
+				continue;
+			}
+			try
+			{
+				request.load();
+			}
+			catch ( final RuntimeException e )
+			{
+				e.printStackTrace();
+				continue;
+			}
+			for ( final LoadListener listener : listeners )
+				listener.cellLoaded();
+			try
+			{
+				request.writePending();
+			}
+			catch ( final RuntimeException e )
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+}
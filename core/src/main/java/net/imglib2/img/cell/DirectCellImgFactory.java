@@ -0,0 +1,145 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.BitArray;
+import net.imglib2.img.basictypeaccess.nio.DirectByteArray;
+import net.imglib2.img.basictypeaccess.nio.DirectCharArray;
+import net.imglib2.img.basictypeaccess.nio.DirectDoubleArray;
+import net.imglib2.img.basictypeaccess.nio.DirectFloatArray;
+import net.imglib2.img.basictypeaccess.nio.DirectIntArray;
+import net.imglib2.img.basictypeaccess.nio.DirectLongArray;
+import net.imglib2.img.basictypeaccess.nio.DirectShortArray;
+import net.imglib2.type.NativeType;
+
+/**
+ * Factory for creating {@link CellImg CellImgs} whose cells are stored in
+ * direct {@link java.nio.ByteBuffer ByteBuffers} allocated outside the Java
+ * heap. Large images then do not count against the heap limit and do not put
+ * pressure on the garbage collector.
+ * 
+ * Bit types are stored in heap {@link BitArray BitArrays}.
+ * {@link CellImg#copy() Copies} and {@link CellImg#factory() factories} of the
+ * created images are regular {@link CellImgFactory heap-backed} ones.
+ */
+public final class DirectCellImgFactory< T extends NativeType< T > > extends AbstractCellImgFactory< T >
+{
+	public DirectCellImgFactory()
+	{}
+
+	public DirectCellImgFactory( final int cellSize )
+	{
+		super( cellSize );
+	}
+
+	public DirectCellImgFactory( final int[] cellDimensions )
+	{
+		super( cellDimensions );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Override
+	public CellImg< T, ?, ? > create( final long[] dim, final T type )
+	{
+		return ( CellImg< T, ?, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public CellImg< T, BitArray, DefaultCell< BitArray > > createBitInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new BitArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, DirectByteArray, DefaultCell< DirectByteArray > > createByteInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new DirectByteArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, DirectCharArray, DefaultCell< DirectCharArray > > createCharInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new DirectCharArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, DirectShortArray, DefaultCell< DirectShortArray > > createShortInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new DirectShortArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, DirectIntArray, DefaultCell< DirectIntArray > > createIntInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new DirectIntArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, DirectLongArray, DefaultCell< DirectLongArray > > createLongInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new DirectLongArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, DirectFloatArray, DefaultCell< DirectFloatArray > > createFloatInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new DirectFloatArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, DirectDoubleArray, DefaultCell< DirectDoubleArray > > createDoubleInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new DirectDoubleArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new DirectCellImgFactory( defaultCellDimensions );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	private < A extends ArrayDataAccess< A > > CellImg< T, A, DefaultCell< A > > createInstance( final A array, long[] dimensions, final int entitiesPerPixel )
+	{
+		dimensions = checkDimensions( dimensions );
+		final int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+		return new CellImg< T, A, DefaultCell< A > >( new CellImgFactory< T >( cellSize ), new ListImgCells< A >( array, entitiesPerPixel, dimensions, cellSize ) );
+	}
+}
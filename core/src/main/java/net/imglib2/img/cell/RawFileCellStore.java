@@ -0,0 +1,234 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.BitArray;
+
+/**
+ * {@link CellStore} backed by a raw file containing the image as a flat array
+ * of basic type entities, dimension 0 varying fastest, without header.
+ * 
+ * <p>
+ * Cells are read and written line by line using positional I/O on a
+ * {@link FileChannel}, so concurrent loads of different cells do not block
+ * each other. Parts of the file beyond its current end read as 0. Bit types
+ * are not supported.
+ */
+public class RawFileCellStore< A extends ArrayDataAccess< A > > implements CellStore< A >, Closeable
+{
+	private final RandomAccessFile file;
+
+	private final FileChannel channel;
+
+	private final long[] dimensions;
+
+	private final int entitiesPerPixel;
+
+	private final ByteOrder byteOrder;
+
+	private final boolean writable;
+
+	/**
+	 * @param file
+	 *            the raw file. If it is opened writable and does not exist, it
+	 *            is created.
+	 * @param dimensions
+	 *            dimensions of the image stored in the file.
+	 * @param entitiesPerPixel
+	 *            number of basic type entities per pixel.
+	 * @param byteOrder
+	 *            byte order of the file.
+	 * @param writable
+	 *            whether modified cells are written back to the file.
+	 * @throws IOException
+	 */
+	public RawFileCellStore( final File file, final long[] dimensions, final int entitiesPerPixel, final ByteOrder byteOrder, final boolean writable ) throws IOException
+	{
+		this.file = new RandomAccessFile( file, writable ? "rw" : "r" );
+		this.channel = this.file.getChannel();
+		this.dimensions = dimensions.clone();
+		this.entitiesPerPixel = entitiesPerPixel;
+		this.byteOrder = byteOrder;
+		this.writable = writable;
+	}
+
+	@Override
+	public void load( final A data, final long[] min, final int[] cellDimensions ) throws IOException
+	{
+		final Object array = checkedStorageArray( data );
+		final int lineLength = cellDimensions[ 0 ] * entitiesPerPixel;
+		final int bytesPerEntity = bytesPerEntity( array );
+		final ByteBuffer buffer = ByteBuffer.allocate( lineLength * bytesPerEntity ).order( byteOrder );
+		final long[] position = min.clone();
+		final int numLines = numLines( cellDimensions );
+		for ( int line = 0; line < numLines; ++line )
+		{
+			buffer.clear();
+			final long offset = fileOffset( position, bytesPerEntity );
+			while ( buffer.hasRemaining() )
+				if ( channel.read( buffer, offset + buffer.position() ) < 0 )
+					break;
+			while ( buffer.hasRemaining() )
+				buffer.put( ( byte ) 0 );
+			buffer.flip();
+			get( buffer, array, line * lineLength, lineLength );
+			nextLine( position, min, cellDimensions );
+		}
+	}
+
+	@Override
+	public void save( final A data, final long[] min, final int[] cellDimensions ) throws IOException
+	{
+		if ( !writable )
+			return;
+		final Object array = checkedStorageArray( data );
+		final int lineLength = cellDimensions[ 0 ] * entitiesPerPixel;
+		final int bytesPerEntity = bytesPerEntity( array );
+		final ByteBuffer buffer = ByteBuffer.allocate( lineLength * bytesPerEntity ).order( byteOrder );
+		final long[] position = min.clone();
+		final int numLines = numLines( cellDimensions );
+		for ( int line = 0; line < numLines; ++line )
+		{
+			buffer.clear();
+			put( buffer, array, line * lineLength, lineLength );
+			buffer.flip();
+			final long offset = fileOffset( position, bytesPerEntity );
+			while ( buffer.hasRemaining() )
+				channel.write( buffer, offset + buffer.position() );
+			nextLine( position, min, cellDimensions );
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+
+	private long fileOffset( final long[] position, final int bytesPerEntity )
+	{
+		long index = position[ dimensions.length - 1 ];
+		for ( int d = dimensions.length - 2; d >= 0; --d )
+			index = index * dimensions[ d ] + position[ d ];
+		return index * entitiesPerPixel * bytesPerEntity;
+	}
+
+	private static int numLines( final int[] cellDimensions )
+	{
+		int numLines = 1;
+		for ( int d = 1; d < cellDimensions.length; ++d )
+			numLines *= cellDimensions[ d ];
+		return numLines;
+	}
+
+	/**
+	 * Move {@code position} to the start of the next line of the cell.
+	 */
+	private static void nextLine( final long[] position, final long[] min, final int[] cellDimensions )
+	{
+		for ( int d = 1; d < cellDimensions.length; ++d )
+		{
+			if ( ++position[ d ] < min[ d ] + cellDimensions[ d ] )
+				return;
+			position[ d ] = min[ d ];
+		}
+	}
+
+	private static Object checkedStorageArray( final ArrayDataAccess< ? > data )
+	{
+		if ( data instanceof BitArray )
+			throw new UnsupportedOperationException( "RawFileCellStore does not support BitArray" );
+		return data.getCurrentStorageArray();
+	}
+
+	private static int bytesPerEntity( final Object array )
+	{
+		if ( array instanceof byte[] )
+			return 1;
+		else if ( array instanceof short[] || array instanceof char[] )
+			return 2;
+		else if ( array instanceof int[] || array instanceof float[] )
+			return 4;
+		else if ( array instanceof long[] || array instanceof double[] )
+			return 8;
+		throw new UnsupportedOperationException( "unsupported storage array " + array.getClass().getName() );
+	}
+
+	private static void get( final ByteBuffer buffer, final Object array, final int offset, final int length )
+	{
+		if ( array instanceof byte[] )
+			buffer.get( ( byte[] ) array, offset, length );
+		else if ( array instanceof short[] )
+			buffer.asShortBuffer().get( ( short[] ) array, offset, length );
+		else if ( array instanceof char[] )
+			buffer.asCharBuffer().get( ( char[] ) array, offset, length );
+		else if ( array instanceof int[] )
+			buffer.asIntBuffer().get( ( int[] ) array, offset, length );
+		else if ( array instanceof long[] )
+			buffer.asLongBuffer().get( ( long[] ) array, offset, length );
+		else if ( array instanceof float[] )
+			buffer.asFloatBuffer().get( ( float[] ) array, offset, length );
+		else
+			buffer.asDoubleBuffer().get( ( double[] ) array, offset, length );
+	}
+
+	private static void put( final ByteBuffer buffer, final Object array, final int offset, final int length )
+	{
+		if ( array instanceof byte[] )
+			buffer.put( ( byte[] ) array, offset, length );
+		else if ( array instanceof short[] )
+			buffer.asShortBuffer().put( ( short[] ) array, offset, length );
+		else if ( array instanceof char[] )
+			buffer.asCharBuffer().put( ( char[] ) array, offset, length );
+		else if ( array instanceof int[] )
+			buffer.asIntBuffer().put( ( int[] ) array, offset, length );
+		else if ( array instanceof long[] )
+			buffer.asLongBuffer().put( ( long[] ) array, offset, length );
+		else if ( array instanceof float[] )
+			buffer.asFloatBuffer().put( ( float[] ) array, offset, length );
+		else
+			buffer.asDoubleBuffer().put( ( double[] ) array, offset, length );
+		buffer.position( buffer.capacity() );
+	}
+}
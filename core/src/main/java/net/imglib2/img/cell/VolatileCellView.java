@@ -0,0 +1,185 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import net.imglib2.AbstractInterval;
+import net.imglib2.Interval;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.AbstractCellImg.CellContainerSampler;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.volatiles.VolatileRealType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * A view of a {@link CachedCellImg} as {@link VolatileRealType} pixels whose
+ * random accesses never block. Pixels in cells that are not loaded yet are
+ * returned immediately as INVALID 0 values, and the cells are enqueued for
+ * loading by a {@link CellFetcher}. Renderers can display the partial data and
+ * repaint when the fetcher reports loaded cells through a
+ * {@link CellFetcher.LoadListener}, until all pixels are valid.
+ * 
+ * <p>
+ * The view shares the {@link CellCache} of the image, so cells loaded in the
+ * background are also available to regular accessors of the image. The view
+ * is meant for reading: values written to invalid pixels are overwritten when
+ * the cell is loaded.
+ * 
+ * @param <T>
+ *            pixel type of the image.
+ * @param <A>
+ *            basic type access of the image.
+ */
+public class VolatileCellView< T extends NativeType< T > & RealType< T >, A extends ArrayDataAccess< A > > extends AbstractInterval implements RandomAccessibleInterval< VolatileRealType< T > >
+{
+	private final CachedCellImg< T, A > img;
+
+	private final CellFetcher fetcher;
+
+	private final int priority;
+
+	/**
+	 * @param img
+	 *            the image to view.
+	 * @param fetcher
+	 *            loads missing cells in the background.
+	 * @param priority
+	 *            priority of loading requests issued by this view, smaller
+	 *            values are loaded first. Use, e.g., different priorities for
+	 *            different resolution levels.
+	 */
+	public VolatileCellView( final CachedCellImg< T, A > img, final CellFetcher fetcher, final int priority )
+	{
+		super( img );
+		this.img = img;
+		this.fetcher = fetcher;
+		this.priority = priority;
+	}
+
+	@Override
+	public RandomAccess< VolatileRealType< T > > randomAccess()
+	{
+		return new VolatileCellRandomAccess();
+	}
+
+	@Override
+	public RandomAccess< VolatileRealType< T > > randomAccess( final Interval interval )
+	{
+		return randomAccess();
+	}
+
+	private final class VolatileCellRandomAccess extends Point implements RandomAccess< VolatileRealType< T > >, CellContainerSampler< T, A, CachedCell< A > >
+	{
+		private final CachedCells< A > cells;
+
+		private final T type;
+
+		private final VolatileRealType< T > value;
+
+		private final long[] cellPosition;
+
+		private final long[] cellMin;
+
+		private final int[] cellDims;
+
+		private long currentKey;
+
+		private CachedCell< A > currentCell;
+
+		public VolatileCellRandomAccess()
+		{
+			super( img.numDimensions() );
+			cells = img.getCells();
+			type = img.createLinkedType();
+			value = new VolatileRealType< T >( type );
+			cellPosition = new long[ n ];
+			cellMin = new long[ n ];
+			cellDims = new int[ n ];
+			currentKey = -1;
+		}
+
+		private VolatileCellRandomAccess( final VolatileCellRandomAccess ra )
+		{
+			this();
+			setPosition( ra );
+		}
+
+		@Override
+		public VolatileRealType< T > get()
+		{
+			img.getCellPosition( position, cellPosition );
+			final long key = IntervalIndexer.positionToIndex( cellPosition, cells.numCells );
+			if ( key != currentKey )
+			{
+				cells.getCellDimensions( cellPosition, cellMin, cellDims );
+				currentCell = cells.getCache().getNonBlocking( key, cellMin, cellDims, fetcher, priority );
+				currentKey = key;
+				type.updateContainer( this );
+			}
+			else if ( !currentCell.isValid() )
+			{
+				// the request may have been dropped by CellFetcher.clearQueue()
+				cells.getCache().enqueue( currentCell, fetcher, priority );
+			}
+			int index = 0;
+			for ( int d = n - 1; d >= 0; --d )
+				index = index * cellDims[ d ] + ( int ) ( position[ d ] - cellMin[ d ] );
+			type.updateIndex( index );
+			value.setValid( currentCell.isValid() );
+			return value;
+		}
+
+		@Override
+		public CachedCell< A > getCell()
+		{
+			return currentCell;
+		}
+
+		@Override
+		public VolatileCellRandomAccess copy()
+		{
+			return new VolatileCellRandomAccess( this );
+		}
+
+		@Override
+		public VolatileCellRandomAccess copyRandomAccess()
+		{
+			return copy();
+		}
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.planar;
+
+import java.nio.ByteBuffer;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.array.BitArray;
+import net.imglib2.img.basictypeaccess.nio.DirectByteArray;
+import net.imglib2.img.basictypeaccess.nio.DirectCharArray;
+import net.imglib2.img.basictypeaccess.nio.DirectDoubleArray;
+import net.imglib2.img.basictypeaccess.nio.DirectFloatArray;
+import net.imglib2.img.basictypeaccess.nio.DirectIntArray;
+import net.imglib2.img.basictypeaccess.nio.DirectLongArray;
+import net.imglib2.img.basictypeaccess.nio.DirectShortArray;
+import net.imglib2.img.basictypeaccess.nio.MappedBuffers;
+import net.imglib2.type.NativeType;
+
+/**
+ * Factory for {@link PlanarImg PlanarImgs} that store each plane in a
+ * {@link ByteBuffer} instead of a Java array. By default, a direct buffer is
+ * allocated outside the Java heap for each plane. Alternatively, existing
+ * buffers, e.g., the planes of a raw stack mapped with
+ * {@link MappedBuffers#mapPlanes}, can be wrapped. Because every plane is
+ * mapped separately, the total size of the image is not limited to
+ * {@link Integer#MAX_VALUE} bytes.
+ * 
+ * Bit types are stored in heap {@link BitArray BitArrays}.
+ * {@link PlanarImg#copy() Copies} of the created images are regular
+ * {@link PlanarImg PlanarImgs}.
+ */
+public class DirectPlanarImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	private final ByteBuffer[] planes;
+
+	public DirectPlanarImgFactory()
+	{
+		this( null );
+	}
+
+	/**
+	 * Create a factory that wraps existing buffers, one per plane. All images
+	 * created by this factory share the buffers.
+	 */
+	public DirectPlanarImgFactory( final ByteBuffer[] planes )
+	{
+		this.planes = planes;
+	}
+
+	@Override
+	public PlanarImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( PlanarImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public NativeImg< T, BitArray > createBitInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return new PlanarImg< T, BitArray >( new BitArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public NativeImg< T, DirectByteArray > createByteInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( planes == null )
+			return new PlanarImg< T, DirectByteArray >( new DirectByteArray( 1 ), dimensions, entitiesPerPixel );
+		final PlanarImg< T, DirectByteArray > img = new PlanarImg< T, DirectByteArray >( dimensions, entitiesPerPixel );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new DirectByteArray( checkPlane( img, i, entitiesPerPixel, 1 ) ) );
+		return img;
+	}
+
+	@Override
+	public NativeImg< T, DirectCharArray > createCharInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( planes == null )
+			return new PlanarImg< T, DirectCharArray >( new DirectCharArray( 1 ), dimensions, entitiesPerPixel );
+		final PlanarImg< T, DirectCharArray > img = new PlanarImg< T, DirectCharArray >( dimensions, entitiesPerPixel );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new DirectCharArray( checkPlane( img, i, entitiesPerPixel, 2 ) ) );
+		return img;
+	}
+
+	@Override
+	public NativeImg< T, DirectDoubleArray > createDoubleInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( planes == null )
+			return new PlanarImg< T, DirectDoubleArray >( new DirectDoubleArray( 1 ), dimensions, entitiesPerPixel );
+		final PlanarImg< T, DirectDoubleArray > img = new PlanarImg< T, DirectDoubleArray >( dimensions, entitiesPerPixel );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new DirectDoubleArray( checkPlane( img, i, entitiesPerPixel, 8 ) ) );
+		return img;
+	}
+
+	@Override
+	public NativeImg< T, DirectFloatArray > createFloatInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( planes == null )
+			return new PlanarImg< T, DirectFloatArray >( new DirectFloatArray( 1 ), dimensions, entitiesPerPixel );
+		final PlanarImg< T, DirectFloatArray > img = new PlanarImg< T, DirectFloatArray >( dimensions, entitiesPerPixel );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new DirectFloatArray( checkPlane( img, i, entitiesPerPixel, 4 ) ) );
+		return img;
+	}
+
+	@Override
+	public NativeImg< T, DirectIntArray > createIntInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( planes == null )
+			return new PlanarImg< T, DirectIntArray >( new DirectIntArray( 1 ), dimensions, entitiesPerPixel );
+		final PlanarImg< T, DirectIntArray > img = new PlanarImg< T, DirectIntArray >( dimensions, entitiesPerPixel );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new DirectIntArray( checkPlane( img, i, entitiesPerPixel, 4 ) ) );
+		return img;
+	}
+
+	@Override
+	public NativeImg< T, DirectLongArray > createLongInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( planes == null )
+			return new PlanarImg< T, DirectLongArray >( new DirectLongArray( 1 ), dimensions, entitiesPerPixel );
+		final PlanarImg< T, DirectLongArray > img = new PlanarImg< T, DirectLongArray >( dimensions, entitiesPerPixel );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new DirectLongArray( checkPlane( img, i, entitiesPerPixel, 8 ) ) );
+		return img;
+	}
+
+	@Override
+	public NativeImg< T, DirectShortArray > createShortInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( planes == null )
+			return new PlanarImg< T, DirectShortArray >( new DirectShortArray( 1 ), dimensions, entitiesPerPixel );
+		final PlanarImg< T, DirectShortArray > img = new PlanarImg< T, DirectShortArray >( dimensions, entitiesPerPixel );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new DirectShortArray( checkPlane( img, i, entitiesPerPixel, 2 ) ) );
+		return img;
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new DirectPlanarImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	private ByteBuffer checkPlane( final PlanarImg< T, ? > img, final int i, final int entitiesPerPixel, final int bytesPerEntity )
+	{
+		if ( planes.length != img.numSlices() )
+			throw new RuntimeException( "Number of planes does not match image: " + planes.length + " != " + img.numSlices() );
+		final int n = img.numDimensions();
+		final long numBytes = ( n > 1 ? img.dimension( 1 ) : 1 ) * img.dimension( 0 ) * entitiesPerPixel * bytesPerEntity;
+		if ( planes[ i ].capacity() < numBytes )
+			throw new RuntimeException( "Buffer too small for plane " + i + ": " + planes[ i ].capacity() + " < " + numBytes + " bytes" );
+		return planes[ i ];
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.rle;
+
+/**
+ * Reads and writes the raw bits of the pixel at the current position of a
+ * {@link RleImg.PositionProvider}. The run of the last access is remembered,
+ * such that consecutive accesses within the same run need no search.
+ */
+abstract class AbstractRleAccess
+{
+	protected final RleStorage storage;
+
+	protected final RleImg.PositionProvider position;
+
+	private int hintLine;
+
+	private int hintRun;
+
+	AbstractRleAccess( final RleStorage storage, final RleImg.PositionProvider position )
+	{
+		this.storage = storage;
+		this.position = position;
+		hintLine = -1;
+		hintRun = 0;
+	}
+
+	public RleStorage getStorage()
+	{
+		return storage;
+	}
+
+	private int run( final int line, final int x )
+	{
+		if ( line != hintLine || !storage.contains( line, hintRun, x ) )
+		{
+			if ( line == hintLine && storage.contains( line, hintRun + 1, x ) )
+				++hintRun;
+			else
+				hintRun = storage.findRun( line, x );
+			hintLine = line;
+		}
+		return hintRun;
+	}
+
+	protected long getBits()
+	{
+		if ( position == null )
+			return storage.fill();
+		final int line = position.getLine();
+		return storage.runValue( line, run( line, position.getX() ) );
+	}
+
+	protected void setBits( final long bits )
+	{
+		final int line = position.getLine();
+		final int x = position.getX();
+		hintRun = storage.set( line, x, run( line, x ), bits );
+	}
+}
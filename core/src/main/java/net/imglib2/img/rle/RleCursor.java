@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.rle;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.rle.RleImg.PositionProvider;
+import net.imglib2.iterator.LocalizingIntervalIterator;
+import net.imglib2.type.NativeType;
+
+/**
+ * Flat iteration {@link Cursor} on a {@link RleImg}. The linked access
+ * remembers the current run, so advancing within a run costs no search.
+ */
+public final class RleCursor< T extends NativeType< T > > extends LocalizingIntervalIterator implements Cursor< T >, PositionProvider
+{
+	private final RleImg< T, ? > img;
+
+	private final T type;
+
+	/**
+	 * index of the current line. Not initialized in its declaration, because
+	 * {@link #reset()} is called from the super constructor.
+	 */
+	private int line;
+
+	public RleCursor( final RleImg< T, ? > img )
+	{
+		super( img );
+
+		this.img = img;
+		this.type = img.createLinkedType();
+		type.updateContainer( this );
+	}
+
+	private RleCursor( final RleCursor< T > cursor )
+	{
+		super( cursor );
+
+		this.img = cursor.img;
+		this.type = img.createLinkedType();
+
+		for ( int d = 0; d < n; d++ )
+			position[ d ] = cursor.position[ d ];
+		index = cursor.index;
+		line = cursor.line;
+
+		type.updateContainer( this );
+	}
+
+	@Override
+	public void fwd()
+	{
+		super.fwd();
+		if ( position[ 0 ] == 0 )
+			++line;
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		super.jumpFwd( steps );
+		line = ( int ) ( index / dimensions[ 0 ] );
+	}
+
+	@Override
+	public void reset()
+	{
+		super.reset();
+		line = -1;
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public T next()
+	{
+		fwd();
+		return get();
+	}
+
+	@Override
+	public void remove()
+	{}
+
+	@Override
+	public RleCursor< T > copy()
+	{
+		return new RleCursor< T >( this );
+	}
+
+	@Override
+	public RleCursor< T > copyCursor()
+	{
+		return copy();
+	}
+
+	@Override
+	public int getLine()
+	{
+		return line;
+	}
+
+	@Override
+	public int getX()
+	{
+		return ( int ) position[ 0 ];
+	}
+}
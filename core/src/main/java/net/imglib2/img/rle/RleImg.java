@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.rle;
+
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.img.AbstractNativeImg;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.type.NativeType;
+
+/**
+ * A {@link net.imglib2.img.NativeImg} that stores each line (the pixels that
+ * differ only in the first coordinate) as a sequence of runs of equal value.
+ * Memory scales with the number of runs instead of the number of pixels, which
+ * makes it suitable for label images, masks and other piecewise constant data.
+ * 
+ * <p>
+ * Cursors iterate in flat order and keep track of the current run, so
+ * iteration costs O(1) per pixel. Random accesses find the run by binary
+ * search within the line, unless they stay in the run of the previous access.
+ * {@link #runCursor()} visits only the runs that differ from the fill value.
+ * Writes modify the runs in place.
+ * </p>
+ * 
+ * <p>
+ * Lines are limited to {@link Integer#MAX_VALUE} pixels, and there can be at
+ * most {@link Integer#MAX_VALUE} lines. Writing concurrently is safe as long
+ * as different threads write to different lines.
+ * </p>
+ */
+public final class RleImg< T extends NativeType< T >, A extends RleAccess< A > > extends AbstractNativeImg< T, A >
+{
+	final A data;
+
+	/**
+	 * steps between lines when moving along dimensions &gt; 0.
+	 */
+	final int[] lineSteps;
+
+	public RleImg( final A data, final long[] dim, final int entitiesPerPixel )
+	{
+		super( dim, entitiesPerPixel );
+		this.data = data;
+		lineSteps = new int[ n ];
+		int step = 1;
+		for ( int d = 1; d < n; ++d )
+		{
+			lineSteps[ d ] = step;
+			step *= ( int ) dim[ d ];
+		}
+	}
+
+	/**
+	 * Provides the current pixel to the {@link RleAccess} of a linked type.
+	 */
+	public static interface PositionProvider
+	{
+		/**
+		 * @return index of the current line.
+		 */
+		int getLine();
+
+		/**
+		 * @return position of the current pixel in the current line.
+		 */
+		int getX();
+	}
+
+	// updater is the RandomAccess / Cursor etc
+	// each call creates a new access wrapper
+	@Override
+	public A update( final Object updater )
+	{
+		return data.createInstance( ( PositionProvider ) updater );
+	}
+
+	/**
+	 * @return the run-length encoded pixel data.
+	 */
+	public RleStorage getStorage()
+	{
+		return data.getStorage();
+	}
+
+	@Override
+	public RleRandomAccess< T > randomAccess()
+	{
+		return new RleRandomAccess< T >( this );
+	}
+
+	@Override
+	public RleCursor< T > cursor()
+	{
+		return new RleCursor< T >( this );
+	}
+
+	@Override
+	public RleCursor< T > localizingCursor()
+	{
+		return cursor();
+	}
+
+	/**
+	 * @return a cursor over the runs that differ from the fill value.
+	 */
+	public RleRunCursor< T > runCursor()
+	{
+		return new RleRunCursor< T >( this );
+	}
+
+	@Override
+	public ImgFactory< T > factory()
+	{
+		return new RleImgFactory< T >();
+	}
+
+	@Override
+	public RleImg< T, A > copy()
+	{
+		@SuppressWarnings( "unchecked" )
+		final RleImg< T, A > copy = ( RleImg< T, A > ) factory().create( dimension, firstElement().createVariable() );
+		copy.getStorage().set( getStorage() );
+		return copy;
+	}
+
+	@Override
+	public FlatIterationOrder iterationOrder()
+	{
+		return new FlatIterationOrder( this );
+	}
+}
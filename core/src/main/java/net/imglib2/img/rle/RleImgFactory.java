@@ -0,0 +1,134 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.rle;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.type.NativeType;
+
+/**
+ * Factory for {@link RleImg}s. Only types with one entity per pixel are
+ * supported. Images are initially filled with zero.
+ */
+public class RleImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	@Override
+	public RleImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( RleImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public RleImg< T, BooleanRle > createBitInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( entitiesPerPixel != 1 )
+			throw new RuntimeException( "not implemented" );
+
+		return new RleImg< T, BooleanRle >( new BooleanRle( dimensions, false ), dimensions, 1 );
+	}
+
+	@Override
+	public RleImg< T, ByteRle > createByteInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( entitiesPerPixel != 1 )
+			throw new RuntimeException( "not implemented" );
+
+		return new RleImg< T, ByteRle >( new ByteRle( dimensions, ( byte ) 0 ), dimensions, 1 );
+	}
+
+	@Override
+	public RleImg< T, CharRle > createCharInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( entitiesPerPixel != 1 )
+			throw new RuntimeException( "not implemented" );
+
+		return new RleImg< T, CharRle >( new CharRle( dimensions, ( char ) 0 ), dimensions, 1 );
+	}
+
+	@Override
+	public RleImg< T, ShortRle > createShortInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( entitiesPerPixel != 1 )
+			throw new RuntimeException( "not implemented" );
+
+		return new RleImg< T, ShortRle >( new ShortRle( dimensions, ( short ) 0 ), dimensions, 1 );
+	}
+
+	@Override
+	public RleImg< T, IntRle > createIntInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( entitiesPerPixel != 1 )
+			throw new RuntimeException( "not implemented" );
+
+		return new RleImg< T, IntRle >( new IntRle( dimensions, 0 ), dimensions, 1 );
+	}
+
+	@Override
+	public RleImg< T, LongRle > createLongInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( entitiesPerPixel != 1 )
+			throw new RuntimeException( "not implemented" );
+
+		return new RleImg< T, LongRle >( new LongRle( dimensions, 0 ), dimensions, 1 );
+	}
+
+	@Override
+	public RleImg< T, FloatRle > createFloatInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( entitiesPerPixel != 1 )
+			throw new RuntimeException( "not implemented" );
+
+		return new RleImg< T, FloatRle >( new FloatRle( dimensions, 0.0f ), dimensions, 1 );
+	}
+
+	@Override
+	public RleImg< T, DoubleRle > createDoubleInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( entitiesPerPixel != 1 )
+			throw new RuntimeException( "not implemented" );
+
+		return new RleImg< T, DoubleRle >( new DoubleRle( dimensions, 0.0d ), dimensions, 1 );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new RleImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
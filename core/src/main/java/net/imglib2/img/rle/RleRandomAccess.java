@@ -0,0 +1,272 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.rle;
+
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.rle.RleImg.PositionProvider;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Util;
+
+/**
+ * {@link RandomAccess} on a {@link RleImg}. The current line index is updated
+ * incrementally, the run containing the current pixel is found by binary
+ * search within the line when the position leaves the previously accessed
+ * run.
+ */
+public final class RleRandomAccess< T extends NativeType< T > > implements PositionProvider, RandomAccess< T >
+{
+	private final RleImg< T, ? > img;
+
+	private final T type;
+
+	private final int n;
+
+	private final long[] position;
+
+	private final int[] lineSteps;
+
+	private int line;
+
+	public RleRandomAccess( final RleImg< T, ? > img )
+	{
+		this.n = img.numDimensions();
+		this.position = new long[ n ];
+		this.lineSteps = img.lineSteps;
+		this.img = img;
+		this.type = img.createLinkedType();
+		this.line = 0;
+
+		type.updateContainer( this );
+	}
+
+	private RleRandomAccess( final RleRandomAccess< T > randomAccess )
+	{
+		this.n = randomAccess.n;
+		this.position = randomAccess.position.clone();
+		this.lineSteps = randomAccess.lineSteps;
+		this.img = randomAccess.img;
+		this.type = img.createLinkedType();
+		this.line = randomAccess.line;
+
+		type.updateContainer( this );
+	}
+
+	@Override
+	public void fwd( final int d )
+	{
+		++position[ d ];
+		line += lineSteps[ d ];
+	}
+
+	@Override
+	public void bck( final int d )
+	{
+		--position[ d ];
+		line -= lineSteps[ d ];
+	}
+
+	@Override
+	public void move( final long distance, final int d )
+	{
+		position[ d ] += distance;
+		line += ( int ) distance * lineSteps[ d ];
+	}
+
+	@Override
+	public void move( final int distance, final int d )
+	{
+		move( ( long ) distance, d );
+	}
+
+	@Override
+	public void move( final int[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+			move( ( long ) distance[ d ], d );
+	}
+
+	@Override
+	public void move( final long[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+			move( distance[ d ], d );
+	}
+
+	@Override
+	public void move( final Localizable localizable )
+	{
+		for ( int d = 0; d < n; ++d )
+			move( localizable.getLongPosition( d ), d );
+	}
+
+	@Override
+	public void setPosition( final long pos, final int d )
+	{
+		line += ( int ) ( pos - position[ d ] ) * lineSteps[ d ];
+		position[ d ] = pos;
+	}
+
+	@Override
+	public void setPosition( final int pos, final int d )
+	{
+		setPosition( ( long ) pos, d );
+	}
+
+	@Override
+	public void setPosition( final int[] pos )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = pos[ d ];
+		updateLine();
+	}
+
+	@Override
+	public void setPosition( final long[] pos )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = pos[ d ];
+		updateLine();
+	}
+
+	@Override
+	public void setPosition( final Localizable localizable )
+	{
+		localizable.localize( position );
+		updateLine();
+	}
+
+	private void updateLine()
+	{
+		int l = 0;
+		for ( int d = 1; d < n; ++d )
+			l += ( int ) position[ d ] * lineSteps[ d ];
+		line = l;
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public RleRandomAccess< T > copy()
+	{
+		return new RleRandomAccess< T >( this );
+	}
+
+	@Override
+	public RleRandomAccess< T > copyRandomAccess()
+	{
+		return copy();
+	}
+
+	@Override
+	public int getLine()
+	{
+		return line;
+	}
+
+	@Override
+	public int getX()
+	{
+		return ( int ) position[ 0 ];
+	}
+
+	@Override
+	public void localize( final float[] pos )
+	{
+		for ( int d = 0; d < n; d++ )
+			pos[ d ] = this.position[ d ];
+	}
+
+	@Override
+	public void localize( final double[] pos )
+	{
+		for ( int d = 0; d < n; d++ )
+			pos[ d ] = this.position[ d ];
+	}
+
+	@Override
+	public void localize( final int[] pos )
+	{
+		for ( int d = 0; d < n; d++ )
+			pos[ d ] = ( int ) this.position[ d ];
+	}
+
+	@Override
+	public void localize( final long[] pos )
+	{
+		for ( int d = 0; d < n; d++ )
+			pos[ d ] = this.position[ d ];
+	}
+
+	@Override
+	public float getFloatPosition( final int d )
+	{
+		return position[ d ];
+	}
+
+	@Override
+	public double getDoublePosition( final int d )
+	{
+		return position[ d ];
+	}
+
+	@Override
+	public int getIntPosition( final int d )
+	{
+		return ( int ) position[ d ];
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		return position[ d ];
+	}
+
+	@Override
+	public String toString()
+	{
+		return Util.printCoordinates( position ) + " = " + get();
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+}
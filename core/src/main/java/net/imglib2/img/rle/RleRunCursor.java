@@ -0,0 +1,233 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.rle;
+
+import net.imglib2.Localizable;
+import net.imglib2.img.rle.RleImg.PositionProvider;
+import net.imglib2.type.NativeType;
+
+/**
+ * Iterates the runs of a {@link RleImg} whose value differs from the fill
+ * value, in flat order. Lines that contain only the fill value are skipped
+ * without being looked at, so sparse foreground is visited in time
+ * proportional to the number of runs.
+ * 
+ * <p>
+ * The position is that of the first pixel of the current run; the run
+ * continues for {@link #length()} pixels along dimension 0. {@link #get()}
+ * returns the value of the run. The image must not be modified while
+ * iterating.
+ * </p>
+ */
+public final class RleRunCursor< T extends NativeType< T > > implements Localizable, PositionProvider
+{
+	private final RleStorage storage;
+
+	private final T type;
+
+	private final int n;
+
+	private final long[] dimensions;
+
+	private final long[] position;
+
+	private int line;
+
+	private int run;
+
+	private int nextLine;
+
+	private int nextRun;
+
+	public RleRunCursor( final RleImg< T, ? > img )
+	{
+		this.storage = img.getStorage();
+		this.n = img.numDimensions();
+		this.dimensions = new long[ n ];
+		img.dimensions( dimensions );
+		this.position = new long[ n ];
+		this.type = img.createLinkedType();
+		type.updateContainer( this );
+		reset();
+	}
+
+	public void reset()
+	{
+		line = -1;
+		run = 0;
+		nextLine = 0;
+		nextRun = -1;
+		findNext();
+	}
+
+	private void findNext()
+	{
+		final int numLines = storage.numLines();
+		final long fill = storage.fill();
+		int l = nextLine;
+		int r = nextRun + 1;
+		while ( l < numLines )
+		{
+			if ( !storage.isEmpty( l ) )
+			{
+				final int numRuns = storage.numRuns( l );
+				for ( ; r < numRuns; ++r )
+				{
+					if ( storage.runValue( l, r ) != fill )
+					{
+						nextLine = l;
+						nextRun = r;
+						return;
+					}
+				}
+			}
+			++l;
+			r = 0;
+		}
+		nextLine = numLines;
+		nextRun = 0;
+	}
+
+	public boolean hasNext()
+	{
+		return nextLine < storage.numLines();
+	}
+
+	/**
+	 * Move to the next run.
+	 */
+	public void fwd()
+	{
+		if ( nextLine != line )
+		{
+			line = nextLine;
+			long i = line;
+			for ( int d = 1; d < n; ++d )
+			{
+				position[ d ] = i % dimensions[ d ];
+				i /= dimensions[ d ];
+			}
+		}
+		run = nextRun;
+		position[ 0 ] = storage.runStart( line, run );
+		findNext();
+	}
+
+	/**
+	 * @return the number of pixels in the current run.
+	 */
+	public int length()
+	{
+		return storage.runEnd( line, run ) - storage.runStart( line, run );
+	}
+
+	/**
+	 * @return the value of the current run.
+	 */
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public int getLine()
+	{
+		return line;
+	}
+
+	@Override
+	public int getX()
+	{
+		return ( int ) position[ 0 ];
+	}
+
+	@Override
+	public void localize( final float[] pos )
+	{
+		for ( int d = 0; d < n; d++ )
+			pos[ d ] = this.position[ d ];
+	}
+
+	@Override
+	public void localize( final double[] pos )
+	{
+		for ( int d = 0; d < n; d++ )
+			pos[ d ] = this.position[ d ];
+	}
+
+	@Override
+	public void localize( final int[] pos )
+	{
+		for ( int d = 0; d < n; d++ )
+			pos[ d ] = ( int ) this.position[ d ];
+	}
+
+	@Override
+	public void localize( final long[] pos )
+	{
+		for ( int d = 0; d < n; d++ )
+			pos[ d ] = this.position[ d ];
+	}
+
+	@Override
+	public float getFloatPosition( final int d )
+	{
+		return position[ d ];
+	}
+
+	@Override
+	public double getDoublePosition( final int d )
+	{
+		return position[ d ];
+	}
+
+	@Override
+	public int getIntPosition( final int d )
+	{
+		return ( int ) position[ d ];
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		return position[ d ];
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+}
@@ -0,0 +1,346 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.rle;
+
+import java.util.Arrays;
+
+/**
+ * Run-length encoded pixel values of an image, stored line by line. A line is
+ * the set of pixels that differ only in the first coordinate. Each line is a
+ * sequence of runs given by the x coordinate of its first pixel and its value.
+ * Values of all primitive types are stored as {@code long} bits (see the
+ * {@link RleAccess} implementations). Lines that consist of a single run of
+ * the fill value take no memory besides a null reference.
+ * 
+ * <p>
+ * Reading is thread-safe. Concurrent writes are thread-safe as long as no two
+ * threads write to the same line.
+ * </p>
+ */
+public final class RleStorage
+{
+	private final int lineLength;
+
+	private final int numLines;
+
+	private final long fill;
+
+	/**
+	 * x coordinate of the first pixel of each run, per line. null if the line
+	 * is a single run of the fill value.
+	 */
+	private final int[][] starts;
+
+	/**
+	 * value of each run, per line.
+	 */
+	private final long[][] values;
+
+	/**
+	 * number of runs per line (the arrays may have extra capacity).
+	 */
+	private final int[] numRuns;
+
+	/**
+	 * Create storage for the given image dimensions, with all pixels set to
+	 * the fill value.
+	 */
+	public RleStorage( final long[] dimensions, final long fill )
+	{
+		long lines = 1;
+		for ( int d = 1; d < dimensions.length; ++d )
+			lines *= dimensions[ d ];
+		if ( dimensions[ 0 ] > Integer.MAX_VALUE || lines > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "RleStorage supports at most " + Integer.MAX_VALUE + " lines of at most " + Integer.MAX_VALUE + " pixels." );
+		lineLength = ( int ) dimensions[ 0 ];
+		numLines = ( int ) lines;
+		this.fill = fill;
+		starts = new int[ numLines ][];
+		values = new long[ numLines ][];
+		numRuns = new int[ numLines ];
+	}
+
+	/**
+	 * Create a deep copy.
+	 */
+	public RleStorage( final RleStorage storage )
+	{
+		lineLength = storage.lineLength;
+		numLines = storage.numLines;
+		fill = storage.fill;
+		starts = new int[ numLines ][];
+		values = new long[ numLines ][];
+		numRuns = storage.numRuns.clone();
+		for ( int line = 0; line < numLines; ++line )
+		{
+			if ( storage.starts[ line ] != null )
+			{
+				starts[ line ] = Arrays.copyOf( storage.starts[ line ], numRuns[ line ] );
+				values[ line ] = Arrays.copyOf( storage.values[ line ], numRuns[ line ] );
+			}
+		}
+	}
+
+	public int lineLength()
+	{
+		return lineLength;
+	}
+
+	public int numLines()
+	{
+		return numLines;
+	}
+
+	public long fill()
+	{
+		return fill;
+	}
+
+	/**
+	 * @return the number of runs in a line.
+	 */
+	public int numRuns( final int line )
+	{
+		return starts[ line ] == null ? 1 : numRuns[ line ];
+	}
+
+	/**
+	 * @return the total number of runs in all lines.
+	 */
+	public long numRuns()
+	{
+		long n = 0;
+		for ( int line = 0; line < numLines; ++line )
+			n += numRuns( line );
+		return n;
+	}
+
+	/**
+	 * @return whether the line is a single run of the fill value.
+	 */
+	public boolean isEmpty( final int line )
+	{
+		return starts[ line ] == null;
+	}
+
+	/**
+	 * @return x coordinate of the first pixel of a run.
+	 */
+	public int runStart( final int line, final int run )
+	{
+		final int[] s = starts[ line ];
+		return s == null ? 0 : s[ run ];
+	}
+
+	/**
+	 * @return x coordinate after the last pixel of a run.
+	 */
+	public int runEnd( final int line, final int run )
+	{
+		final int[] s = starts[ line ];
+		return ( s == null || run + 1 >= numRuns[ line ] ) ? lineLength : s[ run + 1 ];
+	}
+
+	/**
+	 * @return the value of a run.
+	 */
+	public long runValue( final int line, final int run )
+	{
+		final long[] v = values[ line ];
+		return v == null ? fill : v[ run ];
+	}
+
+	/**
+	 * @return whether x is in the given run. Used to validate cached run
+	 *         indices, so run may be out of range.
+	 */
+	public boolean contains( final int line, final int run, final int x )
+	{
+		final int[] s = starts[ line ];
+		if ( s == null )
+			return run == 0;
+		final int n = numRuns[ line ];
+		return run >= 0 && run < n && s[ run ] <= x && ( run + 1 == n || x < s[ run + 1 ] );
+	}
+
+	/**
+	 * Find the run containing x by binary search.
+	 */
+	public int findRun( final int line, final int x )
+	{
+		final int[] s = starts[ line ];
+		if ( s == null )
+			return 0;
+		int lo = 0;
+		int hi = numRuns[ line ] - 1;
+		while ( lo < hi )
+		{
+			final int mid = ( lo + hi + 1 ) >>> 1;
+			if ( s[ mid ] <= x )
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		return lo;
+	}
+
+	/**
+	 * Set the value of pixel x in a line.
+	 * 
+	 * @param run
+	 *            the run containing x.
+	 * @return the run containing x after the modification.
+	 */
+	public int set( final int line, final int x, int run, final long value )
+	{
+		if ( starts[ line ] == null )
+		{
+			if ( value == fill )
+				return 0;
+			starts[ line ] = new int[] { 0, 0, 0, 0 };
+			values[ line ] = new long[] { fill, 0, 0, 0 };
+			numRuns[ line ] = 1;
+			run = 0;
+		}
+
+		final long[] v = values[ line ];
+		if ( v[ run ] == value )
+			return run;
+
+		final int runStart = runStart( line, run );
+		final int runEnd = runEnd( line, run );
+		final int n = numRuns[ line ];
+		if ( runEnd - runStart == 1 )
+		{
+			v[ run ] = value;
+			if ( run + 1 < n && v[ run + 1 ] == value )
+				remove( line, run + 1 );
+			if ( run > 0 && v[ run - 1 ] == value )
+			{
+				remove( line, run );
+				--run;
+			}
+		}
+		else if ( x == runStart )
+		{
+			if ( run > 0 && v[ run - 1 ] == value )
+			{
+				++starts[ line ][ run ];
+				--run;
+			}
+			else
+			{
+				insert( line, run, x, value );
+				++starts[ line ][ run + 1 ];
+			}
+		}
+		else if ( x == runEnd - 1 )
+		{
+			if ( run + 1 < n && v[ run + 1 ] == value )
+				--starts[ line ][ run + 1 ];
+			else
+				insert( line, run + 1, x, value );
+			++run;
+		}
+		else
+		{
+			final long old = v[ run ];
+			insert( line, run + 1, x, value );
+			insert( line, run + 2, x + 1, old );
+			++run;
+		}
+
+		if ( numRuns[ line ] == 1 && values[ line ][ 0 ] == fill )
+		{
+			starts[ line ] = null;
+			values[ line ] = null;
+			numRuns[ line ] = 0;
+			return 0;
+		}
+		return run;
+	}
+
+	private void insert( final int line, final int run, final int start, final long value )
+	{
+		final int n = numRuns[ line ];
+		if ( n == starts[ line ].length )
+		{
+			starts[ line ] = Arrays.copyOf( starts[ line ], 2 * n );
+			values[ line ] = Arrays.copyOf( values[ line ], 2 * n );
+		}
+		final int[] s = starts[ line ];
+		final long[] v = values[ line ];
+		System.arraycopy( s, run, s, run + 1, n - run );
+		System.arraycopy( v, run, v, run + 1, n - run );
+		s[ run ] = start;
+		v[ run ] = value;
+		numRuns[ line ] = n + 1;
+	}
+
+	private void remove( final int line, final int run )
+	{
+		final int n = numRuns[ line ];
+		final int[] s = starts[ line ];
+		final long[] v = values[ line ];
+		System.arraycopy( s, run + 1, s, run, n - run - 1 );
+		System.arraycopy( v, run + 1, v, run, n - run - 1 );
+		numRuns[ line ] = n - 1;
+	}
+
+	/**
+	 * Replace the contents of this storage with that of another storage of the
+	 * same size.
+	 */
+	public void set( final RleStorage storage )
+	{
+		if ( storage.lineLength != lineLength || storage.numLines != numLines || storage.fill != fill )
+			throw new IllegalArgumentException( "RleStorage sizes or fill values do not match." );
+		for ( int line = 0; line < numLines; ++line )
+		{
+			final int n = storage.numRuns[ line ];
+			if ( storage.starts[ line ] == null )
+			{
+				starts[ line ] = null;
+				values[ line ] = null;
+			}
+			else
+			{
+				starts[ line ] = Arrays.copyOf( storage.starts[ line ], n );
+				values[ line ] = Arrays.copyOf( storage.values[ line ], n );
+			}
+			numRuns[ line ] = n;
+		}
+	}
+}
@@ -46,10 +46,13 @@ public final class BooleanNtree implements BitAccess, NtreeAccess< Boolean, Bool
 
 	private final Ntree< Boolean > data;
 
+	private final NtreeLookup< Boolean > lookup;
+
 	public BooleanNtree( final long[] dimenions, final long[] position, final boolean value )
 	{
 		this.data = new Ntree< Boolean >( dimenions, value );
 		this.position = position;
+		this.lookup = new NtreeLookup< Boolean >( data, position, null );
 	}
 
 	/* Copy constructor */
@@ -57,20 +60,28 @@ public final class BooleanNtree implements BitAccess, NtreeAccess< Boolean, Bool
 	{
 		this.data = data;
 		this.position = position;
+		this.lookup = new NtreeLookup< Boolean >( data, position, null );
+	}
+
+	private BooleanNtree( final Ntree< Boolean > data, final long[] position, final int[] blockLevel )
+	{
+		this.data = data;
+		this.position = position;
+		this.lookup = new NtreeLookup< Boolean >( data, position, blockLevel );
 	}
 
 	@Override
 	public boolean getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return lookup.get();
 	}
 
 	@Override
 	public void setValue( final int index, final boolean value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		lookup.set( value );
 	}
 
 	@Override
@@ -84,4 +95,10 @@ public final class BooleanNtree implements BitAccess, NtreeAccess< Boolean, Bool
 	{
 		return new BooleanNtree( data, pos );
 	}
+
+	@Override
+	public BooleanNtree createBlockInstance( final long[] pos, final int[] level )
+	{
+		return new BooleanNtree( data, pos, level );
+	}
 }
@@ -46,10 +46,13 @@ public final class ByteNtree implements ByteAccess, NtreeAccess< Byte, ByteNtree
 
 	private final Ntree< Byte > data;
 
+	private final NtreeLookup< Byte > lookup;
+
 	public ByteNtree( final long[] dimenions, final long[] position, final Byte value )
 	{
 		this.data = new Ntree< Byte >( dimenions, value );
 		this.position = position;
+		this.lookup = new NtreeLookup< Byte >( data, position, null );
 	}
 
 	/* Copy constructor */
@@ -57,20 +60,28 @@ public final class ByteNtree implements ByteAccess, NtreeAccess< Byte, ByteNtree
 	{
 		this.data = data;
 		this.position = position;
+		this.lookup = new NtreeLookup< Byte >( data, position, null );
+	}
+
+	private ByteNtree( final Ntree< Byte > data, final long[] position, final int[] blockLevel )
+	{
+		this.data = data;
+		this.position = position;
+		this.lookup = new NtreeLookup< Byte >( data, position, blockLevel );
 	}
 
 	@Override
 	public byte getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return lookup.get();
 	}
 
 	@Override
 	public void setValue( final int index, final byte value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		lookup.set( value );
 	}
 
 	@Override
@@ -84,4 +95,10 @@ public final class ByteNtree implements ByteAccess, NtreeAccess< Byte, ByteNtree
 	{
 		return new ByteNtree( data, pos );
 	}
+
+	@Override
+	public ByteNtree createBlockInstance( final long[] pos, final int[] level )
+	{
+		return new ByteNtree( data, pos, level );
+	}
 }
@@ -46,10 +46,13 @@ public final class CharNtree implements CharAccess, NtreeAccess< Character, Char
 
 	private final Ntree< Character > data;
 
+	private final NtreeLookup< Character > lookup;
+
 	public CharNtree( final long[] dimenions, final long[] position, final Character value )
 	{
 		this.data = new Ntree< Character >( dimenions, value );
 		this.position = position;
+		this.lookup = new NtreeLookup< Character >( data, position, null );
 	}
 
 	/* Copy constructor */
@@ -57,20 +60,28 @@ public final class CharNtree implements CharAccess, NtreeAccess< Character, Char
 	{
 		this.data = data;
 		this.position = position;
+		this.lookup = new NtreeLookup< Character >( data, position, null );
+	}
+
+	private CharNtree( final Ntree< Character > data, final long[] position, final int[] blockLevel )
+	{
+		this.data = data;
+		this.position = position;
+		this.lookup = new NtreeLookup< Character >( data, position, blockLevel );
 	}
 
 	@Override
 	public char getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return lookup.get();
 	}
 
 	@Override
 	public void setValue( final int index, final char value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		lookup.set( value );
 	}
 
 	@Override
@@ -84,4 +95,10 @@ public final class CharNtree implements CharAccess, NtreeAccess< Character, Char
 	{
 		return new CharNtree( data, pos );
 	}
+
+	@Override
+	public CharNtree createBlockInstance( final long[] pos, final int[] level )
+	{
+		return new CharNtree( data, pos, level );
+	}
 }
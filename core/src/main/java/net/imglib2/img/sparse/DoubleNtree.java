@@ -46,10 +46,13 @@ public final class DoubleNtree implements DoubleAccess, NtreeAccess< Double, Dou
 
 	private final Ntree< Double > data;
 
+	private final NtreeLookup< Double > lookup;
+
 	public DoubleNtree( final long[] dimenions, final long[] position, final Double value )
 	{
 		this.data = new Ntree< Double >( dimenions, value );
 		this.position = position;
+		this.lookup = new NtreeLookup< Double >( data, position, null );
 	}
 
 	/* Copy constructor */
@@ -57,20 +60,28 @@ public final class DoubleNtree implements DoubleAccess, NtreeAccess< Double, Dou
 	{
 		this.data = data;
 		this.position = pos;
+		this.lookup = new NtreeLookup< Double >( data, pos, null );
+	}
+
+	private DoubleNtree( final Ntree< Double > data, final long[] position, final int[] blockLevel )
+	{
+		this.data = data;
+		this.position = position;
+		this.lookup = new NtreeLookup< Double >( data, position, blockLevel );
 	}
 
 	@Override
 	public double getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return lookup.get();
 	}
 
 	@Override
 	public void setValue( final int index, final double value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		lookup.set( value );
 	}
 
 	@Override
@@ -84,4 +95,10 @@ public final class DoubleNtree implements DoubleAccess, NtreeAccess< Double, Dou
 	{
 		return new DoubleNtree( data, pos );
 	}
+
+	@Override
+	public DoubleNtree createBlockInstance( final long[] pos, final int[] level )
+	{
+		return new DoubleNtree( data, pos, level );
+	}
 }
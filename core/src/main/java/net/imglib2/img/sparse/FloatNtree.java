@@ -46,10 +46,13 @@ public final class FloatNtree implements FloatAccess, NtreeAccess< Float, FloatN
 
 	private final Ntree< Float > data;
 
+	private final NtreeLookup< Float > lookup;
+
 	public FloatNtree( final long[] dimenions, final long[] position, final Float value )
 	{
 		this.data = new Ntree< Float >( dimenions, value );
 		this.position = position;
+		this.lookup = new NtreeLookup< Float >( data, position, null );
 	}
 
 	/* Copy constructor */
@@ -57,21 +60,29 @@ public final class FloatNtree implements FloatAccess, NtreeAccess< Float, FloatN
 	{
 		this.data = data;
 		this.position = position;
+		this.lookup = new NtreeLookup< Float >( data, position, null );
+
+	}
 
+	private FloatNtree( final Ntree< Float > data, final long[] position, final int[] blockLevel )
+	{
+		this.data = data;
+		this.position = position;
+		this.lookup = new NtreeLookup< Float >( data, position, blockLevel );
 	}
 
 	@Override
 	public float getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return lookup.get();
 	}
 
 	@Override
 	public void setValue( final int index, final float value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		lookup.set( value );
 	}
 
 	@Override
@@ -85,4 +96,10 @@ public final class FloatNtree implements FloatAccess, NtreeAccess< Float, FloatN
 	{
 		return new FloatNtree( data, pos );
 	}
+
+	@Override
+	public FloatNtree createBlockInstance( final long[] pos, final int[] level )
+	{
+		return new FloatNtree( data, pos, level );
+	}
 }
@@ -47,6 +47,8 @@ public final class IntNtree implements IntAccess, NtreeAccess< Integer, IntNtree
 
 	private final Ntree< Integer > data;
 
+	private final NtreeLookup< Integer > lookup;
+
 	/**
 	 * Standard constructor called by factory
 	 * 
@@ -60,6 +62,7 @@ public final class IntNtree implements IntAccess, NtreeAccess< Integer, IntNtree
 		this.data = new Ntree< Integer >( dimensions, value );
 
 		this.position = position;
+		this.lookup = new NtreeLookup< Integer >( data, position, null );
 
 	}
 
@@ -68,20 +71,28 @@ public final class IntNtree implements IntAccess, NtreeAccess< Integer, IntNtree
 	{
 		this.data = data;
 		this.position = position;
+		this.lookup = new NtreeLookup< Integer >( data, position, null );
+	}
+
+	private IntNtree( final Ntree< Integer > data, final long[] position, final int[] blockLevel )
+	{
+		this.data = data;
+		this.position = position;
+		this.lookup = new NtreeLookup< Integer >( data, position, blockLevel );
 	}
 
 	@Override
 	public int getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return lookup.get();
 	}
 
 	@Override
 	public void setValue( final int index, final int value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		lookup.set( value );
 	}
 
 	@Override
@@ -95,4 +106,10 @@ public final class IntNtree implements IntAccess, NtreeAccess< Integer, IntNtree
 	{
 		return new IntNtree( data, pos );
 	}
+
+	@Override
+	public IntNtree createBlockInstance( final long[] pos, final int[] level )
+	{
+		return new IntNtree( data, pos, level );
+	}
 }
@@ -47,6 +47,8 @@ public final class LongNtree implements LongAccess, NtreeAccess< Long, LongNtree
 
 	private final Ntree< Long > data;
 
+	private final NtreeLookup< Long > lookup;
+
 	/**
 	 * Standard constructor called by factory
 	 * 
@@ -60,26 +62,35 @@ public final class LongNtree implements LongAccess, NtreeAccess< Long, LongNtree
 		this.data = new Ntree< Long >( dimensions, value );
 
 		this.position = position;
+		this.lookup = new NtreeLookup< Long >( data, position, null );
 	}
 
 	public LongNtree( final Ntree< Long > data, final long[] position )
 	{
 		this.data = data;
 		this.position = position;
+		this.lookup = new NtreeLookup< Long >( data, position, null );
+	}
+
+	private LongNtree( final Ntree< Long > data, final long[] position, final int[] blockLevel )
+	{
+		this.data = data;
+		this.position = position;
+		this.lookup = new NtreeLookup< Long >( data, position, blockLevel );
 	}
 
 	@Override
 	public long getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return lookup.get();
 	}
 
 	@Override
 	public void setValue( final int index, final long value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		lookup.set( value );
 	}
 
 	@Override
@@ -93,4 +104,10 @@ public final class LongNtree implements LongAccess, NtreeAccess< Long, LongNtree
 	{
 		return new LongNtree( data, pos );
 	}
+
+	@Override
+	public LongNtree createBlockInstance( final long[] pos, final int[] level )
+	{
+		return new LongNtree( data, pos, level );
+	}
 }
@@ -33,52 +33,89 @@
 
 package net.imglib2.img.sparse;
 
+import java.util.Arrays;
+
 /**
  * N-dimensional equivalent of a quad/oct-tree.
  * 
+ * <p>
+ * Nodes are stored in a pool of flat arrays. The children of a node occupy a
+ * contiguous block of {@code 2^n} slots, and blocks of removed children are
+ * recycled. A node at level {@code l} covers a block of {@code 2^l} pixels in
+ * every dimension; leaves at level 0 are single pixels.
+ * </p>
+ * 
+ * <p>
+ * All modifications are synchronized. Every modification increments
+ * {@link #modCount} once before and once after changing the pool, such that
+ * {@link NtreeLookup} can validate its cached leaf without locking.
+ * </p>
+ * 
  * @author Tobias Pietzsch
  */
 public final class Ntree< T extends Comparable< T >>
 {
 
+	/**
+	 * A node of a {@link Ntree}. Nodes obtained from a tree are views into the
+	 * node pool of the tree. Nodes created with the public constructor are
+	 * detached and can be assembled into a hierarchy which is copied into a
+	 * tree by {@link #setChildren(NtreeNode[])}.
+	 */
 	public static final class NtreeNode< T >
 	{
+		private final Ntree< ? > tree;
 
-		private T value;
+		private final int index;
 
-		private final NtreeNode< T > parent;
+		private T value;
 
 		private NtreeNode< T >[] children;
 
 		public NtreeNode( final NtreeNode< T > parent, final T value )
 		{
-			this.parent = parent;
+			this.tree = null;
+			this.index = -1;
 			this.value = value;
 		}
 
+		private NtreeNode( final Ntree< ? > tree, final int index )
+		{
+			this.tree = tree;
+			this.index = index;
+		}
+
 		boolean hasChildren()
 		{
-			return children != null;
+			return tree == null ? children != null : tree.children[ index ] >= 0;
 		}
 
+		@SuppressWarnings( "unchecked" )
 		public T getValue()
 		{
-			return value;
+			return tree == null ? value : ( T ) tree.values[ index ];
 		}
 
 		public void setValue( final T value )
 		{
-			this.value = value;
+			if ( tree == null )
+				this.value = value;
+			else
+				tree.setNodeValue( index, value );
 		}
 
+		@SuppressWarnings( "unchecked" )
 		public NtreeNode< T >[] getChildren()
 		{
-			return children;
+			return tree == null ? children : ( NtreeNode< T >[] ) tree.getChildNodes( index );
 		}
 
 		public void setChildren( final NtreeNode< T >[] children )
 		{
-			this.children = children;
+			if ( tree == null )
+				this.children = children;
+			else
+				tree.setChildNodes( index, children );
 		}
 
 	}
@@ -101,13 +138,46 @@ public final class Ntree< T extends Comparable< T >>
 	/**
 	 * Root of the tree
 	 */
-	NtreeNode< T > root;
+	final NtreeNode< T > root;
 
 	/**
 	 * dimensions of tree
 	 */
 	final long[] dimensions;
 
+	/**
+	 * first slot of the children block of each node, or -1 for leaves.
+	 */
+	private int[] children;
+
+	/**
+	 * parent slot of each node, -1 for the root.
+	 */
+	private int[] parents;
+
+	/**
+	 * value of each node. Values of inner nodes are not meaningful.
+	 */
+	private Object[] values;
+
+	/**
+	 * number of slots in use or on the free list (the root is slot 0).
+	 */
+	private int numSlots;
+
+	/**
+	 * first slots of recycled children blocks.
+	 */
+	private int[] freeBlocks;
+
+	private int numFreeBlocks;
+
+	/**
+	 * Incremented before and after every modification, so it is odd while a
+	 * modification is in progress.
+	 */
+	volatile int modCount;
+
 	// /**
 	// * KNIME requirements, empty constructor for fast serialization
 	// */
@@ -140,38 +210,225 @@ public final class Ntree< T extends Comparable< T >>
 
 		this.numChildren = 1 << n;
 
-		this.root = new NtreeNode< T >( null, value );
+		final int capacity = 1 + 4 * numChildren;
+		children = new int[ capacity ];
+		parents = new int[ capacity ];
+		values = new Object[ capacity ];
+		freeBlocks = new int[ 4 ];
+		children[ 0 ] = -1;
+		parents[ 0 ] = -1;
+		values[ 0 ] = value;
+		numSlots = 1;
+		numFreeBlocks = 0;
+		this.root = new NtreeNode< T >( this, 0 );
 	}
 
 	/**
-	 * helper method for the copy constructor {@link #Ntree(Ntree)} to create a
-	 * deep copy of the tree.
+	 * Copy constructor. Create a deep copy of ntree.
 	 */
-	@SuppressWarnings( "unchecked" )
-	private NtreeNode< T > copyRecursively( final NtreeNode< T > node, final NtreeNode< T > newParent )
+	Ntree( final Ntree< T > ntree )
 	{
-		final NtreeNode< T > copy = new NtreeNode< T >( newParent, node.getValue() );
-		if ( node.hasChildren() )
+		synchronized ( ntree )
 		{
-			copy.children = new NtreeNode[ numChildren ];
-			for ( int i = 0; i < numChildren; ++i )
+			dimensions = ntree.dimensions;
+			n = ntree.n;
+			numTreeLevels = ntree.numTreeLevels;
+			numChildren = ntree.numChildren;
+			children = ntree.children.clone();
+			parents = ntree.parents.clone();
+			values = ntree.values.clone();
+			numSlots = ntree.numSlots;
+			freeBlocks = ntree.freeBlocks.clone();
+			numFreeBlocks = ntree.numFreeBlocks;
+			root = new NtreeNode< T >( this, 0 );
+		}
+	}
+
+	/**
+	 * @return the index of the child of a node at level {@code l + 1} that
+	 *         contains position.
+	 */
+	private int childIndex( final long[] position, final int l )
+	{
+		int childindex = 0;
+		for ( int d = 0; d < n; ++d )
+			if ( ( ( position[ d ] >> l ) & 1 ) != 0 )
+				childindex |= 1 << d;
+		return childindex;
+	}
+
+	/**
+	 * Allocate a block of children for a leaf, all with the value of the leaf.
+	 */
+	private void split( final int node )
+	{
+		final int block;
+		if ( numFreeBlocks > 0 )
+			block = freeBlocks[ --numFreeBlocks ];
+		else
+		{
+			block = numSlots;
+			numSlots += numChildren;
+			if ( numSlots > children.length )
 			{
-				copy.children[ i ] = copyRecursively( node.children[ i ], copy );
+				final int capacity = Math.max( numSlots, 2 * children.length );
+				children = Arrays.copyOf( children, capacity );
+				parents = Arrays.copyOf( parents, capacity );
+				values = Arrays.copyOf( values, capacity );
 			}
 		}
-		return copy;
+		final Object value = values[ node ];
+		for ( int i = block; i < block + numChildren; ++i )
+		{
+			children[ i ] = -1;
+			parents[ i ] = node;
+			values[ i ] = value;
+		}
+		children[ node ] = block;
 	}
 
 	/**
-	 * Copy constructor. Create a deep copy of ntree.
+	 * Remove all descendants of a node, recycling their blocks.
 	 */
-	Ntree( final Ntree< T > ntree )
+	private void prune( final int node )
+	{
+		final int block = children[ node ];
+		if ( block < 0 )
+			return;
+		for ( int i = block; i < block + numChildren; ++i )
+		{
+			prune( i );
+			values[ i ] = null;
+		}
+		children[ node ] = -1;
+		if ( numFreeBlocks == freeBlocks.length )
+			freeBlocks = Arrays.copyOf( freeBlocks, 2 * numFreeBlocks );
+		freeBlocks[ numFreeBlocks++ ] = block;
+	}
+
+	/**
+	 * Find the leaf containing position and store it in lookup.
+	 * 
+	 * @return the value of the leaf.
+	 */
+	synchronized T findLeaf( final NtreeLookup< T > lookup )
+	{
+		final long[] position = lookup.position;
+		int current = 0;
+		int l = numTreeLevels - 2;
+		for ( ; l >= 0; --l )
+		{
+			final int block = children[ current ];
+			if ( block < 0 )
+				break;
+			current = block + childIndex( position, l );
+		}
+		lookup.setLeaf( current, l + 1, modCount );
+		return getValue( current );
+	}
+
+	/**
+	 * @return the level of the leaf containing position.
+	 */
+	synchronized int getLeafLevel( final long[] position )
+	{
+		int current = 0;
+		int l = numTreeLevels - 2;
+		for ( ; l >= 0; --l )
+		{
+			final int block = children[ current ];
+			if ( block < 0 )
+				break;
+			current = block + childIndex( position, l );
+		}
+		return l + 1;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	T getValue( final int node )
+	{
+		return ( T ) values[ node ];
+	}
+
+	/**
+	 * Set the value of the block of {@code 2^level} pixels per dimension
+	 * containing position. Nodes are created or merged as necessary. If
+	 * lookup is not null, the resulting leaf is stored in it.
+	 */
+	synchronized void setValue( final long[] position, final int level, final T value, final NtreeLookup< T > lookup )
+	{
+		++modCount;
+		int current = 0;
+		int l = numTreeLevels - 2;
+		for ( ; l >= level; --l )
+		{
+			if ( children[ current ] < 0 )
+			{
+				if ( getValue( current ).compareTo( value ) == 0 )
+					break;
+				split( current );
+			}
+			current = children[ current ] + childIndex( position, l );
+		}
+		if ( l < level )
+		{
+			prune( current );
+			if ( getValue( current ).compareTo( value ) != 0 )
+			{
+				values[ current ] = value;
+				current = mergeUpwards( current );
+			}
+		}
+		++modCount;
+		if ( lookup != null )
+			lookup.setLeaf( current, levelOf( current ), modCount );
+	}
+
+	private int levelOf( int node )
+	{
+		int level = numTreeLevels - 1;
+		while ( parents[ node ] >= 0 )
+		{
+			node = parents[ node ];
+			--level;
+		}
+		return level;
+	}
+
+	private synchronized void setNodeValue( final int node, final Object value )
+	{
+		++modCount;
+		values[ node ] = value;
+		++modCount;
+	}
+
+	private synchronized NtreeNode< ? >[] getChildNodes( final int node )
+	{
+		final int block = children[ node ];
+		if ( block < 0 )
+			return null;
+		final NtreeNode< ? >[] nodes = new NtreeNode< ? >[ numChildren ];
+		for ( int i = 0; i < numChildren; ++i )
+			nodes[ i ] = new NtreeNode< T >( this, block + i );
+		return nodes;
+	}
+
+	private synchronized void setChildNodes( final int node, final NtreeNode< ? >[] nodes )
 	{
-		dimensions = ntree.dimensions;
-		n = ntree.n;
-		numTreeLevels = ntree.numTreeLevels;
-		numChildren = ntree.numChildren;
-		root = copyRecursively( ntree.root, null );
+		++modCount;
+		prune( node );
+		if ( nodes != null )
+		{
+			split( node );
+			final int block = children[ node ];
+			for ( int i = 0; i < numChildren; ++i )
+			{
+				values[ block + i ] = nodes[ i ].getValue();
+				if ( nodes[ i ].hasChildren() )
+					setChildNodes( block + i, nodes[ i ].getChildren() );
+			}
+		}
+		++modCount;
 	}
 
 	/**
@@ -185,20 +442,15 @@ public final class Ntree< T extends Comparable< T >>
 	 */
 	synchronized NtreeNode< T > getNode( final long[] position )
 	{
-		NtreeNode< T > current = root;
+		int current = 0;
 		for ( int l = numTreeLevels - 2; l >= 0; --l )
 		{
-			if ( !current.hasChildren() )
+			final int block = children[ current ];
+			if ( block < 0 )
 				break;
-
-			final long bitmask = 1 << l;
-			int childindex = 0;
-			for ( int d = 0; d < n; ++d )
-				if ( ( position[ d ] & bitmask ) != 0 )
-					childindex |= 1 << d;
-			current = current.children[ childindex ];
+			current = block + childIndex( position, l );
 		}
-		return current;
+		return new NtreeNode< T >( this, current );
 	}
 
 	/**
@@ -209,27 +461,18 @@ public final class Ntree< T extends Comparable< T >>
 	 *            a position inside the image.
 	 * @return node containing exactly position.
 	 */
-	@SuppressWarnings( "unchecked" )
 	synchronized NtreeNode< T > createNode( final long[] position )
 	{
-		NtreeNode< T > current = root;
+		++modCount;
+		int current = 0;
 		for ( int l = numTreeLevels - 2; l >= 0; --l )
 		{
-			if ( !current.hasChildren() )
-			{
-				current.children = new NtreeNode[ numChildren ];
-				for ( int i = 0; i < numChildren; ++i )
-					current.children[ i ] = new NtreeNode< T >( current, current.getValue() );
-			}
-
-			final long bitmask = 1 << l;
-			int childindex = 0;
-			for ( int d = 0; d < n; ++d )
-				if ( ( position[ d ] & bitmask ) != 0 )
-					childindex |= 1 << d;
-			current = current.children[ childindex ];
+			if ( children[ current ] < 0 )
+				split( current );
+			current = children[ current ] + childIndex( position, l );
 		}
-		return current;
+		++modCount;
+		return new NtreeNode< T >( this, current );
 	}
 
 	/**
@@ -244,33 +487,10 @@ public final class Ntree< T extends Comparable< T >>
 	 *            value to store at position.
 	 * @return node containing position.
 	 */
-	@SuppressWarnings( "unchecked" )
 	synchronized NtreeNode< T > createNodeWithValue( final long[] position, final T value )
 	{
-		NtreeNode< T > current = root;
-		for ( int l = numTreeLevels - 2; l >= 0; --l )
-		{
-			if ( !current.hasChildren() )
-			{
-				if ( current.getValue().compareTo( value ) == 0 )
-					return current;
-
-				current.children = new NtreeNode[ numChildren ];
-				for ( int i = 0; i < numChildren; ++i )
-					current.children[ i ] = new NtreeNode< T >( current, current.getValue() );
-			}
-
-			final long bitmask = 1 << l;
-			int childindex = 0;
-			for ( int d = 0; d < n; ++d )
-				if ( ( position[ d ] & bitmask ) != 0 )
-					childindex |= 1 << d;
-			current = current.children[ childindex ];
-		}
-		if ( current.getValue().compareTo( value ) == 0 )
-			return current;
-		current.setValue( value );
-		return mergeUpwards( current );
+		setValue( position, 0, value, null );
+		return getNode( position );
 	}
 
 	/**
@@ -282,23 +502,40 @@ public final class Ntree< T extends Comparable< T >>
 	 *            recursively).
 	 * @return node that the starting node was ultimately merged into.
 	 */
-	NtreeNode< T > mergeUpwards( final NtreeNode< T > node )
+	synchronized NtreeNode< T > mergeUpwards( final NtreeNode< T > node )
+	{
+		++modCount;
+		final int merged = mergeUpwards( node.index );
+		++modCount;
+		return new NtreeNode< T >( this, merged );
+	}
+
+	private int mergeUpwards( int node )
 	{
-		final NtreeNode< T > parent = node.parent;
-		if ( parent == null )
-			return node;
-		final NtreeNode< T > child0 = parent.children[ 0 ];
-		if ( child0.hasChildren() )
-			return node;
-		for ( int i = 1; i < numChildren; ++i )
+		while ( true )
 		{
-			final NtreeNode< T > child = parent.children[ i ];
-			if ( child.hasChildren() || child0.getValue().compareTo( child.getValue() ) != 0 )
+			final int parent = parents[ node ];
+			if ( parent < 0 )
 				return node;
+			final int block = children[ parent ];
+			if ( children[ block ] >= 0 )
+				return node;
+			final T value0 = getValue( block );
+			for ( int i = block + 1; i < block + numChildren; ++i )
+				if ( children[ i ] >= 0 || value0.compareTo( getValue( i ) ) != 0 )
+					return node;
+			values[ parent ] = value0;
+			prune( parent );
+			node = parent;
 		}
-		parent.setValue( child0.getValue() );
-		parent.children = null;
-		return mergeUpwards( parent );
+	}
+
+	/**
+	 * @return the number of nodes in the tree.
+	 */
+	public synchronized long numNodes()
+	{
+		return numSlots - ( long ) numFreeBlocks * numChildren;
 	}
 
 	/**
@@ -39,4 +39,11 @@ public interface NtreeAccess< L extends Comparable< L >, A extends NtreeAccess<
 	Ntree< L > getCurrentStorageNtree();
 
 	A createInstance( long[] pos );
+
+	/**
+	 * Create an access that reads the value at pos and writes the whole block
+	 * of {@code 2^level[0]} pixels per dimension containing pos. pos and level
+	 * are owned by the caller and may change between accesses.
+	 */
+	A createBlockInstance( long[] pos, int[] level );
 }
@@ -0,0 +1,278 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import net.imglib2.Localizable;
+import net.imglib2.img.sparse.NtreeImg.BlockPositionProvider;
+import net.imglib2.type.NativeType;
+
+/**
+ * Iterates the uniform blocks of a {@link NtreeImg}, i.e., the leaves of the
+ * underlying {@link Ntree} clipped to the image, in depth-first order. The
+ * position is the minimum of the current block, which extends
+ * {@code 2^getLevel()[0]} pixels in every dimension (less at the image
+ * border, see {@link #max(int)}).
+ * 
+ * <p>
+ * {@link #get()} returns the value of the block, and setting it fills the
+ * whole block. Iteration continues correctly after such writes, as the next
+ * block is determined from the extent of the current one.
+ * </p>
+ */
+public final class NtreeBlockCursor< T extends NativeType< T > > implements Localizable, BlockPositionProvider
+{
+	private final Ntree< ? > tree;
+
+	private final T type;
+
+	private final int n;
+
+	private final long[] dimensions;
+
+	private final int rootLevel;
+
+	private final long[] position;
+
+	private final int[] level;
+
+	private final long[] nextPosition;
+
+	private int nextLevel;
+
+	private boolean hasNext;
+
+	public NtreeBlockCursor( final NtreeImg< T, ? > img )
+	{
+		this.tree = img.data.getCurrentStorageNtree();
+		this.n = img.numDimensions();
+		this.dimensions = new long[ n ];
+		img.dimensions( dimensions );
+		this.rootLevel = tree.numTreeLevels - 1;
+		this.position = new long[ n ];
+		this.level = new int[ 1 ];
+		this.nextPosition = new long[ n ];
+		this.type = img.createLinkedType();
+		type.updateContainer( this );
+		reset();
+	}
+
+	public void reset()
+	{
+		for ( int d = 0; d < n; ++d )
+			nextPosition[ d ] = 0;
+		nextLevel = rootLevel;
+		hasNext = true;
+	}
+
+	public boolean hasNext()
+	{
+		return hasNext;
+	}
+
+	/**
+	 * Move to the next block.
+	 */
+	public void fwd()
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = nextPosition[ d ];
+		level[ 0 ] = Math.min( tree.getLeafLevel( position ), nextLevel );
+		advance();
+	}
+
+	/**
+	 * Move to the current block of another cursor, over an image of the same
+	 * size. Iteration continues after that block.
+	 */
+	public void moveTo( final NtreeBlockCursor< ? > cursor )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] = cursor.position[ d ];
+			nextPosition[ d ] = cursor.nextPosition[ d ];
+		}
+		level[ 0 ] = cursor.level[ 0 ];
+		nextLevel = cursor.nextLevel;
+		hasNext = cursor.hasNext;
+	}
+
+	/**
+	 * Compute the minimum of the block following the current block in
+	 * depth-first order, skipping blocks outside the image.
+	 */
+	private void advance()
+	{
+		for ( int d = 0; d < n; ++d )
+			nextPosition[ d ] = position[ d ];
+		int l = level[ 0 ];
+		while ( l < rootLevel )
+		{
+			// increment the child index at level l, carry to the parent if all
+			// children have been visited
+			final long bit = 1l << l;
+			boolean carry = true;
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( ( nextPosition[ d ] & bit ) == 0 )
+				{
+					nextPosition[ d ] |= bit;
+					carry = false;
+					break;
+				}
+				nextPosition[ d ] &= ~bit;
+			}
+			if ( carry )
+			{
+				++l;
+				continue;
+			}
+			boolean inside = true;
+			for ( int d = 0; d < n && inside; ++d )
+				inside = nextPosition[ d ] < dimensions[ d ];
+			if ( inside )
+			{
+				nextLevel = l;
+				return;
+			}
+		}
+		hasNext = false;
+	}
+
+	/**
+	 * @return the value of the current block. Setting it fills the block.
+	 */
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public long[] getPosition()
+	{
+		return position;
+	}
+
+	@Override
+	public int[] getLevel()
+	{
+		return level;
+	}
+
+	/**
+	 * @return the maximum of the current block in dimension d, clipped to the
+	 *         image.
+	 */
+	public long max( final int d )
+	{
+		return Math.min( position[ d ] + ( 1l << level[ 0 ] ), dimensions[ d ] ) - 1;
+	}
+
+	/**
+	 * @return the size of the current block in dimension d, clipped to the
+	 *         image.
+	 */
+	public long dimension( final int d )
+	{
+		return max( d ) - position[ d ] + 1;
+	}
+
+	/**
+	 * @return the number of pixels in the current block, clipped to the image.
+	 */
+	public long size()
+	{
+		long size = 1;
+		for ( int d = 0; d < n; ++d )
+			size *= dimension( d );
+		return size;
+	}
+
+	@Override
+	public void localize( final float[] pos )
+	{
+		for ( int d = 0; d < n; d++ )
+			pos[ d ] = this.position[ d ];
+	}
+
+	@Override
+	public void localize( final double[] pos )
+	{
+		for ( int d = 0; d < n; d++ )
+			pos[ d ] = this.position[ d ];
+	}
+
+	@Override
+	public void localize( final int[] pos )
+	{
+		for ( int d = 0; d < n; d++ )
+			pos[ d ] = ( int ) this.position[ d ];
+	}
+
+	@Override
+	public void localize( final long[] pos )
+	{
+		for ( int d = 0; d < n; d++ )
+			pos[ d ] = this.position[ d ];
+	}
+
+	@Override
+	public float getFloatPosition( final int d )
+	{
+		return position[ d ];
+	}
+
+	@Override
+	public double getDoublePosition( final int d )
+	{
+		return position[ d ];
+	}
+
+	@Override
+	public int getIntPosition( final int d )
+	{
+		return ( int ) position[ d ];
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		return position[ d ];
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+}
@@ -76,11 +76,25 @@ public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< ?
 		long[] getPosition();
 	}
 
+	/**
+	 * A {@link PositionProvider} for which writes affect the whole block of
+	 * {@code 2^getLevel()[0]} pixels per dimension containing the position.
+	 */
+	public static interface BlockPositionProvider extends PositionProvider
+	{
+		int[] getLevel();
+	}
+
 	// updater is the RandomAccess / Cursor etc
 	// each call creates a new IntAccess wrapper
 	@Override
 	public A update( final Object updater )
 	{
+		if ( updater instanceof BlockPositionProvider )
+		{
+			final BlockPositionProvider provider = ( BlockPositionProvider ) updater;
+			return data.createBlockInstance( provider.getPosition(), provider.getLevel() );
+		}
 		return data.createInstance( ( ( PositionProvider ) updater ).getPosition() );
 	}
 
@@ -107,6 +121,14 @@ public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< ?
 		return cursor();
 	}
 
+	/**
+	 * @return a cursor over the uniform blocks of the underlying {@link Ntree}.
+	 */
+	public NtreeBlockCursor< T > blockCursor()
+	{
+		return new NtreeBlockCursor< T >( this );
+	}
+
 	@Override
 	public ImgFactory< T > factory()
 	{
@@ -116,15 +138,19 @@ public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< ?
 	@Override
 	public NtreeImg< T, A > copy()
 	{
-		// TODO: More efficient way to create a copy of the img
 		@SuppressWarnings( "unchecked" )
 		final NtreeImg< T, A > copy = ( NtreeImg< T, A > ) factory().create( dimension, firstElement().createVariable() );
 
-		final NtreeCursor< T > source = this.cursor();
-		final NtreeCursor< T > target = copy.cursor();
+		// copy uniform blocks at once
+		final NtreeBlockCursor< T > source = this.blockCursor();
+		final NtreeBlockCursor< T > target = copy.blockCursor();
 
 		while ( source.hasNext() )
-			target.next().set( source.next() );
+		{
+			source.fwd();
+			target.moveTo( source );
+			target.get().set( source.get() );
+		}
 
 		return copy;
 	}
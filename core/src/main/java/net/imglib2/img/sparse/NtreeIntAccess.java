@@ -46,23 +46,26 @@ public final class NtreeIntAccess implements IntAccess
 
 	private final long[] position;
 
+	private final NtreeLookup< Integer > lookup;
+
 	public NtreeIntAccess( final Ntree< Integer > ntree, final long[] position )
 	{
 		this.ntree = ntree;
 		this.position = position;
+		this.lookup = new NtreeLookup< Integer >( ntree, position, null );
 	}
 
 	@Override
 	public int getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return ntree.getNode( position ).getValue();
+		return lookup.get();
 	}
 
 	@Override
 	public void setValue( final int index, final int value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		ntree.createNodeWithValue( position, value );
+		lookup.set( value );
 	}
 }
@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+/**
+ * Reads and writes the value of a {@link Ntree} at a position that is owned by
+ * a Cursor or RandomAccess. The leaf containing the last accessed position is
+ * cached together with its extent, so accesses that stay within the same
+ * uniform block need no traversal of the tree. The cache is validated against
+ * {@link Ntree#modCount} and never blocks readers.
+ * 
+ * <p>
+ * If a block level is given, writes set the whole block of
+ * {@code 2^level[0]} pixels per dimension that contains the position.
+ * </p>
+ */
+final class NtreeLookup< T extends Comparable< T > >
+{
+	private final Ntree< T > tree;
+
+	final long[] position;
+
+	private final int[] blockLevel;
+
+	/**
+	 * cached leaf, -1 if none.
+	 */
+	private int leaf;
+
+	/**
+	 * level of the cached leaf.
+	 */
+	private int leafLevel;
+
+	/**
+	 * {@link Ntree#modCount} when the leaf was cached.
+	 */
+	private int leafModCount;
+
+	/**
+	 * position of the cached leaf, with the bits below {@link #leafLevel}
+	 * cleared.
+	 */
+	private final long[] leafMin;
+
+	NtreeLookup( final Ntree< T > tree, final long[] position, final int[] blockLevel )
+	{
+		this.tree = tree;
+		this.position = position;
+		this.blockLevel = blockLevel;
+		this.leafMin = new long[ position.length ];
+		this.leaf = -1;
+	}
+
+	void setLeaf( final int node, final int level, final int modCount )
+	{
+		leaf = node;
+		leafLevel = level;
+		leafModCount = modCount;
+		final long mask = -1l << level;
+		for ( int d = 0; d < position.length; ++d )
+			leafMin[ d ] = position[ d ] & mask;
+	}
+
+	private boolean isCached( final int modCount )
+	{
+		if ( leaf < 0 || modCount != leafModCount || ( modCount & 1 ) != 0 )
+			return false;
+		final long mask = -1l << leafLevel;
+		for ( int d = 0; d < position.length; ++d )
+			if ( ( position[ d ] & mask ) != leafMin[ d ] )
+				return false;
+		return true;
+	}
+
+	T get()
+	{
+		final int modCount = tree.modCount;
+		if ( isCached( modCount ) )
+		{
+			final T value = tree.getValue( leaf );
+			if ( tree.modCount == modCount )
+				return value;
+		}
+		return tree.findLeaf( this );
+	}
+
+	void set( final T value )
+	{
+		final int level = blockLevel == null ? 0 : blockLevel[ 0 ];
+		final int modCount = tree.modCount;
+		if ( leafLevel >= level && isCached( modCount ) )
+		{
+			// nothing to do if the leaf covering the block has this value already
+			final T current = tree.getValue( leaf );
+			if ( tree.modCount == modCount && current.compareTo( value ) == 0 )
+				return;
+		}
+		tree.setValue( position, level, value, this );
+	}
+}
@@ -46,30 +46,41 @@ public final class ShortNtree implements ShortAccess, NtreeAccess< Short, ShortN
 
 	private final Ntree< Short > data;
 
+	private final NtreeLookup< Short > lookup;
+
 	public ShortNtree( final long[] dimenions, final long[] position, final short value )
 	{
 		this.data = new Ntree< Short >( dimenions, value );
 		this.position = position;
+		this.lookup = new NtreeLookup< Short >( data, position, null );
 	}
 
 	public ShortNtree( final Ntree< Short > data, final long[] position )
 	{
 		this.data = data;
 		this.position = position;
+		this.lookup = new NtreeLookup< Short >( data, position, null );
+	}
+
+	private ShortNtree( final Ntree< Short > data, final long[] position, final int[] blockLevel )
+	{
+		this.data = data;
+		this.position = position;
+		this.lookup = new NtreeLookup< Short >( data, position, blockLevel );
 	}
 
 	@Override
 	public short getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return lookup.get();
 	}
 
 	@Override
 	public void setValue( final int index, final short value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		lookup.set( value );
 	}
 
 	@Override
@@ -83,4 +94,10 @@ public final class ShortNtree implements ShortAccess, NtreeAccess< Short, ShortN
 	{
 		return new ShortNtree( data, pos );
 	}
+
+	@Override
+	public ShortNtree createBlockInstance( final long[] pos, final int[] level )
+	{
+		return new ShortNtree( data, pos, level );
+	}
 }
@@ -47,6 +47,8 @@ import net.imglib2.roi.RegionOfInterest;
 /**
  * A relatively conservative strategy suitable for blobby objects - retain the
  * bounding boxes and raster starts and reconstruct the cursors by scanning.
+ * All statistics are recomputed by a full scan whenever the labeling changes;
+ * {@link IndexedROIStrategy} maintains them incrementally instead.
  * 
  * @param <T>
  *            - the type used to label the space
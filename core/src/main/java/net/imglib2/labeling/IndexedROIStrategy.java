@@ -0,0 +1,792 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.labeling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.Cursor;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.roi.AbstractIterableRegionOfInterest;
+import net.imglib2.roi.IterableRegionOfInterest;
+import net.imglib2.roi.RegionOfInterest;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.view.Views;
+
+/**
+ * A strategy that keeps an index of the labeled pixels instead of rescanning
+ * the labeling whenever it changes. Statistics (area, bounding box, raster
+ * start and a run-length encoded pixel list) are kept per labeling index of
+ * the {@link LabelingMapping}, in primitive arrays, and combined per label on
+ * demand.
+ * 
+ * <p>
+ * The index is updated incrementally by labelings that report their writes,
+ * i.e. {@link NativeImgLabeling} cursors and random accesses. Adding a pixel
+ * to a labeling index is O(1); removing a pixel only marks the statistics of
+ * that index as stale, which are then recomputed from its own run list (not
+ * from the whole labeling) on the next query. Several threads may write to the
+ * labeling concurrently, but queries must not overlap with writes.
+ * </p>
+ * 
+ * <p>
+ * Writes that the index has not seen (e.g. writes to the storage image of a
+ * {@link NativeImgLabeling} or through a {@link LabelingView}) are detected by
+ * comparing the labeling generation with the number of reported writes, in
+ * which case the index is rebuilt by a single scan over the storage. Writes
+ * that leave the labeling of a pixel unchanged are counted but do not touch
+ * the index. After modifying the storage directly, {@link #invalidate()} (or
+ * {@link NativeImgLabeling#storageModified()}) forces a rebuild on the next
+ * query.
+ * </p>
+ * 
+ * @param <T>
+ *            - the type used to label the space
+ * @param <L>
+ *            - the labeling class that will use this strategy for cursors and
+ *            random access.
+ */
+public class IndexedROIStrategy< T extends Comparable< T >, L extends Labeling< T >> implements LabelingROIStrategy< T, L >
+{
+	/**
+	 * Statistics of the pixels that have one particular labeling index.
+	 */
+	private static final class Entry
+	{
+		long area;
+
+		final long[] min;
+
+		final long[] max;
+
+		final long[] rasterStart;
+
+		/**
+		 * linear index (relative to the labeling min) of the first pixel of
+		 * each run.
+		 */
+		long[] runStarts;
+
+		int[] runLengths;
+
+		int numRuns;
+
+		/**
+		 * whether the runs are sorted by start.
+		 */
+		boolean sorted;
+
+		/**
+		 * whether pixels were removed since the statistics were last
+		 * computed. If so, the runs may contain pixels that no longer have
+		 * this index, and min, max and rasterStart may be too loose. The area
+		 * is always exact.
+		 */
+		boolean stale;
+
+		Entry( final int n )
+		{
+			min = new long[ n ];
+			max = new long[ n ];
+			rasterStart = new long[ n ];
+			runStarts = new long[ 4 ];
+			runLengths = new int[ 4 ];
+			clear();
+		}
+
+		void clear()
+		{
+			area = 0;
+			Arrays.fill( min, Long.MAX_VALUE );
+			Arrays.fill( max, Long.MIN_VALUE );
+			Arrays.fill( rasterStart, Long.MAX_VALUE );
+			numRuns = 0;
+			sorted = true;
+			stale = false;
+		}
+
+		private void appendRun( final long start, final int length, final boolean rowStart )
+		{
+			if ( numRuns > 0 )
+			{
+				final long end = runStarts[ numRuns - 1 ] + runLengths[ numRuns - 1 ];
+				if ( end == start && !rowStart )
+				{
+					runLengths[ numRuns - 1 ] += length;
+					return;
+				}
+				if ( start < end )
+					sorted = false;
+			}
+			if ( numRuns == runStarts.length )
+			{
+				runStarts = Arrays.copyOf( runStarts, 2 * numRuns );
+				runLengths = Arrays.copyOf( runLengths, 2 * numRuns );
+			}
+			runStarts[ numRuns ] = start;
+			runLengths[ numRuns ] = length;
+			++numRuns;
+		}
+
+		/**
+		 * Update bounding box and raster start with a run starting at
+		 * position.
+		 */
+		private void updateExtents( final long[] position, final int length )
+		{
+			for ( int d = 0; d < position.length; ++d )
+			{
+				if ( position[ d ] < min[ d ] )
+					min[ d ] = position[ d ];
+				final long p = d == 0 ? position[ 0 ] + length - 1 : position[ d ];
+				if ( p > max[ d ] )
+					max[ d ] = p;
+			}
+			for ( int d = 0; d < position.length; ++d )
+			{
+				if ( rasterStart[ d ] > position[ d ] )
+				{
+					System.arraycopy( position, 0, rasterStart, 0, position.length );
+					return;
+				}
+				else if ( rasterStart[ d ] < position[ d ] ) { return; }
+			}
+		}
+
+		synchronized void addRun( final long[] position, final long start, final int length, final boolean rowStart )
+		{
+			area += length;
+			updateExtents( position, length );
+			appendRun( start, length, rowStart );
+		}
+
+		synchronized void add( final Localizable position, final long[] tmp, final long start, final boolean rowStart )
+		{
+			position.localize( tmp );
+			++area;
+			updateExtents( tmp, 1 );
+			appendRun( start, 1, rowStart );
+		}
+
+		synchronized void remove()
+		{
+			--area;
+			stale = true;
+		}
+	}
+
+	final protected L labeling;
+
+	/**
+	 * Statistics by labeling index. Replaced (not modified) when it needs to
+	 * grow. Entries for the index of the empty labeling are never created.
+	 */
+	private volatile Entry[] entries;
+
+	private int emptyIndex;
+
+	private volatile LabelingMapping< T > mapping;
+
+	private long[] min;
+
+	private long[] dimensions;
+
+	private long[] steps;
+
+	/**
+	 * whether the index has been built at least once.
+	 */
+	private boolean built;
+
+	/**
+	 * labeling generation when the index was last built.
+	 */
+	private long baseGeneration;
+
+	/**
+	 * number of writes reported by {@link #update} since the index was last
+	 * built.
+	 */
+	private final AtomicLong reportedWrites;
+
+	/**
+	 * label to labeling indices, valid for {@link #labelIndicesNumLists}
+	 * interned lists.
+	 */
+	private Map< T, int[] > labelIndices;
+
+	private int labelIndicesNumLists;
+
+	public IndexedROIStrategy( final L labeling )
+	{
+		this.labeling = labeling;
+		entries = new Entry[ 0 ];
+		emptyIndex = -1;
+		built = false;
+		reportedWrites = new AtomicLong();
+		labelIndicesNumLists = -1;
+	}
+
+	/**
+	 * Set up the geometry and mapping. This cannot happen in the constructor,
+	 * because the strategy is created while the labeling is being constructed.
+	 */
+	private synchronized void initialize()
+	{
+		if ( mapping != null )
+			return;
+		final int n = labeling.numDimensions();
+		min = new long[ n ];
+		dimensions = new long[ n ];
+		steps = new long[ n ];
+		labeling.min( min );
+		labeling.dimensions( dimensions );
+		long step = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			steps[ d ] = step;
+			step *= dimensions[ d ];
+		}
+		final LabelingMapping< T > m = labeling.firstElement().getMapping();
+		emptyIndex = m.indexOf( m.emptyList() );
+		mapping = m;
+	}
+
+	private Entry entry( final int index )
+	{
+		final Entry[] e = entries;
+		if ( index < e.length && e[ index ] != null )
+			return e[ index ];
+		synchronized ( this )
+		{
+			Entry[] grown = entries;
+			if ( index >= grown.length )
+				grown = Arrays.copyOf( grown, Math.max( index + 1, 2 * grown.length ) );
+			if ( grown[ index ] == null )
+				grown[ index ] = new Entry( labeling.numDimensions() );
+			entries = grown;
+			return grown[ index ];
+		}
+	}
+
+	/**
+	 * Report that the pixel at the given position changed from one labeling
+	 * index to another. Called by the {@link LabelingType}s of labelings that
+	 * maintain this index. Thread-safe.
+	 * 
+	 * @param position
+	 *            the position of the pixel.
+	 * @param tmp
+	 *            an array of size numDimensions, owned by the calling thread.
+	 * @param oldIndex
+	 *            the previous labeling index of the pixel.
+	 * @param newIndex
+	 *            the new labeling index of the pixel.
+	 */
+	void update( final Localizable position, final long[] tmp, final int oldIndex, final int newIndex )
+	{
+		if ( oldIndex == newIndex )
+		{
+			reportedWrites.incrementAndGet();
+			return;
+		}
+		if ( mapping == null )
+			initialize();
+		if ( oldIndex != emptyIndex )
+			entry( oldIndex ).remove();
+		if ( newIndex != emptyIndex )
+		{
+			long start = 0;
+			for ( int d = 0; d < steps.length; ++d )
+				start += ( position.getLongPosition( d ) - min[ d ] ) * steps[ d ];
+			entry( newIndex ).add( position, tmp, start, position.getLongPosition( 0 ) == min[ 0 ] );
+		}
+		reportedWrites.incrementAndGet();
+	}
+
+	/**
+	 * Rebuild the index on the next query, e.g. after the storage of the
+	 * labeling was modified directly.
+	 */
+	public synchronized void invalidate()
+	{
+		built = false;
+	}
+
+	/**
+	 * Rebuild the index if the labeling was modified by writes that were not
+	 * reported.
+	 */
+	protected synchronized void validate()
+	{
+		initialize();
+		final long generation = labeling.firstElement().getGeneration();
+		if ( !built || generation != baseGeneration + reportedWrites.get() )
+		{
+			rebuild();
+			baseGeneration = generation;
+			reportedWrites.set( 0 );
+			built = true;
+		}
+	}
+
+	/**
+	 * Scan the whole labeling. For {@link NativeImgLabeling}s the storage
+	 * image is scanned in flat iteration order and pixels are added run by
+	 * run.
+	 */
+	private void rebuild()
+	{
+		for ( final Entry e : entries )
+			if ( e != null )
+				e.clear();
+
+		final int n = min.length;
+		final long[] position = new long[ n ];
+		if ( labeling instanceof NativeImgLabeling )
+		{
+			final Cursor< ? extends IntegerType< ? > > c = Views.flatIterable( ( ( NativeImgLabeling< T, ? > ) labeling ).getStorageImg() ).cursor();
+			final long rowLength = dimensions[ 0 ];
+			long i = 0;
+			long runStart = 0;
+			int runIndex = emptyIndex;
+			while ( c.hasNext() )
+			{
+				final int index = c.next().getInteger();
+				if ( index != runIndex || i % rowLength == 0 )
+				{
+					if ( runIndex != emptyIndex )
+						addRun( runIndex, runStart, ( int ) ( i - runStart ), position );
+					runIndex = index;
+					runStart = i;
+				}
+				++i;
+			}
+			if ( runIndex != emptyIndex )
+				addRun( runIndex, runStart, ( int ) ( i - runStart ), position );
+		}
+		else
+		{
+			final Cursor< LabelingType< T > > c = labeling.localizingCursor();
+			while ( c.hasNext() )
+			{
+				final int index = mapping.indexOf( c.next().getLabeling() );
+				if ( index != emptyIndex )
+				{
+					long start = 0;
+					for ( int d = 0; d < n; ++d )
+						start += ( c.getLongPosition( d ) - min[ d ] ) * steps[ d ];
+					entry( index ).add( c, position, start, c.getLongPosition( 0 ) == min[ 0 ] );
+				}
+			}
+		}
+	}
+
+	private void addRun( final int index, final long start, final int length, final long[] position )
+	{
+		IntervalIndexer.indexToPositionWithOffset( start, dimensions, min, position );
+		entry( index ).addRun( position, start, length, start % dimensions[ 0 ] == 0 );
+	}
+
+	/**
+	 * Recompute the statistics of a stale entry from its runs and sort its
+	 * runs.
+	 */
+	private void compact( final Entry e, final int index, final RandomAccess< LabelingType< T > > access )
+	{
+		synchronized ( e )
+		{
+			if ( e.stale )
+			{
+				final int n = min.length;
+				final long[] position = new long[ n ];
+				long[] pixels = new long[ ( int ) Math.max( e.area, 1 ) ];
+				int numPixels = 0;
+				for ( int r = 0; r < e.numRuns; ++r )
+				{
+					final long start = e.runStarts[ r ];
+					IntervalIndexer.indexToPositionWithOffset( start, dimensions, min, position );
+					access.setPosition( position );
+					for ( int i = 0; i < e.runLengths[ r ]; ++i )
+					{
+						if ( mapping.indexOf( access.get().getLabeling() ) == index )
+						{
+							if ( numPixels == pixels.length )
+								pixels = Arrays.copyOf( pixels, 2 * numPixels );
+							pixels[ numPixels++ ] = start + i;
+						}
+						access.fwd( 0 );
+					}
+				}
+				Arrays.sort( pixels, 0, numPixels );
+				e.clear();
+				int i = 0;
+				while ( i < numPixels )
+				{
+					final long start = pixels[ i ];
+					int length = 1;
+					++i;
+					while ( i < numPixels && ( pixels[ i ] == start + length - 1 || ( pixels[ i ] == start + length && pixels[ i ] % dimensions[ 0 ] != 0 ) ) )
+					{
+						// a pixel may be listed twice if it was removed and
+						// added again
+						if ( pixels[ i ] == start + length )
+							++length;
+						++i;
+					}
+					IntervalIndexer.indexToPositionWithOffset( start, dimensions, min, position );
+					e.addRun( position, start, length, true );
+				}
+			}
+			else if ( !e.sorted )
+			{
+				sortRuns( e.runStarts, e.runLengths, 0, e.numRuns - 1 );
+				int k = 0;
+				for ( int r = 1; r < e.numRuns; ++r )
+				{
+					if ( e.runStarts[ k ] + e.runLengths[ k ] == e.runStarts[ r ] && e.runStarts[ r ] % dimensions[ 0 ] != 0 )
+						e.runLengths[ k ] += e.runLengths[ r ];
+					else
+					{
+						++k;
+						e.runStarts[ k ] = e.runStarts[ r ];
+						e.runLengths[ k ] = e.runLengths[ r ];
+					}
+				}
+				e.numRuns = k + 1;
+				e.sorted = true;
+			}
+		}
+	}
+
+	/**
+	 * Sort runs by start (quicksort on the parallel arrays).
+	 */
+	private static void sortRuns( final long[] starts, final int[] lengths, final int i, final int j )
+	{
+		if ( i >= j )
+			return;
+		final long pivot = starts[ ( i + j ) >>> 1 ];
+		int a = i;
+		int b = j;
+		while ( a <= b )
+		{
+			while ( starts[ a ] < pivot )
+				++a;
+			while ( starts[ b ] > pivot )
+				--b;
+			if ( a <= b )
+			{
+				final long s = starts[ a ];
+				starts[ a ] = starts[ b ];
+				starts[ b ] = s;
+				final int l = lengths[ a ];
+				lengths[ a ] = lengths[ b ];
+				lengths[ b ] = l;
+				++a;
+				--b;
+			}
+		}
+		sortRuns( starts, lengths, i, b );
+		sortRuns( starts, lengths, a, j );
+	}
+
+	/**
+	 * Get the up-to-date, non-empty entries of all labeling indices that
+	 * contain the given label.
+	 */
+	private synchronized List< Entry > entries( final T label )
+	{
+		validate();
+		final int numLists = mapping.numLists();
+		if ( labelIndicesNumLists != numLists )
+		{
+			final HashMap< T, ArrayList< Integer > > indices = new HashMap< T, ArrayList< Integer > >();
+			for ( int i = 0; i < numLists; ++i )
+				for ( final T l : mapping.listAtIndex( i ) )
+				{
+					ArrayList< Integer > list = indices.get( l );
+					if ( list == null )
+					{
+						list = new ArrayList< Integer >();
+						indices.put( l, list );
+					}
+					list.add( i );
+				}
+			labelIndices = new HashMap< T, int[] >();
+			for ( final Map.Entry< T, ArrayList< Integer > > e : indices.entrySet() )
+			{
+				final int[] array = new int[ e.getValue().size() ];
+				for ( int i = 0; i < array.length; ++i )
+					array[ i ] = e.getValue().get( i );
+				labelIndices.put( e.getKey(), array );
+			}
+			labelIndicesNumLists = numLists;
+		}
+
+		final ArrayList< Entry > result = new ArrayList< Entry >();
+		final int[] indices = labelIndices.get( label );
+		if ( indices == null )
+			return result;
+		final Entry[] e = entries;
+		RandomAccess< LabelingType< T > > access = null;
+		for ( final int index : indices )
+		{
+			if ( index < e.length && e[ index ] != null && e[ index ].area > 0 )
+			{
+				if ( e[ index ].stale && access == null )
+					access = labeling.randomAccess();
+				compact( e[ index ], index, access );
+				result.add( e[ index ] );
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public boolean getExtents( final T label, final long[] minExtents, final long[] maxExtents )
+	{
+		final List< Entry > es = entries( label );
+		if ( es.isEmpty() )
+		{
+			if ( minExtents != null )
+				Arrays.fill( minExtents, 0 );
+			if ( maxExtents != null )
+				Arrays.fill( maxExtents, 0 );
+			return false;
+		}
+		final int n = labeling.numDimensions();
+		for ( int d = 0; d < n; ++d )
+		{
+			long lo = Long.MAX_VALUE;
+			long hi = Long.MIN_VALUE;
+			for ( final Entry e : es )
+			{
+				lo = Math.min( lo, e.min[ d ] );
+				hi = Math.max( hi, e.max[ d ] );
+			}
+			if ( minExtents != null )
+				minExtents[ d ] = lo;
+			if ( maxExtents != null )
+				maxExtents[ d ] = hi;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean getRasterStart( final T label, final long[] start )
+	{
+		final List< Entry > es = entries( label );
+		if ( es.isEmpty() )
+		{
+			Arrays.fill( start, 0 );
+			return false;
+		}
+		final int n = labeling.numDimensions();
+		long[] best = es.get( 0 ).rasterStart;
+		for ( final Entry e : es )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( e.rasterStart[ d ] < best[ d ] )
+				{
+					best = e.rasterStart;
+					break;
+				}
+				else if ( e.rasterStart[ d ] > best[ d ] )
+					break;
+			}
+		}
+		System.arraycopy( best, 0, start, 0, n );
+		return true;
+	}
+
+	@Override
+	public long getArea( final T label )
+	{
+		long area = 0;
+		for ( final Entry e : entries( label ) )
+			area += e.area;
+		return area;
+	}
+
+	@Override
+	public synchronized Collection< T > getLabels()
+	{
+		validate();
+		final HashSet< T > labels = new HashSet< T >();
+		final Entry[] e = entries;
+		for ( int i = 0; i < e.length; ++i )
+			if ( e[ i ] != null && e[ i ].area > 0 )
+				labels.addAll( mapping.listAtIndex( i ) );
+		return new ArrayList< T >( labels );
+	}
+
+	/**
+	 * A region of interest that iterates the runs of the label directly.
+	 */
+	class IndexedRegionOfInterest extends AbstractIterableRegionOfInterest
+	{
+		final T label;
+
+		final RandomAccess< LabelingType< T >> randomAccess;
+
+		final long[] runStarts;
+
+		final int[] runLengths;
+
+		final int numRuns;
+
+		final long area;
+
+		final long[] roiMin;
+
+		final long[] roiMax;
+
+		IndexedRegionOfInterest( final T label )
+		{
+			super( labeling.numDimensions() );
+			this.label = label;
+			randomAccess = new LabelingOutOfBoundsRandomAccess< T >( labeling );
+			final int n = labeling.numDimensions();
+			roiMin = new long[ n ];
+			roiMax = new long[ n ];
+			getExtents( label, roiMin, roiMax );
+
+			final List< Entry > es = entries( label );
+			long a = 0;
+			int total = 0;
+			for ( final Entry e : es )
+			{
+				a += e.area;
+				total += e.numRuns;
+			}
+			area = a;
+			long[] starts = new long[ total ];
+			int[] lengths = new int[ total ];
+			int k = 0;
+			for ( final Entry e : es )
+			{
+				System.arraycopy( e.runStarts, 0, starts, k, e.numRuns );
+				System.arraycopy( e.runLengths, 0, lengths, k, e.numRuns );
+				k += e.numRuns;
+			}
+			if ( es.size() > 1 )
+				sortRuns( starts, lengths, 0, total - 1 );
+			runStarts = starts;
+			runLengths = lengths;
+			numRuns = total;
+		}
+
+		@Override
+		protected long size()
+		{
+			return area;
+		}
+
+		@Override
+		public boolean contains( final double[] position )
+		{
+			for ( int i = 0; i < position.length; i++ )
+			{
+				randomAccess.setPosition( ( int ) position[ i ], i );
+			}
+			return randomAccess.get().getLabeling().contains( label );
+		}
+
+		@Override
+		protected void getExtrema( final long[] minima, final long[] maxima )
+		{
+			System.arraycopy( roiMin, 0, minima, 0, numDimensions() );
+			System.arraycopy( roiMax, 0, maxima, 0, numDimensions() );
+		}
+
+		@Override
+		protected boolean nextRaster( final long[] position, final long[] end )
+		{
+			// find the first run that starts at or after position
+			int r;
+			if ( position[ 0 ] == Long.MIN_VALUE )
+				r = 0;
+			else
+			{
+				long linear = 0;
+				for ( int d = 0; d < position.length; ++d )
+					linear += ( position[ d ] - min[ d ] ) * steps[ d ];
+				r = Arrays.binarySearch( runStarts, 0, numRuns, linear );
+				if ( r < 0 )
+					r = -r - 1;
+			}
+			if ( r >= numRuns )
+				return false;
+			IntervalIndexer.indexToPositionWithOffset( runStarts[ r ], dimensions, min, position );
+			System.arraycopy( position, 0, end, 0, position.length );
+			end[ 0 ] += runLengths[ r ];
+			return true;
+		}
+
+		@Override
+		public void move( final double displacement, final int d )
+		{
+			throw new UnsupportedOperationException( "yet to be implemented" );
+		}
+
+		@Override
+		public void move( final double[] displacement )
+		{
+			throw new UnsupportedOperationException( "yet to be implemented" );
+		}
+	}
+
+	@Override
+	public RegionOfInterest createRegionOfInterest( final T label )
+	{
+		return new IndexedRegionOfInterest( label );
+	}
+
+	@Override
+	public IterableRegionOfInterest createIterableRegionOfInterest( final T label )
+	{
+		return new IndexedRegionOfInterest( label );
+	}
+}
@@ -41,10 +41,25 @@ public final class LabelingConvertedCursor< I extends IntegerType< I >, T extend
 {
 	final protected LabelingType< T > type;
 
+	final protected IndexedROIStrategy< T, ? > index;
+
 	public LabelingConvertedCursor( final Cursor< I > source, final long[] generation, final LabelingMapping< T > mapping )
+	{
+		this( source, generation, mapping, null );
+	}
+
+	/**
+	 * @param index
+	 *            if not null, every write is reported to this index.
+	 */
+	public LabelingConvertedCursor( final Cursor< I > source, final long[] generation, final LabelingMapping< T > mapping, final IndexedROIStrategy< T, ? > index )
 	{
 		super( source );
-		type = new LabelingType< T >( source.get(), mapping, generation );
+		this.index = index;
+		if ( index == null )
+			type = new LabelingType< T >( source.get(), mapping, generation );
+		else
+			type = new IndexedLabelingType< T >( source.get(), mapping, generation, this, index );
 	}
 
 	@Override
@@ -56,6 +71,6 @@ public final class LabelingConvertedCursor< I extends IntegerType< I >, T extend
 	@Override
 	public LabelingConvertedCursor< I, T > copy()
 	{
-		return new LabelingConvertedCursor< I, T >( source.copyCursor(), type.generation, type.mapping );
+		return new LabelingConvertedCursor< I, T >( source.copyCursor(), type.generation, type.mapping, index );
 	}
 }
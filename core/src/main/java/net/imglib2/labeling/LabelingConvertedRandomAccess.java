@@ -41,10 +41,25 @@ public final class LabelingConvertedRandomAccess< I extends IntegerType< I >, T
 {
 	final protected LabelingType< T > type;
 
+	final protected IndexedROIStrategy< T, ? > index;
+
 	public LabelingConvertedRandomAccess( final RandomAccess< I > source, final long[] generation, final LabelingMapping< T > mapping )
+	{
+		this( source, generation, mapping, null );
+	}
+
+	/**
+	 * @param index
+	 *            if not null, every write is reported to this index.
+	 */
+	public LabelingConvertedRandomAccess( final RandomAccess< I > source, final long[] generation, final LabelingMapping< T > mapping, final IndexedROIStrategy< T, ? > index )
 	{
 		super( source );
-		type = new LabelingType< T >( source.get(), mapping, generation );
+		this.index = index;
+		if ( index == null )
+			type = new LabelingType< T >( source.get(), mapping, generation );
+		else
+			type = new IndexedLabelingType< T >( source.get(), mapping, generation, this, index );
 	}
 
 	@Override
@@ -56,6 +71,6 @@ public final class LabelingConvertedRandomAccess< I extends IntegerType< I >, T
 	@Override
 	public LabelingConvertedRandomAccess< I, T > copy()
 	{
-		return new LabelingConvertedRandomAccess< I, T >( source.copyRandomAccess(), type.generation, type.mapping );
+		return new LabelingConvertedRandomAccess< I, T >( source.copyRandomAccess(), type.generation, type.mapping, index );
 	}
 }
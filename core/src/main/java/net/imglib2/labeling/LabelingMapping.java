@@ -37,12 +37,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.imglib2.type.numeric.IntegerType;
 
@@ -262,19 +262,31 @@ public class LabelingMapping< T extends Comparable< T >>
 		}
 	}
 
-	protected Map< List< T >, InternedList< T >> internedLists = new HashMap< List< T >, InternedList< T >>();
+	protected Map< List< T >, InternedList< T >> internedLists = new ConcurrentHashMap< List< T >, InternedList< T >>();
 
 	protected List< InternedList< T >> listsByIndex = new ArrayList< InternedList< T >>();
 
+	/**
+	 * Interned lists by index, for lock-free lookup by
+	 * {@link #listAtIndex(int)}. Only the first {@link #numLists} elements are
+	 * valid. Replaced (not modified) when it needs to grow.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private volatile InternedList< T >[] listArray = ( InternedList< T >[] ) new InternedList< ? >[ 16 ];
+
+	private volatile int numLists = 0;
+
 	public List< T > emptyList()
 	{
 		return theEmptyList;
 	}
 
 	/**
-	 * Return the canonical list for the given list
+	 * Return the canonical list for the given list. Lists that are already
+	 * interned are looked up without locking, so this can be called
+	 * concurrently from several threads writing to the same labeling.
 	 */
-	public synchronized List< T > intern( final List< T > src )
+	public List< T > intern( final List< T > src )
 	{
 		return internImpl( src );
 	}
@@ -302,15 +314,26 @@ public class LabelingMapping< T extends Comparable< T >>
 		{
 			synchronized ( listsByIndex )
 			{
-
-				final int intIndex = listsByIndex.size();
-
-				if ( intIndex > maxNumLabels )
-					throw new AssertionError( String.format( "Too many labels (or types of multiply-labeled pixels): %d maximum", intIndex ) );
-
-				interned = new InternedList< T >( src, intIndex, this );
-				listsByIndex.add( interned );
-				internedLists.put( src, interned );
+				interned = internedLists.get( src );
+				if ( interned == null )
+				{
+					final int intIndex = listsByIndex.size();
+
+					if ( intIndex > maxNumLabels )
+						throw new AssertionError( String.format( "Too many labels (or types of multiply-labeled pixels): %d maximum", intIndex ) );
+
+					interned = new InternedList< T >( src, intIndex, this );
+					listsByIndex.add( interned );
+
+					InternedList< T >[] array = listArray;
+					if ( intIndex == array.length )
+						array = Arrays.copyOf( array, 2 * intIndex );
+					array[ intIndex ] = interned;
+					listArray = array;
+					numLists = intIndex + 1;
+
+					internedLists.put( src, interned );
+				}
 			}
 		}
 
@@ -335,7 +358,7 @@ public class LabelingMapping< T extends Comparable< T >>
 
 	public final List< T > listAtIndex( final int index )
 	{
-		return listsByIndex.get( index );
+		return listArray[ index ];
 	}
 
 	/**
@@ -343,7 +366,7 @@ public class LabelingMapping< T extends Comparable< T >>
 	 */
 	public int numLists()
 	{
-		return listsByIndex.size();
+		return numLists;
 	}
 
 	/**
@@ -354,11 +377,14 @@ public class LabelingMapping< T extends Comparable< T >>
 	public List< T > getLabels()
 	{
 		final HashSet< T > result = new HashSet< T >();
-		for ( final InternedList< T > instance : listsByIndex )
+		synchronized ( listsByIndex )
 		{
-			for ( final T label : instance )
+			for ( final InternedList< T > instance : listsByIndex )
 			{
-				result.add( label );
+				for ( final T label : instance )
+				{
+					result.add( label );
+				}
 			}
 		}
 		return new ArrayList< T >( result );
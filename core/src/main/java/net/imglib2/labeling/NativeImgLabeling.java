@@ -95,7 +95,7 @@ public class NativeImgLabeling< T extends Comparable< T >, I extends IntegerType
 	{
 		final RandomAccess< I > rndAccess = img.randomAccess();
 
-		return new LabelingConvertedRandomAccess< I, T >( rndAccess, generation, mapping );
+		return new LabelingConvertedRandomAccess< I, T >( rndAccess, generation, mapping, index() );
 	}
 
 	/*
@@ -109,14 +109,24 @@ public class NativeImgLabeling< T extends Comparable< T >, I extends IntegerType
 	public Cursor< LabelingType< T >> cursor()
 	{
 		final Cursor< I > c = img.cursor();
-		return new LabelingConvertedCursor< I, T >( c, generation, mapping );
+		return new LabelingConvertedCursor< I, T >( c, generation, mapping, index() );
 	}
 
 	@Override
 	public Cursor< LabelingType< T >> localizingCursor()
 	{
 		final Cursor< I > c = img.localizingCursor();
-		return new LabelingConvertedCursor< I, T >( c, generation, mapping );
+		return new LabelingConvertedCursor< I, T >( c, generation, mapping, index() );
+	}
+
+	/**
+	 * @return the strategy if it is an {@link IndexedROIStrategy} that should
+	 *         be informed about writes, null otherwise.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private IndexedROIStrategy< T, ? > index()
+	{
+		return strategy instanceof IndexedROIStrategy ? ( IndexedROIStrategy< T, ? > ) strategy : null;
 	}
 
 	public Img< I > getStorageImg()
@@ -124,6 +134,18 @@ public class NativeImgLabeling< T extends Comparable< T >, I extends IntegerType
 		return img;
 	}
 
+	/**
+	 * Tell the labeling that its storage image was modified directly. If the
+	 * labeling uses an {@link IndexedROIStrategy}, its index is rebuilt on the
+	 * next query.
+	 */
+	public void storageModified()
+	{
+		final IndexedROIStrategy< T, ? > index = index();
+		if ( index != null )
+			index.invalidate();
+	}
+
 	@Override
 	public Labeling< T > copy()
 	{
@@ -0,0 +1,544 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.multithreading;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide execution context for multi-threaded algorithms.
+ * 
+ * <p>
+ * Algorithms that are not handed an explicit {@link ExecutorService} submit
+ * their tasks to {@link #getExecutorService()} instead of creating threads or
+ * thread pools of their own. By default this is a pool of daemon threads, one
+ * per available processor, that is created lazily and kept alive for the
+ * lifetime of the process. Applications can plug in their own service (e.g.
+ * a {@link java.util.concurrent.ForkJoinPool} or a container-managed pool)
+ * using {@link #setExecutorService(ExecutorService)}.
+ * 
+ * <p>
+ * Tasks submitted to the default pool from one of its own worker threads are
+ * executed directly in the submitting thread. Nested parallel algorithms (e.g.
+ * a Gaussian convolution running inside a parallel loop) therefore neither
+ * deadlock waiting for a free worker nor oversubscribe the available cores.
+ * 
+ * <p>
+ * {@link #getParallelism()} is the hint algorithms use to decide into how many
+ * tasks they split their work. It defaults to the number of available
+ * processors and can be changed independently of the service.
+ */
+public final class SharedThreadPool
+{
+	private static ExecutorService service = null;
+
+	private static volatile int parallelism = Runtime.getRuntime().availableProcessors();
+
+	private SharedThreadPool()
+	{}
+
+	/**
+	 * Get the shared {@link ExecutorService}. The default service is created
+	 * on first use. The returned service must not be shut down by the caller.
+	 * 
+	 * @return the shared service.
+	 */
+	public static synchronized ExecutorService getExecutorService()
+	{
+		if ( service == null )
+			service = new DefaultPool( Runtime.getRuntime().availableProcessors() );
+		return service;
+	}
+
+	/**
+	 * Replace the shared {@link ExecutorService}. The previous service is not
+	 * shut down, that remains the responsibility of whoever created it.
+	 * 
+	 * @param executorService
+	 *            the new shared service, or {@code null} to fall back to the
+	 *            default pool.
+	 */
+	public static synchronized void setExecutorService( final ExecutorService executorService )
+	{
+		service = executorService;
+	}
+
+	/**
+	 * Get the number of threads that algorithms should plan for when
+	 * splitting their work into tasks.
+	 */
+	public static int getParallelism()
+	{
+		return parallelism;
+	}
+
+	/**
+	 * Get the number of threads that algorithms should plan for when running
+	 * their tasks on the given service. This is {@link #getParallelism()} for
+	 * the shared service, the limit of a {@link #limitedExecutorService(int)
+	 * limited view} and the maximum pool size of a {@link ThreadPoolExecutor}
+	 * but no more than the number of available processors. For other services
+	 * the number of available processors is returned.
+	 * 
+	 * @param executorService
+	 *            the service the tasks will be submitted to.
+	 */
+	public static int getParallelism( final ExecutorService executorService )
+	{
+		if ( executorService == getExecutorService() )
+			return parallelism;
+		if ( executorService instanceof LimitedService )
+			return ( ( LimitedService ) executorService ).limit;
+		final int processors = Runtime.getRuntime().availableProcessors();
+		if ( executorService instanceof ThreadPoolExecutor )
+			return Math.max( 1, Math.min( ( ( ThreadPoolExecutor ) executorService ).getMaximumPoolSize(), processors ) );
+		return processors;
+	}
+
+	/**
+	 * Set the number of threads that algorithms should plan for when
+	 * splitting their work into tasks.
+	 * 
+	 * @param numThreads
+	 *            parallelism hint, must be at least 1.
+	 */
+	public static void setParallelism( final int numThreads )
+	{
+		if ( numThreads < 1 )
+			throw new IllegalArgumentException( "parallelism must be at least 1, was " + numThreads );
+		parallelism = numThreads;
+	}
+
+	/**
+	 * Get a view of the shared {@link ExecutorService} that runs at most
+	 * {@code numThreads} of its tasks at the same time. This is what the
+	 * {@code int numThreads} overloads of algorithms use instead of creating
+	 * a thread pool per call. Tasks submitted to the view from one of its own
+	 * tasks are executed directly in the submitting thread. The view does not
+	 * have to be shut down, shutting it down leaves the shared service
+	 * running.
+	 * 
+	 * @param numThreads
+	 *            maximum number of concurrently running tasks, must be at
+	 *            least 1.
+	 * @return a new view of the shared service.
+	 */
+	public static ExecutorService limitedExecutorService( final int numThreads )
+	{
+		if ( numThreads < 1 )
+			throw new IllegalArgumentException( "number of threads must be at least 1, was " + numThreads );
+		return new LimitedService( numThreads );
+	}
+
+	/**
+	 * Suggest a number of tasks for splitting a job, given that each thread
+	 * should get {@code tasksPerThread} tasks for load balancing.
+	 * 
+	 * @return 1 if {@link #getParallelism()} is 1, otherwise
+	 *         {@code getParallelism() * tasksPerThread}.
+	 */
+	public static int numTasks( final int tasksPerThread )
+	{
+		final int p = parallelism;
+		return p <= 1 ? 1 : p * Math.max( 1, tasksPerThread );
+	}
+
+	/**
+	 * Suggest a number of tasks for splitting a job that runs on the given
+	 * service, given that each thread should get {@code tasksPerThread} tasks
+	 * for load balancing.
+	 * 
+	 * @return 1 if {@link #getParallelism(ExecutorService)} is 1, otherwise
+	 *         {@code getParallelism( executorService ) * tasksPerThread}.
+	 */
+	public static int numTasks( final int tasksPerThread, final ExecutorService executorService )
+	{
+		final int p = getParallelism( executorService );
+		return p <= 1 ? 1 : p * Math.max( 1, tasksPerThread );
+	}
+
+	/**
+	 * Submit all tasks to the shared service and wait for them to complete.
+	 * 
+	 * @see #invokeAll(Collection, ExecutorService)
+	 */
+	public static < T > List< T > invokeAll( final Collection< ? extends Callable< T > > tasks ) throws InterruptedException, ExecutionException
+	{
+		return invokeAll( tasks, getExecutorService() );
+	}
+
+	/**
+	 * Submit all tasks to the given service and wait for them to complete. If
+	 * one of the tasks fails, or the calling thread is interrupted while
+	 * waiting, all tasks that have not yet completed are cancelled before the
+	 * exception is passed on.
+	 * 
+	 * @param tasks
+	 *            tasks to run.
+	 * @param executorService
+	 *            service to run the tasks on.
+	 * @return the results of the tasks, in the order of {@code tasks}.
+	 */
+	public static < T > List< T > invokeAll( final Collection< ? extends Callable< T > > tasks, final ExecutorService executorService ) throws InterruptedException, ExecutionException
+	{
+		final ArrayList< Future< T > > futures = new ArrayList< Future< T > >( tasks.size() );
+		final ArrayList< T > results = new ArrayList< T >( tasks.size() );
+		boolean done = false;
+		try
+		{
+			for ( final Callable< T > task : tasks )
+				futures.add( executorService.submit( task ) );
+			for ( final Future< T > future : futures )
+				results.add( future.get() );
+			done = true;
+		}
+		finally
+		{
+			if ( !done )
+				for ( final Future< T > future : futures )
+					future.cancel( true );
+		}
+		return results;
+	}
+
+	/**
+	 * Run all {@link Runnable}s on the shared service and wait for them to
+	 * complete. Failures are re-thrown as {@link RuntimeException}, and
+	 * interruption of the calling thread cancels the remaining tasks and
+	 * restores the interrupted flag.
+	 */
+	public static void runAll( final Collection< ? extends Runnable > tasks )
+	{
+		runAll( tasks, getExecutorService() );
+	}
+
+	/**
+	 * Run all {@link Runnable}s on the given service and wait for them to
+	 * complete.
+	 * 
+	 * @see #runAll(Collection)
+	 */
+	public static void runAll( final Collection< ? extends Runnable > tasks, final ExecutorService executorService )
+	{
+		final ArrayList< Callable< Void > > callables = new ArrayList< Callable< Void > >( tasks.size() );
+		for ( final Runnable task : tasks )
+			callables.add( new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					task.run();
+					return null;
+				}
+			} );
+		try
+		{
+			invokeAll( callables, executorService );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			final Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException )
+				throw ( RuntimeException ) cause;
+			if ( cause instanceof Error )
+				throw ( Error ) cause;
+			throw new RuntimeException( cause );
+		}
+	}
+
+	/**
+	 * Work on a range [from, to) of a larger index range.
+	 * 
+	 * @see SharedThreadPool#forRanges(long, long, ExecutorService, Range)
+	 */
+	public static interface Range
+	{
+		public void run( long from, long to );
+	}
+
+	/**
+	 * Split [0, size) into ranges of at least {@code minRangeSize} indices and
+	 * run them in parallel on the given service and wait for them to
+	 * complete. The number of ranges is at most
+	 * {@link #numTasks(int, ExecutorService) numTasks( 4, executorService )}.
+	 * 
+	 * @param size
+	 *            number of indices.
+	 * @param minRangeSize
+	 *            minimum number of indices per range, to avoid creating tasks
+	 *            that are too small to be worth it.
+	 * @param executorService
+	 *            service to run the ranges on, or {@code null} for the shared
+	 *            service.
+	 * @param range
+	 *            work to run on each range.
+	 * @see #runAll(Collection, ExecutorService)
+	 */
+	public static void forRanges( final long size, final long minRangeSize, final ExecutorService executorService, final Range range )
+	{
+		final ExecutorService s = executorService == null ? getExecutorService() : executorService;
+		final int numTasks = ( int ) Math.max( 1, Math.min( numTasks( 4, s ), size / Math.max( 1, minRangeSize ) ) );
+		final long rangeSize = ( size + numTasks - 1 ) / numTasks;
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( numTasks );
+		for ( long from = 0; from < size; from += rangeSize )
+		{
+			final long first = from;
+			final long last = Math.min( from + rangeSize, size );
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					range.run( first, last );
+				}
+			} );
+		}
+		runAll( tasks, s );
+	}
+
+	/**
+	 * Whether the calling thread is a worker of the default pool.
+	 */
+	public static boolean isWorkerThread()
+	{
+		return Thread.currentThread() instanceof WorkerThread;
+	}
+
+	/**
+	 * Queues tasks and forwards them to the shared service through at most
+	 * {@code limit} draining tasks.
+	 */
+	private static final class LimitedService extends AbstractExecutorService
+	{
+		private final int limit;
+
+		private final ConcurrentLinkedQueue< Runnable > queue = new ConcurrentLinkedQueue< Runnable >();
+
+		private final ThreadLocal< Boolean > draining = new ThreadLocal< Boolean >();
+
+		private int active = 0;
+
+		private boolean shutdown = false;
+
+		private final Runnable drainer = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				draining.set( Boolean.TRUE );
+				try
+				{
+					Runnable task;
+					while ( ( task = next() ) != null )
+					{
+						try
+						{
+							task.run();
+						}
+						catch ( final Throwable t )
+						{
+							final Thread current = Thread.currentThread();
+							current.getUncaughtExceptionHandler().uncaughtException( current, t );
+						}
+					}
+				}
+				finally
+				{
+					draining.remove();
+				}
+			}
+		};
+
+		LimitedService( final int limit )
+		{
+			this.limit = limit;
+		}
+
+		private synchronized Runnable next()
+		{
+			final Runnable task = queue.poll();
+			if ( task == null )
+			{
+				--active;
+				notifyAll();
+			}
+			return task;
+		}
+
+		@Override
+		public void execute( final Runnable command )
+		{
+			if ( draining.get() != null )
+			{
+				command.run();
+				return;
+			}
+			final boolean startDrainer;
+			synchronized ( this )
+			{
+				if ( shutdown )
+					throw new RejectedExecutionException( "executor has been shut down" );
+				queue.add( command );
+				startDrainer = active < limit;
+				if ( startDrainer )
+					++active;
+			}
+			if ( startDrainer )
+			{
+				try
+				{
+					getExecutorService().execute( drainer );
+				}
+				catch ( final RejectedExecutionException e )
+				{
+					synchronized ( this )
+					{
+						queue.remove( command );
+						--active;
+						notifyAll();
+					}
+					throw e;
+				}
+			}
+		}
+
+		@Override
+		public synchronized void shutdown()
+		{
+			shutdown = true;
+		}
+
+		@Override
+		public synchronized List< Runnable > shutdownNow()
+		{
+			shutdown = true;
+			final ArrayList< Runnable > pending = new ArrayList< Runnable >( queue );
+			queue.clear();
+			return pending;
+		}
+
+		@Override
+		public synchronized boolean isShutdown()
+		{
+			return shutdown;
+		}
+
+		@Override
+		public synchronized boolean isTerminated()
+		{
+			return shutdown && active == 0 && queue.isEmpty();
+		}
+
+		@Override
+		public synchronized boolean awaitTermination( final long timeout, final TimeUnit unit ) throws InterruptedException
+		{
+			final long deadline = System.nanoTime() + unit.toNanos( timeout );
+			while ( !isTerminated() )
+			{
+				final long remaining = deadline - System.nanoTime();
+				if ( remaining <= 0 )
+					return false;
+				TimeUnit.NANOSECONDS.timedWait( this, remaining );
+			}
+			return true;
+		}
+	}
+
+	private static final class WorkerThread extends Thread
+	{
+		private final DefaultPool pool;
+
+		WorkerThread( final DefaultPool pool, final Runnable r, final String name )
+		{
+			super( r, name );
+			this.pool = pool;
+			setDaemon( true );
+			setPriority( Thread.NORM_PRIORITY );
+		}
+	}
+
+	/**
+	 * Fixed-size pool of daemon threads that runs tasks submitted from its own
+	 * workers in the calling thread.
+	 */
+	private static final class DefaultPool extends ThreadPoolExecutor
+	{
+		private static final AtomicInteger poolNumber = new AtomicInteger( 1 );
+
+		DefaultPool( final int numThreads )
+		{
+			super( numThreads, numThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue< Runnable >() );
+			allowCoreThreadTimeOut( true );
+			final String prefix = "imglib2-pool-" + poolNumber.getAndIncrement() + "-thread-";
+			final AtomicInteger threadNumber = new AtomicInteger( 1 );
+			setThreadFactory( new ThreadFactory()
+			{
+				@Override
+				public Thread newThread( final Runnable r )
+				{
+					return new WorkerThread( DefaultPool.this, r, prefix + threadNumber.getAndIncrement() );
+				}
+			} );
+		}
+
+		@Override
+		public void execute( final Runnable command )
+		{
+			final Thread current = Thread.currentThread();
+			if ( current instanceof WorkerThread && ( ( WorkerThread ) current ).pool == this )
+				command.run();
+			else
+				super.execute( command );
+		}
+	}
+}
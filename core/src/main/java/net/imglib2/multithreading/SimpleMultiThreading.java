@@ -33,11 +33,18 @@
 
 package net.imglib2.multithreading;
 
+import java.util.Arrays;
 import java.util.Vector;
 
 /**
  * TODO
  * 
+ * <p>
+ * Threads passed to {@link #startAndJoin(Thread[])} are not started, their
+ * {@link Thread#run()} methods are executed on the
+ * {@link SharedThreadPool shared thread pool}, so no new threads are created
+ * per call.
+ * 
  * @author Stephan Preibisch
  */
 public class SimpleMultiThreading
@@ -82,12 +89,7 @@ public class SimpleMultiThreading
 
 	public static void startTask( final Runnable run )
 	{
-		final Thread[] threads = newThreads();
-
-		for ( int ithread = 0; ithread < threads.length; ++ithread )
-			threads[ ithread ] = new Thread( run );
-
-		startAndJoin( threads );
+		startTask( run, SharedThreadPool.getParallelism() );
 	}
 
 	public static void startTask( final Runnable run, final int numThreads )
@@ -98,18 +100,14 @@ public class SimpleMultiThreading
 			return;
 		}
 
-		final Thread[] threads = newThreads( numThreads );
-
-		for ( int ithread = 0; ithread < threads.length; ++ithread )
-			threads[ ithread ] = new Thread( run );
-
-		startAndJoin( threads );
+		final Runnable[] tasks = new Runnable[ numThreads ];
+		Arrays.fill( tasks, run );
+		SharedThreadPool.runAll( Arrays.asList( tasks ) );
 	}
 
 	public static Thread[] newThreads()
 	{
-		final int nthread = Runtime.getRuntime().availableProcessors();
-		return new Thread[ nthread ];
+		return new Thread[ SharedThreadPool.getParallelism() ];
 	}
 
 	public static Thread[] newThreads( final int numThreads )
@@ -125,21 +123,7 @@ public class SimpleMultiThreading
 			return;
 		}
 
-		for ( int ithread = 0; ithread < threads.length; ++ithread )
-		{
-			threads[ ithread ].setPriority( Thread.NORM_PRIORITY );
-			threads[ ithread ].start();
-		}
-
-		try
-		{
-			for ( int ithread = 0; ithread < threads.length; ++ithread )
-				threads[ ithread ].join();
-		}
-		catch ( final InterruptedException ie )
-		{
-			throw new RuntimeException( ie );
-		}
+		SharedThreadPool.runAll( Arrays.asList( threads ) );
 	}
 
 	public static void start( final Thread[] threads )
@@ -0,0 +1,261 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.neighborsearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.collection.FlatKDTree;
+import net.imglib2.multithreading.SharedThreadPool;
+
+/**
+ * Answer many <em>k</em>-nearest-neighbor or radius queries on a
+ * {@link FlatKDTree} in parallel.
+ * 
+ * <p>
+ * The queries are split into contiguous chunks, and each chunk is processed
+ * by one task with its own {@link KNearestNeighborSearchOnFlatKDTree} or
+ * {@link RadiusNeighborSearchOnFlatKDTree}. Results are reported as indices
+ * into the list of values that the tree was constructed from.
+ * </p>
+ * 
+ * <p>
+ * Queries are given either as a flat {@code double[]} with the coordinates
+ * of query q at {@code [q * n, (q + 1) * n)}, or as a {@link List} of
+ * {@link RealLocalizable} which should implement
+ * {@link java.util.RandomAccess}.
+ * </p>
+ */
+public class BatchNeighborSearchOnFlatKDTree
+{
+	/**
+	 * Find the k nearest neighbors of each query, using the
+	 * {@link SharedThreadPool}.
+	 * 
+	 * @see #kNearestNeighbors(FlatKDTree, double[], int, int[], double[],
+	 *      ExecutorService)
+	 */
+	public static < T > void kNearestNeighbors( final FlatKDTree< T > tree, final double[] queries, final int k, final int[] indices, final double[] squDistances )
+	{
+		kNearestNeighbors( tree, queries, k, indices, squDistances, SharedThreadPool.getExecutorService() );
+	}
+
+	/**
+	 * Find the k nearest neighbors of each query.
+	 * 
+	 * @param tree
+	 *            the tree to search.
+	 * @param queries
+	 *            query coordinates, the coordinates of query q are at
+	 *            {@code [q * n, (q + 1) * n)}.
+	 * @param k
+	 *            number of neighbors per query.
+	 * @param indices
+	 *            receives the index of the i-th nearest neighbor of query q at
+	 *            {@code q * k + i}, or -1 if the tree has less than i + 1
+	 *            nodes. Must have length {@code numQueries * k}.
+	 * @param squDistances
+	 *            receives the corresponding squared distances. May be
+	 *            {@code null}, otherwise must have length
+	 *            {@code numQueries * k}.
+	 * @param service
+	 *            service to run the queries on.
+	 */
+	public static < T > void kNearestNeighbors( final FlatKDTree< T > tree, final double[] queries, final int k, final int[] indices, final double[] squDistances, final ExecutorService service )
+	{
+		final int n = tree.numDimensions();
+		forEachChunk( queries.length / n, service, new Chunk()
+		{
+			@Override
+			public void run( final int first, final int last )
+			{
+				final KNearestNeighborSearchOnFlatKDTree< T > search = new KNearestNeighborSearchOnFlatKDTree< T >( tree, k );
+				for ( int q = first; q <= last; ++q )
+				{
+					search.search( queries, q * n );
+					storeKNearest( search, q, indices, squDistances );
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Find the k nearest neighbors of each query.
+	 * 
+	 * @see #kNearestNeighbors(FlatKDTree, double[], int, int[], double[],
+	 *      ExecutorService)
+	 */
+	public static < T, L extends RealLocalizable > void kNearestNeighbors( final FlatKDTree< T > tree, final List< L > queries, final int k, final int[] indices, final double[] squDistances, final ExecutorService service )
+	{
+		forEachChunk( queries.size(), service, new Chunk()
+		{
+			@Override
+			public void run( final int first, final int last )
+			{
+				final KNearestNeighborSearchOnFlatKDTree< T > search = new KNearestNeighborSearchOnFlatKDTree< T >( tree, k );
+				for ( int q = first; q <= last; ++q )
+				{
+					search.search( queries.get( q ) );
+					storeKNearest( search, q, indices, squDistances );
+				}
+			}
+		} );
+	}
+
+	private static void storeKNearest( final KNearestNeighborSearchOnFlatKDTree< ? > search, final int q, final int[] indices, final double[] squDistances )
+	{
+		final int k = search.getK();
+		for ( int i = 0, o = q * k; i < k; ++i, ++o )
+		{
+			indices[ o ] = search.getIndex( i );
+			if ( squDistances != null )
+				squDistances[ o ] = search.getSquareDistance( i );
+		}
+	}
+
+	/**
+	 * Find all neighbors within a radius of each query, using the
+	 * {@link SharedThreadPool}.
+	 * 
+	 * @see #radiusNeighbors(FlatKDTree, double[], double, boolean,
+	 *      ExecutorService)
+	 */
+	public static < T > int[][] radiusNeighbors( final FlatKDTree< T > tree, final double[] queries, final double radius, final boolean sortResults )
+	{
+		return radiusNeighbors( tree, queries, radius, sortResults, SharedThreadPool.getExecutorService() );
+	}
+
+	/**
+	 * Find all neighbors within a radius of each query.
+	 * 
+	 * @param tree
+	 *            the tree to search.
+	 * @param queries
+	 *            query coordinates, the coordinates of query q are at
+	 *            {@code [q * n, (q + 1) * n)}.
+	 * @param radius
+	 *            the radius around each query.
+	 * @param sortResults
+	 *            whether the neighbors of each query should be ordered by
+	 *            ascending distance.
+	 * @param service
+	 *            service to run the queries on.
+	 * @return for each query, the indices of its neighbors.
+	 */
+	public static < T > int[][] radiusNeighbors( final FlatKDTree< T > tree, final double[] queries, final double radius, final boolean sortResults, final ExecutorService service )
+	{
+		final int n = tree.numDimensions();
+		final int[][] neighbors = new int[ queries.length / n ][];
+		forEachChunk( neighbors.length, service, new Chunk()
+		{
+			@Override
+			public void run( final int first, final int last )
+			{
+				final RadiusNeighborSearchOnFlatKDTree< T > search = new RadiusNeighborSearchOnFlatKDTree< T >( tree );
+				for ( int q = first; q <= last; ++q )
+				{
+					search.search( queries, q * n, radius, sortResults );
+					neighbors[ q ] = getIndices( search );
+				}
+			}
+		} );
+		return neighbors;
+	}
+
+	/**
+	 * Find all neighbors within a radius of each query.
+	 * 
+	 * @see #radiusNeighbors(FlatKDTree, double[], double, boolean,
+	 *      ExecutorService)
+	 */
+	public static < T, L extends RealLocalizable > int[][] radiusNeighbors( final FlatKDTree< T > tree, final List< L > queries, final double radius, final boolean sortResults, final ExecutorService service )
+	{
+		final int[][] neighbors = new int[ queries.size() ][];
+		forEachChunk( neighbors.length, service, new Chunk()
+		{
+			@Override
+			public void run( final int first, final int last )
+			{
+				final RadiusNeighborSearchOnFlatKDTree< T > search = new RadiusNeighborSearchOnFlatKDTree< T >( tree );
+				for ( int q = first; q <= last; ++q )
+				{
+					search.search( queries.get( q ), radius, sortResults );
+					neighbors[ q ] = getIndices( search );
+				}
+			}
+		} );
+		return neighbors;
+	}
+
+	private static int[] getIndices( final RadiusNeighborSearchOnFlatKDTree< ? > search )
+	{
+		final int[] indices = new int[ search.numNeighbors() ];
+		for ( int i = 0; i < indices.length; ++i )
+			indices[ i ] = search.getIndex( i );
+		return indices;
+	}
+
+	/**
+	 * Process the queries {@code [first, last]}.
+	 */
+	private static interface Chunk
+	{
+		public void run( int first, int last );
+	}
+
+	private static void forEachChunk( final int numQueries, final ExecutorService service, final Chunk chunk )
+	{
+		if ( numQueries == 0 )
+			return;
+		final int numChunks = Math.min( numQueries, SharedThreadPool.numTasks( 4, service ) );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( numChunks );
+		for ( int c = 0; c < numChunks; ++c )
+		{
+			final int first = ( int ) ( ( long ) numQueries * c / numChunks );
+			final int last = ( int ) ( ( long ) numQueries * ( c + 1 ) / numChunks ) - 1;
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					chunk.run( first, last );
+				}
+			} );
+		}
+		SharedThreadPool.runAll( tasks, service );
+	}
+}
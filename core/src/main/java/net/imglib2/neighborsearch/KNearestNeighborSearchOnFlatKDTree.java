@@ -0,0 +1,239 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.collection.FlatKDTree;
+
+/**
+ * Implementation of {@link KNearestNeighborSearch} search for
+ * {@link FlatKDTree FlatKDTrees}.
+ * 
+ * <p>
+ * A search object holds the state of one search and must not be shared
+ * between threads. Use {@link #copy()} to create a search for another thread.
+ * </p>
+ */
+public class KNearestNeighborSearchOnFlatKDTree< T > implements KNearestNeighborSearch< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final int k;
+
+	protected final int[] bestNodes;
+
+	protected final double[] bestSquDistances;
+
+	public KNearestNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree, final int k )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.k = k;
+		this.bestNodes = new int[ k ];
+		this.bestSquDistances = new double[ k ];
+		for ( int i = 0; i < k; ++i )
+		{
+			bestNodes[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		}
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int getK()
+	{
+		return k;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		reference.localize( pos );
+		search();
+	}
+
+	/**
+	 * Perform <em>k</em>-nearest-neighbor search for a reference coordinate.
+	 * 
+	 * @param reference
+	 *            array of at least {@link #numDimensions()} coordinates,
+	 *            starting at {@code offset}.
+	 * @param offset
+	 *            index of the first coordinate in {@code reference}.
+	 */
+	public void search( final double[] reference, final int offset )
+	{
+		System.arraycopy( reference, offset, pos, 0, n );
+		search();
+	}
+
+	protected void search()
+	{
+		for ( int i = 0; i < k; ++i )
+		{
+			bestNodes[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		}
+		if ( tree.size() > 0 )
+			searchNode( 0, tree.size() - 1, 0 );
+	}
+
+	/**
+	 * Search the subtree of nodes {@code [i,j]} that is split in dimension d.
+	 */
+	protected void searchNode( final int i, final int j, final int d )
+	{
+		final int current = i + ( j - i ) / 2;
+
+		// consider the current node
+		final double squDistance = tree.squDistanceTo( current, pos );
+		if ( squDistance < bestSquDistances[ k - 1 ] )
+		{
+			int b = k - 1;
+			for ( int c = b - 1; b > 0 && squDistance < bestSquDistances[ c ]; --b, --c )
+			{
+				bestSquDistances[ b ] = bestSquDistances[ c ];
+				bestNodes[ b ] = bestNodes[ c ];
+			}
+			bestSquDistances[ b ] = squDistance;
+			bestNodes[ b ] = current;
+		}
+
+		final double axisDiff = pos[ d ] - tree.getPosition( current, d );
+		final double axisSquDistance = axisDiff * axisDiff;
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+
+		if ( axisDiff < 0 )
+		{
+			// search the near (left) branch
+			if ( current > i )
+				searchNode( i, current - 1, dChild );
+			// search the away (right) branch - maybe
+			if ( current < j && axisSquDistance <= bestSquDistances[ k - 1 ] )
+				searchNode( current + 1, j, dChild );
+		}
+		else
+		{
+			// search the near (right) branch
+			if ( current < j )
+				searchNode( current + 1, j, dChild );
+			// search the away (left) branch - maybe
+			if ( current > i && axisSquDistance <= bestSquDistances[ k - 1 ] )
+				searchNode( i, current - 1, dChild );
+		}
+	}
+
+	/**
+	 * Get the index of the <em>i</em><sup>th</sup> nearest neighbor in the
+	 * list that the tree was constructed from, or -1 if the tree has less
+	 * than i + 1 nodes.
+	 */
+	public int getIndex( final int i )
+	{
+		final int node = bestNodes[ i ];
+		return node < 0 ? -1 : tree.getIndex( node );
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return tree.getNode( bestNodes[ i ] );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return tree.getNode( bestNodes[ i ] );
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return bestSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( bestSquDistances[ i ] );
+	}
+
+	/* NearestNeighborSearch */
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return getPosition( 0 );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return getSampler( 0 );
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return getSquareDistance( 0 );
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return getDistance( 0 );
+	}
+
+	@Override
+	public KNearestNeighborSearchOnFlatKDTree< T > copy()
+	{
+		final KNearestNeighborSearchOnFlatKDTree< T > copy = new KNearestNeighborSearchOnFlatKDTree< T >( tree, k );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		System.arraycopy( bestNodes, 0, copy.bestNodes, 0, k );
+		System.arraycopy( bestSquDistances, 0, copy.bestSquDistances, 0, k );
+		return copy;
+	}
+}
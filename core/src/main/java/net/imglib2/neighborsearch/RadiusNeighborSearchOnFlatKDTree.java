@@ -0,0 +1,234 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.collection.FlatKDTree;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for
+ * {@link FlatKDTree FlatKDTrees}.
+ * 
+ * <p>
+ * Results are collected in primitive arrays that are reused between
+ * searches. A search object holds the state of one search and must not be
+ * shared between threads.
+ * </p>
+ */
+public class RadiusNeighborSearchOnFlatKDTree< T > implements RadiusNeighborSearch< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected int numNeighbors;
+
+	protected int[] resultNodes;
+
+	protected double[] resultSquDistances;
+
+	public RadiusNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.numNeighbors = 0;
+		this.resultNodes = new int[ 16 ];
+		this.resultSquDistances = new double[ 16 ];
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		reference.localize( pos );
+		search( radius, sortResults );
+	}
+
+	/**
+	 * Perform a radius search for a reference coordinate.
+	 * 
+	 * @param reference
+	 *            array of at least {@link #numDimensions()} coordinates,
+	 *            starting at {@code offset}.
+	 * @param offset
+	 *            index of the first coordinate in {@code reference}.
+	 * @param radius
+	 *            the radius around the reference coordinate.
+	 * @param sortResults
+	 *            whether the results should be ordered by ascending distance.
+	 */
+	public void search( final double[] reference, final int offset, final double radius, final boolean sortResults )
+	{
+		System.arraycopy( reference, offset, pos, 0, n );
+		search( radius, sortResults );
+	}
+
+	protected void search( final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		numNeighbors = 0;
+		if ( tree.size() > 0 )
+			searchNode( 0, tree.size() - 1, 0, radius * radius );
+		if ( sortResults )
+			sort( 0, numNeighbors - 1 );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * Search the subtree of nodes {@code [i,j]} that is split in dimension d.
+	 */
+	protected void searchNode( final int i, final int j, final int d, final double squRadius )
+	{
+		final int current = i + ( j - i ) / 2;
+
+		// consider the current node
+		final double squDistance = tree.squDistanceTo( current, pos );
+		if ( squDistance <= squRadius )
+			add( current, squDistance );
+
+		final double axisDiff = pos[ d ] - tree.getPosition( current, d );
+		final boolean awayInRange = axisDiff * axisDiff <= squRadius;
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+
+		final boolean leftIsNearBranch = axisDiff < 0;
+		if ( current > i && ( leftIsNearBranch || awayInRange ) )
+			searchNode( i, current - 1, dChild, squRadius );
+		if ( current < j && ( !leftIsNearBranch || awayInRange ) )
+			searchNode( current + 1, j, dChild, squRadius );
+	}
+
+	private void add( final int node, final double squDistance )
+	{
+		if ( numNeighbors == resultNodes.length )
+		{
+			resultNodes = Arrays.copyOf( resultNodes, 2 * numNeighbors );
+			resultSquDistances = Arrays.copyOf( resultSquDistances, 2 * numNeighbors );
+		}
+		resultNodes[ numNeighbors ] = node;
+		resultSquDistances[ numNeighbors ] = squDistance;
+		++numNeighbors;
+	}
+
+	/**
+	 * Sort results {@code [i,j]} by ascending distance (quicksort).
+	 */
+	private void sort( int i, int j )
+	{
+		while ( i < j )
+		{
+			final double pivot = resultSquDistances[ i + ( j - i ) / 2 ];
+			int l = i;
+			int r = j;
+			while ( l <= r )
+			{
+				while ( resultSquDistances[ l ] < pivot )
+					++l;
+				while ( resultSquDistances[ r ] > pivot )
+					--r;
+				if ( l <= r )
+				{
+					final double tmpDistance = resultSquDistances[ l ];
+					resultSquDistances[ l ] = resultSquDistances[ r ];
+					resultSquDistances[ r ] = tmpDistance;
+					final int tmpNode = resultNodes[ l ];
+					resultNodes[ l ] = resultNodes[ r ];
+					resultNodes[ r ] = tmpNode;
+					++l;
+					--r;
+				}
+			}
+			// recurse into the smaller part, iterate on the larger one
+			if ( r - i < j - l )
+			{
+				sort( i, r );
+				i = l;
+			}
+			else
+			{
+				sort( l, j );
+				j = r;
+			}
+		}
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	/**
+	 * Get the index of the <em>i</em><sup>th</sup> neighbor in the list that
+	 * the tree was constructed from.
+	 */
+	public int getIndex( final int i )
+	{
+		return tree.getIndex( resultNodes[ i ] );
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return tree.getNode( resultNodes[ i ] );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return tree.getNode( resultNodes[ i ] );
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+}
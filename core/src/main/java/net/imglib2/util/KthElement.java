@@ -869,4 +869,48 @@ public class KthElement
 				return;
 		}
 	}
+
+	/**
+	 * Partition a subarray of {@code values} such that the k-th smallest value
+	 * is at position {@code k}, elements before the k-th are smaller or equal
+	 * and elements after the k-th are larger or equal.
+	 * 
+	 * <p>
+	 * The {@code permutation} array is permuted in the same way as the
+	 * {@code values} array. Usually, this will be an array of indices, so that
+	 * the partition operation can be mirrored in other arrays.
+	 * </p>
+	 * 
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param k
+	 *            index for k-th smallest value. i <= k <= j.
+	 * @param values
+	 *            array
+	 * @param permutation
+	 *            elements of this array are permuted in the same way as the
+	 *            elements in the values array
+	 */
+	public static void kthElement( int i, int j, final int k, final double[] values, final int[] permutation )
+	{
+		final int[] equalRange = new int[ 2 ];
+		while ( i < j )
+		{
+			partitionSubList( i, j, values, permutation, equalRange );
+			if ( equalRange[ 0 ] > k )
+			{
+				// partition lower part
+				j = equalRange[ 0 ] - 1;
+			}
+			else if ( equalRange[ 1 ] < k )
+			{
+				// partition upper part
+				i = equalRange[ 1 ] + 1;
+			}
+			else
+				return;
+		}
+	}
 }
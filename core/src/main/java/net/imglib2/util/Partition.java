@@ -1175,4 +1175,68 @@ public class Partition
 		}
 		return;
 	}
+
+	/**
+	 * Three-way partition of a subarray of {@code values}.
+	 * 
+	 * The median of the elements at indices {@code i}, {@code (i+j)/2} and
+	 * {@code j} is taken as the pivot value. The elements {@code [i,j]} are
+	 * reordered, such that all elements smaller than the pivot come first,
+	 * followed by all elements equal to the pivot, followed by all elements
+	 * larger than the pivot. The index range of the elements equal to the
+	 * pivot is stored in {@code equalRange}. Subarrays with many equal
+	 * elements are partitioned in linear time.
+	 * 
+	 * <p>
+	 * The {@code permutation} array is permuted in the same way as the
+	 * {@code values} array (see
+	 * {@link #partitionSubList(int, int, List, int[], Comparator)}).
+	 * </p>
+	 * 
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param values
+	 *            array
+	 * @param permutation
+	 *            elements of this array are permuted in the same way as the
+	 *            elements in the values array
+	 * @param equalRange
+	 *            array of size 2, receives the indices of the first and the
+	 *            last element equal to the pivot
+	 */
+	public static void partitionSubList( final int i, final int j, final double[] values, final int[] permutation, final int[] equalRange )
+	{
+		final double a = values[ i ];
+		final double b = values[ i + ( j - i ) / 2 ];
+		final double c = values[ j ];
+		final double pivot = a < b ? ( b < c ? b : ( a < c ? c : a ) ) : ( a < c ? a : ( b < c ? c : b ) );
+
+		int lt = i;
+		int gt = j;
+		int p = i;
+		while ( p <= gt )
+		{
+			final double v = values[ p ];
+			if ( v < pivot )
+				swap( values, permutation, lt++, p++ );
+			else if ( v > pivot )
+				swap( values, permutation, p, gt-- );
+			else
+				++p;
+		}
+		equalRange[ 0 ] = lt;
+		equalRange[ 1 ] = gt;
+	}
+
+	private static void swap( final double[] values, final int[] permutation, final int i, final int j )
+	{
+		final double tmp = values[ i ];
+		values[ i ] = values[ j ];
+		values[ j ] = tmp;
+		final int indicesTmp = permutation[ i ];
+		permutation[ i ] = permutation[ j ];
+		permutation[ j ] = indicesTmp;
+	}
 }
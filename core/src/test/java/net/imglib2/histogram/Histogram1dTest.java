@@ -37,8 +37,13 @@ import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
 
 import org.junit.Test;
 
@@ -101,6 +106,46 @@ public class Histogram1dTest
 		assertEquals( 0, hist.upperTailCount() );
 	}
 
+	@Test
+	public void testParallel()
+	{
+		final Img< UnsignedByteType > img = new ArrayImgFactory< UnsignedByteType >().create( new long[] { 301, 207 }, new UnsignedByteType() );
+		final Random random = new Random( 1 );
+		for ( final UnsignedByteType t : img )
+			t.set( random.nextInt( 256 ) );
+
+		for ( final boolean tails : new boolean[] { false, true } )
+		{
+			final BinMapper1d< UnsignedByteType > binMapper = new Integer1dBinMapper< UnsignedByteType >( 20, 200, tails );
+			final Histogram1d< UnsignedByteType > expected = new Histogram1d< UnsignedByteType >( img, binMapper );
+			final Histogram1d< UnsignedByteType > hist = new Histogram1d< UnsignedByteType >( binMapper );
+			hist.countData( img, null );
+			assertEquals( expected.ignoredCount(), hist.ignoredCount() );
+			assertEquals( expected.distributionCount(), hist.distributionCount() );
+			for ( int i = 0; i < 200; ++i )
+				assertEquals( expected.frequency( i ), hist.frequency( i ) );
+
+			// sliding window update: remove the first rows, add them again
+			final Histogram1d< UnsignedByteType > window = hist.copy();
+			window.add( hist );
+			window.subtractData( Views.iterable( Views.interval( img, new long[] { 0, 0 }, new long[] { 300, 99 } ) ), null );
+			window.subtractData( Views.iterable( Views.interval( img, new long[] { 0, 100 }, new long[] { 300, 206 } ) ), null );
+			for ( int i = 0; i < 200; ++i )
+				assertEquals( 0, window.frequency( i ) );
+			assertEquals( 0, window.ignoredCount() );
+		}
+
+		final Img< FloatType > floats = new ArrayImgFactory< FloatType >().create( new long[] { 1000, 50 }, new FloatType() );
+		for ( final FloatType t : floats )
+			t.set( ( float ) random.nextGaussian() );
+		final Real1dBinMapper< FloatType > realMapper = new Real1dBinMapper< FloatType >( -2, 2, 64, true );
+		final Histogram1d< FloatType > expected = new Histogram1d< FloatType >( floats, realMapper );
+		final Histogram1d< FloatType > hist = new Histogram1d< FloatType >( realMapper );
+		hist.countData( floats, null );
+		for ( int i = 0; i < 64; ++i )
+			assertEquals( expected.frequency( i ), hist.frequency( i ) );
+	}
+
 	private List< UnsignedByteType > getData1()
 	{
 		final List< UnsignedByteType > data = new ArrayList< UnsignedByteType >();
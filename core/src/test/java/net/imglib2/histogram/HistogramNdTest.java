@@ -39,13 +39,16 @@ import static org.junit.Assert.assertNotNull;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.type.numeric.integer.IntType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.view.Views;
 
 import org.junit.Test;
 
@@ -269,6 +272,39 @@ public class HistogramNdTest
 		assertEquals( 0, hist.frequency( list ) );
 	}
 
+	@Test
+	public void testParallel()
+	{
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( new long[] { 250, 130, 2 }, new IntType() );
+		final Random random = new Random( 5 );
+		for ( final IntType t : img )
+			t.set( random.nextInt( 40 ) - 5 );
+
+		final List< IterableInterval< IntType > > channels = new ArrayList< IterableInterval< IntType > >();
+		final List< Iterable< IntType > > iterables = new ArrayList< Iterable< IntType > >();
+		for ( int c = 0; c < 2; ++c )
+		{
+			channels.add( Views.iterable( Views.hyperSlice( img, 2, c ) ) );
+			iterables.add( channels.get( c ) );
+		}
+
+		final HistogramNd< IntType > expected = Integer1dBinMapper.histogramNd( new long[] { 0, 2 }, new long[] { 30, 20 }, new boolean[] { false, true } );
+		expected.countData( iterables );
+		final HistogramNd< IntType > hist = Integer1dBinMapper.histogramNd( new long[] { 0, 2 }, new long[] { 30, 20 }, new boolean[] { false, true } );
+		hist.countData( channels, null );
+
+		assertEquals( expected.ignoredCount(), hist.ignoredCount() );
+		assertEquals( expected.distributionCount(), hist.distributionCount() );
+		final long[] binPos = new long[ 2 ];
+		for ( binPos[ 1 ] = 0; binPos[ 1 ] < 20; ++binPos[ 1 ] )
+			for ( binPos[ 0 ] = 0; binPos[ 0 ] < 30; ++binPos[ 0 ] )
+				assertEquals( expected.frequency( binPos ), hist.frequency( binPos ) );
+
+		hist.subtract( expected );
+		assertEquals( 0, hist.distributionCount() );
+		assertEquals( 0, hist.ignoredCount() );
+	}
+
 	@Test
 	public void testRgbHist()
 	{
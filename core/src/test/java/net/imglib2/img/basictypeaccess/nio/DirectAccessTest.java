@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.DirectArrayImgFactory;
+import net.imglib2.img.cell.DirectCellImgFactory;
+import net.imglib2.img.planar.DirectPlanarImgFactory;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.Util;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link AbstractBufferAccess buffer-backed accesses} and
+ * the factories using them.
+ */
+public class DirectAccessTest
+{
+	@Test
+	public void testDirectFactories()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			assertTrue( "ArrayImg vs direct ArrayImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new ArrayImgFactory< FloatType >(), new DirectArrayImgFactory< FloatType >() ) );
+			assertTrue( "ArrayImg vs direct PlanarImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new ArrayImgFactory< FloatType >(), new DirectPlanarImgFactory< FloatType >() ) );
+			if ( dim[ i ].length > 1 )
+				assertTrue( "ArrayImg vs direct CellImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+						ImgTestHelper.testImg( dim[ i ], new ArrayImgFactory< FloatType >(), new DirectCellImgFactory< FloatType >( 5 ) ) );
+		}
+	}
+
+	@Test
+	public void testAccessors()
+	{
+		final int n = 17;
+		final DirectByteArray b = new DirectByteArray( n );
+		final DirectCharArray c = new DirectCharArray( n );
+		final DirectShortArray s = new DirectShortArray( n );
+		final DirectIntArray i = new DirectIntArray( n );
+		final DirectLongArray l = new DirectLongArray( n );
+		final DirectFloatArray f = new DirectFloatArray( n );
+		final DirectDoubleArray d = new DirectDoubleArray( n );
+		for ( int k = 0; k < n; ++k )
+		{
+			b.setValue( k, ( byte ) -k );
+			c.setValue( k, ( char ) ( 60000 + k ) );
+			s.setValue( k, ( short ) ( -1000 * k ) );
+			i.setValue( k, -100000 * k );
+			l.setValue( k, -10000000000l * k );
+			f.setValue( k, k + 0.5f );
+			d.setValue( k, k - 0.25 );
+		}
+		for ( int k = 0; k < n; ++k )
+		{
+			assertEquals( ( byte ) -k, b.getValue( k ) );
+			assertEquals( ( char ) ( 60000 + k ), c.getValue( k ) );
+			assertEquals( ( short ) ( -1000 * k ), s.getValue( k ) );
+			assertEquals( -100000 * k, i.getValue( k ) );
+			assertEquals( -10000000000l * k, l.getValue( k ) );
+			assertEquals( k + 0.5f, f.getValue( k ), 0 );
+			assertEquals( k - 0.25, d.getValue( k ), 0 );
+		}
+		assertTrue( s.getCurrentStorageArray().isDirect() );
+		assertEquals( 2 * n, s.getCurrentStorageArray().capacity() );
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException
+	{
+		final DirectFloatArray f = new DirectFloatArray( 10 );
+		for ( int k = 0; k < 10; ++k )
+			f.setValue( k, k * 1.5f );
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream( bytes );
+		out.writeObject( f );
+		out.close();
+		final ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+		final DirectFloatArray g = ( DirectFloatArray ) in.readObject();
+		in.close();
+
+		for ( int k = 0; k < 10; ++k )
+			assertEquals( k * 1.5f, g.getValue( k ), 0 );
+	}
+
+	@Test
+	public void testMappedFile() throws IOException
+	{
+		final File file = File.createTempFile( "imglib2-mapped", ".raw" );
+		file.deleteOnExit();
+		final int w = 13, h = 7, z = 3;
+		final RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+		raf.writeInt( 0xcafe ); // header
+		for ( int k = 0; k < w * h * z; ++k )
+			raf.writeShort( k );
+		raf.close();
+
+		final MappedByteBuffer buffer = MappedBuffers.map( file, 4, 2 * w * h * z, false, ByteOrder.BIG_ENDIAN );
+		final ArrayImg< UnsignedShortType, ? > img = new DirectArrayImgFactory< UnsignedShortType >( buffer ).create( new long[] { w, h, z }, new UnsignedShortType() );
+		int k = 0;
+		for ( final UnsignedShortType t : img )
+			assertEquals( k++, t.get() );
+
+		final MappedByteBuffer[] planes = MappedBuffers.mapPlanes( file, 4, 2 * w * h, z, true, ByteOrder.BIG_ENDIAN );
+		final PlanarImg< UnsignedShortType, ? > planar = new DirectPlanarImgFactory< UnsignedShortType >( planes ).create( new long[] { w, h, z }, new UnsignedShortType() );
+		final Cursor< UnsignedShortType > c = planar.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			assertEquals( c.getIntPosition( 0 ) + w * c.getIntPosition( 1 ) + w * h * c.getIntPosition( 2 ), c.get().get() );
+			c.get().set( 2 * c.get().get() );
+		}
+		for ( final MappedByteBuffer plane : planes )
+			plane.force();
+
+		final RandomAccessFile check = new RandomAccessFile( file, "r" );
+		assertEquals( 0xcafe, check.readInt() );
+		for ( k = 0; k < w * h * z; ++k )
+			assertEquals( 2 * k, check.readShort() );
+		check.close();
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.Util;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CachedCellImg}.
+ */
+public class CachedCellImgTest
+{
+	/**
+	 * In-memory {@link CellStore}, keeps copies of saved cells.
+	 */
+	static class MemoryCellStore implements CellStore< FloatArray >
+	{
+		final HashMap< String, float[] > cells = new HashMap< String, float[] >();
+
+		int numSaved = 0;
+
+		@Override
+		public synchronized void load( final FloatArray data, final long[] min, final int[] dimensions )
+		{
+			final float[] stored = cells.get( Arrays.toString( min ) );
+			if ( stored != null )
+				System.arraycopy( stored, 0, data.getCurrentStorageArray(), 0, stored.length );
+		}
+
+		@Override
+		public synchronized void save( final FloatArray data, final long[] min, final int[] dimensions )
+		{
+			cells.put( Arrays.toString( min ), data.getCurrentStorageArray().clone() );
+			++numSaved;
+		}
+	}
+
+	/**
+	 * Loader that computes the value of each pixel from its position.
+	 */
+	static class PositionLoader implements CellLoader< ShortArray >
+	{
+		int numLoaded = 0;
+
+		@Override
+		public synchronized void load( final ShortArray data, final long[] min, final int[] dimensions ) throws IOException
+		{
+			final short[] array = data.getCurrentStorageArray();
+			for ( int i = 0; i < array.length; ++i )
+				array[ i ] = ( short ) ( min[ 0 ] + i % dimensions[ 0 ] + 100 * ( min[ 1 ] + i / dimensions[ 0 ] ) );
+			++numLoaded;
+		}
+	}
+
+	@Test
+	public void testCachedCellImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			if ( dim[ i ].length > 1 )
+			{
+				assertTrue( "ArrayImg vs CachedCellImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+						ImgTestHelper.testImg( dim[ i ], new ArrayImgFactory< FloatType >(), new CachedCellImgFactory< FloatType >( new MemoryCellStore(), 4, 5 ) ) );
+				assertTrue( "CachedCellImg vs ArrayImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+						ImgTestHelper.testImg( dim[ i ], new CachedCellImgFactory< FloatType >( new MemoryCellStore(), 2, 10 ), new ArrayImgFactory< FloatType >() ) );
+			}
+		}
+	}
+
+	@Test
+	public void testLoadOnDemand()
+	{
+		final PositionLoader loader = new PositionLoader();
+		final CachedCellImg< UnsignedShortType, ? > img = new CachedCellImgFactory< UnsignedShortType >( loader, 3, 16 ).create( new long[] { 100, 80 }, new UnsignedShortType() );
+		assertEquals( 0, loader.numLoaded );
+
+		final RandomAccess< UnsignedShortType > a = img.randomAccess();
+		a.setPosition( new long[] { 37, 42 } );
+		assertEquals( 37 + 100 * 42, a.get().get() );
+		// only the origin cell (initial position) and the accessed cell
+		assertEquals( 2, loader.numLoaded );
+
+		final Cursor< UnsignedShortType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			assertEquals( c.getIntPosition( 0 ) + 100 * c.getIntPosition( 1 ), c.get().get() );
+		}
+	}
+
+	@Test
+	public void testWriteBack()
+	{
+		final MemoryCellStore store = new MemoryCellStore();
+		final long[] dimensions = new long[] { 64, 64, 8 };
+		CachedCellImg< FloatType, ? > img = new CachedCellImgFactory< FloatType >( store, 2, 8 ).create( dimensions, new FloatType() );
+		int i = 0;
+		for ( final FloatType t : img )
+			t.set( i++ );
+		img.flush();
+
+		img = new CachedCellImgFactory< FloatType >( store, 2, 8 ).create( dimensions, new FloatType() );
+		i = 0;
+		for ( final FloatType t : img )
+			assertEquals( i++, t.get(), 0 );
+
+		// unmodified cells are not written back again
+		final int numSaved = store.numSaved;
+		img.flush();
+		assertEquals( numSaved, store.numSaved );
+	}
+
+	@Test
+	public void testFactoryDoesNotShareStore()
+	{
+		final MemoryCellStore store = new MemoryCellStore();
+		final long[] dimensions = new long[] { 32, 24 };
+		final CachedCellImgFactory< FloatType > factory = new CachedCellImgFactory< FloatType >( store, 2, 8 );
+		final CachedCellImg< FloatType, ? > img = factory.create( dimensions, new FloatType() );
+		for ( final FloatType t : img )
+			t.set( 7 );
+		img.flush();
+		final int numSaved = store.numSaved;
+
+		// temporaries created through the image's factory live in memory
+		final Img< FloatType > tmp = img.factory().create( dimensions, new FloatType() );
+		assertTrue( tmp instanceof CellImg );
+		for ( final FloatType t : tmp )
+		{
+			assertEquals( 0, t.get(), 0 );
+			t.set( 1 );
+		}
+		assertEquals( numSaved, store.numSaved );
+		for ( final FloatType t : img )
+			assertEquals( 7, t.get(), 0 );
+
+		// the loader is bound to the first image
+		try
+		{
+			factory.create( dimensions, new FloatType() );
+			fail( "expected IllegalStateException" );
+		}
+		catch ( final IllegalStateException e )
+		{}
+	}
+
+	@Test
+	public void testRawFileCellStore() throws IOException
+	{
+		final File file = File.createTempFile( "imglib2-cached", ".raw" );
+		file.deleteOnExit();
+		final long[] dimensions = new long[] { 30, 20, 5 };
+
+		RawFileCellStore< ShortArray > store = new RawFileCellStore< ShortArray >( file, dimensions, 1, ByteOrder.BIG_ENDIAN, true );
+		CachedCellImg< UnsignedShortType, ? > img = new CachedCellImgFactory< UnsignedShortType >( store, 2, new int[] { 7, 6, 2 } ).create( dimensions, new UnsignedShortType() );
+		Cursor< UnsignedShortType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.get().set( c.getIntPosition( 0 ) + 30 * c.getIntPosition( 1 ) + 600 * c.getIntPosition( 2 ) );
+		}
+		img.flush();
+		store.close();
+		assertEquals( 30 * 20 * 5 * 2, file.length() );
+
+		store = new RawFileCellStore< ShortArray >( file, dimensions, 1, ByteOrder.BIG_ENDIAN, false );
+		img = new CachedCellImgFactory< UnsignedShortType >( store, 2, new int[] { 8, 8, 8 } ).create( dimensions, new UnsignedShortType() );
+		c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			assertEquals( c.getIntPosition( 0 ) + 30 * c.getIntPosition( 1 ) + 600 * c.getIntPosition( 2 ), c.get().get() );
+		}
+		store.close();
+		file.delete();
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.type.volatiles.VolatileRealType;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link VolatileCellView} and {@link CellFetcher}.
+ */
+public class VolatileCellViewTest
+{
+	/**
+	 * Loader that blocks until released and fills cells with x + 1000 * y.
+	 */
+	static class BlockingLoader implements CellLoader< FloatArray >
+	{
+		final CountDownLatch release = new CountDownLatch( 1 );
+
+		@Override
+		public void load( final FloatArray data, final long[] min, final int[] dimensions ) throws IOException
+		{
+			try
+			{
+				release.await();
+			}
+			catch ( final InterruptedException e )
+			{
+				throw new IOException( e );
+			}
+			final float[] array = data.getCurrentStorageArray();
+			for ( int i = 0; i < array.length; ++i )
+				array[ i ] = min[ 0 ] + i % dimensions[ 0 ] + 1000 * ( min[ 1 ] + i / dimensions[ 0 ] );
+		}
+	}
+
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	@Test
+	public void testNonBlockingAccess() throws InterruptedException
+	{
+		final BlockingLoader loader = new BlockingLoader();
+		final CellFetcher fetcher = new CellFetcher( 2 );
+		final CachedCellImg< FloatType, ? > img = new CachedCellImgFactory< FloatType >( loader, 100, 10 ).create( new long[] { 50, 40 }, new FloatType() );
+		final VolatileCellView< FloatType, ? > view = new VolatileCellView( img, fetcher, 0 );
+
+		final RandomAccess< VolatileRealType< FloatType > > a = view.randomAccess();
+		a.setPosition( new long[] { 23, 17 } );
+		VolatileRealType< FloatType > v = a.get();
+		assertFalse( v.isValid() );
+		assertEquals( 0, v.get().get(), 0 );
+
+		// repeated access does not enqueue again
+		a.get();
+		a.setPosition( new long[] { 35, 17 } );
+		a.get();
+		assertTrue( fetcher.getQueueSize() <= 2 );
+
+		loader.release.countDown();
+		a.setPosition( new long[] { 23, 17 } );
+		for ( int i = 0; i < 1000 && !a.get().isValid(); ++i )
+			Thread.sleep( 10 );
+		v = a.get();
+		assertTrue( v.isValid() );
+		assertEquals( 23 + 1000 * 17, v.get().get(), 0 );
+
+		fetcher.shutdown();
+	}
+
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	@Test
+	public void testClearQueue() throws InterruptedException
+	{
+		final BlockingLoader loader = new BlockingLoader();
+		final CellFetcher fetcher = new CellFetcher( 1 );
+		final CachedCellImg< FloatType, ? > img = new CachedCellImgFactory< FloatType >( loader, 100, 10 ).create( new long[] { 50, 40 }, new FloatType() );
+		final VolatileCellView< FloatType, ? > view = new VolatileCellView( img, fetcher, 0 );
+
+		final RandomAccess< VolatileRealType< FloatType > > a = view.randomAccess();
+		for ( int x = 0; x < 50; x += 10 )
+		{
+			a.setPosition( x, 0 );
+			a.get();
+		}
+		fetcher.clearQueue();
+		assertEquals( 0, fetcher.getQueueSize() );
+		loader.release.countDown();
+
+		// cleared cells are enqueued again on access
+		a.setPosition( 45, 0 );
+		for ( int i = 0; i < 1000 && !a.get().isValid(); ++i )
+			Thread.sleep( 10 );
+		assertTrue( a.get().isValid() );
+		assertEquals( 45, a.get().get().get(), 0 );
+
+		fetcher.shutdown();
+	}
+
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	@Test
+	public void testPriority()
+	{
+		final CellFetcher fetcher = new CellFetcher( 0 );
+		final CachedCellImg< FloatType, ? > img = new CachedCellImgFactory< FloatType >( new BlockingLoader(), 100, 10 ).create( new long[] { 50, 40 }, new FloatType() );
+		final VolatileCellView< FloatType, ? > low = new VolatileCellView( img, fetcher, 5 );
+		final VolatileCellView< FloatType, ? > high = new VolatileCellView( img, fetcher, 1 );
+
+		low.randomAccess().get();
+		assertEquals( 1, fetcher.getQueueSize() );
+		low.randomAccess().get();
+		assertEquals( 1, fetcher.getQueueSize() );
+		// more urgent request for the same cell is enqueued again
+		high.randomAccess().get();
+		assertEquals( 2, fetcher.getQueueSize() );
+		fetcher.shutdown();
+	}
+
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	@Test
+	public void testLoadListener() throws InterruptedException
+	{
+		final BlockingLoader loader = new BlockingLoader();
+		final CellFetcher fetcher = new CellFetcher( 1 );
+		final CountDownLatch loaded = new CountDownLatch( 1 );
+		fetcher.addLoadListener( new CellFetcher.LoadListener()
+		{
+			@Override
+			public void cellLoaded()
+			{
+				loaded.countDown();
+			}
+		} );
+		final CachedCellImg< FloatType, ? > img = new CachedCellImgFactory< FloatType >( loader, 100, 10 ).create( new long[] { 50, 40 }, new FloatType() );
+		final VolatileCellView< FloatType, ? > view = new VolatileCellView( img, fetcher, 0 );
+
+		final RandomAccess< VolatileRealType< FloatType > > a = view.randomAccess();
+		a.setPosition( new long[] { 12, 3 } );
+		assertFalse( a.get().isValid() );
+		assertEquals( 1, loaded.getCount() );
+
+		loader.release.countDown();
+		assertTrue( loaded.await( 10, TimeUnit.SECONDS ) );
+		assertTrue( a.get().isValid() );
+		assertEquals( 12 + 1000 * 3, a.get().get().get(), 0 );
+
+		fetcher.shutdown();
+	}
+}
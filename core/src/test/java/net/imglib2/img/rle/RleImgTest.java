@@ -0,0 +1,186 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.img.rle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+public class RleImgTest
+{
+	final long[] dimensions = new long[] { 37, 11, 5 };
+
+	@Test
+	public void testRandomWrites()
+	{
+		final RleImg< IntType, ? > rle = new RleImgFactory< IntType >().create( dimensions, new IntType() );
+		final ArrayImg< IntType, ? > array = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+
+		final Random random = new Random( 42 );
+		final RandomAccess< IntType > ra = rle.randomAccess();
+		final RandomAccess< IntType > aa = array.randomAccess();
+		final long[] pos = new long[ 3 ];
+		for ( int i = 0; i < 20000; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				pos[ d ] = random.nextInt( ( int ) dimensions[ d ] );
+			// few values, so that runs get merged as well as split
+			final int value = random.nextInt( 3 );
+			ra.setPosition( pos );
+			aa.setPosition( pos );
+			ra.get().set( value );
+			aa.get().set( value );
+		}
+
+		assertEqualContents( array, rle );
+
+		final RandomAccess< IntType > ra2 = rle.randomAccess();
+		for ( int i = 0; i < 1000; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				pos[ d ] = random.nextInt( ( int ) dimensions[ d ] );
+			ra2.setPosition( pos );
+			aa.setPosition( pos );
+			assertEquals( aa.get().get(), ra2.get().get() );
+		}
+
+		// runs never hold equal neighbouring values
+		final RleStorage storage = rle.getStorage();
+		for ( int line = 0; line < storage.numLines(); ++line )
+			for ( int run = 1; run < storage.numRuns( line ); ++run )
+				assertTrue( storage.runValue( line, run - 1 ) != storage.runValue( line, run ) );
+	}
+
+	@Test
+	public void testCursorWrites()
+	{
+		final RleImg< FloatType, ? > rle = new RleImgFactory< FloatType >().create( dimensions, new FloatType() );
+		final ArrayImg< FloatType, ? > array = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+
+		final Cursor< FloatType > c = rle.localizingCursor();
+		final RandomAccess< FloatType > aa = array.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			aa.setPosition( c );
+			final float value = c.getIntPosition( 0 ) / 10 + 0.5f * c.getIntPosition( 2 );
+			c.get().set( value );
+			aa.get().set( value );
+		}
+
+		final Cursor< FloatType > ac = array.cursor();
+		final Cursor< FloatType > rc = rle.cursor();
+		rc.jumpFwd( 100 );
+		ac.jumpFwd( 100 );
+		while ( rc.hasNext() )
+			assertEquals( ac.next().get(), rc.next().get(), 0 );
+
+		assertEquals( 4 * 11 * 5, rle.getStorage().numRuns() );
+	}
+
+	@Test
+	public void testRunCursor()
+	{
+		final RleImg< IntType, ? > rle = new RleImgFactory< IntType >().create( dimensions, new IntType() );
+		final RandomAccess< IntType > ra = rle.randomAccess();
+		final long[][] runs = new long[][] { { 3, 0, 0, 5 }, { 30, 0, 0, 7 }, { 0, 4, 2, 37 }, { 10, 10, 4, 1 } };
+		for ( final long[] run : runs )
+		{
+			ra.setPosition( new long[] { run[ 0 ], run[ 1 ], run[ 2 ] } );
+			for ( int i = 0; i < run[ 3 ]; ++i )
+			{
+				ra.get().set( 1 );
+				ra.fwd( 0 );
+			}
+		}
+
+		final RleRunCursor< IntType > rc = rle.runCursor();
+		for ( final long[] run : runs )
+		{
+			assertTrue( rc.hasNext() );
+			rc.fwd();
+			for ( int d = 0; d < 3; ++d )
+				assertEquals( run[ d ], rc.getLongPosition( d ) );
+			assertEquals( run[ 3 ], rc.length() );
+			assertEquals( 1, rc.get().get() );
+		}
+		assertFalse( rc.hasNext() );
+
+		// clearing the runs releases the lines
+		final Cursor< IntType > c = rle.cursor();
+		while ( c.hasNext() )
+			c.next().set( 0 );
+		assertEquals( 11 * 5, rle.getStorage().numRuns() );
+		for ( int line = 0; line < rle.getStorage().numLines(); ++line )
+			assertTrue( rle.getStorage().isEmpty( line ) );
+	}
+
+	@Test
+	public void testCopy()
+	{
+		final RleImg< IntType, ? > rle = new RleImgFactory< IntType >().create( dimensions, new IntType() );
+		final RandomAccess< IntType > ra = rle.randomAccess();
+		ra.setPosition( new long[] { 5, 6, 2 } );
+		ra.get().set( 17 );
+
+		final RleImg< IntType, ? > copy = rle.copy();
+		ra.get().set( 3 );
+
+		final RandomAccess< IntType > ca = copy.randomAccess();
+		ca.setPosition( new long[] { 5, 6, 2 } );
+		assertEquals( 17, ca.get().get() );
+		ca.bck( 0 );
+		assertEquals( 0, ca.get().get() );
+	}
+
+	private static void assertEqualContents( final ArrayImg< IntType, ? > expected, final RleImg< IntType, ? > actual )
+	{
+		final Cursor< IntType > ec = expected.cursor();
+		final Cursor< IntType > ac = actual.cursor();
+		while ( ec.hasNext() )
+			assertEquals( ec.next().get(), ac.next().get() );
+	}
+}
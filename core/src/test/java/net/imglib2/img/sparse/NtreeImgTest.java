@@ -0,0 +1,169 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Test;
+
+public class NtreeImgTest
+{
+	final long[] dimensions = new long[] { 45, 30, 7 };
+
+	@SuppressWarnings( "unchecked" )
+	private NtreeImg< IntType, IntNtree > createNtree()
+	{
+		return ( NtreeImg< IntType, IntNtree > ) new NtreeImgFactory< IntType >().create( dimensions, new IntType() );
+	}
+
+	private static void assertEqualContents( final ArrayImg< IntType, ? > expected, final NtreeImg< IntType, ? > actual )
+	{
+		final Cursor< IntType > ec = expected.cursor();
+		final Cursor< IntType > ac = actual.cursor();
+		while ( ec.hasNext() )
+			assertEquals( ec.next().get(), ac.next().get() );
+	}
+
+	@Test
+	public void testRandomWrites()
+	{
+		final NtreeImg< IntType, IntNtree > ntree = createNtree();
+		final ArrayImg< IntType, ? > array = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+
+		final Random random = new Random( 17 );
+		final RandomAccess< IntType > ra = ntree.randomAccess();
+		final RandomAccess< IntType > ra2 = ntree.randomAccess();
+		final RandomAccess< IntType > aa = array.randomAccess();
+		final long[] pos = new long[ 3 ];
+		for ( int i = 0; i < 20000; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				pos[ d ] = random.nextInt( ( int ) dimensions[ d ] / 2 ) + ( i % 2 ) * dimensions[ d ] / 2;
+			final int value = random.nextInt( 2 );
+			ra.setPosition( pos );
+			aa.setPosition( pos );
+			ra.get().set( value );
+			aa.get().set( value );
+
+			// a second access must not see stale cached leaves
+			for ( int d = 0; d < 3; ++d )
+				pos[ d ] = random.nextInt( ( int ) dimensions[ d ] );
+			ra2.setPosition( pos );
+			aa.setPosition( pos );
+			assertEquals( aa.get().get(), ra2.get().get() );
+		}
+
+		assertEqualContents( array, ntree );
+		assertEqualContents( array, ntree.copy() );
+	}
+
+	@Test
+	public void testBlockCursor()
+	{
+		final NtreeImg< IntType, IntNtree > ntree = createNtree();
+		final RandomAccess< IntType > ra = ntree.randomAccess();
+		ra.setPosition( new long[] { 40, 3, 5 } );
+		ra.get().set( 3 );
+		ra.setPosition( new long[] { 1, 29, 0 } );
+		ra.get().set( 4 );
+
+		// blocks cover every pixel exactly once
+		final ArrayImg< IntType, ? > counts = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		final RandomAccess< IntType > ca = counts.randomAccess();
+		final RandomAccess< IntType > check = ntree.randomAccess();
+		final NtreeBlockCursor< IntType > blocks = ntree.blockCursor();
+		final long[] min = new long[ 3 ];
+		final long[] pos = new long[ 3 ];
+		long numPixels = 0;
+		int numBlocks = 0;
+		while ( blocks.hasNext() )
+		{
+			blocks.fwd();
+			++numBlocks;
+			numPixels += blocks.size();
+			blocks.localize( min );
+			for ( pos[ 2 ] = min[ 2 ]; pos[ 2 ] <= blocks.max( 2 ); ++pos[ 2 ] )
+				for ( pos[ 1 ] = min[ 1 ]; pos[ 1 ] <= blocks.max( 1 ); ++pos[ 1 ] )
+					for ( pos[ 0 ] = min[ 0 ]; pos[ 0 ] <= blocks.max( 0 ); ++pos[ 0 ] )
+					{
+						ca.setPosition( pos );
+						ca.get().inc();
+						check.setPosition( pos );
+						assertEquals( blocks.get().get(), check.get().get() );
+					}
+		}
+		assertEquals( 45 * 30 * 7, numPixels );
+		for ( final IntType c : counts )
+			assertEquals( 1, c.get() );
+		assertTrue( numBlocks < 200 );
+
+		// filling blocks sets all their pixels and merges the tree
+		final Ntree< Integer > tree = ntree.data.getCurrentStorageNtree();
+		final long numNodes = tree.numNodes();
+		blocks.reset();
+		while ( blocks.hasNext() )
+		{
+			blocks.fwd();
+			blocks.get().set( 9 );
+		}
+		for ( final IntType t : ntree )
+			assertEquals( 9, t.get() );
+		assertTrue( tree.numNodes() < numNodes );
+	}
+
+	@Test
+	public void testDetachedChildren()
+	{
+		final Ntree< Integer > t = new Ntree< Integer >( new long[] { 2, 2 }, 0 );
+		@SuppressWarnings( "unchecked" )
+		final Ntree.NtreeNode< Integer >[] children = new Ntree.NtreeNode[ 4 ];
+		for ( int i = 0; i < 4; ++i )
+			children[ i ] = new Ntree.NtreeNode< Integer >( null, i );
+		t.getRootNode().setChildren( children );
+
+		assertEquals( 3, t.getNode( new long[] { 1, 1 } ).getValue().intValue() );
+		assertEquals( 1, t.getNode( new long[] { 1, 0 } ).getValue().intValue() );
+		assertEquals( 5, t.numNodes() );
+		assertEquals( 4, t.getRootNode().getChildren().length );
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.multithreading;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link SharedThreadPool}.
+ */
+public class SharedThreadPoolTest
+{
+	@Test
+	public void testInvokeAllKeepsOrder() throws InterruptedException, ExecutionException
+	{
+		final ArrayList< Callable< Integer > > tasks = new ArrayList< Callable< Integer > >();
+		for ( int i = 0; i < 100; ++i )
+		{
+			final int value = i;
+			tasks.add( new Callable< Integer >()
+			{
+				@Override
+				public Integer call()
+				{
+					return value;
+				}
+			} );
+		}
+		final List< Integer > results = SharedThreadPool.invokeAll( tasks );
+		assertEquals( 100, results.size() );
+		for ( int i = 0; i < 100; ++i )
+			assertEquals( i, results.get( i ).intValue() );
+	}
+
+	@Test
+	public void testNestedTasksDoNotDeadlock()
+	{
+		final int n = SharedThreadPool.getParallelism() * 4;
+		final AtomicInteger count = new AtomicInteger();
+		final ArrayList< Runnable > outer = new ArrayList< Runnable >();
+		for ( int i = 0; i < n; ++i )
+			outer.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final ArrayList< Runnable > inner = new ArrayList< Runnable >();
+					for ( int j = 0; j < n; ++j )
+						inner.add( new Runnable()
+						{
+							@Override
+							public void run()
+							{
+								count.incrementAndGet();
+							}
+						} );
+					SharedThreadPool.runAll( inner );
+				}
+			} );
+		SharedThreadPool.runAll( outer );
+		assertEquals( n * n, count.get() );
+	}
+
+	@Test
+	public void testFailureIsPropagated()
+	{
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		tasks.add( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				throw new IllegalStateException( "expected" );
+			}
+		} );
+		try
+		{
+			SharedThreadPool.runAll( tasks );
+			fail( "exception was not propagated" );
+		}
+		catch ( final IllegalStateException e )
+		{
+			assertEquals( "expected", e.getMessage() );
+		}
+	}
+
+	@Test
+	public void testLimitedExecutorService() throws InterruptedException
+	{
+		final int limit = 2;
+		final ExecutorService limited = SharedThreadPool.limitedExecutorService( limit );
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final AtomicInteger count = new AtomicInteger();
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( int i = 0; i < 32; ++i )
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final int r = running.incrementAndGet();
+					synchronized ( maxRunning )
+					{
+						maxRunning.set( Math.max( maxRunning.get(), r ) );
+					}
+					final ArrayList< Runnable > inner = new ArrayList< Runnable >();
+					for ( int j = 0; j < 4; ++j )
+						inner.add( new Runnable()
+						{
+							@Override
+							public void run()
+							{
+								count.incrementAndGet();
+							}
+						} );
+					SharedThreadPool.runAll( inner, limited );
+					try
+					{
+						Thread.sleep( 1 );
+					}
+					catch ( final InterruptedException e )
+					{
+						Thread.currentThread().interrupt();
+					}
+					running.decrementAndGet();
+				}
+			} );
+		SharedThreadPool.runAll( tasks, limited );
+		assertEquals( 32 * 4, count.get() );
+		assertTrue( maxRunning.get() <= limit );
+		limited.shutdown();
+		assertTrue( limited.awaitTermination( 10, TimeUnit.SECONDS ) );
+		assertTrue( !SharedThreadPool.getExecutorService().isShutdown() );
+	}
+
+	@Test
+	public void testParallelismOfService()
+	{
+		assertEquals( SharedThreadPool.getParallelism(), SharedThreadPool.getParallelism( SharedThreadPool.getExecutorService() ) );
+		assertEquals( 3, SharedThreadPool.getParallelism( SharedThreadPool.limitedExecutorService( 3 ) ) );
+		final ExecutorService single = Executors.newSingleThreadExecutor();
+		try
+		{
+			assertEquals( 1, SharedThreadPool.getParallelism( single ) );
+			assertEquals( 1, SharedThreadPool.numTasks( 4, single ) );
+		}
+		finally
+		{
+			single.shutdown();
+		}
+	}
+
+	@Test
+	public void testForRanges()
+	{
+		final int size = 10007;
+		final AtomicInteger[] visits = new AtomicInteger[ size ];
+		for ( int i = 0; i < size; ++i )
+			visits[ i ] = new AtomicInteger();
+		final AtomicInteger numRanges = new AtomicInteger();
+		SharedThreadPool.forRanges( size, 64, SharedThreadPool.limitedExecutorService( 2 ), new SharedThreadPool.Range()
+		{
+			@Override
+			public void run( final long from, final long to )
+			{
+				numRanges.incrementAndGet();
+				for ( long i = from; i < to; ++i )
+					visits[ ( int ) i ].incrementAndGet();
+			}
+		} );
+		for ( int i = 0; i < size; ++i )
+			assertEquals( 1, visits[ i ].get() );
+		assertTrue( numRanges.get() <= SharedThreadPool.numTasks( 4, SharedThreadPool.limitedExecutorService( 2 ) ) );
+
+		numRanges.set( 0 );
+		SharedThreadPool.forRanges( 100, 64, null, new SharedThreadPool.Range()
+		{
+			@Override
+			public void run( final long from, final long to )
+			{
+				numRanges.incrementAndGet();
+			}
+		} );
+		assertEquals( 1, numRanges.get() );
+	}
+
+	@Test
+	public void testSetExecutorService()
+	{
+		final ExecutorService custom = Executors.newSingleThreadExecutor();
+		try
+		{
+			SharedThreadPool.setExecutorService( custom );
+			assertSame( custom, SharedThreadPool.getExecutorService() );
+		}
+		finally
+		{
+			SharedThreadPool.setExecutorService( null );
+			custom.shutdown();
+		}
+		assertTrue( SharedThreadPool.getExecutorService() != custom );
+	}
+
+	@Test
+	public void testStartAndJoinUsesPool()
+	{
+		final AtomicInteger onWorker = new AtomicInteger();
+		final Thread[] threads = SimpleMultiThreading.newThreads( 4 );
+		for ( int i = 0; i < threads.length; ++i )
+			threads[ i ] = new Thread( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if ( SharedThreadPool.isWorkerThread() )
+						onWorker.incrementAndGet();
+				}
+			} );
+		SimpleMultiThreading.startAndJoin( threads );
+		assertEquals( 4, onWorker.get() );
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.RealPoint;
+import net.imglib2.collection.FlatKDTree;
+import net.imglib2.neighborsearch.BatchNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree;
+
+import org.junit.Test;
+
+/**
+ * Compare searches on {@link FlatKDTree} with exhaustive search.
+ */
+public class FlatKDTreeTest
+{
+	private static final int numDimensions = 3;
+
+	private static ArrayList< RealPoint > randomPoints( final int numPoints, final Random rnd )
+	{
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		final double[] p = new double[ numDimensions ];
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			for ( int d = 0; d < numDimensions; ++d )
+				p[ d ] = rnd.nextInt( 1000 ) / 10.0;
+			points.add( new RealPoint( p ) );
+		}
+		return points;
+	}
+
+	private static double squDistance( final RealPoint a, final RealPoint b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	private static double[] sortedSquDistances( final ArrayList< RealPoint > points, final RealPoint q )
+	{
+		final double[] distances = new double[ points.size() ];
+		for ( int i = 0; i < distances.length; ++i )
+			distances[ i ] = squDistance( points.get( i ), q );
+		Arrays.sort( distances );
+		return distances;
+	}
+
+	@Test
+	public void testKNearestNeighbors()
+	{
+		final Random rnd = new Random( 435435435 );
+		final ArrayList< RealPoint > points = randomPoints( 5000, rnd );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		assertEquals( points.size(), tree.size() );
+
+		final int k = 7;
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > search = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k );
+		for ( final RealPoint q : randomPoints( 200, rnd ) )
+		{
+			search.search( q );
+			final double[] expected = sortedSquDistances( points, q );
+			for ( int i = 0; i < k; ++i )
+			{
+				assertEquals( expected[ i ], search.getSquareDistance( i ), 1e-10 );
+				assertSame( points.get( search.getIndex( i ) ), search.getSampler( i ).get() );
+				assertEquals( expected[ i ], squDistance( search.getSampler( i ).get(), q ), 1e-10 );
+			}
+		}
+	}
+
+	@Test( timeout = 20000 )
+	public void testDuplicateCoordinates()
+	{
+		// planar points with few distinct x values
+		final Random rnd = new Random( 12345 );
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		for ( int i = 0; i < 200000; ++i )
+			points.add( new RealPoint( rnd.nextInt( 4 ), rnd.nextInt( 1000 ) / 10.0, 5.0 ) );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		assertEquals( points.size(), tree.size() );
+
+		final int k = 3;
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > search = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k );
+		for ( final RealPoint q : randomPoints( 20, rnd ) )
+		{
+			search.search( q );
+			final double[] expected = sortedSquDistances( points, q );
+			for ( int i = 0; i < k; ++i )
+				assertEquals( expected[ i ], search.getSquareDistance( i ), 1e-10 );
+		}
+	}
+
+	@Test
+	public void testRadiusNeighbors()
+	{
+		final Random rnd = new Random( 123 );
+		final ArrayList< RealPoint > points = randomPoints( 5000, rnd );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+
+		final double radius = 8;
+		final RadiusNeighborSearchOnFlatKDTree< RealPoint > search = new RadiusNeighborSearchOnFlatKDTree< RealPoint >( tree );
+		for ( final RealPoint q : randomPoints( 200, rnd ) )
+		{
+			search.search( q, radius, true );
+			final double[] expected = sortedSquDistances( points, q );
+			int count = 0;
+			while ( count < expected.length && expected[ count ] <= radius * radius )
+				++count;
+			assertEquals( count, search.numNeighbors() );
+			for ( int i = 0; i < count; ++i )
+			{
+				assertEquals( expected[ i ], search.getSquareDistance( i ), 1e-10 );
+				assertEquals( expected[ i ], squDistance( points.get( search.getIndex( i ) ), q ), 1e-10 );
+			}
+		}
+	}
+
+	@Test
+	public void testValuesAndLinkedList()
+	{
+		final Random rnd = new Random( 42 );
+		final ArrayList< RealPoint > points = randomPoints( 1000, rnd );
+		final LinkedList< Integer > values = new LinkedList< Integer >();
+		for ( int i = 0; i < points.size(); ++i )
+			values.add( i );
+		final FlatKDTree< Integer > tree = new FlatKDTree< Integer >( values, new LinkedList< RealPoint >( points ) );
+
+		for ( int node = 0; node < tree.size(); ++node )
+		{
+			final int i = tree.getValue( node );
+			assertEquals( i, tree.getIndex( node ) );
+			for ( int d = 0; d < numDimensions; ++d )
+				assertEquals( points.get( i ).getDoublePosition( d ), tree.getPosition( node, d ), 0 );
+		}
+	}
+
+	@Test
+	public void testBatchSearch()
+	{
+		final Random rnd = new Random( 7 );
+		final ArrayList< RealPoint > points = randomPoints( 20000, rnd );
+		final ArrayList< RealPoint > queries = randomPoints( 1000, rnd );
+		final double[] flatQueries = new double[ queries.size() * numDimensions ];
+		for ( int q = 0; q < queries.size(); ++q )
+			for ( int d = 0; d < numDimensions; ++d )
+				flatQueries[ q * numDimensions + d ] = queries.get( q ).getDoublePosition( d );
+
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points, service );
+
+			final int k = 5;
+			final int[] indices = new int[ queries.size() * k ];
+			final double[] squDistances = new double[ queries.size() * k ];
+			BatchNeighborSearchOnFlatKDTree.kNearestNeighbors( tree, flatQueries, k, indices, squDistances, service );
+			final int[] listIndices = new int[ queries.size() * k ];
+			BatchNeighborSearchOnFlatKDTree.kNearestNeighbors( tree, queries, k, listIndices, null, service );
+			assertArrayEquals( indices, listIndices );
+
+			final int[][] radiusIndices = BatchNeighborSearchOnFlatKDTree.radiusNeighbors( tree, flatQueries, 5, true, service );
+			final int[][] listRadiusIndices = BatchNeighborSearchOnFlatKDTree.radiusNeighbors( tree, queries, 5, true, service );
+
+			final KNearestNeighborSearchOnFlatKDTree< RealPoint > search = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k );
+			final RadiusNeighborSearchOnFlatKDTree< RealPoint > radiusSearch = new RadiusNeighborSearchOnFlatKDTree< RealPoint >( tree );
+			for ( int q = 0; q < queries.size(); ++q )
+			{
+				search.search( queries.get( q ) );
+				for ( int i = 0; i < k; ++i )
+				{
+					assertEquals( search.getIndex( i ), indices[ q * k + i ] );
+					assertEquals( search.getSquareDistance( i ), squDistances[ q * k + i ], 0 );
+				}
+				radiusSearch.search( queries.get( q ), 5, true );
+				assertEquals( radiusSearch.numNeighbors(), radiusIndices[ q ].length );
+				for ( int i = 0; i < radiusIndices[ q ].length; ++i )
+					assertEquals( radiusSearch.getIndex( i ), radiusIndices[ q ][ i ] );
+				assertArrayEquals( radiusIndices[ q ], listRadiusIndices[ q ] );
+			}
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+}
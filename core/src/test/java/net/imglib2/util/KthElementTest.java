@@ -42,6 +42,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.ListIterator;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -634,4 +635,63 @@ public class KthElementTest
 		for ( int p = 0; p < permutation.length; ++p )
 			assertTrue( values.get( p ).equals( origvalues.get( permutation[ p ] ) ) );
 	}
+	@Test
+	public void testMedianDoubleSubArrayPermutation()
+	{
+		final double[] values = new double[] { 2, 453, 233, 1, 1, 1, 1, 1, 0.7, 12, -3, 55 };
+		final double[] origvalues = values.clone();
+
+		final int[] permutation = new int[ values.length ];
+		for ( int k = 0; k < permutation.length; ++k )
+			permutation[ k ] = k;
+
+		final int i = 2;
+		final int j = values.length - 2;
+		final int k = i + ( j - i ) / 2;
+		KthElement.kthElement( i, j, k, values, permutation );
+
+		// the elements before the k-th should be equal or smaller than the k-th
+		for ( int p = i; p < k; ++p )
+			assertTrue( values[ p ] <= values[ k ] );
+
+		// the elements after the k-th should be equal or greater than the k-th
+		for ( int p = k + 1; p <= j; ++p )
+			assertTrue( values[ p ] >= values[ k ] );
+
+		// elements outside the subarray should not be touched
+		for ( int p = 0; p < values.length; ++p )
+			if ( p < i || p > j )
+				assertEquals( p, permutation[ p ] );
+
+		for ( int p = 0; p < permutation.length; ++p )
+			assertEquals( origvalues[ permutation[ p ] ], values[ p ], 0 );
+	}
+
+	@Test( timeout = 10000 )
+	public void testMedianDoubleManyDuplicatesPermutation()
+	{
+		final Random rnd = new Random( 42 );
+		final double[] values = new double[ 500000 ];
+		for ( int p = 0; p < values.length; ++p )
+			values[ p ] = p < values.length / 2 ? 7 : rnd.nextInt( 3 );
+		final double[] origvalues = values.clone();
+
+		final int[] permutation = new int[ values.length ];
+		for ( int p = 0; p < permutation.length; ++p )
+			permutation[ p ] = p;
+
+		final int i = 0;
+		final int j = values.length - 1;
+		for ( final int k : new int[] { i, j / 3, j / 2, j } )
+		{
+			KthElement.kthElement( i, j, k, values, permutation );
+			for ( int p = i; p < k; ++p )
+				assertTrue( values[ p ] <= values[ k ] );
+			for ( int p = k + 1; p <= j; ++p )
+				assertTrue( values[ p ] >= values[ k ] );
+		}
+
+		for ( int p = 0; p < permutation.length; ++p )
+			assertEquals( origvalues[ permutation[ p ] ], values[ p ], 0 );
+	}
 }
@@ -0,0 +1,227 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package tests.labeling;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.labeling.IndexedROIStrategyFactory;
+import net.imglib2.labeling.Labeling;
+import net.imglib2.labeling.LabelingType;
+import net.imglib2.labeling.NativeImgLabeling;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Test;
+
+/**
+ * Runs the {@link LabelingTest} suite on labelings using the
+ * {@link IndexedROIStrategyFactory}, and compares the index with the default
+ * strategy under incremental writes.
+ */
+public class IndexedLabelingTest extends LabelingTest
+{
+	@Override
+	protected < T extends Comparable< T >> Labeling< T > makeLabeling( final T exemplar, final long[] dimensions )
+	{
+		return new NativeImgLabeling< T, IntType >( new IndexedROIStrategyFactory< T >(), new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+	}
+
+	private static Labeling< Integer > makeDefaultLabeling( final long[] dimensions )
+	{
+		return new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+	}
+
+	private static void write( final Labeling< Integer > labeling, final long[] position, final List< Integer > labels )
+	{
+		final RandomAccess< LabelingType< Integer >> a = labeling.randomAccess();
+		a.setPosition( position );
+		a.get().setLabeling( labels );
+	}
+
+	private static List< long[] > roiPositions( final Labeling< Integer > labeling, final Integer label, final Img< IntType > img )
+	{
+		final ArrayList< long[] > positions = new ArrayList< long[] >();
+		final Cursor< IntType > c = labeling.getIterableRegionOfInterest( label ).getIterableIntervalOverROI( img ).localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			final long[] p = new long[ c.numDimensions() ];
+			c.localize( p );
+			positions.add( p );
+		}
+		return positions;
+	}
+
+	private static void assertSameStatistics( final Labeling< Integer > expected, final Labeling< Integer > actual, final Img< IntType > img )
+	{
+		assertEquals( new HashSet< Integer >( expected.getLabels() ), new HashSet< Integer >( actual.getLabels() ) );
+		final int n = expected.numDimensions();
+		for ( final Integer label : expected.getLabels() )
+		{
+			assertEquals( expected.getArea( label ), actual.getArea( label ) );
+			final long[] min1 = new long[ n ], max1 = new long[ n ], min2 = new long[ n ], max2 = new long[ n ];
+			expected.getExtents( label, min1, max1 );
+			actual.getExtents( label, min2, max2 );
+			assertArrayEquals( min1, min2 );
+			assertArrayEquals( max1, max2 );
+			expected.getRasterStart( label, min1 );
+			actual.getRasterStart( label, min2 );
+			assertArrayEquals( min1, min2 );
+			final List< long[] > p1 = roiPositions( expected, label, img );
+			final List< long[] > p2 = roiPositions( actual, label, img );
+			assertEquals( p1.size(), p2.size() );
+			for ( int i = 0; i < p1.size(); ++i )
+				assertArrayEquals( p1.get( i ), p2.get( i ) );
+			assertEquals( expected.getIterableRegionOfInterest( label ).getIterableIntervalOverROI( img ).size(), actual.getIterableRegionOfInterest( label ).getIterableIntervalOverROI( img ).size() );
+		}
+	}
+
+	@Test
+	public void testIncrementalUpdates()
+	{
+		final long[] dimensions = new long[] { 17, 13, 5 };
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		final Labeling< Integer > expected = makeDefaultLabeling( dimensions );
+		final Labeling< Integer > actual = makeLabeling( 0, dimensions );
+		final Random random = new Random( 1 );
+		final long[] position = new long[ 3 ];
+		for ( int round = 0; round < 6; ++round )
+		{
+			for ( int i = 0; i < 400; ++i )
+			{
+				for ( int d = 0; d < 3; ++d )
+					position[ d ] = random.nextInt( ( int ) dimensions[ d ] );
+				final List< Integer > labels;
+				final int r = random.nextInt( 10 );
+				if ( r == 0 )
+					labels = Collections.< Integer >emptyList();
+				else if ( r == 1 )
+					labels = Arrays.asList( random.nextInt( 5 ), 5 + random.nextInt( 3 ) );
+				else
+					labels = Arrays.asList( random.nextInt( 5 ) );
+				write( expected, position, labels );
+				write( actual, position, labels );
+			}
+			assertSameStatistics( expected, actual, img );
+		}
+	}
+
+	@Test
+	public void testConcurrentWriters() throws Exception
+	{
+		final long[] dimensions = new long[] { 64, 48, 8 };
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		final Labeling< Integer > expected = makeDefaultLabeling( dimensions );
+		final Labeling< Integer > actual = makeLabeling( 0, dimensions );
+		final ArrayList< Callable< Void >> tasks = new ArrayList< Callable< Void >>();
+		for ( int z = 0; z < dimensions[ 2 ]; ++z )
+		{
+			final int slice = z;
+			tasks.add( new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					final Random random = new Random( slice );
+					final RandomAccess< LabelingType< Integer >> a = actual.randomAccess();
+					a.setPosition( slice, 2 );
+					for ( int i = 0; i < 2000; ++i )
+					{
+						a.setPosition( random.nextInt( ( int ) dimensions[ 0 ] ), 0 );
+						a.setPosition( random.nextInt( ( int ) dimensions[ 1 ] ), 1 );
+						a.get().setLabel( random.nextInt( 12 ) );
+					}
+					return null;
+				}
+			} );
+		}
+		SharedThreadPool.invokeAll( tasks );
+
+		final Cursor< LabelingType< Integer >> c1 = expected.cursor();
+		final Cursor< LabelingType< Integer >> c2 = actual.cursor();
+		while ( c1.hasNext() )
+			c1.next().setLabeling( c2.next().getLabeling() );
+		assertSameStatistics( expected, actual, img );
+	}
+
+	@Test
+	public void testStorageWrites()
+	{
+		final long[] dimensions = new long[] { 10, 10 };
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		final NativeImgLabeling< Integer, IntType > labeling = new NativeImgLabeling< Integer, IntType >( new IndexedROIStrategyFactory< Integer >(), img );
+		write( labeling, new long[] { 1, 1 }, Arrays.asList( 1 ) );
+		assertEquals( 1, labeling.getArea( 1 ) );
+
+		// write the storage directly and force a rebuild
+		final int index = labeling.getMapping().indexOf( Arrays.asList( 1 ) );
+		for ( final IntType t : img )
+			t.set( index );
+		labeling.storageModified();
+		assertEquals( 100, labeling.getArea( 1 ) );
+	}
+
+	@Test
+	public void testUnchangedWritesKeepIndex()
+	{
+		final long[] dimensions = new long[] { 10, 10 };
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		final NativeImgLabeling< Integer, IntType > labeling = new NativeImgLabeling< Integer, IntType >( new IndexedROIStrategyFactory< Integer >(), img );
+		write( labeling, new long[] { 1, 1 }, Arrays.asList( 1 ) );
+		assertEquals( 1, labeling.getArea( 1 ) );
+
+		// writing the same labeling again is reported, so a direct write to
+		// the storage is not picked up without invalidating the index
+		write( labeling, new long[] { 1, 1 }, Arrays.asList( 1 ) );
+		final int index = labeling.getMapping().indexOf( Arrays.asList( 1 ) );
+		img.firstElement().set( index );
+		assertEquals( 1, labeling.getArea( 1 ) );
+		labeling.storageModified();
+		assertEquals( 2, labeling.getArea( 1 ) );
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.ops.function;
+
+/**
+ * An optional extension of {@link Function} for functions of integer
+ * positions that can compute a contiguous run of points in one call. The
+ * values of the run are written to a primitive buffer. Callers that check for
+ * this interface avoid one virtual call and one output update per point.
+ * Functions that do not implement it can be wrapped in a
+ * {@link net.imglib2.ops.function.general.PointwiseBatchFunction}.
+ */
+public interface BatchFunction<OUTPUT> extends Function<long[], OUTPUT> {
+
+	/**
+	 * Computes the real values of the function at {@code length} consecutive
+	 * points along dimension {@code dim}, starting at {@code start}. The value
+	 * at {@code start + i} along {@code dim} is placed in {@code output[i]}.
+	 * The start position is not modified.
+	 * <p>
+	 * Values must be as represented in OUTPUT: {@code output[i]} equals the
+	 * real value of an OUTPUT variable set by {@link #compute} at that point.
+	 * Functions whose OUTPUT cannot hold every double (e.g. integer types) must
+	 * pass each value through an OUTPUT variable.
+	 * 
+	 * @param start
+	 * @param dim
+	 * @param length
+	 * @param output
+	 */
+	void computeLine(long[] start, int dim, int length, double[] output);
+
+	@Override
+	BatchFunction<OUTPUT> copy();
+}
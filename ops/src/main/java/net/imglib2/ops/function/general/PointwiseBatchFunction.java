@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.ops.function.general;
+
+import net.imglib2.ops.function.BatchFunction;
+import net.imglib2.ops.function.Function;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Adapts any {@link Function} of integer positions to a {@link BatchFunction}
+ * by computing the run of points one point at a time. Use {@link #wrap} to
+ * avoid wrapping functions that already implement {@link BatchFunction}.
+ */
+public class PointwiseBatchFunction<T extends RealType<T>>
+	implements BatchFunction<T>
+{
+	// -- instance variables --
+	
+	private final Function<long[], T> func;
+	private final T tmp;
+	private long[] pos;
+	
+	// -- constructor --
+	
+	public PointwiseBatchFunction(Function<long[], T> func) {
+		this.func = func;
+		this.tmp = func.createOutput();
+		this.pos = new long[0];
+	}
+	
+	// -- static helpers --
+	
+	/**
+	 * Returns the given function if it is a {@link BatchFunction} and a
+	 * {@link PointwiseBatchFunction} that wraps it otherwise.
+	 */
+	public static <T extends RealType<T>> BatchFunction<T> wrap(
+		Function<long[], T> func)
+	{
+		if (func instanceof BatchFunction)
+			return (BatchFunction<T>) func;
+		return new PointwiseBatchFunction<T>(func);
+	}
+	
+	// -- Function methods --
+	
+	@Override
+	public void compute(long[] input, T output) {
+		func.compute(input, output);
+	}
+
+	@Override
+	public T createOutput() {
+		return func.createOutput();
+	}
+
+	@Override
+	public PointwiseBatchFunction<T> copy() {
+		return new PointwiseBatchFunction<T>(func.copy());
+	}
+
+	// -- BatchFunction methods --
+	
+	@Override
+	public void computeLine(long[] start, int dim, int length, double[] output) {
+		if (pos.length != start.length) pos = new long[start.length];
+		System.arraycopy(start, 0, pos, 0, start.length);
+		for (int i = 0; i < length; i++) {
+			func.compute(pos, tmp);
+			output[i] = tmp.getRealDouble();
+			pos[dim]++;
+		}
+	}
+}
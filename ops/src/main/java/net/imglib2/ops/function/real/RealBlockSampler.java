@@ -0,0 +1,170 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.ops.function.real;
+
+import net.imglib2.ops.function.BatchFunction;
+import net.imglib2.ops.function.Function;
+import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.ops.pointset.PointSetIterator;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Reads the values a {@link Function} takes on over a {@link PointSet} a
+ * block at a time into a primitive buffer. Values are delivered in the
+ * iteration order of the point set. If the function is a
+ * {@link BatchFunction} then runs of points that are consecutive along the
+ * first axis are computed with a single
+ * {@link BatchFunction#computeLine} call. Other functions are computed one
+ * point at a time.
+ */
+public class RealBlockSampler<T extends RealType<T>> {
+
+	// -- instance variables --
+	
+	private Function<long[], T> func;
+	private BatchFunction<T> batch;
+	private T tmp;
+	private PointSetIterator iter;
+	private long[] runStart;
+	private long[] pending;
+	private boolean hasPending;
+	private double[] line;
+	
+	// -- constructors --
+	
+	/**
+	 * Creates a sampler of a function over the points of the given iterator.
+	 * The iterator is reset by {@link #reset()}.
+	 */
+	public RealBlockSampler(Function<long[], T> func, PointSetIterator iter) {
+		this.line = new double[0];
+		reset(func, iter);
+	}
+	
+	public RealBlockSampler(Function<long[], T> func, PointSet region) {
+		this(func, region.iterator());
+	}
+
+	// -- public api --
+	
+	/**
+	 * Sets a new function and/or iterator and restarts at the first point.
+	 */
+	public void reset(Function<long[], T> newFunc, PointSetIterator newIter) {
+		if (newFunc != func) {
+			func = newFunc;
+			batch = (newFunc instanceof BatchFunction) ?
+				(BatchFunction<T>) newFunc : null;
+			tmp = newFunc.createOutput();
+		}
+		iter = newIter;
+		reset();
+	}
+	
+	/**
+	 * Restarts the sampling at the first point.
+	 */
+	public void reset() {
+		iter.reset();
+		hasPending = false;
+	}
+	
+	/**
+	 * Places the values of the function at the next {@code values.length}
+	 * points (or less if there are not as many points left) in
+	 * {@code values}.
+	 * 
+	 * @return The number of values read. Zero when all points have been read.
+	 */
+	public int next(double[] values) {
+		if (batch == null) {
+			int count = 0;
+			while (count < values.length && iter.hasNext()) {
+				func.compute(iter.next(), tmp);
+				values[count++] = tmp.getRealDouble();
+			}
+			return count;
+		}
+		int count = 0;
+		while (count < values.length) {
+			final long[] first;
+			if (hasPending) {
+				first = pending;
+				hasPending = false;
+			}
+			else if (iter.hasNext()) first = iter.next();
+			else break;
+			if (runStart == null || runStart.length != first.length) {
+				runStart = new long[first.length];
+				pending = new long[first.length];
+			}
+			System.arraycopy(first, 0, runStart, 0, first.length);
+			int run = 1;
+			while (count + run < values.length && iter.hasNext()) {
+				final long[] pos = iter.next();
+				if (follows(pos, run)) {
+					run++;
+				}
+				else {
+					System.arraycopy(pos, 0, pending, 0, pos.length);
+					hasPending = true;
+					break;
+				}
+			}
+			if (count == 0) {
+				batch.computeLine(runStart, 0, run, values);
+			}
+			else {
+				if (line.length < run) line = new double[values.length];
+				batch.computeLine(runStart, 0, run, line);
+				System.arraycopy(line, 0, values, count, run);
+			}
+			count += run;
+		}
+		return count;
+	}
+
+	// -- helpers --
+	
+	/**
+	 * Returns true if pos is runStart moved forward by offset along the first
+	 * axis.
+	 */
+	private boolean follows(long[] pos, int offset) {
+		if (pos.length == 0 || pos[0] != runStart[0] + offset) return false;
+		for (int i = 1; i < pos.length; i++)
+			if (pos[i] != runStart[i]) return false;
+		return true;
+	}
+}
@@ -34,7 +34,8 @@
 package net.imglib2.ops.function.real;
 
 import net.imglib2.img.Img;
-import net.imglib2.ops.function.Function;
+import net.imglib2.ops.function.BatchFunction;
+import net.imglib2.ops.parse.CompiledEquation;
 import net.imglib2.ops.parse.RealEquationFunctionParser;
 import net.imglib2.ops.util.Tuple2;
 import net.imglib2.type.numeric.RealType;
@@ -47,34 +48,50 @@ import net.imglib2.type.numeric.real.DoubleType;
  * to the first axis index and y to the second axis index. Axis names are
  * strings of letters that do not match reserved words (like sin, cos, abs,
  * etc.). All axis names must be declared before being referenced.
+ * <p>
+ * The specification is compiled to a {@link CompiledEquation}, so evaluating
+ * the function does not walk a tree of functions. As a {@link BatchFunction}
+ * it evaluates whole lines of points at once.
  * 
  * @author Barry DeZonia
  */
 public class RealEquationFunction<T extends RealType<T>>
-	implements Function<long[], T>
+	implements BatchFunction<T>
 {
 	// -- instance variables --
 	
 	private final String origSpec;
-	private final Function<long[], DoubleType> eqnFunc;
-	private final DoubleType tmp;
+	private final CompiledEquation eqn;
 	private final T factory;
 	private final Img<T> img;
+	private final T tmp;
+	
+	// -- private constructor used by copy() --
+	
+	private RealEquationFunction(String specification, CompiledEquation eqn,
+		T type, Img<T> img)
+	{
+		this.eqn = eqn;
+		this.origSpec = specification;
+		this.factory = type;
+		this.img = img;
+		this.tmp = type.createVariable();
+	}
 	
 	// -- constructor --
 	
 	public RealEquationFunction(String specification, T type, Img<T> img) {
 		final RealEquationFunctionParser parser =
 				new RealEquationFunctionParser();
-		final Tuple2<Function<long[],DoubleType>,String> result =
-				parser.parse(specification, img);
+		final Tuple2<CompiledEquation,String> result =
+				parser.compile(specification, img);
 		if (result.get2() != null)
 			throw new IllegalArgumentException(result.get2());
-		this.eqnFunc = result.get1();
+		this.eqn = result.get1();
 		this.origSpec = specification;
-		this.tmp = new DoubleType();
 		this.factory = type;
 		this.img = img;
+		this.tmp = type.createVariable();
 	}
 
 	public RealEquationFunction(String specification, T type) {
@@ -85,8 +102,7 @@ public class RealEquationFunction<T extends RealType<T>>
 	
 	@Override
 	public void compute(long[] input, T output) {
-		eqnFunc.compute(input, tmp);
-		output.setReal(tmp.getRealDouble());
+		output.setReal(eqn.evaluate(input));
 	}
 
 	@Override
@@ -96,7 +112,20 @@ public class RealEquationFunction<T extends RealType<T>>
 
 	@Override
 	public RealEquationFunction<T> copy() {
-		return new RealEquationFunction<T>(origSpec, createOutput(), img);
+		return new RealEquationFunction<T>(origSpec, eqn.copy(), createOutput(), img);
+	}
+
+	// -- BatchFunction methods --
+	
+	@Override
+	public void computeLine(long[] start, int dim, int length, double[] output) {
+		eqn.evaluateLine(start, dim, length, output);
+		if (tmp instanceof DoubleType) return;
+		// pass each value through the output type as compute() does
+		for (int i = 0; i < length; i++) {
+			tmp.setReal(output[i]);
+			output[i] = tmp.getRealDouble();
+		}
 	}
 
 }
@@ -37,9 +37,11 @@ import net.imglib2.ExtendedRandomAccessibleInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.ops.function.BatchFunction;
 import net.imglib2.ops.function.Function;
 import net.imglib2.outofbounds.OutOfBoundsFactory;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
 
 /**
  * RealImageFunction wraps {@link RandomAccessibleInterval}s or
@@ -47,16 +49,20 @@ import net.imglib2.type.numeric.RealType;
  * it as a {@link Function}. RealImageFunction has two types <I,O>. I is the
  * type of the accessible data (such as UnsignedByteType) while O is the type
  * of output the function should assign to (such as DoubleType).
+ * <p>
+ * As a {@link BatchFunction} it reads whole lines of samples by moving its
+ * {@link RandomAccess} forward instead of positioning it at every point.
  * 
  * @author Barry DeZonia
  */
 public class RealImageFunction<I extends RealType<I>, O extends RealType<O>>
-	implements Function<long[],O>
+	implements BatchFunction<O>
 {
 	// -- instance variables --
 	
 	private final RandomAccess<I> accessor;
 	private final O type;
+	private final O tmp;
 	
 	// -- private constructor used by duplicate() --
 	
@@ -64,6 +70,7 @@ public class RealImageFunction<I extends RealType<I>, O extends RealType<O>>
 	{
 		this.accessor = acc;
 		this.type = type;
+		this.tmp = type.createVariable();
 	}
 	
 	// -- public constructors --
@@ -71,6 +78,7 @@ public class RealImageFunction<I extends RealType<I>, O extends RealType<O>>
 	public RealImageFunction(RandomAccessibleInterval<I> img, O type) {
 		this.accessor = img.randomAccess();
 		this.type = type;
+		this.tmp = type.createVariable();
 	}
 	
 	public RealImageFunction(
@@ -83,6 +91,7 @@ public class RealImageFunction<I extends RealType<I>, O extends RealType<O>>
 				new ExtendedRandomAccessibleInterval(img, factory);
 		this.accessor =  extendedRandAcessible.randomAccess();
 		this.type = type;
+		this.tmp = type.createVariable();
 	}
 	
 	// -- public interface --
@@ -104,4 +113,23 @@ public class RealImageFunction<I extends RealType<I>, O extends RealType<O>>
 	public O createOutput() {
 		return type.createVariable();
 	}
+
+	@Override
+	public void computeLine(long[] start, int dim, int length, double[] output) {
+		accessor.setPosition(start);
+		if (tmp instanceof DoubleType) {
+			for (int i = 0; i < length; i++) {
+				output[i] = accessor.get().getRealDouble();
+				accessor.fwd(dim);
+			}
+		}
+		else {
+			// pass each value through the output type as compute() does
+			for (int i = 0; i < length; i++) {
+				tmp.setReal(accessor.get().getRealDouble());
+				output[i] = tmp.getRealDouble();
+				accessor.fwd(dim);
+			}
+		}
+	}
 }
@@ -33,7 +33,9 @@
 
 package net.imglib2.ops.function.real;
 
-import net.imglib2.ops.function.Function;
+import java.util.Arrays;
+
+import net.imglib2.ops.function.BatchFunction;
 import net.imglib2.type.numeric.real.DoubleType;
 
 /**
@@ -44,7 +46,7 @@ import net.imglib2.type.numeric.real.DoubleType;
 * @author Barry DeZonia
 *
 */
-public class RealIndexFunction implements Function<long[],DoubleType> {
+public class RealIndexFunction implements BatchFunction<DoubleType> {
 
 	// -- instance variables -- 
 	
@@ -83,6 +85,18 @@ public class RealIndexFunction implements Function<long[],DoubleType> {
 	public RealIndexFunction copy() {
 		return new RealIndexFunction(position);
 	}
+
+	// -- BatchFunction methods --
+
+	@Override
+	public void computeLine(long[] start, int dim, int length, double[] output) {
+		if (position == dim) {
+			final long p = start[dim];
+			for (int i = 0; i < length; i++)
+				output[i] = p + i;
+		}
+		else Arrays.fill(output, 0, length, start[position]);
+	}
 	
 }
 
@@ -77,7 +77,10 @@ import org.scijava.util.DoubleArray;
 /**
  * 
  * StatCollector calculates statistics from a {@link PointSet} region of a
- * {@link Function}. Most methods use minimal memory.
+ * {@link Function}. Most methods use minimal memory. Function values are read
+ * a block at a time with a {@link RealBlockSampler}, so functions that are
+ * {@link net.imglib2.ops.function.BatchFunction}s are evaluated a line at a
+ * time.
  * 
  * @author Barry DeZonia
  *
@@ -86,10 +89,14 @@ public class StatCalculator<T extends RealType<T>> {
 
 	// -- instance variables --
 	
+	private static final int BLOCK_SIZE = 256;
+	
 	private Function<long[],T> func;
 	private PointSet region;
 	private PointSetIterator iter;
 	private final DoubleArray values; // see NOTE at top re: this use
+	private final RealBlockSampler<T> sampler;
+	private final double[] block;
 	
 	// -- constructor --
 
@@ -105,6 +112,8 @@ public class StatCalculator<T extends RealType<T>> {
 		this.region = region;
 		this.iter = region.iterator();
 		this.values = new DoubleArray();
+		this.sampler = new RealBlockSampler<T>(func, iter);
+		this.block = new double[BLOCK_SIZE];
 	}
 
 	// -- public api --
@@ -127,6 +136,7 @@ public class StatCalculator<T extends RealType<T>> {
 			region = newRegion;
 			iter = region.iterator();
 		}
+		sampler.reset(newFunc, iter);
 		values.clear();
 	}
 
@@ -142,13 +152,13 @@ public class StatCalculator<T extends RealType<T>> {
 	public double alphaTrimmedMean(double alpha) {
 		if ((alpha < 0) || (alpha >= 0.5))
 				throw new IllegalArgumentException("alpha value must be >= 0 and < 0.5");
-		T tmp = func.createOutput();
 		values.clear();
-		iter.reset();
-		while (iter.hasNext()) {
-			long[] pos = iter.next();
-			func.compute(pos, tmp);
-			values.add(tmp.getRealDouble());
+		sampler.reset();
+		int numRead;
+		while ((numRead = sampler.next(block)) > 0) {
+			for (int i = 0; i < numRead; i++) {
+				values.add(block[i]);
+			}
 		}
 		Arrays.sort(values.getArray(), 0, values.size());
 		double tailSize = alpha * values.size();
@@ -173,15 +183,15 @@ public class StatCalculator<T extends RealType<T>> {
 	 * @return The measured value
 	 */
 	public double arithmeticMean() {
-		T tmp = func.createOutput();
 		double sum = 0;
 		long numElements = 0;
-		iter.reset();
-		while (iter.hasNext()) {
-			long[] pos = iter.next();
-			func.compute(pos, tmp);
-			sum += tmp.getRealDouble();
-			numElements++;
+		sampler.reset();
+		int numRead;
+		while ((numRead = sampler.next(block)) > 0) {
+			for (int i = 0; i < numRead; i++) {
+				sum += block[i];
+				numElements++;
+			}
 		}
 		return sum / numElements;
 	}
@@ -242,16 +252,16 @@ public class StatCalculator<T extends RealType<T>> {
 	 * @return The measured value
 	 */
 	public double contraharmonicMean(double order) {
-		T tmp = func.createOutput();
 		double sum1 = 0;
 		double sum2 = 0;
-		iter.reset();
-		while (iter.hasNext()) {
-			long[] pos = iter.next();
-			func.compute(pos, tmp);
-			double value = tmp.getRealDouble();
-			sum1 += Math.pow(value, order+1);
-			sum2 += Math.pow(value, order);
+		sampler.reset();
+		int numRead;
+		while ((numRead = sampler.next(block)) > 0) {
+			for (int i = 0; i < numRead; i++) {
+				double value = block[i];
+				sum1 += Math.pow(value, order+1);
+				sum2 += Math.pow(value, order);
+			}
 		}
 		return sum1 / sum2;
 	}
@@ -275,16 +285,16 @@ public class StatCalculator<T extends RealType<T>> {
 	 * The measured value
 	 */
 	public double harmonicMean() {
-		T tmp = func.createOutput();
 		double sum = 0;
 		long numElements = 0;
-		iter.reset();
-		while (iter.hasNext()) {
-			long[] pos = iter.next();
-			func.compute(pos, tmp);
-			double value = tmp.getRealDouble();
-			sum += 1 / value;
-			numElements++;
+		sampler.reset();
+		int numRead;
+		while ((numRead = sampler.next(block)) > 0) {
+			for (int i = 0; i < numRead; i++) {
+				double value = block[i];
+				sum += 1 / value;
+				numElements++;
+			}
 		}
 		return numElements / sum; // looks weird but it is correct
 	}
@@ -297,14 +307,14 @@ public class StatCalculator<T extends RealType<T>> {
 	 * The measured value
 	 */
 	public double max() {
-		T tmp = func.createOutput();
 		double max = Double.NEGATIVE_INFINITY;
-		iter.reset();
-		while (iter.hasNext()) {
-			long[] pos = iter.next();
-			func.compute(pos, tmp);
-			double value = tmp.getRealDouble();
-			max = Math.max(max, value);
+		sampler.reset();
+		int numRead;
+		while ((numRead = sampler.next(block)) > 0) {
+			for (int i = 0; i < numRead; i++) {
+				double value = block[i];
+				max = Math.max(max, value);
+			}
 		}
 		return max;
 	}
@@ -318,13 +328,13 @@ public class StatCalculator<T extends RealType<T>> {
 	 * The measured value
 	 */
 	public double median() {
-		T tmp = func.createOutput();
 		values.clear();
-		iter.reset();
-		while (iter.hasNext()) {
-			long[] pos = iter.next();
-			func.compute(pos, tmp);
-			values.add(tmp.getRealDouble());
+		sampler.reset();
+		int numRead;
+		while ((numRead = sampler.next(block)) > 0) {
+			for (int i = 0; i < numRead; i++) {
+				values.add(block[i]);
+			}
 		}
 		int count = values.size();
 
@@ -362,14 +372,14 @@ public class StatCalculator<T extends RealType<T>> {
 	 * The measured value
 	 */
 	public double min() {
-		T tmp = func.createOutput();
 		double min = Double.POSITIVE_INFINITY;
-		iter.reset();
-		while (iter.hasNext()) {
-			long[] pos = iter.next();
-			func.compute(pos, tmp);
-			double value = tmp.getRealDouble();
-			min = Math.min(min, value);
+		sampler.reset();
+		int numRead;
+		while ((numRead = sampler.next(block)) > 0) {
+			for (int i = 0; i < numRead; i++) {
+				double value = block[i];
+				min = Math.min(min, value);
+			}
 		}
 		return min;
 	}
@@ -384,22 +394,22 @@ public class StatCalculator<T extends RealType<T>> {
 	 * The measured value
 	 */
 	public double populationKurtosis() {
-		T tmp = func.createOutput();
 		double xbar = arithmeticMean(); 
 		double s2 = 0;
 		double s4 = 0;
 		long numElements = 0;
-		iter.reset();
-		while (iter.hasNext()) {
-			long[] pos = iter.next();
-			func.compute(pos, tmp);
-			double value = tmp.getRealDouble();
-			numElements++;
-			double v = value - xbar;
-			double v2 = v * v;
-			double v4 = v2 * v2;
-			s2 += v2;
-			s4 += v4;
+		sampler.reset();
+		int numRead;
+		while ((numRead = sampler.next(block)) > 0) {
+			for (int i = 0; i < numRead; i++) {
+				double value = block[i];
+				numElements++;
+				double v = value - xbar;
+				double v2 = v * v;
+				double v4 = v2 * v2;
+				s2 += v2;
+				s4 += v4;
+			}
 		}
 		double n = numElements;
 		double m2 = s2 / n;
@@ -430,22 +440,22 @@ public class StatCalculator<T extends RealType<T>> {
 	 * The measured value
 	 */
 	public double populationSkew() {
-		T tmp = func.createOutput();
 		double xbar = arithmeticMean(); 
 		double s2 = 0;
 		double s3 = 0;
 		long numElements = 0;
-		iter.reset();
-		while (iter.hasNext()) {
-			long[] pos = iter.next();
-			func.compute(pos, tmp);
-			double value = tmp.getRealDouble();
-			numElements++;
-			double v = value - xbar;
-			double v2 = v * v;
-			double v3 = v2 * v;
-			s2 += v2;
-			s3 += v3;
+		sampler.reset();
+		int numRead;
+		while ((numRead = sampler.next(block)) > 0) {
+			for (int i = 0; i < numRead; i++) {
+				double value = block[i];
+				numElements++;
+				double v = value - xbar;
+				double v2 = v * v;
+				double v3 = v2 * v;
+				s2 += v2;
+				s3 += v3;
+			}
 		}
 		double n = numElements;
 		double m2 = s2 / n;
@@ -485,14 +495,14 @@ public class StatCalculator<T extends RealType<T>> {
 	 * The measured value
 	 */
 	public double product() {
-		T tmp = func.createOutput();
 		double prod = 1;
-		iter.reset();
-		while (iter.hasNext()) {
-			long[] pos = iter.next();
-			func.compute(pos, tmp);
-			double value = tmp.getRealDouble();
-			prod *= value;
+		sampler.reset();
+		int numRead;
+		while ((numRead = sampler.next(block)) > 0) {
+			for (int i = 0; i < numRead; i++) {
+				double value = block[i];
+				prod *= value;
+			}
 		}
 		return prod;
 	}
@@ -573,14 +583,14 @@ public class StatCalculator<T extends RealType<T>> {
 	 * The measured value
 	 */
 	public double sum() {
-		T tmp = func.createOutput();
 		double sum = 0;
-		iter.reset();
-		while (iter.hasNext()) {
-			long[] pos = iter.next();
-			func.compute(pos, tmp);
-			double value = tmp.getRealDouble();
-			sum += value;
+		sampler.reset();
+		int numRead;
+		while ((numRead = sampler.next(block)) > 0) {
+			for (int i = 0; i < numRead; i++) {
+				double value = block[i];
+				sum += value;
+			}
 		}
 		return sum;
 	}
@@ -593,16 +603,16 @@ public class StatCalculator<T extends RealType<T>> {
 	 * The measured value
 	 */
 	public double sumOfSquaredDeviations() {
-		T tmp = func.createOutput();
 		final double xbar = arithmeticMean();
 		double sum = 0;
-		iter.reset();
-		while (iter.hasNext()) {
-			long[] pos = iter.next();
-			func.compute(pos, tmp);
-			double value = tmp.getRealDouble();
-			double term = value - xbar;
-			sum += (term * term);
+		sampler.reset();
+		int numRead;
+		while ((numRead = sampler.next(block)) > 0) {
+			for (int i = 0; i < numRead; i++) {
+				double value = block[i];
+				double term = value - xbar;
+				sum += (term * term);
+			}
 		}
 		return sum;
 	}
@@ -617,13 +627,13 @@ public class StatCalculator<T extends RealType<T>> {
 	 * @return The measured value
 	 */
 	public double trimmedMean(int halfTrimSize) {
-		T tmp = func.createOutput();
 		values.clear();
-		iter.reset();
-		while (iter.hasNext()) {
-			long[] pos = iter.next();
-			func.compute(pos, tmp);
-			values.add(tmp.getRealDouble());
+		sampler.reset();
+		int numRead;
+		while ((numRead = sampler.next(block)) > 0) {
+			for (int i = 0; i < numRead; i++) {
+				values.add(block[i]);
+			}
 		}
 		Arrays.sort(values.getArray(), 0, values.size());
 		return calcTrimmedMean(values, halfTrimSize);
@@ -658,15 +668,15 @@ public class StatCalculator<T extends RealType<T>> {
 		if (numElements != weights.length)
 			throw new IllegalArgumentException(
 				"number of weights does not equal number of samples");
-		T tmp = func.createOutput();
 		double sum = 0;
-		int i = 0;
-		iter.reset();
-		while (iter.hasNext()) {
-			long[] pos = iter.next();
-			func.compute(pos, tmp);
-			double value = tmp.getRealDouble();
-			sum += weights[i++] * value;
+		int w = 0;
+		sampler.reset();
+		int numRead;
+		while ((numRead = sampler.next(block)) > 0) {
+			for (int i = 0; i < numRead; i++) {
+				double value = block[i];
+				sum += weights[w++] * value;
+			}
 		}
 		return sum;
 	}
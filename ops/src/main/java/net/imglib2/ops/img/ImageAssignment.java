@@ -35,15 +35,19 @@ package net.imglib2.ops.img;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.ops.condition.Condition;
+import net.imglib2.ops.function.BatchFunction;
 import net.imglib2.ops.function.Function;
 import net.imglib2.ops.input.InputIterator;
 import net.imglib2.ops.input.InputIteratorFactory;
+import net.imglib2.ops.input.PointInputIteratorFactory;
 import net.imglib2.ops.pointset.HyperVolumePointSet;
 import net.imglib2.type.numeric.ComplexType;
 
@@ -70,6 +74,9 @@ import net.imglib2.type.numeric.ComplexType;
  * A multithreaded implementation that assigns the values of a region of an
  * RandomAccessibleInterval<OUTPUT> to values from a
  * Function<long[],INTERMEDIATE>. OUTPUT and INTERMEDIATE extend ComplexType<?>.
+ * <p>
+ * If the function is a {@link BatchFunction} of the points themselves and
+ * there is no condition then the region is assigned a line at a time.
  * 
  * @author Barry DeZonia
  */
@@ -78,10 +85,14 @@ public class ImageAssignment
 		INTERMEDIATE extends ComplexType<INTERMEDIATE>,
 		INPUT>
 {
+	// -- constants --
+
+	private static final int LINE_BLOCK_SIZE = 4096;
+
 	// -- instance variables --
 
-	private ExecutorService executor;
 	private boolean assigning;
+	private volatile boolean aborted;
 	private List<Runnable> tasks;
 	
 	// -- constructor --
@@ -113,7 +124,7 @@ public class ImageAssignment
 		InputIteratorFactory<INPUT> factory)
 	{
 		this.assigning = false;
-		this.executor = null;
+		this.aborted = false;
 		this.tasks = null;
 		setupTasks(interval, origin, span, function, condition, factory);
 	}
@@ -122,57 +133,59 @@ public class ImageAssignment
 
 	/**
 	 * Assign pixels using input variables specified in constructor. Can be
-	 * aborted using abort().
+	 * aborted using abort(). The work is run on the {@link SharedThreadPool}.
 	 */
 	public void assign() {
-		synchronized(this) {
+		synchronized (this) {
 			assigning = true;
-			executor = Executors.newFixedThreadPool(tasks.size());
-			for (Runnable task : tasks)
-				executor.submit(task);
+			aborted = false;
 		}
-		boolean terminated = true;
-		synchronized (this) {
-			// TODO - does this shutdown() call return immediately or wait until
-			// everything is complete. If it waits then this synchronized block will
-			// keep abort() from being able to work.
-			executor.shutdown();
-			terminated = executor.isTerminated();
-			if (terminated) executor = null;
+		try {
+			final ExecutorService executor = SharedThreadPool.getExecutorService();
+			final List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+			for (Runnable task : tasks) {
+				if (aborted) break;
+				futures.add(executor.submit(task));
+			}
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				}
+				catch (InterruptedException e) {
+					aborted = true;
+					Thread.currentThread().interrupt();
+					return;
+				}
+				catch (ExecutionException e) {
+					aborted = true;
+					throw new RuntimeException(e.getCause());
+				}
+			}
 		}
-		while (!terminated) {
-			try { Thread.sleep(100); } catch (Exception e) { /* do nothing */ }
+		finally {
 			synchronized (this) {
-				terminated = executor.isTerminated();
-				if (terminated) executor = null;
+				assigning = false;
+				notifyAll();
 			}
 		}
-		synchronized (this) {
-			assigning = false;
-		}
 	}
 
 	/**
 	 * Aborts an in progress assignment. Has no effect if not currently
-	 * running an assign() operation.
+	 * running an assign() operation. Returns once the assignment has stopped.
 	 */
 	public void abort() {
-		// TODO - this method maybe ineffective. See TODO note in assign().
-		boolean terminated = true;
 		synchronized (this) {
 			if (!assigning) return;
-			if (executor != null) {
-				executor.shutdownNow();
-				terminated = executor.isTerminated();
-			}
-		}
-		while (!terminated) {
-			try { Thread.sleep(100); } catch (Exception e) { /* do nothing */ }
-			synchronized (this) {
-				if (executor == null)
-					terminated = true;
-				else
-					terminated = executor.isTerminated();
+			aborted = true;
+			while (assigning) {
+				try {
+					wait();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
 			}
 		}
 	}
@@ -222,7 +235,7 @@ public class ImageAssignment
 	 * Determines how many threads to use
 	 */
 	private int chooseNumThreads(long[] span, int axis) {
-		int maxThreads = Runtime.getRuntime().availableProcessors();
+		int maxThreads = SharedThreadPool.getParallelism();
 		if (maxThreads == 1) return 1;
 		long numElements = numElements(span);
 		if (numElements < 10000L) return 1;
@@ -267,6 +280,13 @@ public class ImageAssignment
 		for (int i = 0; i < regMin.length; i++)
 			regMax[i] = regMin[i] + regSpan[i] - 1;
 		
+		if ((cnd == null) && (fn instanceof BatchFunction) &&
+			(factory instanceof PointInputIteratorFactory))
+		{
+			final BatchFunction<?> batch = (BatchFunction<?>) fn.copy();
+			return new LineRunner<OUTPUT>(interval, regMin, regMax, batch);
+		}
+
 		HyperVolumePointSet region = new HyperVolumePointSet(regMin, regMax);
 		
 		// FIXME - warning unavoidable at moment. We don't have the type. If
@@ -316,7 +336,7 @@ RandomAccessibleInterval<U> interval,
 			final RandomAccess<U> accessor = interval.randomAccess();
 			final V output = function.createOutput();
 			INPUT input = null;
-			while (iter.hasNext()) {
+			while (iter.hasNext() && !aborted) {
 				input = iter.next(input);
 				boolean proceed = (condition == null) || (condition.isTrue(input));
 				if (proceed) {
@@ -336,4 +356,63 @@ RandomAccessibleInterval<U> interval,
 			}
 		}
 	}
+
+	/**
+	 * LineRunner assigns a subset of the output region from a
+	 * {@link BatchFunction}, computing the values of a line of the region with
+	 * one call.
+	 */
+	private class LineRunner<U extends ComplexType<U>> implements Runnable {
+
+		private final RandomAccessibleInterval<U> interval;
+		private final BatchFunction<?> function;
+		private final long[] min;
+		private final long[] max;
+
+		/**
+		 * Constructor
+		 */
+		public LineRunner(RandomAccessibleInterval<U> interval, long[] min,
+			long[] max, BatchFunction<?> func)
+		{
+			this.interval = interval;
+			this.function = func;
+			this.min = min;
+			this.max = max;
+		}
+
+		/**
+		 * Assigns pixels in the output region line by line.
+		 */
+		@Override
+		public void run() {
+			final int n = min.length;
+			for (int d = 0; d < n; d++)
+				if (max[d] < min[d]) return;
+			final RandomAccess<U> accessor = interval.randomAccess();
+			final long[] start = min.clone();
+			final double[] values =
+				new double[(int) Math.min(max[0] - min[0] + 1, LINE_BLOCK_SIZE)];
+			while (!aborted) {
+				for (long x = min[0]; x <= max[0]; x += values.length) {
+					final int length = (int) Math.min(values.length, max[0] - x + 1);
+					start[0] = x;
+					function.computeLine(start, 0, length, values);
+					accessor.setPosition(start);
+					for (int i = 0; i < length; i++) {
+						final U t = accessor.get();
+						t.setReal(values[i]);
+						t.setImaginary(0);
+						accessor.fwd(0);
+					}
+				}
+				int d = 1;
+				for (; d < n; d++) {
+					if (++start[d] <= max[d]) break;
+					start[d] = min[d];
+				}
+				if (d >= n) return;
+			}
+		}
+	}
 }
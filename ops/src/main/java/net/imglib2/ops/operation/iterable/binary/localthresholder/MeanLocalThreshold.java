@@ -43,7 +43,7 @@ import net.imglib2.type.numeric.real.DoubleType;
  * @author Markus Friedrich (University of Konstanz)
  * @author Jonathan Hale (University of Konstanz)
  */
-public class MeanLocalThreshold< T extends RealType< T > > implements BinaryOperation< Iterator< T >, T, BitType >
+public class MeanLocalThreshold< T extends RealType< T > > implements BinaryOperation< Iterator< T >, T, BitType >, LocalStatisticsThreshold
 {
 
 	private double m_c;
@@ -62,6 +62,18 @@ public class MeanLocalThreshold< T extends RealType< T > > implements BinaryOper
 		return output;
 	}
 
+	@Override
+	public boolean isForeground( double px, double sum, double sumSqr, long n )
+	{
+		return px > sum / n - m_c;
+	}
+
+	@Override
+	public boolean needsSumSqr()
+	{
+		return false;
+	}
+
 	@Override
 	public BinaryOperation< Iterator< T >, T, BitType > copy()
 	{
@@ -41,7 +41,7 @@ import net.imglib2.type.numeric.RealType;
 /**
  * @author Markus Friedrich (University of Konstanz)
  */
-public class Niblack< T extends RealType< T >> implements BinaryOperation< Iterator< T >, T, BitType >
+public class Niblack< T extends RealType< T >> implements BinaryOperation< Iterator< T >, T, BitType >, LocalStatisticsThreshold
 {
 
 	private double m_c;
@@ -70,12 +70,24 @@ public class Niblack< T extends RealType< T >> implements BinaryOperation< Itera
 			sumSqr += val * val;
 		}
 
+		output.set( isForeground( px.getRealDouble(), sum, sumSqr, n ) );
+
+		return output;
+	}
+
+	@Override
+	public boolean isForeground( double px, double sum, double sumSqr, long n )
+	{
 		double mean = sum / n;
 		double variance = ( sumSqr - ( sum * mean ) ) / ( n - 1 );
 
-		output.set( px.getRealDouble() > mean + m_k * Math.sqrt( variance ) - m_c );
+		return px > mean + m_k * Math.sqrt( variance ) - m_c;
+	}
 
-		return output;
+	@Override
+	public boolean needsSumSqr()
+	{
+		return true;
 	}
 
 	@Override
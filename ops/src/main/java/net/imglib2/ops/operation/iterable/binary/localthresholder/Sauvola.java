@@ -40,7 +40,7 @@ import net.imglib2.type.numeric.RealType;
 /**
  * @author Markus Friedrich (University of Konstanz)
  */
-public class Sauvola< T extends RealType< T >> implements BinaryOperation< Iterator<T>, T, BitType >
+public class Sauvola< T extends RealType< T >> implements BinaryOperation< Iterator<T>, T, BitType >, LocalStatisticsThreshold
 {
 
 	private double m_r;
@@ -68,12 +68,24 @@ public class Sauvola< T extends RealType< T >> implements BinaryOperation< Itera
 			sumSqr += val * val;
 		}
 
+		output.set( isForeground( px.getRealDouble(), sum, sumSqr, n ) );
+
+		return output;
+	}
+
+	@Override
+	public boolean isForeground( double px, double sum, double sumSqr, long n )
+	{
 		double mean = sum / n;
 		double variance = ( sumSqr - ( sum * mean ) ) / ( n - 1 );
 
-		output.set( px.getRealDouble() > mean * ( 1 + m_k * ( Math.sqrt( variance ) / m_r - 1 ) ) );
+		return px > mean * ( 1 + m_k * ( Math.sqrt( variance ) / m_r - 1 ) );
+	}
 
-		return output;
+	@Override
+	public boolean needsSumSqr()
+	{
+		return true;
 	}
 
 	@Override
@@ -32,7 +32,6 @@
  */
 package net.imglib2.ops.operation.randomaccessibleinterval.unary;
 
-import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.meta.CalibratedSpace;
 import net.imglib2.ops.operation.UnaryOperation;
@@ -40,254 +39,41 @@ import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.FloatType;
 
 /**
- * Image distance Map.
+ * Image distance Map. Each pixel with value 1 is assigned the Euclidean
+ * distance to the nearest pixel with another value, taking into account the
+ * calibration of the source if it is a {@link CalibratedSpace}. Works in any
+ * number of dimensions, see {@link EuclideanDistanceTransform}. If all pixels
+ * have value 1, there is no pixel to measure the distance to and all
+ * distances are {@link Float#POSITIVE_INFINITY infinite}.
  * 
  * @author Jens Metzner (University of Konstanz)
  */
 public class DistanceMap< T extends RealType< T >> implements UnaryOperation< RandomAccessibleInterval< T >, RandomAccessibleInterval< FloatType > >
 {
 
+	/**
+	 * @deprecated the number of dimensions is not limited anymore.
+	 */
+	@Deprecated
 	public final static int MAX_DIMS = 4;
 
+	/**
+	 * @deprecated the number of dimensions is not limited anymore.
+	 */
+	@Deprecated
 	public final static int MIN_DIMS = 2;
 
 	@Override
 	public RandomAccessibleInterval<FloatType> compute( final RandomAccessibleInterval<T> src, final RandomAccessibleInterval<FloatType> res )
 	{
-
-		final RandomAccess< FloatType > resAccess = res.randomAccess();
-		final RandomAccess< T > srcAccess = src.randomAccess();
-
-		// Cursor<FloatType> resCursor = res.cursor();
-		// DIM SELECTION
-		final int[] dim_sel = new int[ MAX_DIMS ];
-		final int[] dim_val = new int[ MAX_DIMS ];
-		final double[] dim_unit = new double[ MAX_DIMS ];
-		final int[] pos = new int[ src.numDimensions() ];
+		return new EuclideanDistanceTransform< T, FloatType >()
 		{
-			int a = 0;
-			for ( int i = 0; i < src.numDimensions(); ++i )
+			@Override
+			protected boolean isFeature( final double value )
 			{
-				// if (src.dimension(i) > 1) {
-				if ( a < MAX_DIMS )
-				{
-					if ( src instanceof CalibratedSpace ) {
-						final CalibratedSpace<?> space = ( CalibratedSpace<?> ) src;
-						// TODO - using averageScale() introduces error for nonlinear axes
-						dim_unit[a] = space.averageScale( i );
-					}
-					else
-						dim_unit[ a ] = 1;
-
-					dim_val[ a ] = ( int ) src.dimension( i );
-					dim_sel[ a++ ] = i;
-
-					// System.out.println(dim_sel[a - 1] +
-					// " "
-					// + dim_val[a - 1] + " " + dim_unit[a -
-					// 1]);
-				}
-				else
-				{
-					throw new IllegalArgumentException( "Too many dimensions are selected." ); // TODO
-				}
-				// }
-			}
-			if ( a < MIN_DIMS ) { throw new IllegalArgumentException( "Two dimensions have to be selected." ); // TODO
+				return value != 1.0;
 			}
-			for ( int i = a; i < MAX_DIMS; ++i )
-			{
-				dim_val[ i ] = 1;
-			}
-		}
-
-		pos[ dim_sel[ 3 ] ] = dim_val[ 3 ];
-		while ( --pos[ dim_sel[ 3 ] ] >= 0 )
-		{
-
-			final int[][] g = new int[ dim_val[ 0 ] ][ dim_val[ 1 ] ];
-			pos[ dim_sel[ 2 ] ] = dim_val[ 2 ];
-			while ( --pos[ dim_sel[ 2 ] ] >= 0 )
-			{
-				// First Phase
-				pos[ dim_sel[ 0 ] ] = dim_val[ 0 ];
-				while ( --pos[ dim_sel[ 0 ] ] >= 0 )
-				{
-					pos[ dim_sel[ 1 ] ] = 0;
-					srcAccess.setPosition( pos );
-					g[ pos[ dim_sel[ 0 ] ] ][ 0 ] = ( srcAccess.get().getRealDouble() == 1.0 ? dim_val[ 0 ] + dim_val[ 1 ] : 0 );
-					for ( pos[ dim_sel[ 1 ] ] = 1; pos[ dim_sel[ 1 ] ] < dim_val[ 1 ]; ++pos[ dim_sel[ 1 ] ] )
-					{
-						// Scan 1
-						srcAccess.setPosition( pos );
-						g[ pos[ dim_sel[ 0 ] ] ][ pos[ dim_sel[ 1 ] ] ] = ( srcAccess.get().getRealDouble() == 1.0 ) ? 1 + g[ pos[ dim_sel[ 0 ] ] ][ pos[ dim_sel[ 1 ] ] - 1 ] : 0;
-
-					}
-					pos[ dim_sel[ 1 ] ] = dim_val[ 1 ] - 1;
-					while ( --pos[ dim_sel[ 1 ] ] >= 0 )
-					{ // Scan
-						// 2
-						final int gnext = g[ pos[ dim_sel[ 0 ] ] ][ pos[ dim_sel[ 1 ] ] + 1 ];
-						if ( gnext < g[ pos[ dim_sel[ 0 ] ] ][ pos[ dim_sel[ 1 ] ] ] )
-						{
-							g[ pos[ dim_sel[ 0 ] ] ][ pos[ dim_sel[ 1 ] ] ] = 1 + gnext;
-						}
-					}
-				}
-				// Second Phase
-				{
-					int q = 0;
-					int w;
-					pos[ dim_sel[ 1 ] ] = dim_val[ 1 ];
-					final int[] s = new int[ dim_val[ 0 ] ];
-					final int[] t = new int[ dim_val[ 0 ] ];
-					while ( --pos[ dim_sel[ 1 ] ] >= 0 )
-					{
-						q = 0;
-						s[ 0 ] = 0;
-						t[ 0 ] = 0;
-						for ( int u = 1; u < dim_val[ 0 ]; ++u )
-						{ // Scan
-							// 3
-							while ( q >= 0 )
-							{
-								final int tqsq = ( t[ q ] - s[ q ] );
-								final int gsqy = g[ s[ q ] ][ pos[ dim_sel[ 1 ] ] ];
-								final int tqu = ( t[ q ] - u );
-								final int guy = g[ u ][ pos[ dim_sel[ 1 ] ] ];
-								if ( ( tqsq * tqsq + gsqy * gsqy ) > ( tqu * tqu + guy * guy ) )
-								{
-									--q;
-								}
-								else
-								{
-									break;
-								}
-							}
-							if ( q < 0 )
-							{
-								q = 0;
-								s[ 0 ] = u;
-							}
-							else
-							{
-								final int sq = s[ q ];
-								final int guy = g[ u ][ pos[ dim_sel[ 1 ] ] ];
-								final int gsqy = g[ s[ q ] ][ pos[ dim_sel[ 1 ] ] ];
-								w = 1 + ( ( u * u - sq * sq + guy * guy - gsqy * gsqy ) / ( ( u - sq ) << 1 ) );
-								if ( w < dim_val[ 0 ] )
-								{
-									++q;
-									s[ q ] = u;
-									t[ q ] = w;
-								}
-							}
-						}
-						for ( int u = dim_val[ 0 ] - 1; 0 <= u; --u )
-						{ // Scan
-							// 4
-							final int sq = s[ q ];
-							final int gsqy = g[ s[ q ] ][ pos[ dim_sel[ 1 ] ] ];
-							pos[ dim_sel[ 0 ] ] = u;
-							resAccess.setPosition( pos );
-
-							resAccess.get().set( ( float ) ( dim_val[ 2 ] > 1 ? ( u - sq ) * ( u - sq ) + gsqy * gsqy : Math.sqrt( ( ( u - sq ) * ( u - sq ) + gsqy * gsqy ) ) ) );
-							if ( u == t[ q ] )
-							{
-								--q;
-							}
-						}
-					}
-				}
-			}
-			// Second phase for z
-			if ( dim_val[ 2 ] > 1 )
-			{
-				final int[] s = new int[ dim_val[ 2 ] ];
-				final int[] t = new int[ dim_val[ 2 ] ];
-				final double[] val_z = new double[ dim_val[ 2 ] ];
-				int q = 0;
-				int w;
-				pos[ dim_sel[ 0 ] ] = dim_val[ 0 ];
-				while ( --pos[ dim_sel[ 0 ] ] >= 0 )
-				{
-					resAccess.setPosition( pos[ dim_sel[ 0 ] ], dim_sel[ 0 ] );
-					pos[ dim_sel[ 1 ] ] = dim_val[ 1 ];
-					while ( --pos[ dim_sel[ 1 ] ] >= 0 )
-					{
-						resAccess.setPosition( pos[ dim_sel[ 1 ] ], dim_sel[ 1 ] );
-						pos[ dim_sel[ 2 ] ] = dim_val[ 2 ];
-						while ( --pos[ dim_sel[ 2 ] ] >= 0 )
-						{
-							q = 0;
-							s[ 0 ] = 0;
-							t[ 0 ] = 0;
-							for ( int u = 1; u < dim_val[ 2 ]; ++u )
-							{ // Scan
-								// 3
-								while ( q >= 0 )
-								{
-									final int tqsq = ( t[ q ] - s[ q ] );
-									resAccess.setPosition( s[ q ], dim_sel[ 2 ] );
-									final int gsq = ( int ) resAccess.get().getRealDouble();
-									final int tqu = ( t[ q ] - u );
-									resAccess.setPosition( u, dim_sel[ 2 ] );
-									final int gu = ( int ) resAccess.get().getRealDouble();
-									if ( ( tqsq * tqsq + gsq * gsq ) > ( tqu * tqu + gu * gu ) )
-									{
-										--q;
-									}
-									else
-									{
-										break;
-									}
-								}
-								if ( q < 0 )
-								{
-									q = 0;
-									s[ 0 ] = u;
-								}
-								else
-								{
-									final int sq = s[ q ];
-									resAccess.setPosition( u, dim_sel[ 2 ] );
-									final int gu = ( int ) resAccess.get().getRealDouble();
-									resAccess.setPosition( s[ q ], dim_sel[ 2 ] );
-									final int gsq = ( int ) resAccess.get().getRealDouble();
-									w = 1 + ( u * u - sq * sq + gu * gu - gsq * gsq ) / ( ( u - sq ) << 1 );
-									if ( w < dim_val[ 2 ] )
-									{
-										++q;
-										s[ q ] = u;
-										t[ q ] = w;
-									}
-								}
-							}
-							for ( int u = dim_val[ 2 ] - 1; 0 <= u; --u )
-							{ // Scan
-								// 4
-								resAccess.setPosition( u, dim_sel[ 2 ] );
-								final int sq = s[ q ];
-								resAccess.setPosition( s[ q ], dim_sel[ 2 ] );
-								final double gsq = resAccess.get().getRealDouble();
-								val_z[ u ] = Math.sqrt( ( ( u - sq ) * ( u - sq ) + gsq * gsq ) );
-								if ( u == t[ q ] )
-								{
-									--q;
-								}
-							}
-						}
-						for ( int u = 0; u < dim_val[ 2 ]; ++u )
-						{
-							resAccess.setPosition( u, dim_sel[ 2 ] );
-							resAccess.get().set( ( float ) val_z[ u ] );
-						}
-					}
-				}
-			}
-		}
-
-		return res;
+		}.compute( src, res );
 	}
 
 	@Override
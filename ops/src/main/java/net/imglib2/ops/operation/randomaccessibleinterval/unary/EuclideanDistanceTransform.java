@@ -0,0 +1,468 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ops.operation.randomaccessibleinterval.unary;
+
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.meta.CalibratedSpace;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.ops.operation.UnaryOperation;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Exact Euclidean distance transform in any number of dimensions. Each pixel
+ * is assigned the distance to the nearest feature pixel, by default the
+ * pixels with value 0, see {@link #isFeature(double)}.
+ * 
+ * <p>
+ * The squared distance is separable: it is computed by one pass of the lower
+ * envelope of parabolas (Felzenszwalb and Huttenlocher) per dimension, with
+ * the lines of each pass processed in parallel. The pixel spacing of each
+ * dimension is taken from the input if it is a {@link CalibratedSpace}, or
+ * given explicitly. Optionally, the index of the nearest feature pixel is
+ * computed as well, which partitions the image into the Voronoi cells of the
+ * features.
+ * </p>
+ * 
+ * <p>
+ * The intermediate squared distances (and nearest feature indices) of the
+ * whole image are kept in memory, in pages of at most 2^30 elements, so there
+ * is no limit on the number of pixels other than the heap. If the input,
+ * output or nearest feature map is an {@link ArrayImg} of
+ * {@link UnsignedByteType}, {@link FloatType}, {@link DoubleType} or
+ * {@link LongType}, its primitive array is accessed directly.
+ * </p>
+ * 
+ * <p>
+ * If the input has no feature pixel, all distances are
+ * {@link Double#POSITIVE_INFINITY infinite} and all nearest feature indices
+ * are -1.
+ * </p>
+ * 
+ * @param <T>
+ *            the input type.
+ * @param <O>
+ *            the output type.
+ */
+public class EuclideanDistanceTransform< T extends RealType< T >, O extends RealType< O > > implements UnaryOperation< RandomAccessibleInterval< T >, RandomAccessibleInterval< O > >
+{
+	private static final int PAGE_SHIFT = 30;
+
+	private final double[] m_calibration;
+
+	private final ExecutorService m_service;
+
+	private final int m_pageShift;
+
+	/**
+	 * Distance transform with the calibration of the input, if it is a
+	 * {@link CalibratedSpace}, running on the {@link SharedThreadPool}.
+	 */
+	public EuclideanDistanceTransform()
+	{
+		this( null, null );
+	}
+
+	/**
+	 * @param calibration
+	 *            pixel spacing in each dimension, or {@code null} to use the
+	 *            calibration of the input.
+	 * @param service
+	 *            service to run on, the {@link SharedThreadPool} if
+	 *            {@code null}.
+	 */
+	public EuclideanDistanceTransform( final double[] calibration, final ExecutorService service )
+	{
+		this( calibration, service, PAGE_SHIFT );
+	}
+
+	EuclideanDistanceTransform( final double[] calibration, final ExecutorService service, final int pageShift )
+	{
+		m_calibration = calibration;
+		m_service = service;
+		m_pageShift = pageShift;
+	}
+
+	/**
+	 * @param value
+	 *            the real value of an input pixel.
+	 * @return whether a pixel is a feature, i.e. has distance 0. The default
+	 *         is value == 0.
+	 */
+	protected boolean isFeature( final double value )
+	{
+		return value == 0;
+	}
+
+	@Override
+	public RandomAccessibleInterval< O > compute( final RandomAccessibleInterval< T > input, final RandomAccessibleInterval< O > output )
+	{
+		return compute( input, output, null );
+	}
+
+	/**
+	 * Compute the distance transform and the nearest features.
+	 * 
+	 * @param input
+	 *            the image to transform.
+	 * @param output
+	 *            receives the distances. May be {@code null} if only the
+	 *            nearest features are wanted.
+	 * @param nearest
+	 *            receives the index of the nearest feature pixel in
+	 *            {@link IntervalIndexer flat order} relative to the input min,
+	 *            or {@code null}.
+	 * @return output
+	 */
+	public RandomAccessibleInterval< O > compute( final RandomAccessibleInterval< T > input, final RandomAccessibleInterval< O > output, final RandomAccessibleInterval< LongType > nearest )
+	{
+		final int n = input.numDimensions();
+		if ( output != null && !Intervals.equalDimensions( input, output ) )
+			throw new IllegalArgumentException( "Input and output must have the same dimensions." );
+		if ( nearest != null && !Intervals.equalDimensions( input, nearest ) )
+			throw new IllegalArgumentException( "Input and nearest feature map must have the same dimensions." );
+		final long[] dimensions = new long[ n ];
+		input.dimensions( dimensions );
+		final long size = Intervals.numElements( input );
+
+		final double[] weights = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			final double spacing = m_calibration != null ? m_calibration[ d ] : input instanceof CalibratedSpace ? ( ( CalibratedSpace< ? > ) input ).averageScale( d ) : 1;
+			weights[ d ] = spacing * spacing;
+		}
+
+		// squared distances, 0 for features and infinity otherwise
+		final DoublePages f = new DoublePages( size, m_pageShift );
+		final LongPages index = nearest == null ? null : new LongPages( size, m_pageShift );
+		final Object inArray = storageArray( input, UnsignedByteType.class, FloatType.class, DoubleType.class );
+		SharedThreadPool.forRanges( size, 64, m_service, new SharedThreadPool.Range()
+		{
+			@Override
+			public void run( final long from, final long to )
+			{
+				if ( inArray instanceof byte[] )
+				{
+					final byte[] in = ( byte[] ) inArray;
+					for ( int i = ( int ) from; i < to; ++i )
+						initialize( f, index, i, isFeature( in[ i ] & 0xff ) );
+				}
+				else if ( inArray instanceof float[] )
+				{
+					final float[] in = ( float[] ) inArray;
+					for ( int i = ( int ) from; i < to; ++i )
+						initialize( f, index, i, isFeature( in[ i ] ) );
+				}
+				else if ( inArray instanceof double[] )
+				{
+					final double[] in = ( double[] ) inArray;
+					for ( int i = ( int ) from; i < to; ++i )
+						initialize( f, index, i, isFeature( in[ i ] ) );
+				}
+				else
+				{
+					final Cursor< T > c = Views.flatIterable( input ).cursor();
+					c.jumpFwd( from );
+					for ( long i = from; i < to; ++i )
+						initialize( f, index, i, isFeature( c.next().getRealDouble() ) );
+				}
+			}
+		} );
+
+		for ( int d = 0; d < n; ++d )
+			transform( f, index, dimensions, d, weights[ d ] );
+
+		final Object outArray = output == null ? null : storageArray( output, FloatType.class, DoubleType.class );
+		final Object nearestArray = nearest == null ? null : storageArray( nearest, LongType.class );
+		SharedThreadPool.forRanges( size, 64, m_service, new SharedThreadPool.Range()
+		{
+			@Override
+			public void run( final long from, final long to )
+			{
+				if ( outArray instanceof float[] )
+				{
+					final float[] out = ( float[] ) outArray;
+					for ( int i = ( int ) from; i < to; ++i )
+						out[ i ] = ( float ) Math.sqrt( f.get( i ) );
+				}
+				else if ( outArray instanceof double[] )
+				{
+					final double[] out = ( double[] ) outArray;
+					for ( int i = ( int ) from; i < to; ++i )
+						out[ i ] = Math.sqrt( f.get( i ) );
+				}
+				else if ( output != null )
+				{
+					final Cursor< O > c = Views.flatIterable( output ).cursor();
+					c.jumpFwd( from );
+					for ( long i = from; i < to; ++i )
+						c.next().setReal( Math.sqrt( f.get( i ) ) );
+				}
+				if ( nearestArray instanceof long[] )
+				{
+					final long[] out = ( long[] ) nearestArray;
+					for ( int i = ( int ) from; i < to; ++i )
+						out[ i ] = index.get( i );
+				}
+				else if ( nearest != null )
+				{
+					final Cursor< LongType > c = Views.flatIterable( nearest ).cursor();
+					c.jumpFwd( from );
+					for ( long i = from; i < to; ++i )
+						c.next().set( index.get( i ) );
+				}
+			}
+		} );
+		return output;
+	}
+
+	private static void initialize( final DoublePages f, final LongPages index, final long i, final boolean feature )
+	{
+		f.set( i, feature ? 0 : Double.POSITIVE_INFINITY );
+		if ( index != null )
+			index.set( i, feature ? i : -1 );
+	}
+
+	/**
+	 * @return the primitive array of an {@link ArrayImg} whose pixel type is
+	 *         exactly one of the given types, or {@code null} otherwise.
+	 */
+	private static Object storageArray( final RandomAccessibleInterval< ? > img, final Class< ? >... types )
+	{
+		if ( !( img instanceof ArrayImg ) )
+			return null;
+		final ArrayImg< ?, ? > arrayImg = ( ArrayImg< ?, ? > ) img;
+		final Object access = arrayImg.update( null );
+		if ( !( access instanceof ArrayDataAccess ) )
+			return null;
+		final Class< ? > type = arrayImg.firstElement().getClass();
+		for ( final Class< ? > c : types )
+			if ( type == c )
+				return ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray();
+		return null;
+	}
+
+	/**
+	 * One pass of the squared distance transform along dimension d, in place.
+	 */
+	private void transform( final DoublePages f, final LongPages index, final long[] dimensions, final int d, final double weight )
+	{
+		final int n = dimensions.length;
+		final long[] lineDims = dimensions.clone();
+		lineDims[ d ] = 1;
+		final int length = ( int ) dimensions[ d ];
+		long stride = 1;
+		long numLines = 1;
+		for ( int e = 0; e < n; ++e )
+		{
+			if ( e < d )
+				stride *= dimensions[ e ];
+			numLines *= lineDims[ e ];
+		}
+		final long step = stride;
+
+		SharedThreadPool.forRanges( numLines, 64, m_service, new SharedThreadPool.Range()
+		{
+			@Override
+			public void run( final long from, final long to )
+			{
+				final double[] line = new double[ length ];
+				final long[] lineIndex = new long[ length ];
+				final double[] result = new double[ length ];
+				final int[] v = new int[ length ];
+				final double[] z = new double[ length + 1 ];
+				final long[] pos = new long[ n ];
+				for ( long l = from; l < to; ++l )
+				{
+					IntervalIndexer.indexToPosition( l, lineDims, pos );
+					final long offset = IntervalIndexer.positionToIndex( pos, dimensions );
+					for ( int i = 0; i < length; ++i )
+						line[ i ] = f.get( offset + i * step );
+
+					if ( !lowerEnvelope( line, weight, v, z, result ) )
+						continue;
+
+					// the nearest feature is the one of the parabola at q
+					if ( index != null )
+						for ( int i = 0; i < length; ++i )
+							lineIndex[ i ] = index.get( offset + i * step );
+					for ( int i = 0, k = 0; i < length; ++i )
+					{
+						while ( z[ k + 1 ] < i )
+							++k;
+						f.set( offset + i * step, result[ i ] );
+						if ( index != null )
+							index.set( offset + i * step, lineIndex[ v[ k ] ] );
+					}
+				}
+			}
+		} );
+	}
+	/**
+	 * Compute the lower envelope of the parabolas weight * ( x - q )^2 +
+	 * f[ q ] and evaluate it at each position.
+	 * 
+	 * @param v
+	 *            receives the apex positions of the envelope parabolas.
+	 * @param z
+	 *            receives the boundaries between the envelope parabolas,
+	 *            parabola k covers [ z[ k ], z[ k + 1 ] ].
+	 * @param result
+	 *            receives the envelope values.
+	 * @return false if all values are infinite, in which case v, z and result
+	 *         are undefined.
+	 */
+	static boolean lowerEnvelope( final double[] f, final double weight, final int[] v, final double[] z, final double[] result )
+	{
+		final int length = f.length;
+		int k = -1;
+		for ( int q = 0; q < length; ++q )
+		{
+			if ( f[ q ] == Double.POSITIVE_INFINITY )
+				continue;
+			if ( k < 0 )
+			{
+				k = 0;
+				v[ 0 ] = q;
+				z[ 0 ] = Double.NEGATIVE_INFINITY;
+				z[ 1 ] = Double.POSITIVE_INFINITY;
+				continue;
+			}
+			final double fq = f[ q ] + weight * q * q;
+			double s;
+			while ( true )
+			{
+				final int p = v[ k ];
+				s = ( fq - ( f[ p ] + weight * p * p ) ) / ( 2 * weight * ( q - p ) );
+				if ( s > z[ k ] )
+					break;
+				--k;
+			}
+			++k;
+			v[ k ] = q;
+			z[ k ] = s;
+			z[ k + 1 ] = Double.POSITIVE_INFINITY;
+		}
+		if ( k < 0 )
+			return false;
+
+		k = 0;
+		for ( int i = 0; i < length; ++i )
+		{
+			while ( z[ k + 1 ] < i )
+				++k;
+			final double dx = i - v[ k ];
+			result[ i ] = weight * dx * dx + f[ v[ k ] ];
+		}
+		return true;
+	}
+
+	/**
+	 * Flat double storage of any size, split into pages of 2^shift elements.
+	 */
+	private static final class DoublePages
+	{
+		private final double[][] pages;
+
+		private final int shift;
+
+		private final long mask;
+
+		DoublePages( final long size, final int shift )
+		{
+			this.shift = shift;
+			mask = ( 1L << shift ) - 1;
+			pages = new double[ ( int ) ( ( size + mask ) >>> shift ) ][];
+			for ( int p = 0; p < pages.length; ++p )
+				pages[ p ] = new double[ ( int ) Math.min( mask + 1, size - ( ( long ) p << shift ) ) ];
+		}
+
+		double get( final long i )
+		{
+			return pages[ ( int ) ( i >>> shift ) ][ ( int ) ( i & mask ) ];
+		}
+
+		void set( final long i, final double value )
+		{
+			pages[ ( int ) ( i >>> shift ) ][ ( int ) ( i & mask ) ] = value;
+		}
+	}
+
+	/**
+	 * Flat long storage of any size, split into pages of 2^shift elements.
+	 */
+	private static final class LongPages
+	{
+		private final long[][] pages;
+
+		private final int shift;
+
+		private final long mask;
+
+		LongPages( final long size, final int shift )
+		{
+			this.shift = shift;
+			mask = ( 1L << shift ) - 1;
+			pages = new long[ ( int ) ( ( size + mask ) >>> shift ) ][];
+			for ( int p = 0; p < pages.length; ++p )
+				pages[ p ] = new long[ ( int ) Math.min( mask + 1, size - ( ( long ) p << shift ) ) ];
+		}
+
+		long get( final long i )
+		{
+			return pages[ ( int ) ( i >>> shift ) ][ ( int ) ( i & mask ) ];
+		}
+
+		void set( final long i, final long value )
+		{
+			pages[ ( int ) ( i >>> shift ) ][ ( int ) ( i & mask ) ] = value;
+		}
+	}
+
+	@Override
+	public EuclideanDistanceTransform< T, O > copy()
+	{
+		return new EuclideanDistanceTransform< T, O >( m_calibration == null ? null : m_calibration.clone(), m_service, m_pageShift );
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ops.operation.randomaccessibleinterval.unary.box;
+
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.ops.operation.UnaryOperation;
+import net.imglib2.type.Type;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+
+/**
+ * Base class for operations that compute each output pixel from the sums over
+ * a box [x - span, x + span] around the input pixel. The box is clipped to the
+ * input, and the sums are obtained from {@link BoxStatistics} in constant time
+ * per pixel. The lines of the output are processed in parallel.
+ * 
+ * @param <T>
+ *            the input type.
+ * @param <O>
+ *            the output type.
+ */
+public abstract class AbstractBoxOperation< T extends RealType< T >, O extends Type< O > > implements UnaryOperation< RandomAccessibleInterval< T >, RandomAccessibleInterval< O > >
+{
+	protected final long[] span;
+
+	protected final ExecutorService service;
+
+	/**
+	 * @param span
+	 *            half-size of the box in each dimension.
+	 * @param service
+	 *            service to run on, the {@link SharedThreadPool} if
+	 *            {@code null}.
+	 */
+	protected AbstractBoxOperation( final long[] span, final ExecutorService service )
+	{
+		this.span = span;
+		this.service = service;
+	}
+
+	/**
+	 * @return whether {@link #compute(double, double, double, long, Type)}
+	 *         needs the sums of squared values.
+	 */
+	protected abstract boolean needsSumSqr();
+
+	/**
+	 * Compute one output pixel.
+	 * 
+	 * @param px
+	 *            the input value.
+	 * @param sum
+	 *            sum of the input values in the box.
+	 * @param sumSqr
+	 *            sum of the squared input values in the box, if
+	 *            {@link #needsSumSqr()}.
+	 * @param n
+	 *            number of pixels in the box.
+	 * @param output
+	 *            the output pixel.
+	 */
+	protected abstract void compute( double px, double sum, double sumSqr, long n, O output );
+
+	@Override
+	public RandomAccessibleInterval< O > compute( final RandomAccessibleInterval< T > input, final RandomAccessibleInterval< O > output )
+	{
+		if ( !Intervals.equalDimensions( input, output ) )
+			throw new IllegalArgumentException( "Input and output must have the same dimensions." );
+		if ( span.length != input.numDimensions() )
+			throw new IllegalArgumentException( "Span must have one entry per dimension." );
+
+		final BoxStatistics statistics = new BoxStatistics( input, needsSumSqr(), service );
+		final int n = input.numDimensions();
+		final long[] lineDims = new long[ n - 1 ];
+		for ( int d = 1; d < n; ++d )
+			lineDims[ d - 1 ] = input.dimension( d );
+		final int size = ( int ) input.dimension( 0 );
+
+		SharedThreadPool.forRanges( statistics.numLines(), 64, service, new SharedThreadPool.Range()
+		{
+			@Override
+			public void run( final long from, final long to )
+			{
+				final RandomAccess< T > in = input.randomAccess();
+				final RandomAccess< O > out = output.randomAccess();
+				final long[] linePos = new long[ n - 1 ];
+				final long[] inPos = new long[ n ];
+				final long[] outPos = new long[ n ];
+				final double[] sum = new double[ size ];
+				final double[] sumSqr = new double[ size ];
+				final long[] count = new long[ size ];
+				for ( long line = from; line < to; ++line )
+				{
+					IntervalIndexer.indexToPosition( line, lineDims, linePos );
+					statistics.lineSums( linePos, span, sum, sumSqr, count );
+					inPos[ 0 ] = input.min( 0 );
+					outPos[ 0 ] = output.min( 0 );
+					for ( int d = 1; d < n; ++d )
+					{
+						inPos[ d ] = linePos[ d - 1 ] + input.min( d );
+						outPos[ d ] = linePos[ d - 1 ] + output.min( d );
+					}
+					in.setPosition( inPos );
+					out.setPosition( outPos );
+					for ( int x = 0; x < size; ++x )
+					{
+						if ( x > 0 )
+						{
+							in.fwd( 0 );
+							out.fwd( 0 );
+						}
+						AbstractBoxOperation.this.compute( in.get().getRealDouble(), sum[ x ], sumSqr[ x ], count[ x ], out.get() );
+					}
+				}
+			}
+		} );
+		return output;
+	}
+}
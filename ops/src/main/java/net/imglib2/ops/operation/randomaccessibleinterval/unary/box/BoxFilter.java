@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ops.operation.randomaccessibleinterval.unary.box;
+
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Local sum, mean or variance over the box [x - span, x + span] around each
+ * pixel, clipped to the input. Runs in constant time per pixel independent of
+ * the span, see {@link BoxStatistics}.
+ * 
+ * @param <T>
+ *            the input type.
+ * @param <O>
+ *            the output type.
+ */
+public class BoxFilter< T extends RealType< T >, O extends RealType< O > > extends AbstractBoxOperation< T, O >
+{
+	public enum Statistic
+	{
+		SUM, MEAN,
+		/**
+		 * Sample variance, i.e. normalized by n - 1 (0 for a single pixel).
+		 */
+		VARIANCE
+	}
+
+	private final Statistic statistic;
+
+	public BoxFilter( final Statistic statistic, final long[] span )
+	{
+		this( statistic, span, null );
+	}
+
+	/**
+	 * @param statistic
+	 *            what to compute.
+	 * @param span
+	 *            half-size of the box in each dimension.
+	 * @param service
+	 *            service to run on, the {@link SharedThreadPool} if
+	 *            {@code null}.
+	 */
+	public BoxFilter( final Statistic statistic, final long[] span, final ExecutorService service )
+	{
+		super( span, service );
+		this.statistic = statistic;
+	}
+
+	@Override
+	protected boolean needsSumSqr()
+	{
+		return statistic == Statistic.VARIANCE;
+	}
+
+	@Override
+	protected void compute( final double px, final double sum, final double sumSqr, final long n, final O output )
+	{
+		switch ( statistic )
+		{
+		case SUM:
+			output.setReal( sum );
+			break;
+		case MEAN:
+			output.setReal( sum / n );
+			break;
+		case VARIANCE:
+			// cancellation may produce small negative values
+			output.setReal( n > 1 ? Math.max( 0, ( sumSqr - sum * sum / n ) / ( n - 1 ) ) : 0 );
+			break;
+		}
+	}
+
+	@Override
+	public BoxFilter< T, O > copy()
+	{
+		return new BoxFilter< T, O >( statistic, span.clone(), service );
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ops.operation.randomaccessibleinterval.unary.box;
+
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.ops.operation.iterable.binary.localthresholder.LocalStatisticsThreshold;
+import net.imglib2.ops.operation.iterable.binary.localthresholder.MeanLocalThreshold;
+import net.imglib2.ops.operation.iterable.binary.localthresholder.Niblack;
+import net.imglib2.ops.operation.iterable.binary.localthresholder.Sauvola;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Local thresholding over the box [x - span, x + span] around each pixel,
+ * clipped to the input. This gives the same result as applying
+ * {@link MeanLocalThreshold}, {@link Niblack} or {@link Sauvola} to
+ * rectangular neighborhoods of the same size that do not extend beyond the
+ * input, but runs in constant time per pixel instead of iterating each
+ * neighborhood. It pays off for larger spans.
+ * 
+ * @param <T>
+ *            the input type.
+ */
+public class BoxLocalThreshold< T extends RealType< T > > extends AbstractBoxOperation< T, BitType >
+{
+	private final LocalStatisticsThreshold threshold;
+
+	public BoxLocalThreshold( final LocalStatisticsThreshold threshold, final long[] span )
+	{
+		this( threshold, span, null );
+	}
+
+	/**
+	 * @param threshold
+	 *            the thresholding method.
+	 * @param span
+	 *            half-size of the box in each dimension.
+	 * @param service
+	 *            service to run on, the {@link SharedThreadPool} if
+	 *            {@code null}.
+	 */
+	public BoxLocalThreshold( final LocalStatisticsThreshold threshold, final long[] span, final ExecutorService service )
+	{
+		super( span, service );
+		this.threshold = threshold;
+	}
+
+	@Override
+	protected boolean needsSumSqr()
+	{
+		return threshold.needsSumSqr();
+	}
+
+	@Override
+	protected void compute( final double px, final double sum, final double sumSqr, final long n, final BitType output )
+	{
+		output.set( threshold.isForeground( px, sum, sumSqr, n ) );
+	}
+
+	@Override
+	public BoxLocalThreshold< T > copy()
+	{
+		return new BoxLocalThreshold< T >( threshold, span.clone(), service );
+	}
+}
@@ -0,0 +1,312 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ops.operation.randomaccessibleinterval.unary.box;
+
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * Integral images of the values and (optionally) the squared values of a
+ * {@link RandomAccessibleInterval}. Sums over arbitrary boxes are computed from
+ * the 2^n corners of the box, in constant time independent of the box size.
+ * 
+ * <p>
+ * The tables are stored in flat double arrays that are one pixel larger in
+ * each dimension than the input, so the input may have at most
+ * {@link Integer#MAX_VALUE} elements. Each dimension is integrated in
+ * parallel.
+ * </p>
+ */
+public class BoxStatistics
+{
+	private final int n;
+
+	private final long[] dimensions;
+
+	private final int[] strides;
+
+	private final double[] sums;
+
+	private final double[] sumSqrs;
+
+	/**
+	 * @param input
+	 *            the image to integrate.
+	 * @param computeSumSqr
+	 *            whether to integrate the squared values as well.
+	 * @param service
+	 *            service to run the integration on, the
+	 *            {@link SharedThreadPool} if {@code null}.
+	 */
+	public < T extends RealType< T > > BoxStatistics( final RandomAccessibleInterval< T > input, final boolean computeSumSqr, final ExecutorService service )
+	{
+		n = input.numDimensions();
+		dimensions = new long[ n ];
+		input.dimensions( dimensions );
+		strides = new int[ n ];
+		long size = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			strides[ d ] = ( int ) size;
+			size *= dimensions[ d ] + 1;
+			if ( size > Integer.MAX_VALUE )
+				throw new IllegalArgumentException( "Input is too large for BoxStatistics." );
+		}
+		sums = new double[ ( int ) size ];
+		sumSqrs = computeSumSqr ? new double[ ( int ) size ] : null;
+
+		integrateDim0( input, service );
+		for ( int d = 1; d < n; ++d )
+			integrate( d, service );
+	}
+
+	/**
+	 * Fill the lines along dimension 0 with the cumulative sums of the input.
+	 */
+	private < T extends RealType< T > > void integrateDim0( final RandomAccessibleInterval< T > input, final ExecutorService service )
+	{
+		final long[] lineDims = new long[ n - 1 ];
+		for ( int d = 1; d < n; ++d )
+			lineDims[ d - 1 ] = dimensions[ d ];
+		final int size = ( int ) dimensions[ 0 ];
+
+		SharedThreadPool.forRanges( numLines(), 64, service, new SharedThreadPool.Range()
+		{
+			@Override
+			public void run( final long from, final long to )
+			{
+				final RandomAccess< T > access = input.randomAccess();
+				final long[] linePos = new long[ n - 1 ];
+				final long[] pos = new long[ n ];
+				for ( long line = from; line < to; ++line )
+				{
+					IntervalIndexer.indexToPosition( line, lineDims, linePos );
+					pos[ 0 ] = input.min( 0 );
+					int offset = 1;
+					for ( int d = 1; d < n; ++d )
+					{
+						pos[ d ] = linePos[ d - 1 ] + input.min( d );
+						offset += ( linePos[ d - 1 ] + 1 ) * strides[ d ];
+					}
+					access.setPosition( pos );
+					double sum = 0;
+					double sumSqr = 0;
+					for ( int x = 0; x < size; ++x )
+					{
+						if ( x > 0 )
+							access.fwd( 0 );
+						final double v = access.get().getRealDouble();
+						sum += v;
+						sums[ offset + x ] = sum;
+						if ( sumSqrs != null )
+						{
+							sumSqr += v * v;
+							sumSqrs[ offset + x ] = sumSqr;
+						}
+					}
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Accumulate the tables along dimension d &gt; 0. Each column along d is
+	 * independent, the columns are enumerated by their offset in the
+	 * contiguous block of lower dimensions and the block index of higher
+	 * dimensions.
+	 */
+	private void integrate( final int d, final ExecutorService service )
+	{
+		final int step = strides[ d ];
+		final int size = ( int ) dimensions[ d ] + 1;
+		final long numColumns = sums.length / size;
+
+		SharedThreadPool.forRanges( numColumns, 64, service, new SharedThreadPool.Range()
+		{
+			@Override
+			public void run( final long from, final long to )
+			{
+				for ( long o = from / step; o * step < to; ++o )
+				{
+					final int x0 = ( int ) ( Math.max( from, o * step ) - o * step );
+					final int x1 = ( int ) ( Math.min( to, ( o + 1 ) * step ) - o * step );
+					final int base = ( int ) ( o * step * size );
+					for ( int i = 2; i < size; ++i )
+					{
+						final int row = base + i * step;
+						for ( int x = row + x0; x < row + x1; ++x )
+							sums[ x ] += sums[ x - step ];
+						if ( sumSqrs != null )
+							for ( int x = row + x0; x < row + x1; ++x )
+								sumSqrs[ x ] += sumSqrs[ x - step ];
+					}
+				}
+			}
+		} );
+	}
+
+	/**
+	 * @return the number of dimensions.
+	 */
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * @return the size of the input in dimension d.
+	 */
+	public long dimension( final int d )
+	{
+		return dimensions[ d ];
+	}
+
+	/**
+	 * @return whether the sums of squares are available.
+	 */
+	public boolean hasSumSqr()
+	{
+		return sumSqrs != null;
+	}
+
+	/**
+	 * @return the number of lines along dimension 0 of the input.
+	 */
+	long numLines()
+	{
+		long numLines = 1;
+		for ( int d = 1; d < n; ++d )
+			numLines *= dimensions[ d ];
+		return numLines;
+	}
+
+	/**
+	 * Compute the sums of the box [min, max] (inclusive, relative to the input
+	 * min). The box must lie within the input.
+	 * 
+	 * @param result
+	 *            receives the sum of the values and, if available, the sum of
+	 *            the squared values.
+	 */
+	public void sums( final long[] min, final long[] max, final double[] result )
+	{
+		double sum = 0;
+		double sumSqr = 0;
+		for ( int corner = 0; corner < 1 << n; ++corner )
+		{
+			// bit d set: take max + 1 in dimension d, else min
+			int index = 0;
+			int numMin = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( ( corner & ( 1 << d ) ) != 0 )
+					index += ( max[ d ] + 1 ) * strides[ d ];
+				else
+				{
+					index += min[ d ] * strides[ d ];
+					++numMin;
+				}
+			}
+			final double sign = ( numMin & 1 ) == 0 ? 1 : -1;
+			sum += sign * sums[ index ];
+			if ( sumSqrs != null )
+				sumSqr += sign * sumSqrs[ index ];
+		}
+		result[ 0 ] = sum;
+		if ( sumSqrs != null )
+			result[ 1 ] = sumSqr;
+	}
+
+	/**
+	 * Compute the sums of the windows [x - span, x + span] (clipped to the
+	 * input) of all pixels on a line along dimension 0, in constant time per
+	 * pixel.
+	 * 
+	 * @param linePos
+	 *            position of the line in dimensions 1 to n-1, relative to the
+	 *            input min.
+	 * @param span
+	 *            half-size of the window in each dimension.
+	 * @param sum
+	 *            receives the sums of the values, one per pixel of the line.
+	 * @param sumSqr
+	 *            receives the sums of the squared values, if available.
+	 * @param count
+	 *            receives the number of pixels in each window.
+	 */
+	public void lineSums( final long[] linePos, final long[] span, final double[] sum, final double[] sumSqr, final long[] count )
+	{
+		// offsets of the corners in dimensions 1 to n-1, with the corners
+		// enumerated as in sums(), and the size of the window in those
+		// dimensions
+		final int numCorners = 1 << n;
+		final int[] cornerOffsets = new int[ numCorners ];
+		final double[] signs = new double[ numCorners ];
+		long size = 1;
+		for ( int d = 1; d < n; ++d )
+		{
+			final long min = Math.max( 0, linePos[ d - 1 ] - span[ d ] );
+			final long max = Math.min( dimensions[ d ] - 1, linePos[ d - 1 ] + span[ d ] );
+			size *= max - min + 1;
+			for ( int corner = 0; corner < numCorners; ++corner )
+				cornerOffsets[ corner ] += ( ( corner & ( 1 << d ) ) != 0 ? max + 1 : min ) * strides[ d ];
+		}
+		for ( int corner = 0; corner < numCorners; ++corner )
+			signs[ corner ] = ( ( n - Integer.bitCount( corner ) ) & 1 ) == 0 ? 1 : -1;
+
+		final long size0 = dimensions[ 0 ];
+		for ( int x = 0; x < size0; ++x )
+		{
+			final int min = ( int ) Math.max( 0, x - span[ 0 ] );
+			final int max = ( int ) Math.min( size0 - 1, x + span[ 0 ] );
+			double s = 0;
+			double q = 0;
+			for ( int corner = 0; corner < numCorners; ++corner )
+			{
+				final int index = cornerOffsets[ corner ] + ( ( corner & 1 ) != 0 ? max + 1 : min );
+				s += signs[ corner ] * sums[ index ];
+				if ( sumSqrs != null )
+					q += signs[ corner ] * sumSqrs[ index ];
+			}
+			sum[ x ] = s;
+			if ( sumSqrs != null )
+				sumSqr[ x ] = q;
+			count[ x ] = size * ( max - min + 1 );
+		}
+	}
+}
@@ -72,6 +72,28 @@ public class BinaryOps
 	{
 		long[] dim = new long[ r.numDimensions() ];
 		r.dimensions( dim );
+		if ( count == 1 )
+		{
+			// a single neighbor suffices, i.e. this is a min/max over the box
+			// or cross, which is computed on packed words if the
+			// out-of-bounds strategy allows
+			final boolean[] outside = new boolean[ 1 ];
+			final int mode = PackedBinaryMorphology.outsideValue( m_factory, outside );
+			if ( mode >= 0 )
+			{
+				final Boolean outsideValue = mode == 1 ? Boolean.valueOf( outside[ 0 ] ) : null;
+				return new PackedBinaryMorphology( erode ? PackedBinaryMorphology.Operation.ERODE : PackedBinaryMorphology.Operation.DILATE, type, outsideValue, null ).compute( op, r );
+			}
+		}
+		if ( type == ConnectedType.EIGHT_CONNECTED && count == 1 )
+		{
+			final long[] min = new long[ dim.length ];
+			final long[] max = new long[ dim.length ];
+			Arrays.fill( min, -1 );
+			Arrays.fill( max, 1 );
+			if ( BoxMorphology.isApplicable( r, min, max ) )
+				return new BoxMorphology< BitType >( !erode, min, max, m_factory, null ).compute( op, r );
+		}
 		switch ( r.numDimensions() )
 		{
 		case 2:
@@ -0,0 +1,401 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ops.operation.randomaccessibleinterval.unary.morph;
+
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.ops.operation.UnaryOperation;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.view.Views;
+
+/**
+ * Gray-level dilation or erosion with a rectangular structuring element,
+ * including axis-parallel lines. The box is decomposed into one line per
+ * dimension, and each line is processed with the van Herk/Gil-Werman running
+ * max/min, which takes 3 comparisons per pixel independent of the line
+ * length. The lines of each pass are processed in parallel.
+ * 
+ * <p>
+ * The result is the same as that of {@link DilateGray} or {@link ErodeGray}
+ * with the same structuring element and {@link OutOfBoundsFactory}: each pass
+ * is computed on an interval that is enlarged by the extent of the remaining
+ * passes, so the out-of-bounds values enter exactly as in the direct
+ * computation. The intermediate results are stored in double arrays. To
+ * bound their size, the output is processed in slabs along the last dimension,
+ * each holding at most {@link #MAX_TILE_SIZE} intermediate elements. If even a
+ * slab of thickness 1 exceeds {@link Integer#MAX_VALUE} elements,
+ * {@link #isApplicable} returns false and the per-offset computation of
+ * {@link DilateGray} or {@link ErodeGray} must be used instead.
+ * </p>
+ * 
+ * @param <T>
+ */
+public class BoxMorphology< T extends RealType< T > > implements UnaryOperation< RandomAccessibleInterval< T >, RandomAccessibleInterval< T > >
+{
+	/**
+	 * Number of intermediate elements per slab of the output that is targeted
+	 * when tiling large images.
+	 */
+	public static final int MAX_TILE_SIZE = 1 << 23;
+
+	/**
+	 * Check whether the box can be computed for the given output, i.e. whether
+	 * the intermediate results of a slab of thickness 1 along the last
+	 * dimension fit into an array.
+	 * 
+	 * @param output
+	 *            interval to compute.
+	 * @param min
+	 *            min offset of the box in each dimension.
+	 * @param max
+	 *            max offset of the box in each dimension.
+	 */
+	public static boolean isApplicable( final Interval output, final long[] min, final long[] max )
+	{
+		final int n = output.numDimensions();
+		return n < 2 || sliceSize( output, min, max ) * ( 1 + max[ n - 1 ] - min[ n - 1 ] ) <= Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Number of elements of the first intermediate result per unit of
+	 * thickness along the last dimension, excluding the enlargement in that
+	 * dimension. Saturates at {@link Long#MAX_VALUE}.
+	 */
+	private static long sliceSize( final Interval output, final long[] min, final long[] max )
+	{
+		final int n = output.numDimensions();
+		long size = 1;
+		for ( int e = 0; e < n - 1; ++e )
+		{
+			final long dim = output.dimension( e ) + ( e > 0 ? max[ e ] - min[ e ] : 0 );
+			if ( size > Long.MAX_VALUE / dim )
+				return Long.MAX_VALUE;
+			size *= dim;
+		}
+		return size;
+	}
+
+	/**
+	 * Check whether a structuring element given as a list of offsets is a box,
+	 * i.e. contains exactly the offsets between a min and max in every
+	 * dimension.
+	 * 
+	 * @param struc
+	 *            offsets of the structuring element.
+	 * @param min
+	 *            receives the min offset in each dimension.
+	 * @param max
+	 *            receives the max offset in each dimension. Dimensions beyond
+	 *            those of the structuring element get extent 0.
+	 * @return whether the structuring element is a box.
+	 */
+	public static boolean isBox( final long[][] struc, final long[] min, final long[] max )
+	{
+		if ( struc.length == 0 || struc[ 0 ].length > min.length )
+			return false;
+		final int n = struc[ 0 ].length;
+		for ( int d = 0; d < min.length; ++d )
+		{
+			min[ d ] = d < n ? Long.MAX_VALUE : 0;
+			max[ d ] = d < n ? Long.MIN_VALUE : 0;
+		}
+		for ( final long[] offset : struc )
+		{
+			if ( offset.length != n )
+				return false;
+			for ( int d = 0; d < n; ++d )
+			{
+				min[ d ] = Math.min( min[ d ], offset[ d ] );
+				max[ d ] = Math.max( max[ d ], offset[ d ] );
+			}
+		}
+		long size = 1;
+		for ( int d = 0; d < n; ++d )
+			size *= max[ d ] - min[ d ] + 1;
+		if ( size != struc.length )
+			return false;
+
+		// all offsets distinct and within the bounding box, so they fill it
+		final boolean[] seen = new boolean[ ( int ) size ];
+		final long[] dims = new long[ n ];
+		final long[] pos = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			dims[ d ] = max[ d ] - min[ d ] + 1;
+		for ( final long[] offset : struc )
+		{
+			for ( int d = 0; d < n; ++d )
+				pos[ d ] = offset[ d ] - min[ d ];
+			final int i = ( int ) IntervalIndexer.positionToIndex( pos, dims );
+			if ( seen[ i ] )
+				return false;
+			seen[ i ] = true;
+		}
+		return true;
+	}
+
+	private final boolean m_dilate;
+
+	private final long[] m_min;
+
+	private final long[] m_max;
+
+	private final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > m_factory;
+
+	private final ExecutorService m_service;
+
+	private final int m_maxTileSize;
+
+	/**
+	 * @param dilate
+	 *            whether to dilate (max) or erode (min).
+	 * @param min
+	 *            min offset of the box in each dimension.
+	 * @param max
+	 *            max offset of the box in each dimension.
+	 * @param factory
+	 *            out-of-bounds strategy for the input.
+	 * @param service
+	 *            service to run on, the {@link SharedThreadPool} if
+	 *            {@code null}.
+	 */
+	public BoxMorphology( final boolean dilate, final long[] min, final long[] max, final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > factory, final ExecutorService service )
+	{
+		this( dilate, min, max, factory, service, MAX_TILE_SIZE );
+	}
+
+	BoxMorphology( final boolean dilate, final long[] min, final long[] max, final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > factory, final ExecutorService service, final int maxTileSize )
+	{
+		m_dilate = dilate;
+		m_min = min;
+		m_max = max;
+		m_factory = factory;
+		m_service = service;
+		m_maxTileSize = maxTileSize;
+	}
+
+	@Override
+	public RandomAccessibleInterval< T > compute( final RandomAccessibleInterval< T > input, final RandomAccessibleInterval< T > output )
+	{
+		if ( !isApplicable( output, m_min, m_max ) )
+			throw new IllegalArgumentException( "Image is too large for BoxMorphology." );
+		final int n = output.numDimensions();
+		final RandomAccess< T > extended = Views.extend( input, m_factory ).randomAccess();
+		if ( n < 2 )
+		{
+			computeSlab( extended, output );
+			return output;
+		}
+
+		// process slabs along the last dimension, such that the intermediate
+		// results of each slab have at most about MAX_TILE_SIZE elements
+		final long extent = m_max[ n - 1 ] - m_min[ n - 1 ];
+		final long thickness = Math.max( 1, Math.min( output.dimension( n - 1 ), m_maxTileSize / sliceSize( output, m_min, m_max ) - extent ) );
+		final long[] slabMin = new long[ n ];
+		final long[] slabMax = new long[ n ];
+		output.min( slabMin );
+		output.max( slabMax );
+		for ( long start = output.min( n - 1 ); start <= output.max( n - 1 ); start += thickness )
+		{
+			slabMin[ n - 1 ] = start;
+			slabMax[ n - 1 ] = Math.min( start + thickness - 1, output.max( n - 1 ) );
+			computeSlab( extended, Views.interval( output, slabMin, slabMax ) );
+		}
+		return output;
+	}
+
+	private void computeSlab( final RandomAccess< T > extended, final RandomAccessibleInterval< T > output )
+	{
+		final int n = output.numDimensions();
+
+		// Pass d integrates dimension d. Its target covers the output in
+		// dimensions <= d, and is enlarged by the box in dimensions > d.
+		double[] src = null;
+		long[] srcDims = null;
+		for ( int d = 0; d < n; ++d )
+		{
+			final long[] dstDims = new long[ n ];
+			final long[] dstMin = new long[ n ];
+			long size = 1;
+			for ( int e = 0; e < n; ++e )
+			{
+				final long extent = e > d ? m_max[ e ] - m_min[ e ] : 0;
+				dstDims[ e ] = output.dimension( e ) + extent;
+				dstMin[ e ] = output.min( e ) + ( e > d ? m_min[ e ] : 0 );
+				size *= dstDims[ e ];
+			}
+			final double[] dst = d == n - 1 ? null : new double[ ( int ) size ];
+			pass( d, extended, src, srcDims, dst, dstDims, dstMin, output );
+			src = dst;
+			srcDims = dstDims;
+		}
+	}
+
+	/**
+	 * Run the lines along dimension d. The source is the extended input for d
+	 * = 0 and the previous target otherwise; the target is the output for the
+	 * last dimension.
+	 */
+	private void pass( final int d, final RandomAccess< T > extended, final double[] src, final long[] srcDims, final double[] dst, final long[] dstDims, final long[] dstMin, final RandomAccessibleInterval< T > output )
+	{
+		final int n = dstDims.length;
+		final long[] lineDims = new long[ n ];
+		for ( int e = 0; e < n; ++e )
+			lineDims[ e ] = e == d ? 1 : dstDims[ e ];
+		final long numLines = numElements( lineDims );
+		final int length = ( int ) dstDims[ d ];
+		final int k = ( int ) ( m_max[ d ] - m_min[ d ] + 1 );
+		final int srcStride = src == null ? 0 : ( int ) stride( srcDims, d );
+		final int dstStride = dst == null ? 0 : ( int ) stride( dstDims, d );
+
+		SharedThreadPool.forRanges( numLines, 16, m_service, new SharedThreadPool.Range()
+		{
+			@Override
+			public void run( final long first, final long last )
+			{
+				final RandomAccess< T > in = src == null ? extended.copyRandomAccess() : null;
+				final RandomAccess< T > out = dst == null ? output.randomAccess() : null;
+				final double[] f = new double[ length + k - 1 ];
+				final double[] g = new double[ f.length ];
+				final double[] h = new double[ f.length ];
+				final double[] result = new double[ length ];
+				final long[] pos = new long[ n ];
+				final long[] absolute = new long[ n ];
+				for ( long line = first; line < last; ++line )
+				{
+					// position of the line relative to the target
+					IntervalIndexer.indexToPosition( line, lineDims, pos );
+
+					// read the line, extended by the box in dimension d
+					if ( src == null )
+					{
+						for ( int e = 0; e < n; ++e )
+							absolute[ e ] = dstMin[ e ] + ( e == d ? m_min[ d ] : pos[ e ] );
+						in.setPosition( absolute );
+						for ( int i = 0; i < f.length; ++i )
+						{
+							if ( i > 0 )
+								in.fwd( d );
+							f[ i ] = in.get().getRealDouble();
+						}
+					}
+					else
+					{
+						// the source is enlarged by the box in dimension
+						// d and starts at the same position in the others
+						final int offset = ( int ) IntervalIndexer.positionToIndex( pos, srcDims );
+						for ( int i = 0; i < f.length; ++i )
+							f[ i ] = src[ offset + i * srcStride ];
+					}
+
+					vanHerkGilWerman( f, g, h, k, result );
+
+					if ( dst == null )
+					{
+						for ( int e = 0; e < n; ++e )
+							absolute[ e ] = dstMin[ e ] + pos[ e ];
+						out.setPosition( absolute );
+						for ( int i = 0; i < length; ++i )
+						{
+							if ( i > 0 )
+								out.fwd( d );
+							out.get().setReal( result[ i ] );
+						}
+					}
+					else
+					{
+						final int offset = ( int ) IntervalIndexer.positionToIndex( pos, dstDims );
+						for ( int i = 0; i < length; ++i )
+							dst[ offset + i * dstStride ] = result[ i ];
+					}
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Compute the max (or min) over all windows of size k of f: result[ i ] =
+	 * max( f[ i ], ..., f[ i + k - 1 ] ). f is divided into blocks of size k,
+	 * g holds the running max from the start of each block and h the running
+	 * max towards the end of each block. Each window spans at most two blocks
+	 * and is the max of h at its start and g at its end.
+	 */
+	private void vanHerkGilWerman( final double[] f, final double[] g, final double[] h, final int k, final double[] result )
+	{
+		final int size = f.length;
+		if ( k == 1 )
+		{
+			System.arraycopy( f, 0, result, 0, result.length );
+			return;
+		}
+		for ( int start = 0; start < size; start += k )
+		{
+			final int end = Math.min( start + k, size );
+			g[ start ] = f[ start ];
+			for ( int i = start + 1; i < end; ++i )
+				g[ i ] = m_dilate ? Math.max( g[ i - 1 ], f[ i ] ) : Math.min( g[ i - 1 ], f[ i ] );
+			h[ end - 1 ] = f[ end - 1 ];
+			for ( int i = end - 2; i >= start; --i )
+				h[ i ] = m_dilate ? Math.max( h[ i + 1 ], f[ i ] ) : Math.min( h[ i + 1 ], f[ i ] );
+		}
+		for ( int i = 0; i < result.length; ++i )
+			result[ i ] = m_dilate ? Math.max( h[ i ], g[ i + k - 1 ] ) : Math.min( h[ i ], g[ i + k - 1 ] );
+	}
+
+	private static long stride( final long[] dims, final int d )
+	{
+		long stride = 1;
+		for ( int e = 0; e < d; ++e )
+			stride *= dims[ e ];
+		return stride;
+	}
+
+	private static long numElements( final long[] dims )
+	{
+		long size = 1;
+		for ( final long s : dims )
+			size *= s;
+		return size;
+	}
+
+	@Override
+	public BoxMorphology< T > copy()
+	{
+		return new BoxMorphology< T >( m_dilate, m_min.clone(), m_max.clone(), m_factory, m_service, m_maxTileSize );
+	}
+}
@@ -66,6 +66,12 @@ public class ErodeGray< T extends RealType< T >> implements UnaryOperation< Rand
 	@Override
 	public RandomAccessibleInterval< T > compute( final RandomAccessibleInterval< T > input, final RandomAccessibleInterval< T > output )
 	{
+		// rectangular elements are decomposed into fast running minima per line
+		final long[] min = new long[ output.numDimensions() ];
+		final long[] max = new long[ output.numDimensions() ];
+		if ( BoxMorphology.isBox( m_struc, min, max ) && BoxMorphology.isApplicable( output, min, max ) )
+			return new BoxMorphology< T >( false, min, max, m_factory, null ).compute( input, output );
+
 		final StructuringElementCursor< T > inStructure = new StructuringElementCursor< T >( Views.extend( input, m_factory ).randomAccess(), m_struc );
 		final Cursor< T > out = Views.iterable( output ).localizingCursor();
 		double m;
@@ -0,0 +1,257 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ops.operation.randomaccessibleinterval.unary.morph;
+
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.ops.operation.UnaryOperation;
+import net.imglib2.ops.types.ConnectedType;
+import net.imglib2.outofbounds.OutOfBoundsBorderFactory;
+import net.imglib2.outofbounds.OutOfBoundsConstantValueFactory;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.type.logic.BitType;
+
+/**
+ * Binary erosion, dilation, opening and closing with the 3x3x... box
+ * ({@link ConnectedType#EIGHT_CONNECTED}) or cross
+ * ({@link ConnectedType#FOUR_CONNECTED}) on {@link PackedBitMask}s. Neighbors
+ * along dimension 0 are obtained by shifting whole words, neighbors along the
+ * other dimensions by combining whole rows, so each operation processes 64
+ * pixels at a time. The box is applied separably, one dimension after the
+ * other.
+ * 
+ * <p>
+ * Pixels outside the mask have a fixed value, or are ignored, i.e. do not
+ * change the result. This corresponds to an {@link OutOfBoundsFactory} that
+ * is constant, or that mirrors or repeats the border, see
+ * {@link #outsideValue(OutOfBoundsFactory, boolean[])}.
+ * </p>
+ */
+public class PackedBinaryMorphology implements UnaryOperation< RandomAccessibleInterval< BitType >, RandomAccessibleInterval< BitType > >
+{
+	public enum Operation
+	{
+		ERODE, DILATE, OPEN, CLOSE
+	}
+
+	/**
+	 * Determine whether the 3x3x... neighborhood of binary morphology can be
+	 * computed with a fixed value outside of the mask.
+	 * 
+	 * @param factory
+	 *            the out-of-bounds strategy.
+	 * @param outside
+	 *            receives the constant outside value.
+	 * @return 1 if the outside is constant, 0 if it can be ignored because it
+	 *         repeats values inside the neighborhood, -1 if the strategy is
+	 *         not supported.
+	 */
+	public static int outsideValue( final OutOfBoundsFactory< BitType, RandomAccessibleInterval< BitType > > factory, final boolean[] outside )
+	{
+		if ( factory instanceof OutOfBoundsConstantValueFactory )
+		{
+			outside[ 0 ] = ( ( OutOfBoundsConstantValueFactory< BitType, ? > ) factory ).getValue().get();
+			return 1;
+		}
+		// out-of-bounds pixels at distance 1 repeat a pixel of the same
+		// neighborhood
+		if ( factory instanceof OutOfBoundsBorderFactory || factory instanceof OutOfBoundsMirrorFactory )
+			return 0;
+		return -1;
+	}
+
+	private final Operation m_operation;
+
+	private final ConnectedType m_type;
+
+	private final Boolean m_outside;
+
+	private final ExecutorService m_service;
+
+	/**
+	 * @param operation
+	 *            what to compute.
+	 * @param type
+	 *            the neighborhood.
+	 * @param outside
+	 *            the value of pixels outside the mask, or {@code null} to
+	 *            ignore them.
+	 * @param service
+	 *            service to run on, the {@link SharedThreadPool} if
+	 *            {@code null}.
+	 */
+	public PackedBinaryMorphology( final Operation operation, final ConnectedType type, final Boolean outside, final ExecutorService service )
+	{
+		m_operation = operation;
+		m_type = type;
+		m_outside = outside;
+		m_service = service;
+	}
+
+	@Override
+	public RandomAccessibleInterval< BitType > compute( final RandomAccessibleInterval< BitType > input, final RandomAccessibleInterval< BitType > output )
+	{
+		compute( PackedBitMask.read( input, m_service ) ).write( output, m_service );
+		return output;
+	}
+
+	/**
+	 * Apply the operation to a packed mask.
+	 * 
+	 * @return a new mask holding the result.
+	 */
+	public PackedBitMask compute( final PackedBitMask mask )
+	{
+		switch ( m_operation )
+		{
+		case ERODE:
+			return morph( mask, true );
+		case DILATE:
+			return morph( mask, false );
+		case OPEN:
+			return morph( morph( mask, true ), false );
+		default:
+			return morph( morph( mask, false ), true );
+		}
+	}
+
+	private PackedBitMask morph( final PackedBitMask mask, final boolean erode )
+	{
+		// ignored pixels are neutral: true for AND, false for OR
+		final boolean outside = m_outside == null ? erode : m_outside;
+		switch ( m_type )
+		{
+		case EIGHT_CONNECTED:
+			PackedBitMask result = neighbors( mask, erode, outside, -1 );
+			for ( int d = 1; d < mask.numDimensions(); ++d )
+				result = neighbors( result, erode, outside, d );
+			return result;
+		case FOUR_CONNECTED:
+			return neighbors( mask, erode, outside, 0 );
+		default:
+			throw new IllegalArgumentException( "Can't find ConnectionType. Please choose between for connected and eightconnected" );
+		}
+	}
+
+	/**
+	 * Combine each pixel with its direct neighbors along dimension 0 (dim =
+	 * -1), along dimension dim &gt; 0, or along all dimensions (dim = 0), using
+	 * AND (erode) or OR (dilate).
+	 */
+	private PackedBitMask neighbors( final PackedBitMask mask, final boolean erode, final boolean outside, final int dim )
+	{
+		final int n = mask.numDimensions();
+		final PackedBitMask result = new PackedBitMask( dimensions( mask ) );
+		final long[] src = mask.getWords();
+		final long[] dst = result.getWords();
+		final int wordsPerRow = mask.wordsPerRow();
+		final int numRows = mask.numRows();
+		final long[] outsideRow = mask.constantRow( outside );
+		final long lastWordMask = mask.lastWordMask();
+		final long carryIn = outside ? 1L : 0L;
+		final long carryOut = outside ? 1L << ( ( mask.width() - 1 ) & 63 ) : 0L;
+		final int[] rowStrides = new int[ n ];
+		for ( int d = 1; d < n; ++d )
+			rowStrides[ d ] = d == 1 ? 1 : rowStrides[ d - 1 ] * ( int ) mask.dimension( d - 1 );
+		final int first = dim <= 0 ? 1 : dim;
+		final int last = dim == 0 ? n - 1 : dim == -1 ? 0 : dim;
+
+		SharedThreadPool.forRanges( numRows, 64, m_service, new SharedThreadPool.Range()
+		{
+			@Override
+			public void run( final long fromRow, final long toRow )
+			{
+				final int from = ( int ) fromRow;
+				final int to = ( int ) toRow;
+				for ( int r = from; r < to; ++r )
+				{
+					final int base = r * wordsPerRow;
+					if ( dim <= 0 )
+					{
+						// neighbors along dimension 0 by shifting
+						for ( int i = 0; i < wordsPerRow; ++i )
+						{
+							final long w = src[ base + i ];
+							final long left = ( w << 1 ) | ( i > 0 ? src[ base + i - 1 ] >>> 63 : carryIn );
+							long right = ( w >>> 1 ) | ( i + 1 < wordsPerRow ? src[ base + i + 1 ] << 63 : 0 );
+							if ( i + 1 == wordsPerRow )
+								right |= carryOut;
+							dst[ base + i ] = erode ? w & left & right : w | left | right;
+						}
+					}
+					else
+					{
+						System.arraycopy( src, base, dst, base, wordsPerRow );
+					}
+
+					// neighbors along the other dimensions by whole rows
+					for ( int d = first; d <= last; ++d )
+					{
+						final int stride = rowStrides[ d ];
+						final long pos = ( r / stride ) % mask.dimension( d );
+						final long[] prev = pos > 0 ? src : outsideRow;
+						final int prevBase = pos > 0 ? base - stride * wordsPerRow : 0;
+						final long[] next = pos + 1 < mask.dimension( d ) ? src : outsideRow;
+						final int nextBase = pos + 1 < mask.dimension( d ) ? base + stride * wordsPerRow : 0;
+						for ( int i = 0; i < wordsPerRow; ++i )
+						{
+							if ( erode )
+								dst[ base + i ] &= prev[ prevBase + i ] & next[ nextBase + i ];
+							else
+								dst[ base + i ] |= prev[ prevBase + i ] | next[ nextBase + i ];
+						}
+					}
+					dst[ base + wordsPerRow - 1 ] &= lastWordMask;
+				}
+			}
+		} );
+		return result;
+	}
+
+	private static long[] dimensions( final PackedBitMask mask )
+	{
+		final long[] dimensions = new long[ mask.numDimensions() ];
+		for ( int d = 0; d < dimensions.length; ++d )
+			dimensions[ d ] = mask.dimension( d );
+		return dimensions;
+	}
+
+	@Override
+	public PackedBinaryMorphology copy()
+	{
+		return new PackedBinaryMorphology( m_operation, m_type, m_outside, m_service );
+	}
+}
@@ -0,0 +1,424 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ops.operation.randomaccessibleinterval.unary.morph;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.BitArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.multithreading.SharedThreadPool;
+import net.imglib2.type.logic.BitType;
+
+/**
+ * Binary mask packed into 64 pixels per long, with each row (line along
+ * dimension 0) starting at a new word. Logic operations work on whole words,
+ * and {@link PackedBinaryMorphology} shifts words to access the neighbors
+ * along dimension 0.
+ * 
+ * <p>
+ * {@link BitArray}-backed {@link ArrayImg}s and {@link PlanarImg}s are read
+ * and written word by word, other images pixel by pixel. The bits beyond the
+ * width of the last word of each row are always zero. All operations are
+ * parallel across rows.
+ * </p>
+ */
+public final class PackedBitMask
+{
+	private final long[] m_dimensions;
+
+	private final int m_width;
+
+	private final int m_wordsPerRow;
+
+	private final int m_numRows;
+
+	private final long[] m_words;
+
+	public PackedBitMask( final long[] dimensions )
+	{
+		m_dimensions = dimensions.clone();
+		m_width = ( int ) dimensions[ 0 ];
+		m_wordsPerRow = ( m_width + 63 ) / 64;
+		long numRows = 1;
+		for ( int d = 1; d < dimensions.length; ++d )
+			numRows *= dimensions[ d ];
+		if ( numRows * m_wordsPerRow > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Mask is too large for PackedBitMask." );
+		m_numRows = ( int ) numRows;
+		m_words = new long[ m_numRows * m_wordsPerRow ];
+	}
+
+	public int numDimensions()
+	{
+		return m_dimensions.length;
+	}
+
+	public long dimension( final int d )
+	{
+		return m_dimensions[ d ];
+	}
+
+	public int width()
+	{
+		return m_width;
+	}
+
+	public int numRows()
+	{
+		return m_numRows;
+	}
+
+	public int wordsPerRow()
+	{
+		return m_wordsPerRow;
+	}
+
+	/**
+	 * @return the packed words, row after row. Bit x of row r is bit (x % 64)
+	 *         of word r * {@link #wordsPerRow()} + x / 64.
+	 */
+	public long[] getWords()
+	{
+		return m_words;
+	}
+
+	/**
+	 * @return the mask with all bits within the width set to value.
+	 */
+	long[] constantRow( final boolean value )
+	{
+		final long[] row = new long[ m_wordsPerRow ];
+		if ( value )
+		{
+			Arrays.fill( row, -1L );
+			row[ m_wordsPerRow - 1 ] = lastWordMask();
+		}
+		return row;
+	}
+
+	/**
+	 * @return the mask of the valid bits of the last word of a row.
+	 */
+	long lastWordMask()
+	{
+		final int rest = m_width & 63;
+		return rest == 0 ? -1L : ( 1L << rest ) - 1;
+	}
+
+	/**
+	 * Create a packed copy of a mask.
+	 * 
+	 * @param service
+	 *            service to run on, the {@link SharedThreadPool} if
+	 *            {@code null}.
+	 */
+	public static PackedBitMask read( final RandomAccessibleInterval< BitType > img, final ExecutorService service )
+	{
+		final long[] dimensions = new long[ img.numDimensions() ];
+		img.dimensions( dimensions );
+		final PackedBitMask mask = new PackedBitMask( dimensions );
+		final int[][] planes = planes( img );
+		final int rowsPerPlane = dimensions.length > 1 ? ( int ) dimensions[ 1 ] : 1;
+		final int width = mask.m_width;
+		final int wordsPerRow = mask.m_wordsPerRow;
+		final long[] words = mask.m_words;
+
+		SharedThreadPool.forRanges( mask.m_numRows, 64, service, new SharedThreadPool.Range()
+		{
+			@Override
+			public void run( final long fromRow, final long toRow )
+			{
+				final int from = ( int ) fromRow;
+				final int to = ( int ) toRow;
+				if ( planes != null )
+				{
+					for ( int r = from; r < to; ++r )
+					{
+						final int[] data = planes[ planes.length == 1 ? 0 : r / rowsPerPlane ];
+						final long offset = ( long ) ( planes.length == 1 ? r : r % rowsPerPlane ) * width;
+						for ( int w = 0; w < wordsPerRow; ++w )
+							words[ r * wordsPerRow + w ] = readBits( data, offset + 64L * w, Math.min( 64, width - 64 * w ) );
+					}
+				}
+				else
+				{
+					final RandomAccess< BitType > access = img.randomAccess();
+					final long[] pos = new long[ dimensions.length ];
+					for ( int r = from; r < to; ++r )
+					{
+						rowPosition( r, img, pos );
+						access.setPosition( pos );
+						final int base = r * wordsPerRow;
+						for ( int x = 0; x < width; ++x )
+						{
+							if ( x > 0 )
+								access.fwd( 0 );
+							if ( access.get().get() )
+								words[ base + ( x >>> 6 ) ] |= 1L << x;
+						}
+					}
+				}
+			}
+		} );
+		return mask;
+	}
+
+	/**
+	 * Write the mask into an image of the same dimensions.
+	 * 
+	 * @param service
+	 *            service to run on, the {@link SharedThreadPool} if
+	 *            {@code null}.
+	 */
+	public void write( final RandomAccessibleInterval< BitType > img, final ExecutorService service )
+	{
+		for ( int d = 0; d < m_dimensions.length; ++d )
+			if ( img.dimension( d ) != m_dimensions[ d ] )
+				throw new IllegalArgumentException( "Image and mask must have the same dimensions." );
+		final int[][] planes = planes( img );
+		final int rowsPerPlane = m_dimensions.length > 1 ? ( int ) m_dimensions[ 1 ] : 1;
+
+		SharedThreadPool.forRanges( m_numRows, 64, service, new SharedThreadPool.Range()
+		{
+			@Override
+			public void run( final long fromRow, final long toRow )
+			{
+				final int from = ( int ) fromRow;
+				final int to = ( int ) toRow;
+				if ( planes != null )
+				{
+					for ( int r = from; r < to; ++r )
+					{
+						final int[] data = planes[ planes.length == 1 ? 0 : r / rowsPerPlane ];
+						final long offset = ( long ) ( planes.length == 1 ? r : r % rowsPerPlane ) * m_width;
+						writeRow( data, offset, r * m_wordsPerRow );
+					}
+				}
+				else
+				{
+					final RandomAccess< BitType > access = img.randomAccess();
+					final long[] pos = new long[ m_dimensions.length ];
+					for ( int r = from; r < to; ++r )
+					{
+						rowPosition( r, img, pos );
+						access.setPosition( pos );
+						final int base = r * m_wordsPerRow;
+						for ( int x = 0; x < m_width; ++x )
+						{
+							if ( x > 0 )
+								access.fwd( 0 );
+							access.get().set( ( m_words[ base + ( x >>> 6 ) ] & ( 1L << x ) ) != 0 );
+						}
+					}
+				}
+			}
+		} );
+	}
+
+	/**
+	 * @return this AND other.
+	 */
+	public PackedBitMask and( final PackedBitMask other, final ExecutorService service )
+	{
+		return logic( other, 0, service );
+	}
+
+	/**
+	 * @return this OR other.
+	 */
+	public PackedBitMask or( final PackedBitMask other, final ExecutorService service )
+	{
+		return logic( other, 1, service );
+	}
+
+	/**
+	 * @return this XOR other.
+	 */
+	public PackedBitMask xor( final PackedBitMask other, final ExecutorService service )
+	{
+		return logic( other, 2, service );
+	}
+
+	/**
+	 * @return this AND NOT other.
+	 */
+	public PackedBitMask andNot( final PackedBitMask other, final ExecutorService service )
+	{
+		return logic( other, 3, service );
+	}
+
+	private PackedBitMask logic( final PackedBitMask other, final int op, final ExecutorService service )
+	{
+		if ( !Arrays.equals( m_dimensions, other.m_dimensions ) )
+			throw new IllegalArgumentException( "Masks must have the same dimensions." );
+		final PackedBitMask result = new PackedBitMask( m_dimensions );
+		final long[] a = m_words;
+		final long[] b = other.m_words;
+		final long[] c = result.m_words;
+		SharedThreadPool.forRanges( m_numRows, 64, service, new SharedThreadPool.Range()
+		{
+			@Override
+			public void run( final long fromRow, final long toRow )
+			{
+				final int from = ( int ) fromRow;
+				final int to = ( int ) toRow;
+				final int start = from * m_wordsPerRow;
+				final int end = to * m_wordsPerRow;
+				switch ( op )
+				{
+				case 0:
+					for ( int i = start; i < end; ++i )
+						c[ i ] = a[ i ] & b[ i ];
+					break;
+				case 1:
+					for ( int i = start; i < end; ++i )
+						c[ i ] = a[ i ] | b[ i ];
+					break;
+				case 2:
+					for ( int i = start; i < end; ++i )
+						c[ i ] = a[ i ] ^ b[ i ];
+					break;
+				default:
+					for ( int i = start; i < end; ++i )
+						c[ i ] = a[ i ] & ~b[ i ];
+				}
+			}
+		} );
+		return result;
+	}
+
+	/**
+	 * @return the {@link BitArray} storage of img, one array per plane, or
+	 *         {@code null} if it cannot be accessed directly.
+	 */
+	private static int[][] planes( final RandomAccessibleInterval< BitType > img )
+	{
+		if ( img instanceof ArrayImg )
+		{
+			final Object access = ( ( ArrayImg< ?, ? > ) img ).update( null );
+			if ( access instanceof BitArray )
+				return new int[][] { ( ( BitArray ) access ).getCurrentStorageArray() };
+		}
+		else if ( img instanceof PlanarImg && img.numDimensions() > 1 )
+		{
+			final PlanarImg< ?, ? > planar = ( PlanarImg< ?, ? > ) img;
+			if ( planar.getPlane( 0 ) instanceof BitArray )
+			{
+				final int[][] planes = new int[ planar.numSlices() ][];
+				for ( int i = 0; i < planes.length; ++i )
+					planes[ i ] = ( ( BitArray ) planar.getPlane( i ) ).getCurrentStorageArray();
+				return planes;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Set pos to the first pixel of row r.
+	 */
+	private static void rowPosition( final int r, final RandomAccessibleInterval< BitType > img, final long[] pos )
+	{
+		long index = r;
+		pos[ 0 ] = img.min( 0 );
+		for ( int d = 1; d < pos.length; ++d )
+		{
+			final long size = img.dimension( d );
+			pos[ d ] = index % size + img.min( d );
+			index /= size;
+		}
+	}
+
+	/**
+	 * Read count &lt;= 64 bits starting at bitIndex from 32-bit words.
+	 */
+	private static long readBits( final int[] data, final long bitIndex, final int count )
+	{
+		int i = ( int ) ( bitIndex >>> 5 );
+		int have = 32 - ( int ) ( bitIndex & 31 );
+		long v = ( data[ i ] & 0xffffffffL ) >>> ( 32 - have );
+		while ( have < count )
+		{
+			v |= ( data[ ++i ] & 0xffffffffL ) << have;
+			have += 32;
+		}
+		return count == 64 ? v : v & ( ( 1L << count ) - 1 );
+	}
+
+	/**
+	 * Write one row into 32-bit words starting at bitOffset. Only the first and
+	 * last word may be shared with neighboring rows, which are written by
+	 * other threads, so only these are synchronized.
+	 */
+	private void writeRow( final int[] data, final long bitOffset, final int base )
+	{
+		final int first = ( int ) ( bitOffset >>> 5 );
+		final int last = ( int ) ( ( bitOffset + m_width - 1 ) >>> 5 );
+		for ( int j = first; j <= last; ++j )
+		{
+			// row bits covered by data[ j ]
+			final long lo = Math.max( 32L * j, bitOffset );
+			final long hi = Math.min( 32L * j + 32, bitOffset + m_width );
+			final int count = ( int ) ( hi - lo );
+			final int shift = ( int ) ( lo - 32L * j );
+			final int bits = ( int ) rowBits( base, ( int ) ( lo - bitOffset ), count ) << shift;
+			if ( count == 32 )
+				data[ j ] = bits;
+			else
+			{
+				final int mask = ( ( 1 << count ) - 1 ) << shift;
+				synchronized ( data )
+				{
+					data[ j ] = ( data[ j ] & ~mask ) | bits;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read count &lt;= 32 bits starting at x from the row starting at word
+	 * base.
+	 */
+	private long rowBits( final int base, final int x, final int count )
+	{
+		final int w = base + ( x >>> 6 );
+		final int shift = x & 63;
+		long v = m_words[ w ] >>> shift;
+		if ( shift + count > 64 )
+			v |= m_words[ w + 1 ] << ( 64 - shift );
+		return v & ( ( 1L << count ) - 1 );
+	}
+}
@@ -0,0 +1,524 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.ops.parse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.ops.operation.UnaryOperation;
+import net.imglib2.ops.operation.real.unary.RealAbs;
+import net.imglib2.ops.operation.real.unary.RealCeil;
+import net.imglib2.ops.operation.real.unary.RealCos;
+import net.imglib2.ops.operation.real.unary.RealExp;
+import net.imglib2.ops.operation.real.unary.RealFloor;
+import net.imglib2.ops.operation.real.unary.RealLog;
+import net.imglib2.ops.operation.real.unary.RealRound;
+import net.imglib2.ops.operation.real.unary.RealSignum;
+import net.imglib2.ops.operation.real.unary.RealSin;
+import net.imglib2.ops.operation.real.unary.RealSqr;
+import net.imglib2.ops.operation.real.unary.RealSqrt;
+import net.imglib2.ops.operation.real.unary.RealTan;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+
+/**
+ * An equation that has been lowered from a tree of nested
+ * {@link net.imglib2.ops.function.Function}s into a flat postfix program.
+ * The program runs on a preallocated operand stack, so evaluating it does not
+ * allocate and does not make a virtual call per node. It can be evaluated at a
+ * single point or along a whole line of points, in which case every
+ * instruction is applied to the full line before the next one runs.
+ * <p>
+ * Constant subexpressions are folded when the program is built. The common
+ * unary functions (abs, sqrt, log, etc.) are evaluated inline. All other
+ * functions call their original operation. The results are identical to those
+ * of the function tree built by {@link RealEquationFunctionParser#parse}.
+ * <p>
+ * A CompiledEquation keeps evaluation state and is not thread safe. Use
+ * {@link #copy()} to get an independent instance for each thread.
+ */
+public class CompiledEquation {
+
+	// -- opcodes --
+
+	static final int CONST = 0;
+	static final int COORD = 1;
+	static final int IMG = 2;
+	static final int DIST = 3;
+	static final int ANGLE = 4;
+	static final int CALL = 5;
+	static final int NEG = 6;
+	static final int ADD = 7;
+	static final int SUB = 8;
+	static final int MUL = 9;
+	static final int DIV = 10;
+	static final int MOD = 11;
+	static final int POW = 12;
+	static final int MIN = 13;
+	static final int MAX = 14;
+	static final int ABS = 15;
+	static final int SQRT = 16;
+	static final int SQR = 17;
+	static final int EXP = 18;
+	static final int LOG = 19;
+	static final int SIN = 20;
+	static final int COS = 21;
+	static final int TAN = 22;
+	static final int FLOOR = 23;
+	static final int CEIL = 24;
+	static final int ROUND = 25;
+	static final int SIGNUM = 26;
+
+	// -- instance variables --
+
+	private final int[] opcodes;
+	private final int[] args1;
+	private final int[] args2;
+	private final double[] values;
+	private final List<UnaryOperation<DoubleType,DoubleType>> calls;
+	private final double[] center;
+	private final Img<? extends RealType<?>> img;
+	private final RandomAccess<? extends RealType<?>> accessor;
+	private final int maxDepth;
+	private final double[] stack;
+	private final double[][] slots;
+	private double[][] lines;
+	private final DoubleType callInput;
+	private final DoubleType callOutput;
+
+	// -- constructor --
+
+	private CompiledEquation(int[] opcodes, int[] args1, int[] args2,
+		double[] values, List<UnaryOperation<DoubleType,DoubleType>> calls,
+		double[] center, Img<? extends RealType<?>> img, int maxDepth)
+	{
+		this.opcodes = opcodes;
+		this.args1 = args1;
+		this.args2 = args2;
+		this.values = values;
+		this.calls = calls;
+		this.center = center;
+		this.img = img;
+		this.accessor = (img == null) ? null : img.randomAccess();
+		this.maxDepth = maxDepth;
+		this.stack = new double[maxDepth];
+		this.slots = new double[maxDepth][];
+		this.lines = new double[maxDepth][0];
+		this.callInput = new DoubleType();
+		this.callOutput = new DoubleType();
+	}
+
+	// -- public interface --
+
+	/**
+	 * Evaluates the equation at the given point.
+	 */
+	public double evaluate(long[] point) {
+		final double[] s = stack;
+		int sp = -1;
+		for (int pc = 0; pc < opcodes.length; pc++) {
+			final int op = opcodes[pc];
+			switch (op) {
+				case CONST:
+					s[++sp] = values[pc];
+					break;
+				case COORD:
+					s[++sp] = point[args1[pc]];
+					break;
+				case IMG:
+					accessor.setPosition(point);
+					s[++sp] = accessor.get().getRealDouble();
+					break;
+				case DIST:
+					s[++sp] = distance(point);
+					break;
+				case ANGLE:
+					s[++sp] = Math.atan2(point[args2[pc]], point[args1[pc]]);
+					break;
+				case CALL:
+					s[sp] = call(args1[pc], s[sp]);
+					break;
+				case NEG:
+					s[sp] = -s[sp];
+					break;
+				default:
+					if (op <= MAX) {
+						sp--;
+						s[sp] = binary(op, s[sp], s[sp + 1]);
+					}
+					else s[sp] = unary(op, s[sp]);
+			}
+		}
+		return s[0];
+	}
+
+	/**
+	 * Evaluates the equation at {@code length} consecutive points along
+	 * dimension {@code dim}, starting at {@code start}. The value at
+	 * {@code start + i} along {@code dim} is written to {@code output[i]}.
+	 * The start position is not modified.
+	 */
+	public void evaluateLine(long[] start, int dim, int length, double[] output) {
+		if (output.length < length)
+			throw new IllegalArgumentException("Output buffer is too small");
+		if (lines.length > 1 && lines[1].length < length) {
+			for (int i = 1; i < maxDepth; i++)
+				lines[i] = new double[length];
+		}
+		slots[0] = output;
+		for (int i = 1; i < maxDepth; i++)
+			slots[i] = lines[i];
+		int sp = -1;
+		for (int pc = 0; pc < opcodes.length; pc++) {
+			final int op = opcodes[pc];
+			switch (op) {
+				case CONST:
+					Arrays.fill(slots[++sp], 0, length, values[pc]);
+					break;
+				case COORD:
+					coordinates(start, dim, args1[pc], length, slots[++sp]);
+					break;
+				case IMG:
+					samples(start, dim, length, slots[++sp]);
+					break;
+				case DIST:
+					distances(start, dim, length, slots[++sp]);
+					break;
+				case ANGLE:
+					angles(start, dim, args1[pc], args2[pc], length, slots[++sp]);
+					break;
+				case CALL: {
+					final double[] a = slots[sp];
+					final int index = args1[pc];
+					for (int i = 0; i < length; i++)
+						a[i] = call(index, a[i]);
+					break;
+				}
+				case NEG: {
+					final double[] a = slots[sp];
+					for (int i = 0; i < length; i++)
+						a[i] = -a[i];
+					break;
+				}
+				default:
+					if (op <= MAX) {
+						sp--;
+						binary(op, slots[sp], slots[sp + 1], length);
+					}
+					else unary(op, slots[sp], length);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of instructions in the program.
+	 */
+	public int size() {
+		return opcodes.length;
+	}
+
+	/**
+	 * Returns an independent evaluator for the same program.
+	 */
+	public CompiledEquation copy() {
+		final List<UnaryOperation<DoubleType,DoubleType>> callsCopy =
+			new ArrayList<UnaryOperation<DoubleType,DoubleType>>(calls.size());
+		for (final UnaryOperation<DoubleType,DoubleType> op : calls)
+			callsCopy.add(op.copy());
+		return new CompiledEquation(opcodes, args1, args2, values, callsCopy,
+			center, img, maxDepth);
+	}
+
+	// -- scalar helpers --
+
+	private double distance(long[] point) {
+		double sum = 0;
+		for (int i = 0; i < point.length; i++) {
+			double delta = point[i] - center[i];
+			sum += delta * delta;
+		}
+		return Math.sqrt(sum);
+	}
+
+	private double call(int index, double value) {
+		callInput.setReal(value);
+		calls.get(index).compute(callInput, callOutput);
+		return callOutput.getRealDouble();
+	}
+
+	static double binary(int op, double a, double b) {
+		switch (op) {
+			case ADD: return a + b;
+			case SUB: return a - b;
+			case MUL: return a * b;
+			case DIV: return a / b;
+			case MOD: return a % b;
+			case POW: return Math.pow(a, b);
+			case MIN: return (a < b) ? a : b;
+			case MAX: return (a > b) ? a : b;
+			default: throw new IllegalStateException("Unknown opcode " + op);
+		}
+	}
+
+	static double unary(int op, double x) {
+		switch (op) {
+			case ABS: return Math.abs(x);
+			case SQRT: return Math.sqrt(x);
+			case SQR: return x * x;
+			case EXP: return Math.exp(x);
+			case LOG: return Math.log(x);
+			case SIN: return Math.sin(x);
+			case COS: return Math.cos(x);
+			case TAN: return Math.tan(x);
+			case FLOOR: return Math.floor(x);
+			case CEIL: return Math.ceil(x);
+			case ROUND: return Math.round(x);
+			case SIGNUM: return Math.signum(x);
+			default: throw new IllegalStateException("Unknown opcode " + op);
+		}
+	}
+
+	/**
+	 * Returns the opcode that evaluates the given operation inline, or
+	 * {@link #CALL} if the operation must be called.
+	 */
+	static int opcode(UnaryOperation<DoubleType,DoubleType> op) {
+		final Class<?> c = op.getClass();
+		if (c == RealAbs.class) return ABS;
+		if (c == RealSqrt.class) return SQRT;
+		if (c == RealSqr.class) return SQR;
+		if (c == RealExp.class) return EXP;
+		if (c == RealLog.class) return LOG;
+		if (c == RealSin.class) return SIN;
+		if (c == RealCos.class) return COS;
+		if (c == RealTan.class) return TAN;
+		if (c == RealFloor.class) return FLOOR;
+		if (c == RealCeil.class) return CEIL;
+		if (c == RealRound.class) return ROUND;
+		if (c == RealSignum.class) return SIGNUM;
+		return CALL;
+	}
+
+	// -- line helpers --
+
+	private static void coordinates(long[] start, int dim, int axis, int length,
+		double[] a)
+	{
+		if (axis == dim) {
+			final long p = start[dim];
+			for (int i = 0; i < length; i++)
+				a[i] = p + i;
+		}
+		else Arrays.fill(a, 0, length, start[axis]);
+	}
+
+	private void samples(long[] start, int dim, int length, double[] a) {
+		accessor.setPosition(start);
+		for (int i = 0; i < length; i++) {
+			a[i] = accessor.get().getRealDouble();
+			accessor.fwd(dim);
+		}
+	}
+
+	private void distances(long[] start, int dim, int length, double[] a) {
+		// accumulate in the same order as distance(long[]) so that both give
+		// bit-identical results
+		double before = 0;
+		for (int k = 0; k < dim; k++) {
+			double delta = start[k] - center[k];
+			before += delta * delta;
+		}
+		final int n = start.length;
+		for (int i = 0; i < length; i++) {
+			double delta = (start[dim] + i) - center[dim];
+			double sum = before + delta * delta;
+			for (int k = dim + 1; k < n; k++) {
+				double d = start[k] - center[k];
+				sum += d * d;
+			}
+			a[i] = Math.sqrt(sum);
+		}
+	}
+
+	private static void angles(long[] start, int dim, int axisU, int axisV,
+		int length, double[] a)
+	{
+		if (axisU != dim && axisV != dim) {
+			Arrays.fill(a, 0, length, Math.atan2(start[axisV], start[axisU]));
+			return;
+		}
+		for (int i = 0; i < length; i++) {
+			final double u = (axisU == dim) ? start[dim] + i : start[axisU];
+			final double v = (axisV == dim) ? start[dim] + i : start[axisV];
+			a[i] = Math.atan2(v, u);
+		}
+	}
+
+	private static void binary(int op, double[] a, double[] b, int length) {
+		switch (op) {
+			case ADD:
+				for (int i = 0; i < length; i++) a[i] = a[i] + b[i];
+				break;
+			case SUB:
+				for (int i = 0; i < length; i++) a[i] = a[i] - b[i];
+				break;
+			case MUL:
+				for (int i = 0; i < length; i++) a[i] = a[i] * b[i];
+				break;
+			case DIV:
+				for (int i = 0; i < length; i++) a[i] = a[i] / b[i];
+				break;
+			default:
+				for (int i = 0; i < length; i++) a[i] = binary(op, a[i], b[i]);
+		}
+	}
+
+	private static void unary(int op, double[] a, int length) {
+		switch (op) {
+			case ABS:
+				for (int i = 0; i < length; i++) a[i] = Math.abs(a[i]);
+				break;
+			case SQRT:
+				for (int i = 0; i < length; i++) a[i] = Math.sqrt(a[i]);
+				break;
+			case SQR:
+				for (int i = 0; i < length; i++) a[i] = a[i] * a[i];
+				break;
+			default:
+				for (int i = 0; i < length; i++) a[i] = unary(op, a[i]);
+		}
+	}
+
+	// -- builder --
+
+	/**
+	 * Collects the instructions emitted by {@link EquationParser} in postfix
+	 * order, folding constant subexpressions as they appear.
+	 */
+	static class Builder {
+
+		private final Img<? extends RealType<?>> img;
+		private int[] opcodes = new int[16];
+		private int[] args1 = new int[16];
+		private int[] args2 = new int[16];
+		private double[] values = new double[16];
+		private int size;
+		private int depth;
+		private int maxDepth;
+		private double[] center;
+		private final List<UnaryOperation<DoubleType,DoubleType>> calls =
+			new ArrayList<UnaryOperation<DoubleType,DoubleType>>();
+
+		Builder(Img<? extends RealType<?>> img) {
+			this.img = img;
+		}
+
+		void constant(double value) {
+			push(CONST, 0, 0, value);
+		}
+
+		void coordinate(int axis) {
+			push(COORD, axis, 0, 0);
+		}
+
+		void image() {
+			push(IMG, 0, 0, 0);
+		}
+
+		void distanceFromCenter(double[] ctr) {
+			center = ctr.clone();
+			push(DIST, 0, 0, 0);
+		}
+
+		void angle(int axisU, int axisV) {
+			push(ANGLE, axisU, axisV, 0);
+		}
+
+		void negate() {
+			if (opcodes[size-1] == CONST) values[size-1] = -values[size-1];
+			else emit(NEG, 0, 0, 0);
+		}
+
+		void binary(int op) {
+			depth--;
+			if (opcodes[size-1] == CONST && opcodes[size-2] == CONST) {
+				size--;
+				values[size-1] =
+					CompiledEquation.binary(op, values[size-1], values[size]);
+			}
+			else emit(op, 0, 0, 0);
+		}
+
+		void call(UnaryOperation<DoubleType,DoubleType> op) {
+			final int code = opcode(op);
+			if (code == CALL) {
+				// calls may have state (e.g. random numbers) so never fold them
+				calls.add(op);
+				emit(CALL, calls.size() - 1, 0, 0);
+			}
+			else if (opcodes[size-1] == CONST)
+				values[size-1] = unary(code, values[size-1]);
+			else emit(code, 0, 0, 0);
+		}
+
+		CompiledEquation build() {
+			return new CompiledEquation(Arrays.copyOf(opcodes, size),
+				Arrays.copyOf(args1, size), Arrays.copyOf(args2, size),
+				Arrays.copyOf(values, size), calls, center, img, maxDepth);
+		}
+
+		private void push(int op, int arg1, int arg2, double value) {
+			emit(op, arg1, arg2, value);
+			depth++;
+			maxDepth = Math.max(maxDepth, depth);
+		}
+
+		private void emit(int op, int arg1, int arg2, double value) {
+			if (size == opcodes.length) {
+				opcodes = Arrays.copyOf(opcodes, 2 * size);
+				args1 = Arrays.copyOf(args1, 2 * size);
+				args2 = Arrays.copyOf(args2, 2 * size);
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			opcodes[size] = op;
+			args1[size] = arg1;
+			args2[size] = arg2;
+			values[size] = value;
+			size++;
+		}
+	}
+}
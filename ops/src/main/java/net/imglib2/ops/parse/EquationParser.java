@@ -124,10 +124,22 @@ public class EquationParser<T extends RealType<T>> {
 	
 	private Map<String,Integer> varMap;
 	private Img<T> img;
+	private CompiledEquation.Builder program;
 	
 	public EquationParser(Map<String,Integer> varMap, Img<T> img) {
+		this(varMap, img, null);
+	}
+	
+	/**
+	 * Creates a parser that additionally emits each parsed equation as a flat
+	 * program into the given builder (see {@link CompiledEquation}).
+	 */
+	EquationParser(Map<String,Integer> varMap, Img<T> img,
+		CompiledEquation.Builder program)
+	{
 		this.varMap = varMap;
 		this.img = img;
+		this.program = program;
 	}
 	
 	/*
@@ -148,6 +160,7 @@ public class EquationParser<T extends RealType<T>> {
 					status1.function, status2.function,
 					new RealAdd<DoubleType,DoubleType,DoubleType>(),
 					new DoubleType());
+			if (program != null) program.binary(CompiledEquation.ADD);
 		}
 		else if (ParseUtils.match(Minus.class, tokens, status1.tokenNumber)) {
 			status2 = equation(tokens, status1.tokenNumber+1);
@@ -157,6 +170,7 @@ public class EquationParser<T extends RealType<T>> {
 					status1.function, status2.function,
 					new RealSubtract<DoubleType,DoubleType,DoubleType>(),
 					new DoubleType());
+			if (program != null) program.binary(CompiledEquation.SUB);
 		}
 		return status2;
 	}
@@ -180,6 +194,7 @@ public class EquationParser<T extends RealType<T>> {
 					status1.function, status2.function,
 					new RealMultiply<DoubleType,DoubleType,DoubleType>(),
 					new DoubleType());
+			if (program != null) program.binary(CompiledEquation.MUL);
 		}
 		else if (ParseUtils.match(Divide.class, tokens, status1.tokenNumber)) {
 			status2 = term(tokens, status1.tokenNumber+1);
@@ -189,6 +204,7 @@ public class EquationParser<T extends RealType<T>> {
 					status1.function, status2.function,
 					new RealDivide<DoubleType,DoubleType,DoubleType>(),
 					new DoubleType());
+			if (program != null) program.binary(CompiledEquation.DIV);
 		}
 		else if (ParseUtils.match(Mod.class, tokens, status1.tokenNumber)) {
 			status2 = term(tokens, status1.tokenNumber+1);
@@ -198,6 +214,7 @@ public class EquationParser<T extends RealType<T>> {
 					status1.function, status2.function,
 					new RealMod<DoubleType,DoubleType,DoubleType>(),
 					new DoubleType());
+			if (program != null) program.binary(CompiledEquation.MOD);
 		}
 		return status2;
 	}
@@ -219,6 +236,7 @@ public class EquationParser<T extends RealType<T>> {
 					status1.function, status2.function,
 					new RealPower<DoubleType,DoubleType,DoubleType>(),
 					new DoubleType());
+			if (program != null) program.binary(CompiledEquation.POW);
 		}
 		return status2;
 	}
@@ -243,6 +261,7 @@ public class EquationParser<T extends RealType<T>> {
 					constant, status.function,
 					new RealMultiply<DoubleType,DoubleType,DoubleType>(),
 					new DoubleType());
+			if (program != null) program.negate();
 			return status;
 		}
 		else
@@ -266,6 +285,7 @@ public class EquationParser<T extends RealType<T>> {
 			ParseStatus status = new ParseStatus();
 			status.tokenNumber = pos + 1;
 			status.function = new RealIndexFunction(index);
+			if (program != null) program.coordinate(index);
 			return status;
 		}
 		else if (ParseUtils.match(FunctionCall.class, tokens, pos)) {
@@ -283,6 +303,7 @@ public class EquationParser<T extends RealType<T>> {
 			status.function =
 				new GeneralUnaryFunction<long[], DoubleType, DoubleType>(
 					status.function, funcCall.getOp(), new DoubleType());	
+			if (program != null) program.call(funcCall.getOp());
 			status.tokenNumber++;
 			return status;
 		}
@@ -294,6 +315,7 @@ public class EquationParser<T extends RealType<T>> {
 			status.tokenNumber = pos+1;
 			status.function =
 				new RealImageFunction<T, DoubleType>(img, new DoubleType());
+			if (program != null) program.image();
 			return status;
 		}
 		else if (ParseUtils.match(TypeBoundReference.class, tokens, pos)) {
@@ -308,6 +330,7 @@ public class EquationParser<T extends RealType<T>> {
 			status.tokenNumber = pos+1;
 			status.function =
 				new RealConstantFunction<long[], DoubleType>(new DoubleType(constant));
+			if (program != null) program.constant(constant);
 			return status;
 		}
 		else if (ParseUtils.match(DimensionReference.class, tokens, pos)) {
@@ -333,6 +356,7 @@ public class EquationParser<T extends RealType<T>> {
 			status.tokenNumber = pos+4;
 			status.function =
 				new RealConstantFunction<long[], DoubleType>(new DoubleType(constant));
+			if (program != null) program.constant(constant);
 			return status;
 		}
 		else if (ParseUtils.match(DistanceFromCenterReference.class, tokens, pos)) {
@@ -352,6 +376,7 @@ public class EquationParser<T extends RealType<T>> {
 			ParseStatus status = new ParseStatus();
 			status.tokenNumber = pos+1;
 			status.function =	new RealDistanceFromPointFunction<DoubleType>(ctr, new DoubleType());
+			if (program != null) program.distanceFromCenter(ctr);
 			return status;
 		}
 		else if (ParseUtils.match(AngleReference.class, tokens, pos)) {
@@ -378,6 +403,7 @@ public class EquationParser<T extends RealType<T>> {
 			ParseStatus status = new ParseStatus();
 			status.tokenNumber = pos+6;
 			status.function =	new RealAngleFromOriginFunction<DoubleType>(axis1, axis2, new DoubleType());
+			if (program != null) program.angle(axis1, axis2);
 			return status;
 		}
 		else if (ParseUtils.match(Min.class, tokens, pos) ||
@@ -402,6 +428,9 @@ public class EquationParser<T extends RealType<T>> {
 			status.function =
 					new GeneralBinaryFunction<long[],DoubleType,DoubleType,DoubleType>(
 							status1.function, status2.function, op, new DoubleType());
+			if (program != null) program.binary(
+				ParseUtils.match(Min.class, tokens, pos) ?
+					CompiledEquation.MIN : CompiledEquation.MAX);
 			return status;
 		}
 		else if (ParseUtils.match(OpenParen.class, tokens, pos)) {
@@ -427,6 +456,7 @@ public class EquationParser<T extends RealType<T>> {
 			status.function =
 				new RealConstantFunction<long[], DoubleType>(new DoubleType(r
 					.getValue()));
+			if (program != null) program.constant(r.getValue());
 			status.tokenNumber = pos + 1;
 			return status;
 		}
@@ -436,6 +466,7 @@ public class EquationParser<T extends RealType<T>> {
 			status.function =
 				new RealConstantFunction<long[], DoubleType>(new DoubleType(i
 					.getValue()));
+			if (program != null) program.constant(i.getValue());
 			status.tokenNumber = pos + 1;
 			return status;
 		}
@@ -80,16 +80,37 @@ public class RealEquationFunctionParser {
 	
 	public Tuple2<Function<long[],DoubleType>,String>
 		parse(String specification, Img<? extends RealType<?>> img)
+	{
+		ParseStatus result = run(specification, img, null);
+		return new Tuple2<Function<long[],DoubleType>,String>(result.function, result.errMsg);
+	}
+	
+	/**
+	 * Parses an equation string like {@link #parse} does but returns it as a
+	 * {@link CompiledEquation}. A compiled equation evaluates to the same values
+	 * as the parsed function without walking a tree of functions and can
+	 * evaluate whole lines of points at once.
+	 */
+	public Tuple2<CompiledEquation,String>
+		compile(String specification, Img<? extends RealType<?>> img)
+	{
+		CompiledEquation.Builder program = new CompiledEquation.Builder(img);
+		ParseStatus result = run(specification, img, program);
+		CompiledEquation eqn = (result.errMsg == null) ? program.build() : null;
+		return new Tuple2<CompiledEquation,String>(eqn, result.errMsg);
+	}
+	
+	private ParseStatus run(String specification,
+		Img<? extends RealType<?>> img, CompiledEquation.Builder program)
 	{
 		varMap = new HashMap<String,Integer>();
-		eqnParser = new EquationParser(varMap, img);
+		eqnParser = new EquationParser(varMap, img, program);
 		Lexer lexer = new Lexer();
 		ParseStatus lexResult = lexer.tokenize(specification, varMap);
 		if (lexResult.errMsg != null) {
-			return new Tuple2<Function<long[],DoubleType>,String>(lexResult.function,lexResult.errMsg);
+			return lexResult;
 		}
-		ParseStatus parseResult = constructFunction(lexResult.tokens);
-		return new Tuple2<Function<long[],DoubleType>,String>(parseResult.function, parseResult.errMsg);
+		return constructFunction(lexResult.tokens);
 	}
 	
 	private ParseStatus constructFunction(List<Token> tokens) {
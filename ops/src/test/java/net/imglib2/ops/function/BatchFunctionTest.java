@@ -0,0 +1,260 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.ops.function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.ops.function.general.PointwiseBatchFunction;
+import net.imglib2.ops.function.real.RealBlockSampler;
+import net.imglib2.ops.function.real.RealEquationFunction;
+import net.imglib2.ops.function.real.RealImageFunction;
+import net.imglib2.ops.function.real.RealIndexFunction;
+import net.imglib2.ops.function.real.StatCalculator;
+import net.imglib2.ops.img.ImageAssignment;
+import net.imglib2.ops.input.PointInputIteratorFactory;
+import net.imglib2.ops.pointset.GeneralPointSet;
+import net.imglib2.ops.pointset.HyperVolumePointSet;
+import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.ops.pointset.PointSetIterator;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+public class BatchFunctionTest {
+
+	@Test
+	public void testLinesMatchPoints() {
+		Img<UnsignedByteType> img = createImage(11, 6, 3);
+		List<BatchFunction<DoubleType>> funcs =
+			new ArrayList<BatchFunction<DoubleType>>();
+		funcs.add(new RealImageFunction<UnsignedByteType,DoubleType>(img, new DoubleType()));
+		funcs.add(new RealIndexFunction(0));
+		funcs.add(new RealIndexFunction(2));
+		funcs.add(new RealEquationFunction<DoubleType>("[x,y,z], x * y - z", new DoubleType()));
+		funcs.add(new PointwiseBatchFunction<DoubleType>(
+			new RealImageFunction<UnsignedByteType,DoubleType>(img, new DoubleType())));
+		long[] start = new long[] {2, 1, 2};
+		long[] pos = new long[3];
+		double[] line = new double[11];
+		DoubleType value = new DoubleType();
+		for (BatchFunction<DoubleType> func : funcs) {
+			for (int d = 0; d < 3; d++) {
+				int length = (int) (img.dimension(d) - start[d]);
+				func.computeLine(start, d, length, line);
+				for (int i = 0; i < length; i++) {
+					System.arraycopy(start, 0, pos, 0, 3);
+					pos[d] += i;
+					func.compute(pos, value);
+					assertEquals(value.get(), line[i], 0);
+				}
+			}
+			assertEquals(2, start[0]);
+		}
+	}
+
+	@Test
+	public void testWrap() {
+		RealIndexFunction index = new RealIndexFunction(1);
+		assertSame(index, PointwiseBatchFunction.wrap(index));
+	}
+
+	@Test
+	public void testBlockSampler() {
+		Img<UnsignedByteType> img = createImage(20, 5);
+		RealImageFunction<UnsignedByteType,DoubleType> func =
+			new RealImageFunction<UnsignedByteType,DoubleType>(img, new DoubleType());
+		List<long[]> pts = new ArrayList<long[]>();
+		for (int x = 3; x < 17; x++)
+			pts.add(new long[] {x, 1});
+		pts.add(new long[] {5, 4});
+		pts.add(new long[] {4, 4});
+		for (int x = 0; x < 20; x += 2)
+			pts.add(new long[] {x, 2});
+		PointSet[] regions = {
+			new HyperVolumePointSet(new long[] {1, 0}, new long[] {18, 4}),
+			new GeneralPointSet(new long[2], pts)
+		};
+		DoubleType value = new DoubleType();
+		for (PointSet region : regions) {
+			for (int blockSize : new int[] {1, 3, 7, 64}) {
+				RealBlockSampler<DoubleType> sampler =
+					new RealBlockSampler<DoubleType>(func, region);
+				PointSetIterator iter = region.iterator();
+				double[] block = new double[blockSize];
+				int n;
+				long total = 0;
+				while ((n = sampler.next(block)) > 0) {
+					assertTrue(n <= blockSize);
+					for (int i = 0; i < n; i++) {
+						assertTrue(iter.hasNext());
+						func.compute(iter.next(), value);
+						assertEquals(value.get(), block[i], 0);
+					}
+					total += n;
+				}
+				assertEquals(region.size(), total);
+			}
+		}
+	}
+
+	@Test
+	public void testStatCalculator() {
+		Img<UnsignedByteType> img = createImage(40, 30);
+		PointSet region = new HyperVolumePointSet(new long[] {3, 2}, new long[] {36, 21});
+		RealImageFunction<UnsignedByteType,DoubleType> batch =
+			new RealImageFunction<UnsignedByteType,DoubleType>(img, new DoubleType());
+		StatCalculator<DoubleType> calc =
+			new StatCalculator<DoubleType>(batch, region);
+		double sum = 0;
+		double min = Double.POSITIVE_INFINITY;
+		long count = 0;
+		DoubleType value = new DoubleType();
+		PointSetIterator iter = region.iterator();
+		while (iter.hasNext()) {
+			batch.compute(iter.next(), value);
+			sum += value.get();
+			min = Math.min(min, value.get());
+			count++;
+		}
+		assertEquals(sum, calc.sum(), 0);
+		assertEquals(sum / count, calc.arithmeticMean(), 0);
+		assertEquals(min, calc.min(), 0);
+	}
+
+	@Test
+	public void testImageAssignment() {
+		Img<DoubleType> output =
+			new ArrayImgFactory<DoubleType>().create(new long[] {300, 70}, new DoubleType());
+		long[] origin = new long[] {10, 5};
+		long[] span = new long[] {250, 60};
+		RealEquationFunction<DoubleType> func =
+			new RealEquationFunction<DoubleType>("[x,y], x + 1000 * y", new DoubleType());
+		new ImageAssignment<DoubleType,DoubleType,long[]>(output, origin, span,
+			func, null, new PointInputIteratorFactory()).assign();
+		RandomAccess<DoubleType> ra = output.randomAccess();
+		long[] pos = new long[2];
+		for (pos[1] = 0; pos[1] < output.dimension(1); pos[1]++) {
+			for (pos[0] = 0; pos[0] < output.dimension(0); pos[0]++) {
+				ra.setPosition(pos);
+				boolean inside = pos[0] >= 10 && pos[0] < 260 && pos[1] >= 5 && pos[1] < 65;
+				double expected = inside ? pos[0] + 1000 * pos[1] : 0;
+				assertEquals(expected, ra.get().get(), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testNarrowingOutputType() {
+		Img<FloatType> img =
+			new ArrayImgFactory<FloatType>().create(new long[] {50, 20}, new FloatType());
+		Random rnd = new Random(5);
+		for (FloatType t : img)
+			t.set(rnd.nextFloat() * 1000 - 200);
+		List<BatchFunction<UnsignedByteType>> funcs =
+			new ArrayList<BatchFunction<UnsignedByteType>>();
+		funcs.add(new RealImageFunction<FloatType,UnsignedByteType>(img, new UnsignedByteType()));
+		funcs.add(new RealEquationFunction<UnsignedByteType>("[x,y], x*300 + y/3", new UnsignedByteType()));
+		PointSet region = new HyperVolumePointSet(new long[] {0, 0}, new long[] {49, 19});
+		for (BatchFunction<UnsignedByteType> func : funcs) {
+			// lines match points
+			long[] start = new long[] {3, 4};
+			double[] line = new double[47];
+			func.computeLine(start, 0, 47, line);
+			UnsignedByteType value = func.createOutput();
+			for (int i = 0; i < 47; i++) {
+				func.compute(new long[] {3 + i, 4}, value);
+				assertEquals(value.getRealDouble(), line[i], 0);
+			}
+			// statistics match per point evaluation
+			double sum = 0;
+			double max = Double.NEGATIVE_INFINITY;
+			PointSetIterator iter = region.iterator();
+			while (iter.hasNext()) {
+				func.compute(iter.next(), value);
+				sum += value.getRealDouble();
+				max = Math.max(max, value.getRealDouble());
+			}
+			StatCalculator<UnsignedByteType> calc =
+				new StatCalculator<UnsignedByteType>(func, region);
+			assertEquals(sum, calc.sum(), 0);
+			assertEquals(max, calc.max(), 0);
+			// assignment matches per point evaluation
+			Img<FloatType> output =
+				new ArrayImgFactory<FloatType>().create(new long[] {50, 20}, new FloatType());
+			new ImageAssignment<FloatType,UnsignedByteType,long[]>(output,
+				new long[2], new long[] {50, 20}, func, null,
+				new PointInputIteratorFactory()).assign();
+			assertMatches(func, output);
+		}
+	}
+
+	private static <T extends RealType<T>> void assertMatches(
+		Function<long[],T> func, Img<FloatType> output)
+	{
+		T value = func.createOutput();
+		FloatType expected = new FloatType();
+		Cursor<FloatType> c = output.localizingCursor();
+		long[] pos = new long[output.numDimensions()];
+		while (c.hasNext()) {
+			c.fwd();
+			c.localize(pos);
+			func.compute(pos, value);
+			expected.setReal(value.getRealDouble());
+			assertEquals(expected.get(), c.get().get(), 0);
+		}
+	}
+
+	private static Img<UnsignedByteType> createImage(long... dims) {
+		Img<UnsignedByteType> img =
+			new ArrayImgFactory<UnsignedByteType>().create(dims, new UnsignedByteType());
+		Random rnd = new Random(17);
+		Cursor<UnsignedByteType> c = img.cursor();
+		while (c.hasNext())
+			c.next().set(rnd.nextInt(256));
+		return img;
+	}
+}
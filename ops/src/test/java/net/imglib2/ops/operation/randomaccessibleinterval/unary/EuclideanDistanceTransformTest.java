@@ -0,0 +1,209 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.ops.operation.randomaccessibleinterval.unary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.IntervalIndexer;
+
+import org.junit.Test;
+
+public class EuclideanDistanceTransformTest
+{
+	final long[] dimensions = new long[] { 23, 17, 9 };
+
+	private Img< UnsignedByteType > randomMask()
+	{
+		final Img< UnsignedByteType > img = new ArrayImgFactory< UnsignedByteType >().create( dimensions, new UnsignedByteType() );
+		final Random random = new Random( 11 );
+		for ( final UnsignedByteType t : img )
+			t.set( random.nextInt( 40 ) == 0 ? 0 : 1 );
+		return img;
+	}
+
+	/**
+	 * @return positions of all pixels with value != 1.
+	 */
+	private static ArrayList< long[] > features( final Img< UnsignedByteType > img )
+	{
+		final ArrayList< long[] > features = new ArrayList< long[] >();
+		final Cursor< UnsignedByteType > c = img.localizingCursor();
+		while ( c.hasNext() )
+			if ( c.next().get() != 1 )
+				features.add( new long[] { c.getLongPosition( 0 ), c.getLongPosition( 1 ), c.getLongPosition( 2 ) } );
+		return features;
+	}
+
+	private static double distance( final long[] a, final long[] b, final double[] calibration )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.length; ++d )
+		{
+			final double diff = ( a[ d ] - b[ d ] ) * calibration[ d ];
+			sum += diff * diff;
+		}
+		return Math.sqrt( sum );
+	}
+
+	@Test
+	public void testAnisotropic()
+	{
+		final Img< UnsignedByteType > img = randomMask();
+		final ArrayList< long[] > features = features( img );
+		final double[] calibration = new double[] { 1, 0.5, 2.5 };
+		final Img< FloatType > distances = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		final Img< LongType > nearest = new ArrayImgFactory< LongType >().create( dimensions, new LongType() );
+		new EuclideanDistanceTransform< UnsignedByteType, FloatType >( calibration, null )
+		{
+			@Override
+			protected boolean isFeature( final double value )
+			{
+				return value != 1;
+			}
+		}.compute( img, distances, nearest );
+
+		final Cursor< FloatType > c = distances.localizingCursor();
+		final RandomAccess< LongType > nearestAccess = nearest.randomAccess();
+		final long[] pos = new long[ 3 ];
+		final long[] featurePos = new long[ 3 ];
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( pos );
+			double min = Double.POSITIVE_INFINITY;
+			for ( final long[] feature : features )
+				min = Math.min( min, distance( pos, feature, calibration ) );
+			assertEquals( min, c.get().get(), 1e-4 );
+
+			// the nearest feature is a feature at that distance
+			nearestAccess.setPosition( pos );
+			IntervalIndexer.indexToPosition( nearestAccess.get().get(), dimensions, featurePos );
+			assertTrue( containsPosition( features, featurePos ) );
+			assertEquals( min, distance( pos, featurePos, calibration ), 1e-4 );
+		}
+	}
+
+	private static boolean containsPosition( final ArrayList< long[] > positions, final long[] pos )
+	{
+		for ( final long[] p : positions )
+			if ( p[ 0 ] == pos[ 0 ] && p[ 1 ] == pos[ 1 ] && p[ 2 ] == pos[ 2 ] )
+				return true;
+		return false;
+	}
+
+	@Test
+	public void testDistanceMap()
+	{
+		final Img< UnsignedByteType > img = randomMask();
+		final ArrayList< long[] > features = features( img );
+		final Img< FloatType > distances = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		new DistanceMap< UnsignedByteType >().compute( img, distances );
+
+		final double[] calibration = new double[] { 1, 1, 1 };
+		final Cursor< FloatType > c = distances.localizingCursor();
+		final long[] pos = new long[ 3 ];
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( pos );
+			double min = Double.POSITIVE_INFINITY;
+			for ( final long[] feature : features )
+				min = Math.min( min, distance( pos, feature, calibration ) );
+			assertEquals( min, c.get().get(), 1e-4 );
+		}
+	}
+
+	@Test
+	public void testPagedCellImg()
+	{
+		final Img< UnsignedByteType > mask = randomMask();
+		final Img< UnsignedByteType > img = new CellImgFactory< UnsignedByteType >( 5 ).create( dimensions, new UnsignedByteType() );
+		final Cursor< UnsignedByteType > in = mask.cursor();
+		final RandomAccess< UnsignedByteType > a = img.randomAccess();
+		while ( in.hasNext() )
+		{
+			in.fwd();
+			a.setPosition( in );
+			a.get().set( in.get() );
+		}
+
+		final Img< FloatType > expected = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		final Img< LongType > expectedNearest = new ArrayImgFactory< LongType >().create( dimensions, new LongType() );
+		new EuclideanDistanceTransform< UnsignedByteType, FloatType >( null, null ).compute( mask, expected, expectedNearest );
+
+		// pages of 64 elements and cursor access
+		final Img< FloatType > distances = new CellImgFactory< FloatType >( 7 ).create( dimensions, new FloatType() );
+		final Img< LongType > nearest = new CellImgFactory< LongType >( 7 ).create( dimensions, new LongType() );
+		new EuclideanDistanceTransform< UnsignedByteType, FloatType >( null, null, 6 ).compute( img, distances, nearest );
+
+		final Cursor< FloatType > e = expected.localizingCursor();
+		final RandomAccess< FloatType > da = distances.randomAccess();
+		final RandomAccess< LongType > ea = expectedNearest.randomAccess();
+		final RandomAccess< LongType > na = nearest.randomAccess();
+		while ( e.hasNext() )
+		{
+			e.fwd();
+			da.setPosition( e );
+			ea.setPosition( e );
+			na.setPosition( e );
+			assertEquals( e.get().get(), da.get().get(), 0 );
+			assertEquals( ea.get().get(), na.get().get() );
+		}
+	}
+
+	@Test
+	public void testNoFeatures()
+	{
+		final Img< UnsignedByteType > img = new ArrayImgFactory< UnsignedByteType >().create( dimensions, new UnsignedByteType() );
+		for ( final UnsignedByteType t : img )
+			t.set( 1 );
+		final Img< FloatType > distances = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		new DistanceMap< UnsignedByteType >().compute( img, distances );
+		for ( final FloatType t : distances )
+			assertEquals( Float.POSITIVE_INFINITY, t.get(), 0 );
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.ops.operation.randomaccessibleinterval.unary.box;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.ops.operation.BinaryOperation;
+import net.imglib2.ops.operation.iterable.binary.localthresholder.LocalStatisticsThreshold;
+import net.imglib2.ops.operation.iterable.binary.localthresholder.MeanLocalThreshold;
+import net.imglib2.ops.operation.iterable.binary.localthresholder.Niblack;
+import net.imglib2.ops.operation.iterable.binary.localthresholder.Sauvola;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+public class BoxFilterTest
+{
+	final long[] dimensions = new long[] { 41, 23, 7 };
+
+	final long[] span = new long[] { 5, 3, 1 };
+
+	final Img< UnsignedByteType > img;
+
+	public BoxFilterTest()
+	{
+		img = new ArrayImgFactory< UnsignedByteType >().create( dimensions, new UnsignedByteType() );
+		final Random random = new Random( 17 );
+		for ( final UnsignedByteType t : img )
+			t.set( random.nextInt( 256 ) );
+	}
+
+	/**
+	 * @return the pixels of the box around pos, clipped to the image.
+	 */
+	private Iterator< UnsignedByteType > window( final long[] pos )
+	{
+		final long[] min = new long[ pos.length ];
+		final long[] max = new long[ pos.length ];
+		for ( int d = 0; d < pos.length; ++d )
+		{
+			min[ d ] = Math.max( 0, pos[ d ] - span[ d ] );
+			max[ d ] = Math.min( dimensions[ d ] - 1, pos[ d ] + span[ d ] );
+		}
+		return Views.iterable( Views.interval( img, min, max ) ).iterator();
+	}
+
+	@Test
+	public void testBoxFilter()
+	{
+		final Img< DoubleType > sum = new ArrayImgFactory< DoubleType >().create( dimensions, new DoubleType() );
+		final Img< DoubleType > mean = new ArrayImgFactory< DoubleType >().create( dimensions, new DoubleType() );
+		final Img< DoubleType > variance = new ArrayImgFactory< DoubleType >().create( dimensions, new DoubleType() );
+		new BoxFilter< UnsignedByteType, DoubleType >( BoxFilter.Statistic.SUM, span ).compute( img, sum );
+		new BoxFilter< UnsignedByteType, DoubleType >( BoxFilter.Statistic.MEAN, span ).compute( img, mean );
+		new BoxFilter< UnsignedByteType, DoubleType >( BoxFilter.Statistic.VARIANCE, span ).compute( img, variance );
+
+		final RandomAccess< DoubleType > sumAccess = sum.randomAccess();
+		final RandomAccess< DoubleType > meanAccess = mean.randomAccess();
+		final RandomAccess< DoubleType > varianceAccess = variance.randomAccess();
+		final Cursor< UnsignedByteType > c = img.localizingCursor();
+		final long[] pos = new long[ dimensions.length ];
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( pos );
+			double s = 0;
+			double q = 0;
+			int n = 0;
+			for ( final Iterator< UnsignedByteType > it = window( pos ); it.hasNext(); )
+			{
+				final double v = it.next().getRealDouble();
+				s += v;
+				q += v * v;
+				++n;
+			}
+			sumAccess.setPosition( pos );
+			meanAccess.setPosition( pos );
+			varianceAccess.setPosition( pos );
+			assertEquals( s, sumAccess.get().get(), 1e-6 );
+			assertEquals( s / n, meanAccess.get().get(), 1e-6 );
+			assertEquals( ( q - s * s / n ) / ( n - 1 ), varianceAccess.get().get(), 1e-6 );
+		}
+	}
+
+	@Test
+	public void testBoxLocalThreshold()
+	{
+		assertSameThreshold( new MeanLocalThreshold< UnsignedByteType >( 3 ) );
+		assertSameThreshold( new Niblack< UnsignedByteType >( 0.2, 2 ) );
+		assertSameThreshold( new Sauvola< UnsignedByteType >( 0.5, 128 ) );
+	}
+
+	private < O extends BinaryOperation< Iterator< UnsignedByteType >, UnsignedByteType, BitType > & LocalStatisticsThreshold > void assertSameThreshold( final O op )
+	{
+		final Img< BitType > result = new ArrayImgFactory< BitType >().create( dimensions, new BitType() );
+		new BoxLocalThreshold< UnsignedByteType >( op, span ).compute( img, result );
+
+		final RandomAccess< BitType > resultAccess = result.randomAccess();
+		final Cursor< UnsignedByteType > c = img.localizingCursor();
+		final long[] pos = new long[ dimensions.length ];
+		final BitType expected = new BitType();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( pos );
+			op.compute( window( pos ), c.get(), expected );
+			resultAccess.setPosition( pos );
+			assertEquals( expected.get(), resultAccess.get().get() );
+		}
+	}
+}
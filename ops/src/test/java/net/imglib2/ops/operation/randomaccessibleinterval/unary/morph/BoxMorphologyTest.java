@@ -0,0 +1,218 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.ops.operation.randomaccessibleinterval.unary.morph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.iterator.IntervalIterator;
+import net.imglib2.ops.types.ConnectedType;
+import net.imglib2.outofbounds.OutOfBoundsConstantValueFactory;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+public class BoxMorphologyTest
+{
+	final long[] dimensions = new long[] { 29, 17, 6 };
+
+	/**
+	 * @return all offsets in the box [min, max].
+	 */
+	private static long[][] box( final long[] min, final long[] max )
+	{
+		final IntervalIterator it = new IntervalIterator( min, max );
+		int size = 1;
+		for ( int d = 0; d < min.length; ++d )
+			size *= max[ d ] - min[ d ] + 1;
+		final long[][] struc = new long[ size ][ min.length ];
+		for ( int i = 0; it.hasNext(); ++i )
+		{
+			it.fwd();
+			it.localize( struc[ i ] );
+		}
+		return struc;
+	}
+
+	/**
+	 * Compute the max (min) over the offsets directly.
+	 */
+	private static < T extends RealType< T > > void naive( final RandomAccessibleInterval< T > input, final RandomAccessibleInterval< T > output, final long[][] struc, final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > factory, final boolean dilate )
+	{
+		final RandomAccess< T > in = Views.extend( input, factory ).randomAccess();
+		final Cursor< T > out = Views.iterable( output ).localizingCursor();
+		final long[] pos = new long[ input.numDimensions() ];
+		while ( out.hasNext() )
+		{
+			out.fwd();
+			out.localize( pos );
+			in.setPosition( pos );
+			double m = dilate ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+			for ( final long[] offset : struc )
+			{
+				for ( int d = 0; d < offset.length; ++d )
+					in.setPosition( pos[ d ] + offset[ d ], d );
+				m = dilate ? Math.max( m, in.get().getRealDouble() ) : Math.min( m, in.get().getRealDouble() );
+			}
+			out.get().setReal( m );
+		}
+	}
+
+	private static < T extends RealType< T > > void assertImgEquals( final Img< T > expected, final Img< T > actual )
+	{
+		final Cursor< T > e = expected.cursor();
+		final Cursor< T > a = actual.cursor();
+		while ( e.hasNext() )
+			assertEquals( e.next().getRealDouble(), a.next().getRealDouble(), 0 );
+	}
+
+	@Test
+	public void testIsBox()
+	{
+		final long[] min = new long[ 3 ];
+		final long[] max = new long[ 3 ];
+		assertTrue( BoxMorphology.isBox( box( new long[] { -2, 0 }, new long[] { 3, 1 } ), min, max ) );
+		assertArrayEquals( new long[] { -2, 0, 0 }, min );
+		assertArrayEquals( new long[] { 3, 1, 0 }, max );
+
+		final long[][] cross = new long[][] { { 0, 0 }, { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 } };
+		assertFalse( BoxMorphology.isBox( cross, min, max ) );
+		final long[][] duplicates = new long[][] { { 0 }, { 1 }, { 1 }, { 3 } };
+		assertFalse( BoxMorphology.isBox( duplicates, min, max ) );
+	}
+
+	@Test
+	public void testGray()
+	{
+		final Img< UnsignedByteType > img = new ArrayImgFactory< UnsignedByteType >().create( dimensions, new UnsignedByteType() );
+		final Random random = new Random( 3 );
+		for ( final UnsignedByteType t : img )
+			t.set( random.nextInt( 256 ) );
+
+		final long[][][] elements = new long[][][] {
+				box( new long[] { -3, -2, -1 }, new long[] { 3, 2, 1 } ),
+				box( new long[] { -1, 0, 0 }, new long[] { 6, 0, 0 } ),
+				box( new long[] { 0, -4 }, new long[] { 0, 1 } ) };
+		final OutOfBoundsFactory< UnsignedByteType, RandomAccessibleInterval< UnsignedByteType > > mirror = new OutOfBoundsMirrorFactory< UnsignedByteType, RandomAccessibleInterval< UnsignedByteType > >( Boundary.SINGLE );
+		final OutOfBoundsFactory< UnsignedByteType, RandomAccessibleInterval< UnsignedByteType > > constant = new OutOfBoundsConstantValueFactory< UnsignedByteType, RandomAccessibleInterval< UnsignedByteType > >( new UnsignedByteType( 100 ) );
+		for ( final long[][] struc : elements )
+		{
+			for ( final OutOfBoundsFactory< UnsignedByteType, RandomAccessibleInterval< UnsignedByteType > > factory : new OutOfBoundsFactory[] { mirror, constant } )
+			{
+				final Img< UnsignedByteType > expected = img.factory().create( dimensions, new UnsignedByteType() );
+				final Img< UnsignedByteType > actual = img.factory().create( dimensions, new UnsignedByteType() );
+
+				naive( img, expected, struc, factory, true );
+				new DilateGray< UnsignedByteType >( struc, factory ).compute( img, actual );
+				assertImgEquals( expected, actual );
+
+				naive( img, expected, struc, factory, false );
+				new ErodeGray< UnsignedByteType >( struc, factory ).compute( img, actual );
+				assertImgEquals( expected, actual );
+			}
+		}
+	}
+
+	@Test
+	public void testBinary()
+	{
+		final Img< BitType > img = new ArrayImgFactory< BitType >().create( dimensions, new BitType() );
+		final Random random = new Random( 5 );
+		for ( final BitType t : img )
+			t.set( random.nextInt( 4 ) != 0 );
+
+		final OutOfBoundsFactory< BitType, RandomAccessibleInterval< BitType > > factory = new OutOfBoundsMirrorFactory< BitType, RandomAccessibleInterval< BitType > >( Boundary.SINGLE );
+		final long[][] struc = box( new long[] { -1, -1, -1 }, new long[] { 1, 1, 1 } );
+		final Img< BitType > expected = img.factory().create( dimensions, new BitType() );
+		final Img< BitType > actual = img.factory().create( dimensions, new BitType() );
+
+		naive( img, expected, struc, factory, true );
+		new BinaryOps( factory ).dilate( ConnectedType.EIGHT_CONNECTED, actual, img, 1 );
+		assertImgEquals( expected, actual );
+
+		naive( img, expected, struc, factory, false );
+		new BinaryOps( factory ).erode( ConnectedType.EIGHT_CONNECTED, actual, img, 1 );
+		assertImgEquals( expected, actual );
+	}
+
+	@Test
+	public void testTiles()
+	{
+		final Img< UnsignedByteType > img = new ArrayImgFactory< UnsignedByteType >().create( dimensions, new UnsignedByteType() );
+		final Random random = new Random( 7 );
+		for ( final UnsignedByteType t : img )
+			t.set( random.nextInt( 256 ) );
+
+		final long[] min = new long[] { -2, -1, -2 };
+		final long[] max = new long[] { 1, 3, 1 };
+		final OutOfBoundsFactory< UnsignedByteType, RandomAccessibleInterval< UnsignedByteType > > factory = new OutOfBoundsMirrorFactory< UnsignedByteType, RandomAccessibleInterval< UnsignedByteType > >( Boundary.SINGLE );
+		final Img< UnsignedByteType > expected = img.factory().create( dimensions, new UnsignedByteType() );
+		naive( img, expected, box( min, max ), factory, true );
+
+		// slabs of thickness 1, 2 and the whole image
+		for ( final int maxTileSize : new int[] { 1, 29 * 21 * 6, BoxMorphology.MAX_TILE_SIZE } )
+		{
+			final Img< UnsignedByteType > actual = img.factory().create( dimensions, new UnsignedByteType() );
+			new BoxMorphology< UnsignedByteType >( true, min, max, factory, null, maxTileSize ).compute( img, actual );
+			assertImgEquals( expected, actual );
+		}
+	}
+
+	@Test
+	public void testIsApplicable()
+	{
+		final long[] min = new long[] { -1, -1, -1 };
+		final long[] max = new long[] { 1, 1, 1 };
+		assertTrue( BoxMorphology.isApplicable( new FinalInterval( 1 << 14, 1 << 14, 1 << 16 ), min, max ) );
+		assertFalse( BoxMorphology.isApplicable( new FinalInterval( 1 << 20, 1 << 20, 4 ), min, max ) );
+		assertTrue( BoxMorphology.isApplicable( new FinalInterval( 1L << 40 ), new long[] { -1 }, new long[] { 1 } ) );
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.ops.operation.randomaccessibleinterval.unary.morph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.ops.types.ConnectedType;
+import net.imglib2.outofbounds.OutOfBoundsConstantValueFactory;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+public class PackedBinaryMorphologyTest
+{
+	final long[] dimensions = new long[] { 70, 13, 5 };
+
+	@SuppressWarnings( "unchecked" )
+	final ImgFactory< BitType >[] factories = new ImgFactory[] {
+			new ArrayImgFactory< BitType >(),
+			new PlanarImgFactory< BitType >(),
+			new CellImgFactory< BitType >( 8 ) };
+
+	private Img< BitType > random( final ImgFactory< BitType > factory, final long seed )
+	{
+		final Img< BitType > img = factory.create( dimensions, new BitType() );
+		final Random random = new Random( seed );
+		for ( final BitType t : img )
+			t.set( random.nextInt( 3 ) != 0 );
+		return img;
+	}
+
+	/**
+	 * Compute the min (max) over the box or cross directly.
+	 */
+	private static void naive( final RandomAccessibleInterval< BitType > input, final RandomAccessibleInterval< BitType > output, final ConnectedType type, final OutOfBoundsFactory< BitType, RandomAccessibleInterval< BitType > > factory, final boolean erode )
+	{
+		final int n = input.numDimensions();
+		final RandomAccess< BitType > in = Views.extend( input, factory ).randomAccess();
+		final Cursor< BitType > out = Views.iterable( output ).localizingCursor();
+		final long[] pos = new long[ n ];
+		final long[] offset = new long[ n ];
+		while ( out.hasNext() )
+		{
+			out.fwd();
+			out.localize( pos );
+			boolean m = erode;
+			for ( int i = 0; i < ( int ) Math.pow( 3, n ); ++i )
+			{
+				int nonZero = 0;
+				for ( int d = 0, j = i; d < n; ++d, j /= 3 )
+				{
+					offset[ d ] = j % 3 - 1;
+					if ( offset[ d ] != 0 )
+						++nonZero;
+				}
+				if ( type == ConnectedType.FOUR_CONNECTED && nonZero > 1 )
+					continue;
+				for ( int d = 0; d < n; ++d )
+					in.setPosition( pos[ d ] + offset[ d ], d );
+				m = erode ? m && in.get().get() : m || in.get().get();
+			}
+			out.get().set( m );
+		}
+	}
+
+	private static void assertMaskEquals( final RandomAccessibleInterval< BitType > expected, final RandomAccessibleInterval< BitType > actual )
+	{
+		final Cursor< BitType > e = Views.flatIterable( expected ).cursor();
+		final Cursor< BitType > a = Views.flatIterable( actual ).cursor();
+		while ( e.hasNext() )
+			assertEquals( e.next().get(), a.next().get() );
+	}
+
+	@Test
+	public void testReadWrite()
+	{
+		for ( final ImgFactory< BitType > factory : factories )
+		{
+			final Img< BitType > img = random( factory, 1 );
+			final Img< BitType > copy = factory.create( dimensions, new BitType() );
+			PackedBitMask.read( img, null ).write( copy, null );
+			assertMaskEquals( img, copy );
+		}
+	}
+
+	@Test
+	public void testMorphology()
+	{
+		final OutOfBoundsFactory< BitType, RandomAccessibleInterval< BitType > > mirror = new OutOfBoundsMirrorFactory< BitType, RandomAccessibleInterval< BitType > >( Boundary.SINGLE );
+		final OutOfBoundsFactory< BitType, RandomAccessibleInterval< BitType > > zero = new OutOfBoundsConstantValueFactory< BitType, RandomAccessibleInterval< BitType > >( new BitType( false ) );
+		final OutOfBoundsFactory< BitType, RandomAccessibleInterval< BitType > > one = new OutOfBoundsConstantValueFactory< BitType, RandomAccessibleInterval< BitType > >( new BitType( true ) );
+		for ( final ImgFactory< BitType > factory : factories )
+		{
+			final Img< BitType > img = random( factory, 2 );
+			final Img< BitType > expected = factory.create( dimensions, new BitType() );
+			final Img< BitType > actual = factory.create( dimensions, new BitType() );
+			for ( final ConnectedType type : new ConnectedType[] { ConnectedType.EIGHT_CONNECTED, ConnectedType.FOUR_CONNECTED } )
+			{
+				for ( final OutOfBoundsFactory< BitType, RandomAccessibleInterval< BitType > > oob : new OutOfBoundsFactory[] { mirror, zero, one } )
+				{
+					naive( img, expected, type, oob, true );
+					new BinaryOps( oob ).erode( type, actual, img, 1 );
+					assertMaskEquals( expected, actual );
+
+					naive( img, expected, type, oob, false );
+					new BinaryOps( oob ).dilate( type, actual, img, 1 );
+					assertMaskEquals( expected, actual );
+				}
+			}
+
+			// opening is erosion followed by dilation
+			final Img< BitType > eroded = factory.create( dimensions, new BitType() );
+			naive( img, eroded, ConnectedType.EIGHT_CONNECTED, mirror, true );
+			naive( eroded, expected, ConnectedType.EIGHT_CONNECTED, mirror, false );
+			new PackedBinaryMorphology( PackedBinaryMorphology.Operation.OPEN, ConnectedType.EIGHT_CONNECTED, null, null ).compute( img, actual );
+			assertMaskEquals( expected, actual );
+		}
+	}
+
+	@Test
+	public void testLogic()
+	{
+		final Img< BitType > a = random( new ArrayImgFactory< BitType >(), 3 );
+		final Img< BitType > b = random( new ArrayImgFactory< BitType >(), 4 );
+		final PackedBitMask pa = PackedBitMask.read( a, null );
+		final PackedBitMask pb = PackedBitMask.read( b, null );
+		final Img< BitType > and = a.factory().create( dimensions, new BitType() );
+		final Img< BitType > or = a.factory().create( dimensions, new BitType() );
+		final Img< BitType > xor = a.factory().create( dimensions, new BitType() );
+		final Img< BitType > andNot = a.factory().create( dimensions, new BitType() );
+		pa.and( pb, null ).write( and, null );
+		pa.or( pb, null ).write( or, null );
+		pa.xor( pb, null ).write( xor, null );
+		pa.andNot( pb, null ).write( andNot, null );
+
+		final Cursor< BitType > ca = a.cursor();
+		final Cursor< BitType > cb = b.cursor();
+		final Cursor< BitType > cand = and.cursor();
+		final Cursor< BitType > cor = or.cursor();
+		final Cursor< BitType > cxor = xor.cursor();
+		final Cursor< BitType > candNot = andNot.cursor();
+		while ( ca.hasNext() )
+		{
+			final boolean va = ca.next().get();
+			final boolean vb = cb.next().get();
+			assertEquals( va && vb, cand.next().get() );
+			assertEquals( va || vb, cor.next().get() );
+			assertEquals( va ^ vb, cxor.next().get() );
+			assertEquals( va && !vb, candNot.next().get() );
+		}
+	}
+}
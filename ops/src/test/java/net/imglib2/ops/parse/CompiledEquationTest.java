@@ -0,0 +1,173 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.ops.parse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.ops.function.Function;
+import net.imglib2.ops.function.real.RealEquationFunction;
+import net.imglib2.ops.util.Tuple2;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+
+import org.junit.Test;
+
+public class CompiledEquationTest {
+
+	private static final String[] EQUATIONS = {
+		"[x,y,z], 7",
+		"[x,y,z], -x + 2*y - z/3",
+		"[x,y,z], x - y - z",
+		"[x,y,z], (x + 1) % 4 ^ 2 + 2 ^ 3 ^ 0.5",
+		"[x,y,z], img * 2 - sqrt(img) + log(img + 1)",
+		"[x,y,z], max(img, 100) + min(x, y) * abs(-z)",
+		"[x,y,z], sin(x) * cos(y) + tan(z / 10) + exp(-x / 8)",
+		"[x,y,z], floor(img / 3) + ceil(x / 3) + round(y / 3) + signum(z - 1)",
+		"[x,y,z], sqr(x) + cbrt(y) + atan(z) + log10(img + 1)",
+		"[x,y,z], dctr + angle(x,y) + angle(z,x) + dim(y) + tmax - tmin",
+		"[x,y,z], 1 / (x - 3) + 2 * 3 - -4 + sqrt(16) * PI"
+	};
+
+	@Test
+	public void testMatchesFunctionTree() {
+		Img<UnsignedByteType> img = createImage(9, 7, 5);
+		long[] pos = new long[3];
+		for (String spec : EQUATIONS) {
+			Function<long[],DoubleType> tree = parse(spec, img);
+			CompiledEquation eqn = compile(spec, img);
+			DoubleType expected = new DoubleType();
+			for (pos[2] = 0; pos[2] < img.dimension(2); pos[2]++) {
+				for (pos[1] = 0; pos[1] < img.dimension(1); pos[1]++) {
+					for (pos[0] = 0; pos[0] < img.dimension(0); pos[0]++) {
+						tree.compute(pos, expected);
+						assertEquals(spec, expected.get(), eqn.evaluate(pos), 0);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testLinesMatchPoints() {
+		Img<UnsignedByteType> img = createImage(9, 7, 5);
+		long[] start = new long[3];
+		long[] pos = new long[3];
+		double[] line = new double[16];
+		for (String spec : EQUATIONS) {
+			CompiledEquation eqn = compile(spec, img);
+			CompiledEquation points = eqn.copy();
+			for (int d = 0; d < 3; d++) {
+				start[0] = d == 0 ? 0 : 4;
+				start[1] = d == 1 ? 0 : 3;
+				start[2] = d == 2 ? 0 : 2;
+				int length = (int) img.dimension(d);
+				eqn.evaluateLine(start, d, length, line);
+				for (int i = 0; i < length; i++) {
+					System.arraycopy(start, 0, pos, 0, 3);
+					pos[d] += i;
+					assertEquals(spec, points.evaluate(pos), line[i], 0);
+				}
+				assertEquals(d == 0 ? 0 : 4, start[0]);
+			}
+		}
+	}
+
+	@Test
+	public void testConstantFolding() {
+		CompiledEquation eqn = compile("[x,y], 2 * 3 * sqrt(16) + -x", null);
+		// 24 ; x ; neg ; add
+		assertEquals(4, eqn.size());
+		assertEquals(17, eqn.evaluate(new long[] {7, 0}), 0);
+		assertEquals(1, compile("[x,y], (2 + 3) * 4 ^ 0.5", null).size());
+	}
+
+	@Test
+	public void testErrors() {
+		RealEquationFunctionParser parser = new RealEquationFunctionParser();
+		Tuple2<CompiledEquation,String> result = parser.compile("[x], y + 1", null);
+		assertNull(result.get1());
+		assertNotNull(result.get2());
+		assertNotNull(parser.compile("[x], img", null).get2());
+	}
+
+	@Test
+	public void testRealEquationFunction() {
+		RealEquationFunction<DoubleType> func =
+			new RealEquationFunction<DoubleType>("[x,y], 10 * y + x", new DoubleType());
+		DoubleType output = func.createOutput();
+		func.compute(new long[] {3, 2}, output);
+		assertEquals(23, output.get(), 0);
+		double[] line = new double[4];
+		func.copy().computeLine(new long[] {1, 0}, 1, 4, line);
+		for (int i = 0; i < line.length; i++)
+			assertEquals(10 * i + 1, line[i], 0);
+	}
+
+	private static Function<long[],DoubleType> parse(String spec,
+		Img<UnsignedByteType> img)
+	{
+		Tuple2<Function<long[],DoubleType>,String> result =
+			new RealEquationFunctionParser().parse(spec, img);
+		assertNull(result.get2(), result.get2());
+		return result.get1();
+	}
+
+	private static CompiledEquation compile(String spec,
+		Img<UnsignedByteType> img)
+	{
+		Tuple2<CompiledEquation,String> result =
+			new RealEquationFunctionParser().compile(spec, img);
+		assertNull(result.get2(), result.get2());
+		assertTrue(result.get1().size() > 0);
+		return result.get1();
+	}
+
+	private static Img<UnsignedByteType> createImage(long... dims) {
+		Img<UnsignedByteType> img =
+			new ArrayImgFactory<UnsignedByteType>().create(dims, new UnsignedByteType());
+		Random rnd = new Random(42);
+		Cursor<UnsignedByteType> c = img.cursor();
+		while (c.hasNext())
+			c.next().set(rnd.nextInt(256));
+		return img;
+	}
+}
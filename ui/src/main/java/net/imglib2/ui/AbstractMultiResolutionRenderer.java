@@ -186,6 +186,19 @@ abstract public class AbstractMultiResolutionRenderer< A extends AffineSet & Aff
 	 */
 	protected volatile boolean renderingMayBeCancelled;
 
+	/**
+	 * Whether the last full resolution frame contained invalid
+	 * {@link net.imglib2.Volatile} pixels and no data has been loaded since.
+	 * The frame is rendered again on the next {@link #dataLoaded()}.
+	 */
+	protected boolean waitingForData;
+
+	/**
+	 * Whether {@link #dataLoaded()} was called since the current rendering
+	 * started.
+	 */
+	protected boolean dataLoadedWhileRendering;
+
 	/**
 	 * How many threads to use for rendering.
 	 */
@@ -262,9 +275,30 @@ abstract public class AbstractMultiResolutionRenderer< A extends AffineSet & Aff
 		if ( renderingMayBeCancelled && projector != null )
 			projector.cancel();
 		requestedScreenScaleIndex = screenScaleIndex;
+		waitingForData = false;
 		painterThread.requestRepaint();
 	}
 
+	/**
+	 * Notify the renderer that data for a {@link net.imglib2.Volatile} source
+	 * has been loaded, e.g., from a
+	 * {@link net.imglib2.img.cell.CellFetcher.LoadListener}. If the last
+	 * frame was incomplete, it is rendered again at full resolution. A
+	 * rendering in progress is not cancelled, but is followed by another one
+	 * if it turns out incomplete. Thus, incomplete frames are repainted at most
+	 * once per batch of loaded data instead of continuously.
+	 */
+	public synchronized void dataLoaded()
+	{
+		dataLoadedWhileRendering = true;
+		if ( waitingForData )
+		{
+			waitingForData = false;
+			requestedScreenScaleIndex = 0;
+			painterThread.requestRepaint();
+		}
+	}
+
 	/**
 	 * Check whether the size of the display component was changed and recreate
 	 * {@link #screenImages} and {@link #screenScaleTransforms} accordingly.
@@ -342,6 +376,10 @@ abstract public class AbstractMultiResolutionRenderer< A extends AffineSet & Aff
 	 * The default implementation checks whether the full canvas resolution has
 	 * been reached. Derived classes may override this to implement different
 	 * checks.
+	 * <p>
+	 * If the full resolution frame of a {@link VolatileInterruptibleProjector}
+	 * contains invalid pixels, it is not repainted immediately, but on the
+	 * next {@link #dataLoaded()}.
 	 * 
 	 * @return true, if another repaint is required.
 	 */
@@ -373,6 +411,8 @@ abstract public class AbstractMultiResolutionRenderer< A extends AffineSet & Aff
 		synchronized ( this )
 		{
 			renderingMayBeCancelled = ( requestedScreenScaleIndex < maxScreenScaleIndex );
+			waitingForData = false;
+			dataLoadedWhileRendering = false;
 			currentScreenScaleIndex = requestedScreenScaleIndex;
 			currentScreenScaleTransform = screenScaleTransforms.get( currentScreenScaleIndex );
 
@@ -417,6 +457,13 @@ abstract public class AbstractMultiResolutionRenderer< A extends AffineSet & Aff
 
 				if ( !isComplete() )
 					requestRepaint( currentScreenScaleIndex > 0 ? currentScreenScaleIndex - 1 : 0 );
+				else if ( p instanceof VolatileInterruptibleProjector && !( ( VolatileInterruptibleProjector< ?, ? > ) p ).isValid() )
+				{
+					if ( dataLoadedWhileRendering )
+						requestRepaint( 0 );
+					else
+						waitingForData = true;
+				}
 			}
 		}
 
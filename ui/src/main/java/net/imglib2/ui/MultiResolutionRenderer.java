@@ -34,7 +34,9 @@ package net.imglib2.ui;
 
 import net.imglib2.RandomAccessible;
 import net.imglib2.RealRandomAccessible;
+import net.imglib2.Volatile;
 import net.imglib2.concatenate.Concatenable;
+import net.imglib2.converter.Converter;
 import net.imglib2.display.screenimage.awt.ARGBScreenImage;
 import net.imglib2.realtransform.AffineGet;
 import net.imglib2.realtransform.AffineSet;
@@ -182,7 +184,25 @@ public class MultiResolutionRenderer< A extends AffineSet & AffineGet & Concaten
 			final ARGBScreenImage screenImage,
 			final int numRenderingThreads )
 	{
-		return new SimpleInterruptibleProjector< T, ARGBType >( getTransformedSource( transformType, source, viewerTransform, screenScaleTransform ), source.getConverter(), screenImage, numRenderingThreads );
+		final RandomAccessible< T > transformed = getTransformedSource( transformType, source, viewerTransform, screenScaleTransform );
+		if ( transformed.randomAccess().get() instanceof Volatile )
+			return createVolatileProjector( transformed, source.getConverter(), screenImage, numRenderingThreads );
+		return new SimpleInterruptibleProjector< T, ARGBType >( transformed, source.getConverter(), screenImage, numRenderingThreads );
+	}
+
+	/**
+	 * Create a {@link VolatileInterruptibleProjector} for a source whose pixels
+	 * are {@link Volatile}, such that incomplete frames are rendered again on
+	 * {@link #dataLoaded()} until all data has been loaded.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	protected static < T > SimpleInterruptibleProjector< T, ARGBType > createVolatileProjector(
+			final RandomAccessible< T > source,
+			final Converter< ? super T, ARGBType > converter,
+			final ARGBScreenImage screenImage,
+			final int numRenderingThreads )
+	{
+		return new VolatileInterruptibleProjector( source, converter, screenImage, numRenderingThreads );
 	}
 
 	protected static < T, A extends AffineGet & Concatenable< AffineGet > > RandomAccessible< T > getTransformedSource(
@@ -32,15 +32,14 @@
  */
 package net.imglib2.ui;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
+import net.imglib2.multithreading.SharedThreadPool;
 import net.imglib2.ui.util.StopWatch;
 
 /**
@@ -85,7 +84,8 @@ public class SimpleInterruptibleProjector< A, B > extends AbstractInterruptibleP
 	 * @param target
 	 *            the target interval that this projector maps to
 	 * @param numThreads
-	 *            how many threads to use for rendering.
+	 *            how many threads to use for rendering. Rendering tasks are
+	 *            run on the {@link SharedThreadPool}.
 	 */
 	public SimpleInterruptibleProjector(
 			final RandomAccessible< A > source,
@@ -128,7 +128,6 @@ public class SimpleInterruptibleProjector< A, B > extends AbstractInterruptibleP
 		final int width = ( int ) target.dimension( 0 );
 		final int height = ( int ) target.dimension( 1 );
 
-		final ExecutorService ex = Executors.newFixedThreadPool( numThreads );
 		final int numTasks;
 		if ( numThreads > 1 )
 		{
@@ -137,6 +136,7 @@ public class SimpleInterruptibleProjector< A, B > extends AbstractInterruptibleP
 		else
 			numTasks = 1;
 		final double taskHeight = ( double ) height / numTasks;
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( numTasks );
 		for ( int taskNum = 0; taskNum < numTasks; ++taskNum )
 		{
 			final long myMinY = min[ 1 ] + ( int ) ( taskNum * taskHeight );
@@ -174,17 +174,9 @@ public class SimpleInterruptibleProjector< A, B > extends AbstractInterruptibleP
 					}
 				}
 			};
-			ex.execute( r );
-		}
-		ex.shutdown();
-		try
-		{
-			ex.awaitTermination( 1, TimeUnit.HOURS );
-		}
-		catch ( final InterruptedException e )
-		{
-			e.printStackTrace();
+			tasks.add( r );
 		}
+		SharedThreadPool.runAll( tasks );
 
 		lastFrameRenderNanoTime = stopWatch.nanoTime();
 
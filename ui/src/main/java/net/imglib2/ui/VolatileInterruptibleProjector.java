@@ -0,0 +1,134 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.ui;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.Volatile;
+import net.imglib2.converter.Converter;
+
+/**
+ * A {@link SimpleInterruptibleProjector} for {@link Volatile} source pixels.
+ * After each {@link #map()}, {@link #isValid()} tells whether all rendered
+ * source pixels were valid. If not, the data was still being loaded and the
+ * target should be rendered again later.
+ * 
+ * @param <A>
+ *            pixel type of the source {@link RandomAccessible}.
+ * @param <B>
+ *            pixel type of the target {@link RandomAccessibleInterval}.
+ */
+public class VolatileInterruptibleProjector< A extends Volatile< ? >, B > extends SimpleInterruptibleProjector< A, B >
+{
+	/**
+	 * Wraps the converter to record whether an invalid pixel was converted.
+	 * Only ever set from true to false by rendering threads, and read after
+	 * all rendering tasks have completed.
+	 */
+	private static final class ValidityConverter< A extends Volatile< ? >, B > implements Converter< A, B >
+	{
+		private final Converter< ? super A, B > converter;
+
+		private boolean valid;
+
+		public ValidityConverter( final Converter< ? super A, B > converter )
+		{
+			this.converter = converter;
+		}
+
+		@Override
+		public void convert( final A input, final B output )
+		{
+			converter.convert( input, output );
+			if ( !input.isValid() )
+				valid = false;
+		}
+	}
+
+	private final ValidityConverter< A, B > validityConverter;
+
+	private boolean valid;
+
+	/**
+	 * Create new projector with the given source and a converter from source to
+	 * target pixel type.
+	 * 
+	 * @param source
+	 *            source pixels.
+	 * @param converter
+	 *            converts from the source pixel type to the target pixel type.
+	 * @param target
+	 *            the target interval that this projector maps to
+	 * @param numThreads
+	 *            how many threads to use for rendering.
+	 */
+	public VolatileInterruptibleProjector(
+			final RandomAccessible< A > source,
+			final Converter< ? super A, B > converter,
+			final RandomAccessibleInterval< B > target,
+			final int numThreads )
+	{
+		this( source, new ValidityConverter< A, B >( converter ), target, numThreads );
+	}
+
+	private VolatileInterruptibleProjector(
+			final RandomAccessible< A > source,
+			final ValidityConverter< A, B > converter,
+			final RandomAccessibleInterval< B > target,
+			final int numThreads )
+	{
+		super( source, converter, target, numThreads );
+		validityConverter = converter;
+		valid = false;
+	}
+
+	@Override
+	public boolean map()
+	{
+		validityConverter.valid = true;
+		final boolean success = super.map();
+		valid = success && validityConverter.valid;
+		return success;
+	}
+
+	/**
+	 * @return true if all source pixels of the last {@link #map()} were
+	 *         {@link Volatile#isValid() valid}.
+	 */
+	public boolean isValid()
+	{
+		return valid;
+	}
+}